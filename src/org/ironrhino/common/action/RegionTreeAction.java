@@ -44,13 +44,13 @@ public class RegionTreeAction extends BaseAction {
 		if (parent == null || parent < 1) {
 			if (tree != null && tree > 0) {
 				children = new ArrayList<>();
-				children.add(regionTreeControl.getTree().getDescendantOrSelfById(tree));
+				children.add(regionTreeControl.getTreeNode(tree));
 				return JSON;
 			} else {
 				region = regionTreeControl.getTree();
 			}
 		} else {
-			region = regionTreeControl.getTree().getDescendantOrSelfById(parent);
+			region = regionTreeControl.getTreeNode(parent);
 		}
 		if (region != null)
 			children = region.getChildren();
@@ -65,7 +65,7 @@ public class RegionTreeAction extends BaseAction {
 			if (parent == null || parent < 1)
 				region = regionTreeControl.getTree();
 			else
-				region = regionTreeControl.getTree().getDescendantOrSelfById(parent);
+				region = regionTreeControl.getTreeNode(parent);
 			children = region.getChildren();
 		}
 		children = CriterionUtils.filter(children);
@@ -2,6 +2,7 @@ package org.ironrhino.common.service;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
@@ -12,6 +13,14 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PreDestroy;
 
 import org.apache.commons.lang3.StringUtils;
 import org.ironrhino.common.util.Location;
@@ -24,15 +33,23 @@ import org.ironrhino.core.util.DateUtils;
 import org.ironrhino.core.util.RequestUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.StringRedisConnection;
 import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.HyperLogLogOperations;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
 @Service
+@Slf4j
 public class PageViewServiceImpl implements PageViewService {
 
 	public static final String KEY_PAGE_VIEW = "pv:";
@@ -44,10 +61,128 @@ public class PageViewServiceImpl implements PageViewService {
 	@PriorityQualifier
 	private StringRedisTemplate pageViewStringRedisTemplate;
 
+	// aggregate page views in memory and flush them to redis in pipeline
+	@Getter
+	@Setter
+	@Value("${pageViewService.buffered:false}")
+	private boolean buffered;
+
+	// flush by caller if distinct entries of buffer reach this size
+	@Getter
+	@Setter
+	@Value("${pageViewService.bufferSize:10000}")
+	private int bufferSize = 10000;
+
+	// entries of failed flush are retained for next flush unless buffer exceeds
+	// this size
+	@Getter
+	@Setter
+	@Value("${pageViewService.maxRetainedSize:100000}")
+	private int maxRetainedSize = 100000;
+
+	private volatile Buffer buffer = new Buffer();
+
+	private final ReadWriteLock bufferLock = new ReentrantReadWriteLock();
+
 	@Override
 	public void put(Date date, String ip, String url, String sessionId, String username, String referer) {
 		if (pageViewStringRedisTemplate == null)
 			return;
+		if (!buffered) {
+			put(null, date, ip, url, sessionId, username, referer);
+			return;
+		}
+		Buffer b;
+		Lock lock = bufferLock.readLock();
+		lock.lock();
+		try {
+			b = buffer;
+			put(b, date, ip, url, sessionId, username, referer);
+		} finally {
+			lock.unlock();
+		}
+		if (b.size.get() >= bufferSize)
+			flush();
+	}
+
+	@Scheduled(fixedDelayString = "${pageViewService.flushInterval:1000}")
+	@PreDestroy
+	public synchronized void flush() {
+		if (pageViewStringRedisTemplate == null)
+			return;
+		Buffer b;
+		Lock lock = bufferLock.writeLock();
+		lock.lock();
+		try {
+			b = buffer;
+			if (b.size.get() == 0)
+				return;
+			buffer = new Buffer();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			if (!b.uniques.isEmpty()) {
+				List<Unique> uniques = new ArrayList<>(b.uniques.values());
+				List<Object> results = pageViewStringRedisTemplate.executePipelined((RedisCallback<?>) conn -> {
+					StringRedisConnection sconn = (StringRedisConnection) conn;
+					for (Unique u : uniques)
+						sconn.pfAdd(u.hllKey, u.value);
+					return null;
+				});
+				for (int i = 0; i < uniques.size(); i++) {
+					Object result = results.get(i);
+					if (result instanceof Long && (Long) result > 0) {
+						Unique u = uniques.get(i);
+						increment(b, u.key);
+						if (u.ip != null)
+							analyzeLocation(b, u.day, u.ip, u.domain);
+					}
+				}
+				// already added, should not be counted again if retained
+				b.uniques.clear();
+			}
+			pageViewStringRedisTemplate.executePipelined((RedisCallback<?>) conn -> {
+				StringRedisConnection sconn = (StringRedisConnection) conn;
+				if (!b.domains.isEmpty())
+					sconn.sAdd(KEY_PAGE_VIEW + "domains", b.domains.toArray(new String[b.domains.size()]));
+				b.counters.forEach((key, count) -> sconn.incrBy(key, count.sum()));
+				b.scores.forEach((key, scores) -> scores
+						.forEach((member, score) -> sconn.zIncrBy(key, score.sum(), member)));
+				return null;
+			});
+		} catch (Exception e) {
+			log.error("Flush page views failed", e);
+			retain(b);
+		}
+	}
+
+	private void retain(Buffer failed) {
+		Lock lock = bufferLock.readLock();
+		lock.lock();
+		try {
+			Buffer b = buffer;
+			int size = b.size.get() + failed.size.get();
+			if (size > maxRetainedSize) {
+				log.error("Discard {} page view entries since buffer size {} exceeds {}", failed.size.get(), size,
+						maxRetainedSize);
+				return;
+			}
+			failed.domains.forEach(domain -> addDomain(b, domain));
+			failed.uniques.forEach((k, u) -> b.uniques.computeIfAbsent(k, key -> {
+				b.size.incrementAndGet();
+				return u;
+			}));
+			failed.counters.forEach((key, count) -> b.counter(key).add(count.sum()));
+			failed.scores.forEach(
+					(key, scores) -> scores.forEach((member, score) -> b.score(key, member).add(score.sum())));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void put(Buffer b, Date date, String ip, String url, String sessionId, String username,
+			String referer) {
 		String domain = null;
 		try {
 			domain = new URL(url).getHost();
@@ -56,54 +191,54 @@ public class PageViewServiceImpl implements PageViewService {
 		} catch (MalformedURLException e) {
 			e.printStackTrace();
 		}
-		addDomain(domain);
-		addPageView(date, null);
-		addPageView(date, domain);
+		addDomain(b, domain);
+		addPageView(b, date, null);
+		addPageView(b, date, domain);
 		String day = DateUtils.formatDate8(date);
-		addUnique(day, "uip", ip, null);
-		addUnique(day, "uip", ip, domain);
-		boolean added1 = addUnique(day, "usid", sessionId, null);
-		boolean added2 = addUnique(day, "usid", sessionId, domain);
-		addUnique(day, "uu", username, null);
-		addUnique(day, "uu", username, domain);
-		addUrlVisit(day, url, null);
-		addUrlVisit(day, url, domain);
-		analyzeReferer(day, url, referer, null);
-		analyzeReferer(day, url, referer, domain);
-		if (added1)
-			analyzeLocation(day, ip, null);
-		if (added2)
-			analyzeLocation(day, ip, domain);
-	}
-
-	private void addDomain(String domain) {
-		pageViewStringRedisTemplate.opsForSet().add(KEY_PAGE_VIEW + "domains", domain);
-	}
-
-	private void addPageView(Date date, String domain) {
+		addUnique(b, day, "uip", ip, null, null);
+		addUnique(b, day, "uip", ip, domain, null);
+		// analyze location of new session
+		addUnique(b, day, "usid", sessionId, null, ip);
+		addUnique(b, day, "usid", sessionId, domain, ip);
+		addUnique(b, day, "uu", username, null, null);
+		addUnique(b, day, "uu", username, domain, null);
+		addUrlVisit(b, day, url, null);
+		addUrlVisit(b, day, url, domain);
+		analyzeReferer(b, day, url, referer, null);
+		analyzeReferer(b, day, url, referer, domain);
+	}
+
+	private void addDomain(Buffer b, String domain) {
+		if (b == null)
+			pageViewStringRedisTemplate.opsForSet().add(KEY_PAGE_VIEW + "domains", domain);
+		else if (domain != null && b.domains.add(domain))
+			b.size.incrementAndGet();
+	}
+
+	private void addPageView(Buffer b, Date date, String domain) {
 		StringBuilder sb = new StringBuilder(KEY_PAGE_VIEW);
 		if (StringUtils.isNotBlank(domain))
 			sb.append(domain).append(":");
 		sb.append("pv");
-		pageViewStringRedisTemplate.opsForValue().increment(sb.toString(), 1);
+		increment(b, sb.toString());
 		sb.append(":");
 		String prefix = sb.toString();
 		String key = DateUtils.format(date, "yyyyMMddHH");
-		pageViewStringRedisTemplate.opsForValue().increment(prefix + key, 1);
+		increment(b, prefix + key);
 	}
 
-	private void addUrlVisit(String day, String url, String domain) {
+	private void addUrlVisit(Buffer b, String day, String url, String domain) {
 		StringBuilder sb = new StringBuilder(KEY_PAGE_VIEW);
 		if (StringUtils.isNotBlank(domain))
 			sb.append(domain).append(":");
 		sb.append("url");
-		pageViewStringRedisTemplate.opsForZSet().incrementScore(sb.toString(), url, 1);
+		incrementScore(b, sb.toString(), url);
 		sb.append(":");
 		sb.append(day);
-		pageViewStringRedisTemplate.opsForZSet().incrementScore(sb.toString(), url, 1);
+		incrementScore(b, sb.toString(), url);
 	}
 
-	private void analyzeReferer(String day, String url, String referer, String domain) {
+	private void analyzeReferer(Buffer b, String day, String url, String referer, String domain) {
 		if (StringUtils.isBlank(referer) || RequestUtils.isSameOrigin(url, referer))
 			return;
 
@@ -111,10 +246,10 @@ public class PageViewServiceImpl implements PageViewService {
 		if (StringUtils.isNotBlank(domain))
 			sb.append(domain).append(":");
 		sb.append("fr");
-		pageViewStringRedisTemplate.opsForZSet().incrementScore(sb.toString(), referer, 1);
+		incrementScore(b, sb.toString(), referer);
 		sb.append(":");
 		sb.append(day);
-		pageViewStringRedisTemplate.opsForZSet().incrementScore(sb.toString(), referer, 1);
+		incrementScore(b, sb.toString(), referer);
 
 		String[] result = parseSearchUrl(referer);
 		if (result == null)
@@ -126,24 +261,25 @@ public class PageViewServiceImpl implements PageViewService {
 			if (StringUtils.isNotBlank(domain))
 				sb.append(domain).append(":");
 			sb.append("se");
-			pageViewStringRedisTemplate.opsForZSet().incrementScore(sb.toString(), searchengine, 1);
+			incrementScore(b, sb.toString(), searchengine);
 			sb.append(":");
 			sb.append(day);
-			pageViewStringRedisTemplate.opsForZSet().incrementScore(sb.toString(), searchengine, 1);
+			incrementScore(b, sb.toString(), searchengine);
 		}
 		if (StringUtils.isNotBlank(keyword)) {
 			sb = new StringBuilder(KEY_PAGE_VIEW);
 			if (StringUtils.isNotBlank(domain))
 				sb.append(domain).append(":");
 			sb.append("kw");
-			pageViewStringRedisTemplate.opsForZSet().incrementScore(sb.toString(), keyword, 1);
+			incrementScore(b, sb.toString(), keyword);
 			sb.append(":");
 			sb.append(day);
-			pageViewStringRedisTemplate.opsForZSet().incrementScore(sb.toString(), keyword, 1);
+			incrementScore(b, sb.toString(), keyword);
 		}
 	}
 
-	private void analyzeLocation(String day, String ip, String domain) {
+	private void analyzeLocation(Buffer b, String day, String ip, String domain) {
+		// ip missing from ip2region is not counted at its first visit
 		Location loc = LocationUtils.parse(ip);
 		if (loc != null) {
 			String province = loc.getFirstArea();
@@ -152,10 +288,10 @@ public class PageViewServiceImpl implements PageViewService {
 				if (StringUtils.isNotBlank(domain))
 					sb.append(domain).append(":");
 				sb.append("loc:pr");
-				pageViewStringRedisTemplate.opsForZSet().incrementScore(sb.toString(), province, 1);
+				incrementScore(b, sb.toString(), province);
 				sb.append(":");
 				sb.append(day);
-				pageViewStringRedisTemplate.opsForZSet().incrementScore(sb.toString(), province, 1);
+				incrementScore(b, sb.toString(), province);
 			}
 			String city = loc.getSecondArea();
 			if (StringUtils.isNotBlank(city)) {
@@ -163,10 +299,10 @@ public class PageViewServiceImpl implements PageViewService {
 				if (StringUtils.isNotBlank(domain))
 					sb.append(domain).append(":");
 				sb.append("loc:ct");
-				pageViewStringRedisTemplate.opsForZSet().incrementScore(sb.toString(), city, 1);
+				incrementScore(b, sb.toString(), city);
 				sb.append(":");
 				sb.append(day);
-				pageViewStringRedisTemplate.opsForZSet().incrementScore(sb.toString(), city, 1);
+				incrementScore(b, sb.toString(), city);
 			}
 		}
 	}
@@ -281,22 +417,45 @@ public class PageViewServiceImpl implements PageViewService {
 		}
 	}
 
-	private boolean addUnique(String day, String type, final String value, String domain) {
+	private void addUnique(Buffer b, String day, String type, final String value, String domain, String ip) {
 		if (StringUtils.isBlank(value))
-			return false;
+			return;
 		StringBuilder sb = new StringBuilder(KEY_PAGE_VIEW);
 		if (StringUtils.isNotBlank(domain))
 			sb.append(domain).append(":");
 		sb.append(type).append(":").append(day);
 		String key = sb.toString();
 		sb.append(KEY_HYPERLOGLOG_SUFFIX);
+		String hllKey = sb.toString();
+		if (b != null) {
+			// counted after PFADD of flushing tells whether it's new
+			b.uniques.computeIfAbsent(hllKey + '\n' + value, k -> {
+				b.size.incrementAndGet();
+				return new Unique(hllKey, value, key, day, domain, ip);
+			});
+			return;
+		}
 		HyperLogLogOperations<String, String> hll = pageViewStringRedisTemplate.opsForHyperLogLog();
-		Long result = hll.add(sb.toString(), value);
+		Long result = hll.add(hllKey, value);
 		if (result > 0) {
 			pageViewStringRedisTemplate.opsForValue().increment(key, 1);
-			return true;
+			if (ip != null)
+				analyzeLocation(null, day, ip, domain);
 		}
-		return false;
+	}
+
+	private void increment(Buffer b, String key) {
+		if (b == null)
+			pageViewStringRedisTemplate.opsForValue().increment(key, 1);
+		else
+			b.counter(key).increment();
+	}
+
+	private void incrementScore(Buffer b, String key, String member) {
+		if (b == null)
+			pageViewStringRedisTemplate.opsForZSet().incrementScore(key, member, 1);
+		else
+			b.score(key, member).increment();
 	}
 
 	private long get(String key, String type, String domain) {
@@ -413,6 +572,60 @@ public class PageViewServiceImpl implements PageViewService {
 		return null;
 	}
 
+	private static class Buffer {
+
+		private final Set<String> domains = ConcurrentHashMap.newKeySet();
+
+		private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+		private final Map<String, Map<String, LongAdder>> scores = new ConcurrentHashMap<>();
+
+		private final Map<String, Unique> uniques = new ConcurrentHashMap<>();
+
+		// distinct entries
+		private final AtomicInteger size = new AtomicInteger();
+
+		LongAdder counter(String key) {
+			return counters.computeIfAbsent(key, k -> {
+				size.incrementAndGet();
+				return new LongAdder();
+			});
+		}
+
+		LongAdder score(String key, String member) {
+			return scores.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).computeIfAbsent(member, k -> {
+				size.incrementAndGet();
+				return new LongAdder();
+			});
+		}
+
+	}
+
+	private static class Unique {
+
+		private final String hllKey;
+
+		private final String value;
+
+		private final String key;
+
+		private final String day;
+
+		private final String domain;
+
+		private final String ip;
+
+		Unique(String hllKey, String value, String key, String day, String domain, String ip) {
+			this.hllKey = hllKey;
+			this.value = value;
+			this.key = key;
+			this.day = day;
+			this.domain = domain;
+			this.ip = ip;
+		}
+
+	}
+
 	private static Map<String, String> searchengines = new HashMap<String, String>() {
 		private static final long serialVersionUID = 1L;
 
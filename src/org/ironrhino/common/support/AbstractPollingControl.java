@@ -3,14 +3,20 @@ package org.ironrhino.common.support;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
@@ -22,9 +28,12 @@ import org.hibernate.Session;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.query.Query;
 import org.ironrhino.common.model.BasePollingEntity;
 import org.ironrhino.common.model.PollingStatus;
+import org.ironrhino.core.model.ResultPage;
 import org.ironrhino.core.service.EntityManager;
+import org.ironrhino.core.util.ExceptionUtils;
 import org.ironrhino.core.util.NameableThreadFactory;
 import org.ironrhino.core.util.ReflectionUtils;
 import org.slf4j.Logger;
@@ -34,6 +43,8 @@ import org.springframework.context.SmartLifecycle;
 import org.springframework.data.redis.core.BoundListOperations;
 import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.scheduling.annotation.Scheduled;
 
 import lombok.Getter;
@@ -57,6 +68,15 @@ public abstract class AbstractPollingControl<T extends BasePollingEntity> implem
 	@Setter
 	private int threads = 5;
 
+	// workers scale with queue depth up to it, defaults to twice of threads
+	@Setter
+	private int maxThreads;
+
+	// ids popped by worker in one round trip, entities of one batch are handled
+	// by the same worker one by one
+	@Setter
+	private int dequeueBatchSize = 1;
+
 	@Getter
 	@Setter
 	private int maxAttempts = 3;
@@ -83,6 +103,17 @@ public abstract class AbstractPollingControl<T extends BasePollingEntity> implem
 
 	protected String conditionalUpdateStatusHql;
 
+	protected String bulkSimpleUpdateStatusHql;
+
+	protected String bulkDefaultUpdateStatusHql;
+
+	protected String bulkConditionalUpdateStatusHql;
+
+	@SuppressWarnings("rawtypes")
+	private RedisScript<List> popScript = new DefaultRedisScript<>(
+			"local ids = redis.call('lrange',KEYS[1],-tonumber(ARGV[1]),-1) if #ids > 0 then redis.call('ltrim',KEYS[1],0,-#ids-1) end return ids",
+			List.class);
+
 	protected final AtomicInteger cycles = new AtomicInteger();
 
 	public AbstractPollingControl() {
@@ -101,6 +132,9 @@ public abstract class AbstractPollingControl<T extends BasePollingEntity> implem
 				+ " t set t.status=?3,t.modifyDate=?4,t.errorInfo=?5,t.attempts=t.attempts+1 where t.id=?1 and t.status=?2";
 		conditionalUpdateStatusHql = "update " + entityClass.getSimpleName()
 				+ " t set t.status=case when t.attempts+1>=?3 then ?4 else ?5 end,t.modifyDate=?6,t.errorInfo=?7,t.attempts=t.attempts+1 where t.id=?1 and t.status=?2";
+		bulkSimpleUpdateStatusHql = simpleUpdateStatusHql.replace("t.id=?1", "t.id in (?1)");
+		bulkDefaultUpdateStatusHql = defaultUpdateStatusHql.replace("t.id=?1", "t.id in (?1)");
+		bulkConditionalUpdateStatusHql = conditionalUpdateStatusHql.replace("t.id=?1", "t.id in (?1)");
 
 		boundListOperations = stringRedisTemplate.boundListOps(getQueueName());
 	}
@@ -188,12 +222,34 @@ public abstract class AbstractPollingControl<T extends BasePollingEntity> implem
 	public void dequeue() {
 		if (!isRunning() || threadPoolExecutor.isShutdown())
 			return;
-		for (int i = 0; i < getThreads() - threadPoolExecutor.getActiveCount(); i++)
+		int workers = getDequeueWorkers(getQueueDepth());
+		for (int i = threadPoolExecutor.getActiveCount(); i < workers; i++)
 			threadPoolExecutor.execute(this::doDequeue);
 	}
 
+	/**
+	 * One worker per dequeue batch, at least {@link #getThreads()} and at most
+	 * {@link #getMaxThreads()}, so workers grow while upstream is slow
+	 */
+	int getDequeueWorkers(long depth) {
+		if (depth <= 0)
+			return 0;
+		int batch = getDequeueBatchSize();
+		long workers = (depth + batch - 1) / batch;
+		return (int) Math.min(Math.max(workers, getThreads()), getMaxThreads());
+	}
+
 	protected abstract void doDequeue();
 
+	// ids are bound into "in" clause, some databases such as Oracle limit it to 1000
+	public int getDequeueBatchSize() {
+		return Math.min(Math.max(dequeueBatchSize, 1), ResultPage.DEFAULT_MAX_PAGESIZE);
+	}
+
+	public int getMaxThreads() {
+		return maxThreads > 0 ? Math.max(maxThreads, getThreads()) : getThreads() * 2;
+	}
+
 	protected String getQueueName() {
 		return entityClass.getName();
 	}
@@ -238,6 +294,126 @@ public abstract class AbstractPollingControl<T extends BasePollingEntity> implem
 		return boundListOperations.rightPop();
 	}
 
+	/**
+	 * @return ids in the same order as {@link #pop()} one by one
+	 */
+	@SuppressWarnings("unchecked")
+	protected List<String> pop(int count) {
+		if (count <= 1) {
+			String id = pop();
+			return id != null ? Collections.singletonList(id) : Collections.emptyList();
+		}
+		List<String> ids = stringRedisTemplate.execute(popScript,
+				Collections.singletonList(boundListOperations.getKey()), String.valueOf(count));
+		if (ids == null || ids.isEmpty())
+			return Collections.emptyList();
+		ids = new ArrayList<>(ids);
+		Collections.reverse(ids);
+		return ids;
+	}
+
+	/**
+	 * Load entities in one query and filter out which shouldn't be processed,
+	 * ids are pushed back to be popped first again if it failed
+	 */
+	protected List<T> load(List<String> ids) {
+		try {
+			return doLoad(ids);
+		} catch (RuntimeException e) {
+			pushBack(ids, e);
+			throw e;
+		}
+	}
+
+	private List<T> doLoad(List<String> ids) {
+		List<String> distinctIds = ids.stream().distinct().collect(Collectors.toList());
+		Map<String, T> map = entityManager.get(distinctIds).stream().filter(Objects::nonNull)
+				.collect(Collectors.toMap(BasePollingEntity::getId, Function.identity(), (a, b) -> a));
+		List<T> entities = new ArrayList<>(map.size());
+		List<T> exhausted = new ArrayList<>();
+		for (String id : distinctIds) {
+			T entity = map.get(id);
+			if (entity == null) {
+				logger.warn("not found: {}", id);
+				continue;
+			}
+			logger.info("dequeue {}", entity);
+			if (entity.getStatus() == PollingStatus.SUCCESSFUL || entity.getStatus() == PollingStatus.FAILED) {
+				logger.warn("status is {}: {}", entity.getStatus(), entity);
+				continue;
+			}
+			if (entity.getAttempts() >= getMaxAttempts()) {
+				logger.error("max attempts reached: {}", entity);
+				exhausted.add(entity);
+				continue;
+			}
+			entities.add(entity);
+		}
+		if (!exhausted.isEmpty())
+			bulkUpdateStatus(bulkSimpleUpdateStatusHql, exhausted, PollingStatus.FAILED, new Date(),
+					"max attempts reached");
+		return entities;
+	}
+
+	private void pushBack(List<String> ids, RuntimeException e) {
+		List<String> list = new ArrayList<>(ids);
+		Collections.reverse(list);
+		try {
+			boundListOperations.rightPushAll(list.toArray(new String[list.size()]));
+			logger.warn("pushed back {}", ids);
+		} catch (RuntimeException ex) {
+			e.addSuppressed(ex);
+			// still PROCESSING, will be resubmitted by enqueue
+			logger.error("push back {} failed", ids);
+		}
+	}
+
+	protected void updateStatusOnError(List<T> entities, Exception e) {
+		logger.error(e.getMessage(), e);
+		String errorInfo = ExceptionUtils.getDetailMessage(e);
+		if (errorInfo.length() > 4000)
+			errorInfo = errorInfo.substring(0, 4000);
+		int result;
+		if (isTemporaryError(e)) {
+			result = bulkUpdateStatus(bulkConditionalUpdateStatusHql, entities, getMaxAttempts(), PollingStatus.FAILED,
+					PollingStatus.TEMPORARY_ERROR, new Date(), errorInfo);
+		} else {
+			result = bulkUpdateStatus(bulkDefaultUpdateStatusHql, entities, PollingStatus.FAILED, new Date(),
+					errorInfo);
+		}
+		if (result == entities.size()) {
+			for (T entity : entities)
+				logger.info("process {} failed", entity);
+		} else if (entities.size() == 1) {
+			logger.warn("process {} failed but ignored", entities.get(0));
+		} else {
+			logger.warn("process {} failed but {} of them ignored", entities, entities.size() - result);
+		}
+	}
+
+	/**
+	 * Execute bulk hql with ids as ?1 and status as ?2, entities are grouped by
+	 * status since it's part of condition
+	 */
+	protected int bulkUpdateStatus(String hql, Collection<T> entities, Object... args) {
+		Map<PollingStatus, List<String>> groups = entities.stream().collect(Collectors.groupingBy(
+				BasePollingEntity::getStatus, LinkedHashMap::new,
+				Collectors.mapping(BasePollingEntity::getId, Collectors.toList())));
+		return entityManager.execute(session -> {
+			int result = 0;
+			for (Map.Entry<PollingStatus, List<String>> entry : groups.entrySet()) {
+				@SuppressWarnings("rawtypes")
+				Query query = session.createQuery(hql);
+				query.setParameterList(1, entry.getValue());
+				query.setParameter(2, entry.getKey());
+				for (int i = 0; i < args.length; i++)
+					query.setParameter(i + 3, args[i]);
+				result += query.executeUpdate();
+			}
+			return result;
+		});
+	}
+
 	protected boolean isTemporaryError(Exception e) {
 		return e instanceof IOException || e.getCause() instanceof IOException;
 	}
@@ -254,7 +430,7 @@ public abstract class AbstractPollingControl<T extends BasePollingEntity> implem
 	@Override
 	public void start() {
 		if (running.compareAndSet(false, true)) {
-			threadPoolExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(getThreads() + 1,
+			threadPoolExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(getMaxThreads() + 1,
 					new NameableThreadFactory(StringUtils.uncapitalize(getClass().getSimpleName()), (t, e) -> {
 						logger.error(e.getMessage(), e);
 					}));
@@ -2,6 +2,8 @@ package org.ironrhino.common.support;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -10,6 +12,7 @@ import org.hibernate.query.Query;
 import org.ironrhino.common.model.BasePollingEntity;
 import org.ironrhino.common.model.PollingStatus;
 import org.ironrhino.core.metrics.Metrics;
+import org.ironrhino.core.model.ResultPage;
 import org.ironrhino.core.util.ExceptionUtils;
 
 public abstract class BatchedPollingControl<T extends BasePollingEntity> extends AbstractPollingControl<T> {
@@ -18,32 +21,25 @@ public abstract class BatchedPollingControl<T extends BasePollingEntity> extends
 	@Override
 	protected void doDequeue() {
 		entityManager.setEntityClass(entityClass);
-		int batchLimit = getBatchLimit();
+		int batchLimit = getDequeueBatchSize();
 		while (true) {
 			List<T> entities = new ArrayList<>();
 			while (entities.size() < batchLimit) {
-				String id = pop();
-				if (id == null)
+				List<String> ids = pop(batchLimit - entities.size());
+				if (ids.isEmpty())
+					break;
+				List<T> loaded;
+				try {
+					loaded = load(ids);
+				} catch (RuntimeException e) {
+					// ids are pushed back, process loaded entities before giving up
+					if (entities.isEmpty())
+						throw e;
 					break;
-				if (entities.stream().map(BasePollingEntity::getId).anyMatch(s -> s.equals(id)))
-					continue;
-				T entity = entityManager.get(id);
-				if (entity == null) {
-					logger.warn("not found: {}", id);
-					continue;
-				}
-				logger.info("dequeue {}", entity);
-				if (entity.getStatus() == PollingStatus.SUCCESSFUL || entity.getStatus() == PollingStatus.FAILED) {
-					logger.warn("status is {}: {}", entity.getStatus(), entity);
-					continue;
-				}
-				if (entity.getAttempts() >= getMaxAttempts()) {
-					logger.error("max attempts reached: {}", entity);
-					entityManager.executeUpdate(simpleUpdateStatusHql, entity.getId(), entity.getStatus(),
-							PollingStatus.FAILED, new Date(), "max attempts reached");
-					continue;
 				}
-				entities.add(entity);
+				for (T entity : loaded)
+					if (entities.stream().map(BasePollingEntity::getId).noneMatch(s -> s.equals(entity.getId())))
+						entities.add(entity);
 			}
 			if (entities.isEmpty())
 				break;
@@ -86,63 +82,20 @@ public abstract class BatchedPollingControl<T extends BasePollingEntity> extends
 					});
 					return null;
 				});
-				entityManager.execute(session -> {
-					results.entrySet().stream().filter(entry -> entry.getValue().getException() != null)
-							.forEach(entry -> {
-								T entity = entry.getKey();
-								Exception e = entry.getValue().getException();
-								logger.error(e.getMessage(), e);
-								String err = ExceptionUtils.getDetailMessage(e);
-								if (err.length() > 4000)
-									err = err.substring(0, 4000);
-								final String errorInfo = err;
-								boolean retryable = isTemporaryError(e);
-								entityManager.execute(s -> {
-									int result;
-									if (retryable) {
-										result = entityManager.executeUpdate(conditionalUpdateStatusHql, entity.getId(),
-												entity.getStatus(), getMaxAttempts(), PollingStatus.FAILED,
-												PollingStatus.TEMPORARY_ERROR, new Date(), errorInfo);
-									} else {
-										result = entityManager.executeUpdate(defaultUpdateStatusHql, entity.getId(),
-												entity.getStatus(), PollingStatus.FAILED, new Date(), errorInfo);
-									}
-									if (result == 1)
-										logger.info("process {} failed", entity);
-									else
-										logger.warn("process {} failed but ignored", entity);
-									return null;
-								});
-							});
-					return null;
-				});
-			} catch (
-
-			Exception e) {
-				logger.error(e.getMessage(), e);
-				String err = ExceptionUtils.getDetailMessage(e);
-				if (err.length() > 4000)
-					err = err.substring(0, 4000);
-				final String errorInfo = err;
-				boolean retryable = isTemporaryError(e);
-				entityManager.execute(session -> {
-					for (T entity : entities) {
-						int result;
-						if (retryable) {
-							result = entityManager.executeUpdate(conditionalUpdateStatusHql, entity.getId(),
-									entity.getStatus(), getMaxAttempts(), PollingStatus.FAILED,
-									PollingStatus.TEMPORARY_ERROR, new Date(), errorInfo);
-						} else {
-							result = entityManager.executeUpdate(defaultUpdateStatusHql, entity.getId(),
-									entity.getStatus(), PollingStatus.FAILED, new Date(), errorInfo);
-						}
-						if (result == 1)
-							logger.info("process {} failed", entity);
-						else
-							logger.warn("process {} failed but ignored", entity);
-					}
-					return null;
+				// entities failed with the same error are updated in bulk
+				Map<String, List<T>> failures = new LinkedHashMap<>();
+				Map<String, Exception> exceptions = new HashMap<>();
+				results.forEach((entity, result) -> {
+					Exception e = result.getException();
+					if (e == null)
+						return;
+					String key = isTemporaryError(e) + ":" + ExceptionUtils.getDetailMessage(e);
+					failures.computeIfAbsent(key, k -> new ArrayList<>()).add(entity);
+					exceptions.putIfAbsent(key, e);
 				});
+				failures.forEach((key, list) -> updateStatusOnError(list, exceptions.get(key)));
+			} catch (Exception e) {
+				updateStatusOnError(entities, e);
 			}
 		}
 	}
@@ -151,6 +104,12 @@ public abstract class BatchedPollingControl<T extends BasePollingEntity> extends
 
 	protected abstract int getBatchLimit();
 
+	// bounded like dequeueBatchSize since ids are bound into "in" clause
+	@Override
+	public int getDequeueBatchSize() {
+		return Math.min(Math.max(getBatchLimit(), 1), ResultPage.DEFAULT_MAX_PAGESIZE);
+	}
+
 	public static class Result {
 
 		private final Map<String, Object> result;
@@ -25,6 +25,14 @@ public class Location implements Serializable {
 		this.location = location;
 	}
 
+	Location copy() {
+		Location copy = new Location(location);
+		copy.setFirstArea(firstArea);
+		copy.setSecondArea(secondArea);
+		copy.setThirdArea(thirdArea);
+		return copy;
+	}
+
 	@Override
 	public String toString() {
 		return location;
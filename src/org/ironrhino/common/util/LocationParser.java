@@ -1,13 +1,31 @@
 package org.ironrhino.common.util;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.ironrhino.core.util.AppInfo;
+import org.springframework.util.ResourceUtils;
 import org.springframework.util.StreamUtils;
 
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Database file is memory mapped and each region is decoded and interned once
+ * at first hit, so lookup is a binary search over mapped index without
+ * allocation. Interned {@link Location} is shared by all ips of the same
+ * region, a copy of it is returned to caller.
+ */
+@Slf4j
 public class LocationParser {
 
 	/*
@@ -16,75 +34,95 @@ public class LocationParser {
 	private static final String FILE_LOCATION = "/data/ip2region.db";
 	private static final int INDEX_BLOCK_LENGTH = 12;
 
-	private final byte[] data;
-	private final long firstIndex;
-	private final long lastIndex;
+	// number of hot ips cached, 0 means disabled
+	public static final String SYSTEM_PROPERTY_CACHE_SIZE = "locationParser.cacheSize";
+
+	private static final Location NOT_FOUND = new Location();
+
+	private final ByteBuffer data;
+	private final int firstIndex;
 	private final int totalIndexBlocks;
+	// interned location of each index block, filled lazily
+	private final AtomicReferenceArray<Location> locations;
+	// keyed by data pointer, regions are shared by index blocks
+	private final Map<Integer, Location> regions = new ConcurrentHashMap<>();
+	private final CachedLocation[] cache;
 
 	private LocationParser() {
-		byte[] bytes;
+		ByteBuffer buffer;
 		try {
-			InputStream is;
-			File f = new File(AppInfo.getAppHome() + FILE_LOCATION);
-			if (f.exists()) {
-				is = new FileInputStream(f);
-			} else {
-				is = LocationParser.class.getClassLoader().getResourceAsStream("resources" + FILE_LOCATION);
-			}
-			if (is != null) {
-				bytes = StreamUtils.copyToByteArray(is);
-				is.close();
-			} else {
-				bytes = null;
-			}
+			buffer = load();
 		} catch (Exception e) {
-			bytes = null;
-			e.printStackTrace();
+			buffer = null;
+			log.error("Load " + FILE_LOCATION + " failed", e);
+		}
+		data = buffer;
+		if (data != null) {
+			firstIndex = data.getInt(0);
+			totalIndexBlocks = (data.getInt(4) - firstIndex) / INDEX_BLOCK_LENGTH + 1;
+		} else {
+			firstIndex = 0;
+			totalIndexBlocks = 0;
+		}
+		locations = new AtomicReferenceArray<>(totalIndexBlocks);
+		int cacheSize = Integer.getInteger(SYSTEM_PROPERTY_CACHE_SIZE, 0);
+		if (cacheSize > 0) {
+			int size = Integer.highestOneBit(cacheSize);
+			cache = new CachedLocation[size < cacheSize ? size << 1 : size];
+		} else {
+			cache = null;
 		}
-		data = bytes;
-		firstIndex = getIntLong(data, 0);
-		lastIndex = getIntLong(data, 4);
-		totalIndexBlocks = (int) ((lastIndex - firstIndex) / INDEX_BLOCK_LENGTH) + 1;
 	}
 
-	private String doParse(String input) {
-		if (data == null)
-			return null;
-		String[] arr = input.split("\\.");
-		if (arr.length != 4)
-			return null;
-		long ip = ((((Integer.valueOf(arr[0]) << 24) & 0xFF000000) | ((Integer.valueOf(arr[1]) << 16) & 0x00FF0000)
-				| ((Integer.valueOf(arr[2]) << 8) & 0x0000FF00) | ((Integer.valueOf(arr[3]) << 0) & 0x000000FF))
-				& 0xFFFFFFFFL);
-
-		int l = 0, h = totalIndexBlocks;
-		long start, end, index = 0;
-		while (l <= h) {
-			int m = (l + h) >> 1;
-			int p = (int) (firstIndex + m * INDEX_BLOCK_LENGTH);
-			start = getIntLong(data, p);
-			if (ip < start) {
-				h = m - 1;
-			} else {
-				end = getIntLong(data, p + 4);
-				if (ip > end) {
-					l = m + 1;
-				} else {
-					index = getIntLong(data, p + 8);
-					break;
+	private static ByteBuffer load() throws IOException {
+		File f = new File(AppInfo.getAppHome() + FILE_LOCATION);
+		if (!f.exists()) {
+			URL url = LocationParser.class.getClassLoader().getResource("resources" + FILE_LOCATION);
+			if (url == null)
+				return null;
+			if (!ResourceUtils.isFileURL(url)) {
+				// packaged in jar, keep it off heap
+				try (InputStream is = url.openStream()) {
+					byte[] bytes = StreamUtils.copyToByteArray(is);
+					ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+					buffer.put(bytes);
+					buffer.flip();
+					return buffer.order(ByteOrder.LITTLE_ENDIAN);
 				}
 			}
+			f = ResourceUtils.getFile(url);
+		}
+		try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
 		}
-		if (index == 0)
-			return null;
-		return new String(data, (int) ((index & 0x00FFFFFF)) + 4, (int) ((index >> 24) & 0xFF) - 4,
-				StandardCharsets.UTF_8);
 	}
 
-	public static Location parse(String ip) {
-		String region = getSharedInstance().doParse(ip.trim());
-		if (region == null)
-			return null;
+	private Location intern(int block) {
+		Location location = locations.get(block);
+		if (location == null) {
+			int pointer = data.getInt(firstIndex + block * INDEX_BLOCK_LENGTH + 8);
+			location = regions.computeIfAbsent(pointer, this::decode);
+			locations.set(block, location);
+		}
+		return location != NOT_FOUND ? location : null;
+	}
+
+	private Location decode(int pointer) {
+		int length = ((pointer >>> 24) & 0xFF) - 4;
+		if (pointer == 0 || length <= 0)
+			return NOT_FOUND;
+		byte[] bytes = new byte[length];
+		ByteBuffer buffer = data.duplicate();
+		buffer.position((pointer & 0x00FFFFFF) + 4);
+		buffer.get(bytes);
+		Location location = toLocation(new String(bytes, StandardCharsets.UTF_8));
+		if (location == null)
+			return NOT_FOUND;
+		LocationUtils.normalize(location);
+		return location;
+	}
+
+	private static Location toLocation(String region) {
 		String[] loc = region.split("\\|");
 		if (loc[0].equals("香港") || loc[0].equals("澳门") || loc[0].equals("台湾")) {
 			Location location = new Location(loc[0]);
@@ -101,6 +139,77 @@ public class LocationParser {
 		return location;
 	}
 
+	private Location doParse(long ip) {
+		if (cache == null)
+			return lookup(ip);
+		int index = (int) ((ip * 0x9E3779B97F4A7C15L) >>> 32) & (cache.length - 1);
+		CachedLocation cached = cache[index];
+		if (cached != null && cached.ip == ip)
+			return cached.location;
+		Location location = lookup(ip);
+		cache[index] = new CachedLocation(ip, location);
+		return location;
+	}
+
+	private Location lookup(long ip) {
+		int l = 0, h = totalIndexBlocks - 1;
+		while (l <= h) {
+			int m = (l + h) >>> 1;
+			int p = firstIndex + m * INDEX_BLOCK_LENGTH;
+			if (ip < (data.getInt(p) & 0xFFFFFFFFL))
+				h = m - 1;
+			else if (ip > (data.getInt(p + 4) & 0xFFFFFFFFL))
+				l = m + 1;
+			else
+				return intern(m);
+		}
+		return null;
+	}
+
+	public static Location parse(String ip) {
+		long value = toLong(ip);
+		if (value < 0)
+			return null;
+		Location location = getSharedInstance().doParse(value);
+		return location != null ? location.copy() : null;
+	}
+
+	/**
+	 * @return unsigned value of dotted IPv4 address or -1 if invalid
+	 */
+	public static long toLong(String ip) {
+		if (ip == null)
+			return -1;
+		int start = 0, end = ip.length();
+		while (start < end && Character.isWhitespace(ip.charAt(start)))
+			start++;
+		while (end > start && Character.isWhitespace(ip.charAt(end - 1)))
+			end--;
+		long value = 0;
+		int octet = -1, digits = 0, dots = 0;
+		for (int i = start; i < end; i++) {
+			char c = ip.charAt(i);
+			if (c >= '0' && c <= '9') {
+				if (++digits > 3)
+					return -1;
+				octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+				if (octet > 255)
+					return -1;
+			} else if (c == '.') {
+				if (octet < 0 || ++dots > 3)
+					return -1;
+				value = (value << 8) | octet;
+				octet = -1;
+				digits = 0;
+			} else {
+				return -1;
+			}
+		}
+		if (octet < 0 || dots != 3)
+			return -1;
+		return (value << 8) | octet;
+	}
+
 	private static volatile LocationParser sharedInstance;
 
 	private static LocationParser getSharedInstance() {
@@ -115,11 +224,18 @@ public class LocationParser {
 		return temp;
 	}
 
-	private static long getIntLong(byte[] bytes, int offset) {
-		if (bytes == null)
-			return 0;
-		return (((bytes[offset++] & 0x000000FFL)) | ((bytes[offset++] << 8) & 0x0000FF00L)
-				| ((bytes[offset++] << 16) & 0x00FF0000L) | ((bytes[offset] << 24) & 0xFF000000L));
+	// immutable so that racy publication into cache array is safe
+	private static class CachedLocation {
+
+		private final long ip;
+
+		private final Location location;
+
+		private CachedLocation(long ip, Location location) {
+			this.ip = ip;
+			this.location = location;
+		}
+
 	}
 
 }
@@ -4,16 +4,25 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
 import org.ironrhino.core.util.HttpClientUtils;
 import org.ironrhino.core.util.JsonUtils;
+import org.ironrhino.core.util.NameableThreadFactory;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
 import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
 
 @UtilityClass
+@Slf4j
 public class LocationUtils {
 
 	public static final String[] nations = "满族,蒙古族,回族,朝鲜族,达斡尔族,畲族,土家族,苗族,侗族,瑶族,壮族,各族,仫佬族,毛南族,黎族,羌族,彝族,藏族,仡佬族,布依族,水族,傣族,哈尼族,纳西族,傈僳族,拉祜族,佤族,白族,景颇族,独龙族,怒族,普米族,布朗族,哈萨克族,东乡族,裕固族,土族,保安族,撒拉族"
@@ -43,32 +52,42 @@ public class LocationUtils {
 			"邯郸县,邢台县,承德县,大同县,长治县,抚顺县,辽阳县,铁岭县,朝阳县,吉林市,通化县,伊春区,绍兴县,芜湖县,铜陵县,黄山区,南昌县,九江县,上饶县,吉安县,东营区,开封县,安阳县,新乡县,濮阳县,许昌县,荆州区,长沙县,株洲县,湘潭县,衡阳县,岳阳县,邵阳县,宜宾县,广安区,遵义县,白银区,乌鲁木齐县,克拉玛依区"
 					.split(","));
 
+	private static final int REMOTE_CACHE_CAPACITY = 10000;
+
+	private static final Location NOT_FOUND = new Location();
+
+	private static final Map<String, Location> remoteLocations = new ConcurrentHashMap<>();
+
+	private static final Set<String> pendingRemoteLocations = ConcurrentHashMap.newKeySet();
+
+	private static final ThreadPoolExecutor remoteResolver = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+			new ArrayBlockingQueue<>(100), new NameableThreadFactory("locationResolver"));
+
+	static {
+		remoteResolver.allowCoreThreadTimeOut(true);
+	}
+
 	public static final String[] suffix = "县,市,州,省,特别行政区,矿区,新区,地区,区".split(",");
 
+	/**
+	 * Parse an IPv4 address or a Chinese address text. IPv4 missing from
+	 * ip2region is resolved remotely in background, the first lookup of such ip
+	 * returns {@code null} and later lookups hit the resolved result.
+	 */
 	public static Location parse(String value) {
 		if (StringUtils.isBlank(value) || isInternal(value))
 			return null;
 		Location loc = null;
-		if (value.split("\\.").length == 4) {
+		if (LocationParser.toLong(value) >= 0) {
 			loc = LocationParser.parse(value);
 			if (loc == null || loc.getFirstArea() == null) {
-				try {
-					String json = HttpClientUtils
-							.getResponseText("http://ip.taobao.com/service/getIpInfo.php?ip=" + value);
-					JsonNode node = JsonUtils.fromJson(json, JsonNode.class);
-					if (node != null && node.get("code").asInt() == 0) {
-						node = node.get("data");
-						if (StringUtils.isNotBlank(node.get("region").asText())) {
-							loc = new Location();
-							loc.setFirstArea(LocationUtils.shortenName(node.get("region").asText()));
-							loc.setSecondArea(LocationUtils.shortenName(node.get("city").asText()));
-							loc.setThirdArea(LocationUtils.shortenName(node.get("county").asText()));
-						}
-					}
-				} catch (Exception e) {
-					e.printStackTrace();
-				}
+				loc = resolveRemotely(value);
+				// cached for later lookups
+				if (loc != null)
+					loc = loc.copy();
 			}
+			// already normalized
+			return loc;
 		}
 		if (value.length() >= 2) {
 			String s = value.substring(0, 2);
@@ -158,20 +177,67 @@ public class LocationUtils {
 				}
 			}
 		}
-		if (loc != null) {
-			if (loc.getThirdArea() != null)
-				loc.setThirdArea(LocationUtils.shortenName(loc.getThirdArea()));
-			if (loc.getSecondArea() != null)
-				loc.setSecondArea(LocationUtils.shortenName(loc.getSecondArea()));
-			if (loc.getFirstArea() != null) {
-				loc.setFirstArea(LocationUtils.shortenName(loc.getFirstArea()));
-				if (specialAdministrativeRegions.contains(loc.getFirstArea())
-						|| municipalities.contains(loc.getFirstArea()))
-					loc.setSecondArea(loc.getFirstArea());
+		if (loc != null)
+			normalize(loc);
+		return loc;
+	}
+
+	static void normalize(Location loc) {
+		if (loc.getThirdArea() != null)
+			loc.setThirdArea(LocationUtils.shortenName(loc.getThirdArea()));
+		if (loc.getSecondArea() != null)
+			loc.setSecondArea(LocationUtils.shortenName(loc.getSecondArea()));
+		if (loc.getFirstArea() != null) {
+			loc.setFirstArea(LocationUtils.shortenName(loc.getFirstArea()));
+			if (specialAdministrativeRegions.contains(loc.getFirstArea())
+					|| municipalities.contains(loc.getFirstArea()))
+				loc.setSecondArea(loc.getFirstArea());
+		}
+	}
+
+	// ip.taobao.com is slow and rate limited, never call it in caller thread
+	private static Location resolveRemotely(String ip) {
+		Location loc = remoteLocations.get(ip);
+		if (loc != null)
+			return loc != NOT_FOUND ? loc : null;
+		if (pendingRemoteLocations.add(ip)) {
+			try {
+				remoteResolver.execute(() -> {
+					try {
+						Location location = fetchRemotely(ip);
+						if (remoteLocations.size() >= REMOTE_CACHE_CAPACITY)
+							remoteLocations.clear();
+						remoteLocations.put(ip, location != null ? location : NOT_FOUND);
+					} finally {
+						pendingRemoteLocations.remove(ip);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				pendingRemoteLocations.remove(ip);
 			}
+		}
+		return null;
+	}
 
+	private static Location fetchRemotely(String ip) {
+		try {
+			String json = HttpClientUtils.getResponseText("http://ip.taobao.com/service/getIpInfo.php?ip=" + ip);
+			JsonNode node = JsonUtils.fromJson(json, JsonNode.class);
+			if (node != null && node.get("code").asInt() == 0) {
+				node = node.get("data");
+				if (StringUtils.isNotBlank(node.get("region").asText())) {
+					Location loc = new Location();
+					loc.setFirstArea(node.get("region").asText());
+					loc.setSecondArea(node.get("city").asText());
+					loc.setThirdArea(node.get("county").asText());
+					normalize(loc);
+					return loc;
+				}
+			}
+		} catch (Exception e) {
+			log.warn("Resolve location of {} failed: {}", ip, e.getMessage());
 		}
-		return loc;
+		return null;
 	}
 
 	public static String shortenAddress(String address) {
@@ -212,42 +278,17 @@ public class LocationUtils {
 	}
 
 	private static boolean isInternal(String ip) {
-		try {
-			if (ip.equals("127.0.0.1"))
-				return true;
-			byte[] addr = new byte[4];
-			String[] arr = ip.split("\\.");
-			for (int i = 0; i < addr.length; i++)
-				addr[i] = Integer.valueOf(arr[i]).byteValue();
-			final byte b0 = addr[0];
-			final byte b1 = addr[1];
-			// 10.x.x.x/8
-			final byte SECTION_1 = 0x0A;
-			// 172.16.x.x/12
-			final byte SECTION_2 = (byte) 0xAC;
-			final byte SECTION_3 = (byte) 0x10;
-			final byte SECTION_4 = (byte) 0x1F;
-			// 192.168.x.x/16
-			final byte SECTION_5 = (byte) 0xC0;
-			final byte SECTION_6 = (byte) 0xA8;
-			switch (b0) {
-			case SECTION_1:
-				return true;
-			case SECTION_2:
-				if (b1 >= SECTION_3 && b1 <= SECTION_4) {
-					return true;
-				}
-			case SECTION_5:
-				switch (b1) {
-				case SECTION_6:
-					return true;
-				}
-			default:
-				return false;
-			}
-		} catch (Exception e) {
+		long value = LocationParser.toLong(ip);
+		if (value < 0)
 			return true;
-		}
+		// 127.0.0.1
+		return value == 0x7F000001L
+				// 10.x.x.x/8
+				|| (value >>> 24) == 0x0A
+				// 172.16.x.x/12
+				|| (value >>> 20) == 0xAC1
+				// 192.168.x.x/16
+				|| (value >>> 16) == 0xC0A8;
 	}
 
 }
@@ -1,9 +1,18 @@
 package org.ironrhino.core.cache;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -14,10 +23,19 @@ import org.aspectj.lang.reflect.MethodSignature;
 import org.ironrhino.core.aop.BaseAspect;
 import org.ironrhino.core.metrics.Metrics;
 import org.ironrhino.core.model.NullObject;
+import org.ironrhino.core.spring.configuration.PriorityQualifier;
+import org.ironrhino.core.util.CodecUtils;
 import org.ironrhino.core.util.ExpressionUtils;
 import org.mvel2.PropertyAccessException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.Ordered;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 
 @Aspect
@@ -26,13 +44,55 @@ public class CacheAspect extends BaseAspect {
 
 	private final static String MUTEX = "_MUTEX_";
 
+	// lease holder publishes mutex once value is stored, so remote waiters wake up
+	public static final String CHANNEL_LOADED = "cacheAspect.loaded";
+
 	@Autowired
 	private CacheManager cacheManager;
 
+	@Autowired(required = false)
+	private ExecutorService executorService;
+
+	@Autowired(required = false)
+	@Qualifier("stringRedisTemplate")
+	@PriorityQualifier
+	private StringRedisTemplate cacheStringRedisTemplate;
+
+	@Autowired(required = false)
+	@PriorityQualifier
+	private RedisMessageListenerContainer cacheRedisMessageListenerContainer;
+
+	private MessageListener loadedListener;
+
+	// loadings in progress of this JVM, concurrent callers share one load
+	private final Map<String, CompletableFuture<Object>> loadings = new ConcurrentHashMap<>();
+
+	// waiting for value loading by other instance
+	private final Map<String, CompletableFuture<Void>> loadedSignals = new ConcurrentHashMap<>();
+
 	public CacheAspect() {
 		order = Ordered.HIGHEST_PRECEDENCE + 3;
 	}
 
+	@PostConstruct
+	public void init() {
+		if (cacheStringRedisTemplate == null || cacheRedisMessageListenerContainer == null)
+			return;
+		loadedListener = (message, pattern) -> {
+			CompletableFuture<Void> signal = loadedSignals
+					.remove(cacheStringRedisTemplate.getStringSerializer().deserialize(message.getBody()));
+			if (signal != null)
+				signal.complete(null);
+		};
+		cacheRedisMessageListenerContainer.addMessageListener(loadedListener, new ChannelTopic(CHANNEL_LOADED));
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if (loadedListener != null)
+			cacheRedisMessageListenerContainer.removeMessageListener(loadedListener);
+	}
+
 	@Around("execution(public * *(..)) and @annotation(checkCache)")
 	public Object get(ProceedingJoinPoint jp, CheckCache checkCache) throws Throwable {
 		if (isBypass())
@@ -42,93 +102,272 @@ public class CacheAspect extends BaseAspect {
 		List<String> keys = ExpressionUtils.evalList(checkCache.key(), context);
 		if (keys == null || keys.isEmpty())
 			return jp.proceed();
-		String keyMutex = MUTEX + String.join("_", keys);
-		boolean mutexed = false;
 		if (CacheContext.isForceFlush()) {
 			cacheManager.mdelete(new HashSet<>(keys), namespace);
-		} else {
-			Class<?> returnType = ((MethodSignature) jp.getSignature()).getMethod().getReturnType();
-			int timeToIdle = ExpressionUtils.evalInt(checkCache.timeToIdle(), context, 0);
-			for (String key : keys) {
-				Object value = (timeToIdle > 0 && !cacheManager.supportsTti())
-						? cacheManager.getWithTti(key, namespace, timeToIdle, checkCache.timeUnit())
-						: cacheManager.get(key, namespace);
-				if (value instanceof NullObject) {
+			return load(jp, checkCache, context, namespace, keys);
+		}
+		Class<?> returnType = ((MethodSignature) jp.getSignature()).getMethod().getReturnType();
+		int timeToIdle = ExpressionUtils.evalInt(checkCache.timeToIdle(), context, 0);
+		for (String key : keys) {
+			Object value = (timeToIdle > 0 && !cacheManager.supportsTti())
+					? cacheManager.getWithTti(key, namespace, timeToIdle, checkCache.timeUnit())
+					: cacheManager.get(key, namespace);
+			if (value instanceof ExpirableValue) {
+				ExpirableValue expirableValue = (ExpirableValue) value;
+				if (expirableValue.isExpired())
+					revalidate(jp, checkCache, context, namespace, keys, returnType);
+				value = expirableValue.getValue();
+			}
+			if (value instanceof NullObject) {
+				ExpressionUtils.eval(checkCache.onHit(), context);
+				instrument(namespace, true);
+				return null;
+			}
+			if (value != null) {
+				if (isCompatible(returnType, value)) {
+					putReturnValueIntoContext(context, value);
 					ExpressionUtils.eval(checkCache.onHit(), context);
 					instrument(namespace, true);
-					return null;
+					return value;
+				} else {
+					cacheManager.delete(key, namespace);
 				}
-				if (value != null) {
-					if (returnType.isPrimitive() && value.getClass() == ClassUtils.primitiveToWrapper(returnType)
-							|| returnType.isAssignableFrom(value.getClass())) {
-						putReturnValueIntoContext(context, value);
-						ExpressionUtils.eval(checkCache.onHit(), context);
-						instrument(namespace, true);
-						return value;
-					} else {
-						cacheManager.delete(key, namespace);
-					}
+			}
+		}
+		int waitTimeout = checkCache.waitTimeout();
+		if (waitTimeout <= 0)
+			waitTimeout = 200;
+		else if (waitTimeout > 10000)
+			waitTimeout = 10000;
+		String keyMutex = MUTEX + String.join("_", keys);
+		String loadingKey = namespace + ':' + keyMutex;
+		CompletableFuture<Object> loading = new CompletableFuture<>();
+		CompletableFuture<Object> existing = loadings.putIfAbsent(loadingKey, loading);
+		if (existing != null) {
+			try {
+				Object value = existing.get(waitTimeout, TimeUnit.MILLISECONDS);
+				if (value == null || isCompatible(returnType, value)) {
+					putReturnValueIntoContext(context, value);
+					ExpressionUtils.eval(checkCache.onHit(), context);
+					instrument(namespace, true);
+					return value;
 				}
+			} catch (TimeoutException | ExecutionException e) {
+				// load by self
 			}
+			ExpressionUtils.eval(checkCache.onMiss(), context);
+			instrument(namespace, false);
+			return load(jp, checkCache, context, namespace, keys);
+		}
+		Lease lease = null;
+		try {
 			int throughPermits = checkCache.throughPermits();
-			int waitTimeout = checkCache.waitTimeout();
-			if (waitTimeout <= 0)
-				waitTimeout = 200;
-			else if (waitTimeout > 10000)
-				waitTimeout = 10000;
-			if (cacheManager.increment(keyMutex, 1, waitTimeout, TimeUnit.MILLISECONDS, namespace) <= throughPermits) {
-				mutexed = true;
-			} else {
-				Thread.sleep(waitTimeout);
-				for (String key : keys) {
-					Object value = cacheManager.get(key, namespace);
-					if (value instanceof NullObject) {
+			if (throughPermits > 0) {
+				lease = acquireLease(namespace, keyMutex, throughPermits, waitTimeout);
+				if (lease == null) {
+					Object value = awaitValue(namespace, keyMutex, keys, returnType, waitTimeout);
+					if (value != null) {
+						loading.complete(value instanceof NullObject ? null : value);
 						ExpressionUtils.eval(checkCache.onHit(), context);
 						instrument(namespace, true);
-						return null;
-					}
-					if (value != null) {
-						if (returnType.isPrimitive() && value.getClass() == ClassUtils.primitiveToWrapper(returnType)
-								|| returnType.isAssignableFrom(value.getClass())) {
-							putReturnValueIntoContext(context, value);
-							ExpressionUtils.eval(checkCache.onHit(), context);
-							instrument(namespace, true);
-							return value;
-						} else {
-							cacheManager.delete(key, namespace);
-						}
+						if (value instanceof NullObject)
+							return null;
+						putReturnValueIntoContext(context, value);
+						return value;
 					}
 				}
 			}
 			ExpressionUtils.eval(checkCache.onMiss(), context);
 			instrument(namespace, false);
+			Object result = load(jp, checkCache, context, namespace, keys);
+			loading.complete(result);
+			return result;
+		} catch (Throwable e) {
+			loading.completeExceptionally(e);
+			throw e;
+		} finally {
+			loadings.remove(loadingKey, loading);
+			if (lease != null)
+				releaseLease(namespace, keyMutex, lease);
 		}
+	}
+
+	private Object load(ProceedingJoinPoint jp, CheckCache checkCache, Map<String, Object> context, String namespace,
+			List<String> keys) throws Throwable {
 		Object result = jp.proceed();
 		putReturnValueIntoContext(context, result);
 		if (ExpressionUtils.evalBoolean(checkCache.when(), context, true)) {
 			Object cacheResult = (result == null && checkCache.cacheNull()) ? NullObject.get() : result;
 			if (cacheResult != null) {
 				if (checkCache.eternal()) {
-					for (String key : keys)
-						cacheManager.put(key, cacheResult, 0, checkCache.timeUnit(), namespace);
+					put(keys, cacheResult, 0, checkCache.timeUnit(), namespace);
 				} else {
 					int timeToLive = ExpressionUtils.evalInt(checkCache.timeToLive(), context, 0);
 					int timeToIdle = ExpressionUtils.evalInt(checkCache.timeToIdle(), context, 0);
-					for (String key : keys)
-						if (timeToIdle > 0 && cacheManager.supportsTti())
+					int staleWhileRevalidate = ExpressionUtils.evalInt(checkCache.staleWhileRevalidate(), context,
+							0);
+					if (timeToIdle > 0 && cacheManager.supportsTti()) {
+						for (String key : keys)
 							cacheManager.putWithTti(key, cacheResult, timeToIdle, checkCache.timeUnit(), namespace);
-						else
-							cacheManager.put(key, cacheResult, timeToLive, checkCache.timeUnit(), namespace);
+					} else if (timeToLive > 0 && timeToIdle <= 0 && staleWhileRevalidate > 0) {
+						put(keys,
+								new ExpirableValue(cacheResult,
+										System.currentTimeMillis() + checkCache.timeUnit().toMillis(timeToLive)),
+								timeToLive + staleWhileRevalidate, checkCache.timeUnit(), namespace);
+					} else {
+						put(keys, cacheResult, timeToLive, checkCache.timeUnit(), namespace);
+					}
 				}
 			}
 			if (result != null)
 				ExpressionUtils.eval(checkCache.onPut(), context);
 		}
-		if (mutexed)
-			cacheManager.decrement(keyMutex, 1, 0, TimeUnit.MILLISECONDS, namespace);
 		return result;
 	}
 
+	/**
+	 * Reload expired value in background, caller keeps using stale value. The
+	 * task works on its own copy of context, and runs with the caller's
+	 * {@link SecurityContext} bound. The servlet request is not bound since it
+	 * may be recycled once caller's response completes, the copied context
+	 * still references it so expressions should avoid accessing it.
+	 */
+	private void revalidate(ProceedingJoinPoint jp, CheckCache checkCache, Map<String, Object> context,
+			String namespace, List<String> keys, Class<?> returnType) {
+		String keyMutex = MUTEX + String.join("_", keys);
+		String loadingKey = namespace + ':' + keyMutex + ":revalidate";
+		CompletableFuture<Object> loading = new CompletableFuture<>();
+		if (loadings.putIfAbsent(loadingKey, loading) != null)
+			return;
+		Map<String, Object> taskContext = new HashMap<>(context);
+		SecurityContext sc = SecurityContextHolder.getContext();
+		boolean async = executorService != null;
+		Runnable task = () -> {
+			SecurityContext previous = SecurityContextHolder.getContext();
+			if (async)
+				SecurityContextHolder.setContext(sc);
+			Lease lease = null;
+			try {
+				if (checkCache.throughPermits() > 0) {
+					lease = acquireLease(namespace, keyMutex, 1, checkCache.waitTimeout());
+					if (lease == null) {
+						// revalidating by other instance
+						loading.complete(null);
+						return;
+					}
+				}
+				Object value = getFresh(namespace, keys, returnType);
+				if (value != null) {
+					// already refreshed by other instance
+					loading.complete(value instanceof NullObject ? null : value);
+					return;
+				}
+				loading.complete(load(jp, checkCache, taskContext, namespace, keys));
+			} catch (Throwable e) {
+				logger.error(e.getMessage(), e);
+				loading.completeExceptionally(e);
+			} finally {
+				loadings.remove(loadingKey, loading);
+				if (lease != null)
+					releaseLease(namespace, keyMutex, lease);
+				if (async) {
+					if (previous != null && previous.getAuthentication() != null)
+						SecurityContextHolder.setContext(previous);
+					else
+						SecurityContextHolder.clearContext();
+				}
+			}
+		};
+		if (async)
+			executorService.execute(task);
+		else
+			task.run();
+	}
+
+	private Object getFresh(String namespace, List<String> keys, Class<?> returnType) {
+		for (String key : keys) {
+			Object value = cacheManager.get(key, namespace);
+			if (value instanceof ExpirableValue) {
+				ExpirableValue expirableValue = (ExpirableValue) value;
+				if (expirableValue.isExpired())
+					continue;
+				value = expirableValue.getValue();
+			}
+			if (value instanceof NullObject || value != null && isCompatible(returnType, value))
+				return value;
+		}
+		return null;
+	}
+
+	// lease is owned by token, so that it's not released by others after expired
+	private Lease acquireLease(String namespace, String keyMutex, int permits, int timeout) {
+		String owner = CodecUtils.nextId();
+		for (int i = 0; i < permits; i++) {
+			String key = keyMutex + '.' + i;
+			if (cacheManager.putIfAbsent(key, owner, timeout > 0 ? timeout : 200, TimeUnit.MILLISECONDS, namespace))
+				return new Lease(key, owner);
+		}
+		return null;
+	}
+
+	private void releaseLease(String namespace, String keyMutex, Lease lease) {
+		cacheManager.deleteIfEquals(lease.key, lease.owner, namespace);
+		if (loadedListener != null) {
+			try {
+				cacheStringRedisTemplate.convertAndSend(CHANNEL_LOADED, namespace + ':' + keyMutex);
+			} catch (Exception e) {
+				logger.error(e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Wait for value loaded by lease holder, it's woken up by notification and
+	 * falls back to polling if {@link RedisMessageListenerContainer} is absent
+	 */
+	private Object awaitValue(String namespace, String keyMutex, List<String> keys, Class<?> returnType,
+			int timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		String signalKey = namespace + ':' + keyMutex;
+		long interval = 10;
+		CompletableFuture<Void> signal = null;
+		try {
+			while (true) {
+				// register before check, notification published in between is not missed
+				if (loadedListener != null)
+					signal = loadedSignals.computeIfAbsent(signalKey, k -> new CompletableFuture<>());
+				for (String key : keys) {
+					Object value = cacheManager.get(key, namespace);
+					if (value instanceof ExpirableValue)
+						value = ((ExpirableValue) value).getValue();
+					if (value instanceof NullObject || value != null && isCompatible(returnType, value))
+						return value;
+				}
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0)
+					return null;
+				if (signal != null) {
+					try {
+						// recheck periodically in case notification is lost
+						signal.get(Math.min(remaining, 1000), TimeUnit.MILLISECONDS);
+					} catch (TimeoutException | ExecutionException e) {
+					}
+				} else {
+					Thread.sleep(Math.min(interval, remaining));
+					interval = Math.min(interval * 2, 100);
+				}
+			}
+		} finally {
+			if (signal != null)
+				loadedSignals.remove(signalKey, signal);
+		}
+	}
+
+	private static boolean isCompatible(Class<?> returnType, Object value) {
+		return returnType.isPrimitive() && value.getClass() == ClassUtils.primitiveToWrapper(returnType)
+				|| returnType.isAssignableFrom(value.getClass());
+	}
+
 	@Around("execution(public * *(..)) and @annotation(evictCache)")
 	public Object remove(ProceedingJoinPoint jp, EvictCache evictCache) throws Throwable {
 		Map<String, Object> context = buildContext(jp);
@@ -160,8 +399,32 @@ public class CacheAspect extends BaseAspect {
 		return retval;
 	}
 
+	private void put(List<String> keys, Object value, int timeToLive, TimeUnit timeUnit, String namespace) {
+		if (keys.size() == 1) {
+			cacheManager.put(keys.get(0), value, timeToLive, timeUnit, namespace);
+		} else {
+			Map<String, Object> map = new HashMap<>();
+			for (String key : keys)
+				map.put(key, value);
+			cacheManager.mput(map, timeToLive, timeUnit, namespace);
+		}
+	}
+
 	private static void instrument(String namespace, boolean hit) {
 		Metrics.increment("cache." + namespace, "hit", String.valueOf(hit));
 	}
 
+	private static class Lease {
+
+		private final String key;
+
+		private final String owner;
+
+		private Lease(String key, String owner) {
+			this.key = key;
+			this.owner = owner;
+		}
+
+	}
+
 }
@@ -26,6 +26,9 @@ public interface CacheManager {
 
 	public void delete(String key, String namespace);
 
+	// delete only if current value equals to expected value, atomically
+	public boolean deleteIfEquals(String key, Object expectedValue, String namespace);
+
 	public void mput(Map<String, Object> map, int timeToLive, TimeUnit timeUnit, String namespace);
 
 	public Map<String, Object> mget(Collection<String> keys, String namespace);
@@ -31,6 +31,10 @@ public @interface CheckCache {
 
 	boolean cacheNull() default false;
 
+	// mvel expression, serve expired value for this period while reloading it in background
+	String staleWhileRevalidate() default "0";
+
+	// max concurrent loading instances of cluster, 0 means no distributed lease
 	int throughPermits() default 5;
 
 	// TimeUnit.MILLISECONDS
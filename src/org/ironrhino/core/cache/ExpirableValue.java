@@ -0,0 +1,27 @@
+package org.ironrhino.core.cache;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpirableValue implements Serializable {
+
+	private static final long serialVersionUID = -2415498330286741727L;
+
+	private Object value;
+
+	private long expiresAt;
+
+	@JsonIgnore
+	public boolean isExpired() {
+		return System.currentTimeMillis() >= expiresAt;
+	}
+
+}
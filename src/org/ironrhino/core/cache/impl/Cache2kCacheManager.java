@@ -105,6 +105,14 @@ public class Cache2kCacheManager implements CacheManager {
 			cache.remove(key);
 	}
 
+	@Override
+	public boolean deleteIfEquals(String key, Object expectedValue, String namespace) {
+		if (key == null || expectedValue == null)
+			return false;
+		Cache<String, Object> cache = getCache(namespace, false);
+		return cache != null && cache.removeIfEquals(key, expectedValue);
+	}
+
 	@Override
 	public void mput(Map<String, Object> map, int timeToLive, TimeUnit timeUnit, String namespace) {
 		if (map == null)
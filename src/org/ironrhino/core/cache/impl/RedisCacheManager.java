@@ -3,36 +3,57 @@ package org.ironrhino.core.cache.impl;
 import static org.ironrhino.core.metadata.Profiles.CLOUD;
 import static org.ironrhino.core.metadata.Profiles.DUAL;
 
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.apache.commons.lang3.StringUtils;
+import org.cache2k.Cache;
+import org.cache2k.configuration.Cache2kConfiguration;
 import org.ironrhino.core.cache.CacheManager;
 import org.ironrhino.core.spring.configuration.PriorityQualifier;
 import org.ironrhino.core.spring.configuration.ServiceImplementationConditional;
 import org.ironrhino.core.spring.data.redis.FallbackToStringSerializer;
+import org.ironrhino.core.util.CodecUtils;
+import org.ironrhino.core.util.JsonUtils;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.env.Environment;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.SerializationException;
 import org.springframework.stereotype.Component;
 import org.springframework.util.ClassUtils;
 
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 @SuppressWarnings({ "unchecked", "rawtypes" })
@@ -45,6 +66,16 @@ public class RedisCacheManager implements CacheManager {
 
 	public static final String SERIALIZERS_PREFIX = "cacheManager.redis.serializers.";
 
+	// comma separated namespaces which will be cached in process
+	public static final String NEAR_CACHE_NAMESPACES = "cacheManager.redis.nearCache.namespaces";
+
+	public static final String NEAR_CACHE_CAPACITY = "cacheManager.redis.nearCache.capacity";
+
+	// seconds, upper bound of staleness if invalidation message is lost
+	public static final String NEAR_CACHE_TIME_TO_LIVE = "cacheManager.redis.nearCache.timeToLive";
+
+	public static final String NEAR_CACHE_INVALIDATION_CHANNEL = "cacheManager.redis.nearCache.invalidation";
+
 	@Autowired
 	@PriorityQualifier
 	private RedisTemplate cacheRedisTemplate;
@@ -54,13 +85,42 @@ public class RedisCacheManager implements CacheManager {
 	@PriorityQualifier
 	private StringRedisTemplate cacheStringRedisTemplate;
 
+	@Autowired(required = false)
+	@PriorityQualifier
+	private RedisMessageListenerContainer cacheRedisMessageListenerContainer;
+
+	@Autowired(required = false)
+	private ExecutorService executorService;
+
 	@Autowired
 	private Environment env;
 
 	private Map<String, RedisTemplate> cache = new ConcurrentHashMap<>();
 
+	private Set<String> nearCacheNamespaces = Collections.emptySet();
+
+	private int nearCacheCapacity = 10000;
+
+	private long nearCacheTimeToLive = 60000;
+
+	private final String nearCacheOrigin = CodecUtils.nextId();
+
+	private org.cache2k.CacheManager nearCacheManager;
+
+	private Map<String, Cache<String, Object>> nearCaches = new ConcurrentHashMap<>();
+
+	private MessageListener nearCacheInvalidationListener;
+
+	// time to idle of near cache hit is extended at most once per interval
+	private static final long NEAR_CACHE_TTI_REFRESH_INTERVAL = 1000;
+
+	private final Map<String, Long> nearCacheTtiRefreshes = new ConcurrentHashMap<>();
+
+	private static final byte[] DELETE_IF_EQUALS_SCRIPT = "if redis.call('get',KEYS[1]) == ARGV[1] then return redis.call('del',KEYS[1]) else return 0 end"
+			.getBytes(StandardCharsets.UTF_8);
+
 	private RedisScript<Long> decrementPositiveScript = new DefaultRedisScript<>(
-			"if redis.call('exists',KEYS[1])==1 then local v=redis.call('decrby',KEYS[1],ARGV[1]) if v >= 0 then return v else redis.call('incrby',KEYS[1],ARGV[1]) return -2 end else return -1 end",
+			"if redis.call('exists',KEYS[1])==1 then local v=redis.call('decrby',KEYS[1],ARGV[1]) if v >= 0 then if tonumber(ARGV[2]) > 0 then redis.call('pexpire',KEYS[1],ARGV[2]) end return v else redis.call('incrby',KEYS[1],ARGV[1]) return -2 end else return -1 end",
 			Long.class);
 
 	@PostConstruct
@@ -76,6 +136,38 @@ public class RedisCacheManager implements CacheManager {
 		} else {
 			cacheRedisTemplate.setValueSerializer(new FallbackToStringSerializer());
 		}
+		String namespaces = env.getProperty(NEAR_CACHE_NAMESPACES);
+		if (StringUtils.isNotBlank(namespaces)) {
+			if (cacheRedisMessageListenerContainer == null) {
+				log.warn("Near cache is disabled because RedisMessageListenerContainer is missing");
+				return;
+			}
+			nearCacheNamespaces = Arrays.stream(namespaces.split("\\s*,\\s*")).filter(StringUtils::isNotBlank)
+					.collect(Collectors.toSet());
+			nearCacheCapacity = env.getProperty(NEAR_CACHE_CAPACITY, Integer.class, nearCacheCapacity);
+			nearCacheTimeToLive = TimeUnit.SECONDS.toMillis(env.getProperty(NEAR_CACHE_TIME_TO_LIVE, Long.class,
+					TimeUnit.MILLISECONDS.toSeconds(nearCacheTimeToLive)));
+			nearCacheManager = org.cache2k.CacheManager.getInstance("redisNearCache-" + nearCacheOrigin);
+			nearCacheInvalidationListener = (message, pattern) -> {
+				try {
+					onNearCacheInvalidation(JsonUtils.fromJson(cacheStringRedisTemplate.getStringSerializer()
+							.deserialize(message.getBody()), NearCacheInvalidation.class));
+				} catch (Exception e) {
+					log.error(e.getMessage(), e);
+				}
+			};
+			cacheRedisMessageListenerContainer.addMessageListener(nearCacheInvalidationListener,
+					new ChannelTopic(NEAR_CACHE_INVALIDATION_CHANNEL));
+			log.info("Near cache is enabled for namespaces {}", nearCacheNamespaces);
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if (nearCacheInvalidationListener != null)
+			cacheRedisMessageListenerContainer.removeMessageListener(nearCacheInvalidationListener);
+		if (nearCacheManager != null)
+			nearCacheManager.close();
 	}
 
 	@Override
@@ -86,6 +178,11 @@ public class RedisCacheManager implements CacheManager {
 				redisTemplate.opsForValue().set(generateKey(key, namespace), value, timeToLive, timeUnit);
 			else
 				redisTemplate.opsForValue().set(generateKey(key, namespace), value);
+			Cache<String, Object> nearCache = findNearCache(namespace);
+			if (nearCache != null) {
+				putToNearCache(nearCache, key, value, timeToLive > 0 ? timeUnit.toMillis(timeToLive) : -1);
+				publishNearCacheInvalidation(namespace, Collections.singleton(key));
+			}
 		} catch (Exception e) {
 			log.error(e.getMessage(), e);
 		}
@@ -100,6 +197,9 @@ public class RedisCacheManager implements CacheManager {
 	public boolean exists(String key, String namespace) {
 		if (key == null)
 			return false;
+		Cache<String, Object> nearCache = findNearCache(namespace);
+		if (nearCache != null && nearCache.containsKey(key))
+			return true;
 		try {
 			Boolean b = findRedisTemplate(namespace).hasKey(generateKey(key, namespace));
 			return b != null && b;
@@ -114,7 +214,23 @@ public class RedisCacheManager implements CacheManager {
 		if (key == null)
 			return null;
 		try {
-			return findRedisTemplate(namespace).opsForValue().get(generateKey(key, namespace));
+			Cache<String, Object> nearCache = findNearCache(namespace);
+			if (nearCache == null)
+				return findRedisTemplate(namespace).opsForValue().get(generateKey(key, namespace));
+			Object value = nearCache.peek(key);
+			if (value != null)
+				return value;
+			RedisTemplate redisTemplate = findRedisTemplate(namespace);
+			byte[] rawKey = redisTemplate.getKeySerializer().serialize(generateKey(key, namespace));
+			List<Object> results = redisTemplate.executePipelined((RedisCallback) conn -> {
+				conn.get(rawKey);
+				conn.pTtl(rawKey);
+				return null;
+			});
+			value = results.get(0);
+			if (value != null)
+				putToNearCache(nearCache, key, value, (Long) results.get(1));
+			return value;
 		} catch (SerializationException e) {
 			log.warn(e.getMessage());
 			delete(key, namespace);
@@ -132,9 +248,30 @@ public class RedisCacheManager implements CacheManager {
 		String actualKey = generateKey(key, namespace);
 		RedisTemplate redisTemplate = findRedisTemplate(namespace);
 		try {
-			if (timeToIdle > 0)
-				redisTemplate.expire(actualKey, timeToIdle, timeUnit);
-			return redisTemplate.opsForValue().get(actualKey);
+			Cache<String, Object> nearCache = findNearCache(namespace);
+			Object value;
+			if (nearCache != null && (value = nearCache.peek(key)) != null) {
+				if (timeToIdle > 0)
+					refreshTimeToIdle(redisTemplate, actualKey, timeUnit.toMillis(timeToIdle));
+				return value;
+			}
+			if (timeToIdle > 0) {
+				byte[] rawKey = redisTemplate.getKeySerializer().serialize(actualKey);
+				long timeToIdleInMillis = timeUnit.toMillis(timeToIdle);
+				List<Object> results = redisTemplate.executePipelined((RedisCallback) conn -> {
+					conn.pExpire(rawKey, timeToIdleInMillis);
+					conn.get(rawKey);
+					return null;
+				});
+				value = results.get(1);
+				if (nearCache != null)
+					nearCacheTtiRefreshes.put(actualKey, System.currentTimeMillis());
+			} else {
+				value = redisTemplate.opsForValue().get(actualKey);
+			}
+			if (nearCache != null && value != null)
+				putToNearCache(nearCache, key, value, timeToIdle > 0 ? timeUnit.toMillis(timeToIdle) : -1);
+			return value;
 		} catch (SerializationException e) {
 			log.warn(e.getMessage());
 			delete(key, namespace);
@@ -163,6 +300,7 @@ public class RedisCacheManager implements CacheManager {
 		if (key == null)
 			return;
 		findRedisTemplate(namespace).expire(generateKey(key, namespace), timeToLive, timeUnit);
+		evictNearCache(namespace, Collections.singleton(key));
 	}
 
 	@Override
@@ -171,21 +309,49 @@ public class RedisCacheManager implements CacheManager {
 			return;
 		try {
 			findRedisTemplate(namespace).delete(generateKey(key, namespace));
+			evictNearCache(namespace, Collections.singleton(key));
 		} catch (Exception e) {
 			log.error(e.getMessage(), e);
 		}
 	}
 
+	@Override
+	public boolean deleteIfEquals(String key, Object expectedValue, String namespace) {
+		if (StringUtils.isBlank(key) || expectedValue == null)
+			return false;
+		RedisTemplate redisTemplate = findRedisTemplate(namespace);
+		byte[] rawKey = redisTemplate.getKeySerializer().serialize(generateKey(key, namespace));
+		byte[] rawValue = redisTemplate.getValueSerializer().serialize(expectedValue);
+		Long deleted = (Long) redisTemplate.execute(
+				(RedisCallback) conn -> conn.eval(DELETE_IF_EQUALS_SCRIPT, ReturnType.INTEGER, 1, rawKey, rawValue));
+		if (deleted == null || deleted == 0)
+			return false;
+		evictNearCache(namespace, Collections.singleton(key));
+		return true;
+	}
+
 	@Override
 	public void mput(Map<String, Object> map, final int timeToLive, TimeUnit timeUnit, String namespace) {
 		if (map == null)
 			return;
 		RedisTemplate redisTemplate = findRedisTemplate(namespace);
 		try {
-			Map<String, Object> temp = new HashMap<>();
-			map.forEach((key, value) -> temp.put(generateKey(key, namespace), value));
-			redisTemplate.opsForValue().multiSet(temp);
-			temp.keySet().forEach(key -> redisTemplate.expire(key, timeToLive, timeUnit));
+			RedisSerializer keySerializer = redisTemplate.getKeySerializer();
+			RedisSerializer valueSerializer = redisTemplate.getValueSerializer();
+			Map<byte[], byte[]> temp = new HashMap<>();
+			map.forEach((key, value) -> temp.put(keySerializer.serialize(generateKey(key, namespace)),
+					valueSerializer.serialize(value)));
+			Expiration expiration = timeToLive > 0 ? Expiration.from(timeToLive, timeUnit) : Expiration.persistent();
+			redisTemplate.executePipelined((RedisCallback) conn -> {
+				temp.forEach((rawKey, rawValue) -> conn.set(rawKey, rawValue, expiration, SetOption.upsert()));
+				return null;
+			});
+			Cache<String, Object> nearCache = findNearCache(namespace);
+			if (nearCache != null) {
+				map.forEach((key, value) -> putToNearCache(nearCache, key, value,
+						timeToLive > 0 ? timeUnit.toMillis(timeToLive) : -1));
+				publishNearCacheInvalidation(namespace, map.keySet());
+			}
 		} catch (Exception e) {
 			log.error(e.getMessage(), e);
 		}
@@ -197,9 +363,37 @@ public class RedisCacheManager implements CacheManager {
 			return null;
 		keys = keys.stream().filter(StringUtils::isNotBlank).collect(Collectors.toCollection(HashSet::new));
 		try {
+			Map<String, Object> result = new HashMap<>();
+			Cache<String, Object> nearCache = findNearCache(namespace);
+			if (nearCache != null) {
+				Map<String, Object> cached = nearCache.peekAll(keys);
+				result.putAll(cached);
+				keys.removeAll(cached.keySet());
+				if (keys.isEmpty())
+					return result;
+				RedisTemplate redisTemplate = findRedisTemplate(namespace);
+				RedisSerializer keySerializer = redisTemplate.getKeySerializer();
+				List<byte[]> rawKeys = keys.stream().map(key -> keySerializer.serialize(generateKey(key, namespace)))
+						.collect(Collectors.toList());
+				List<Object> results = redisTemplate.executePipelined((RedisCallback) conn -> {
+					for (byte[] rawKey : rawKeys) {
+						conn.get(rawKey);
+						conn.pTtl(rawKey);
+					}
+					return null;
+				});
+				int i = 0;
+				for (String key : keys) {
+					Object value = results.get(i);
+					result.put(key, value);
+					if (value != null)
+						putToNearCache(nearCache, key, value, (Long) results.get(i + 1));
+					i += 2;
+				}
+				return result;
+			}
 			List<Object> list = findRedisTemplate(namespace).opsForValue()
 					.multiGet(keys.stream().map(key -> generateKey(key, namespace)).collect(Collectors.toList()));
-			Map<String, Object> result = new HashMap<>();
 			int i = 0;
 			for (String key : keys) {
 				result.put(key, list.get(i));
@@ -219,6 +413,7 @@ public class RedisCacheManager implements CacheManager {
 		try {
 			findRedisTemplate(namespace).delete(keys.stream().filter(StringUtils::isNotBlank)
 					.map(key -> generateKey(key, namespace)).collect(Collectors.toList()));
+			evictNearCache(namespace, keys);
 		} catch (Exception e) {
 			log.error(e.getMessage(), e);
 		}
@@ -228,11 +423,15 @@ public class RedisCacheManager implements CacheManager {
 	public boolean putIfAbsent(String key, Object value, int timeToLive, TimeUnit timeUnit, String namespace) {
 		String actualkey = generateKey(key, namespace);
 		RedisTemplate redisTemplate = findRedisTemplate(namespace);
-		Boolean success = redisTemplate.opsForValue().setIfAbsent(actualkey, value);
+		byte[] rawKey = redisTemplate.getKeySerializer().serialize(actualkey);
+		byte[] rawValue = redisTemplate.getValueSerializer().serialize(value);
+		Expiration expiration = timeToLive > 0 ? Expiration.from(timeToLive, timeUnit) : Expiration.persistent();
+		Boolean success = (Boolean) redisTemplate
+				.execute((RedisCallback) conn -> conn.set(rawKey, rawValue, expiration, SetOption.ifAbsent()));
 		if (success == null)
 			return false;
-		if (success && timeToLive > 0)
-			redisTemplate.expire(actualkey, timeToLive, timeUnit);
+		if (success)
+			evictNearCache(namespace, Collections.singleton(key));
 		return success;
 	}
 
@@ -240,11 +439,22 @@ public class RedisCacheManager implements CacheManager {
 	public long increment(String key, long delta, int timeToLive, TimeUnit timeUnit, String namespace) {
 		String actualkey = generateKey(key, namespace);
 		RedisTemplate redisTemplate = findRedisTemplate(namespace);
-		Long result = redisTemplate.opsForValue().increment(actualkey, delta);
+		Long result;
+		if (timeToLive > 0) {
+			byte[] rawKey = redisTemplate.getKeySerializer().serialize(actualkey);
+			long timeToLiveInMillis = timeUnit.toMillis(timeToLive);
+			List<Object> results = redisTemplate.executePipelined((RedisCallback) conn -> {
+				conn.incrBy(rawKey, delta);
+				conn.pExpire(rawKey, timeToLiveInMillis);
+				return null;
+			});
+			result = (Long) results.get(0);
+		} else {
+			result = redisTemplate.opsForValue().increment(actualkey, delta);
+		}
 		if (result == null)
 			throw new RuntimeException("Unexpected null");
-		if (timeToLive > 0)
-			redisTemplate.expire(actualkey, timeToLive, timeUnit);
+		evictNearCache(namespace, Collections.singleton(key));
 		return result;
 	}
 
@@ -256,15 +466,15 @@ public class RedisCacheManager implements CacheManager {
 		RedisTemplate redisTemplate = findRedisTemplate(namespace);
 		String actualkey = generateKey(key, namespace);
 		Long result = (Long) redisTemplate.execute(decrementPositiveScript, redisTemplate.getStringSerializer(),
-				redisTemplate.getValueSerializer(), Collections.singletonList(actualkey), String.valueOf(delta));
+				redisTemplate.getValueSerializer(), Collections.singletonList(actualkey), String.valueOf(delta),
+				String.valueOf(timeToLive > 0 ? timeUnit.toMillis(timeToLive) : 0));
 		if (result == null)
 			throw new RuntimeException("Unexpected null");
 		if (result == -1)
 			throw new IllegalStateException("namespace:" + namespace + ", key:" + key + " does not exist");
 		if (result == -2)
 			throw new IllegalStateException("namespace:" + namespace + ", key:" + key + " is less than " + delta);
-		if (timeToLive > 0)
-			redisTemplate.expire(actualkey, timeToLive, timeUnit);
+		evictNearCache(namespace, Collections.singleton(key));
 		return result;
 	}
 
@@ -302,6 +512,7 @@ public class RedisCacheManager implements CacheManager {
 				"local keys = redis.call('keys', ARGV[1]) \n for i=1,#keys,5000 do \n redis.call('del', unpack(keys, i, math.min(i+4999, #keys))) \n end \n return true",
 				Boolean.class);
 		cacheStringRedisTemplate.execute(script, Collections.emptyList(), namespace + ":*");
+		evictNearCache(namespace, null);
 	}
 
 	protected RedisTemplate findRedisTemplate(String namespace) {
@@ -324,4 +535,91 @@ public class RedisCacheManager implements CacheManager {
 		});
 	}
 
+	protected Cache<String, Object> findNearCache(String namespace) {
+		if (namespace == null || !nearCacheNamespaces.contains(namespace))
+			return null;
+		return nearCaches.computeIfAbsent(namespace, key -> {
+			Cache2kConfiguration<String, Object> cfg = Cache2kConfiguration.of(String.class, Object.class);
+			cfg.setName(key.replaceAll(":", "."));
+			cfg.setExpireAfterWrite(nearCacheTimeToLive);
+			cfg.setEntryCapacity(nearCacheCapacity);
+			return nearCacheManager.createCache(cfg);
+		});
+	}
+
+	private void putToNearCache(Cache<String, Object> nearCache, String key, Object value, long timeToLiveInMillis) {
+		if (timeToLiveInMillis == 0 || timeToLiveInMillis == -2) // -2 means key does not exist
+			return;
+		long expiryTime = System.currentTimeMillis()
+				+ (timeToLiveInMillis > 0 ? Math.min(timeToLiveInMillis, nearCacheTimeToLive) : nearCacheTimeToLive);
+		nearCache.invoke(key, e -> e.setValue(value).setExpiryTime(expiryTime));
+	}
+
+	private void refreshTimeToIdle(RedisTemplate redisTemplate, String actualKey, long timeToIdleInMillis) {
+		long now = System.currentTimeMillis();
+		Long last = nearCacheTtiRefreshes.get(actualKey);
+		if (last != null && now - last < Math.min(NEAR_CACHE_TTI_REFRESH_INTERVAL, timeToIdleInMillis / 2))
+			return;
+		if (last == null && nearCacheTtiRefreshes.size() >= nearCacheCapacity * nearCacheNamespaces.size())
+			nearCacheTtiRefreshes.clear();
+		// only one of concurrent hits wins
+		if (last != null ? !nearCacheTtiRefreshes.replace(actualKey, last, now)
+				: nearCacheTtiRefreshes.putIfAbsent(actualKey, now) != null)
+			return;
+		(executorService != null ? executorService : ForkJoinPool.commonPool()).execute(() -> {
+			try {
+				redisTemplate.expire(actualKey, timeToIdleInMillis, TimeUnit.MILLISECONDS);
+			} catch (Exception e) {
+				log.error(e.getMessage(), e);
+			}
+		});
+	}
+
+	private void evictNearCache(String namespace, Collection<String> keys) {
+		Cache<String, Object> nearCache = findNearCache(namespace);
+		if (nearCache == null)
+			return;
+		if (keys != null)
+			nearCache.removeAll(keys.stream().filter(StringUtils::isNotBlank).collect(Collectors.toSet()));
+		else
+			nearCache.clear();
+		publishNearCacheInvalidation(namespace, keys);
+	}
+
+	private void publishNearCacheInvalidation(String namespace, Collection<String> keys) {
+		try {
+			cacheStringRedisTemplate.convertAndSend(NEAR_CACHE_INVALIDATION_CHANNEL,
+					JsonUtils.toJson(new NearCacheInvalidation(nearCacheOrigin, namespace, keys)));
+		} catch (Exception e) {
+			log.error(e.getMessage(), e);
+		}
+	}
+
+	private void onNearCacheInvalidation(NearCacheInvalidation invalidation) {
+		if (nearCacheOrigin.equals(invalidation.getOrigin()))
+			return;
+		Cache<String, Object> nearCache = nearCaches.get(invalidation.getNamespace());
+		if (nearCache == null)
+			return;
+		if (invalidation.getKeys() != null)
+			nearCache.removeAll(new HashSet<>(invalidation.getKeys()));
+		else
+			nearCache.clear();
+	}
+
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	static class NearCacheInvalidation implements Serializable {
+
+		private static final long serialVersionUID = 5166291383858470353L;
+
+		private String origin;
+
+		private String namespace;
+
+		private Collection<String> keys;
+
+	}
+
 }
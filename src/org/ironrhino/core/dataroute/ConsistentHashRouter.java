@@ -0,0 +1,43 @@
+package org.ironrhino.core.dataroute;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ironrhino.core.util.ConsistentHash;
+import org.ironrhino.core.util.ConsistentHash.Algorithm;
+
+import lombok.Getter;
+import lombok.Setter;
+
+public class ConsistentHashRouter implements Router {
+
+	@Getter
+	@Setter
+	private Algorithm algorithm = Algorithm.RING;
+
+	private volatile Holder holder;
+
+	@Override
+	public int route(List<String> nodes, Object routingKey) {
+		Holder h = holder;
+		if (h == null || !h.nodes.equals(nodes)) {
+			h = new Holder(new ArrayList<>(nodes), new ConsistentHash<>(nodes, null, algorithm));
+			holder = h;
+		}
+		return nodes.indexOf(h.consistentHash.get(routingKey));
+	}
+
+	private static class Holder {
+
+		final List<String> nodes;
+
+		final ConsistentHash<Object, String> consistentHash;
+
+		Holder(List<String> nodes, ConsistentHash<Object, String> consistentHash) {
+			this.nodes = nodes;
+			this.consistentHash = consistentHash;
+		}
+
+	}
+
+}
@@ -0,0 +1,160 @@
+package org.ironrhino.core.dataroute;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sql.DataSource;
+
+import lombok.Getter;
+
+/**
+ * Health and latency of a member of {@link GroupedDataSource}, node is ejected
+ * after consecutive failures and admits a single probe once ejection expired.
+ * Only failure of the probing thread backs off, failures of connections
+ * in flight while ejected are ignored.
+ */
+class DataSourceNode {
+
+	private static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+	@Getter
+	private final String name;
+
+	@Getter
+	private final DataSource dataSource;
+
+	@Getter
+	private final int weight;
+
+	private final Ewma acquireLatency = new Ewma();
+
+	private final Ewma queryLatency = new Ewma();
+
+	private final AtomicInteger inflight = new AtomicInteger();
+
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+	// thread won the half-open probe
+	private final AtomicReference<Thread> prober = new AtomicReference<>();
+
+	// 0 means closed
+	private volatile long ejectedUntil;
+
+	private volatile long ejectDuration;
+
+	DataSourceNode(String name, DataSource dataSource, Integer weight) {
+		this.name = name;
+		this.dataSource = dataSource;
+		this.weight = weight != null && weight > 0 ? weight : 1;
+	}
+
+	public boolean isEjected() {
+		return ejectedUntil != 0;
+	}
+
+	public boolean isAvailable() {
+		long until = ejectedUntil;
+		return until == 0 || System.currentTimeMillis() >= until && prober.get() == null;
+	}
+
+	// returns false if another thread is probing
+	public boolean beforeAcquire() {
+		if (ejectedUntil == 0)
+			return true;
+		return prober.compareAndSet(null, Thread.currentThread());
+	}
+
+	// returns true if node recovered
+	public boolean onSuccess(long acquireNanos) {
+		acquireLatency.sample(acquireNanos);
+		consecutiveFailures.set(0);
+		if (ejectedUntil == 0)
+			return false;
+		ejectedUntil = 0;
+		ejectDuration = 0;
+		prober.set(null);
+		return true;
+	}
+
+	// returns true if node is ejected
+	public boolean onFailure(int threshold, long minEjectDuration, long maxEjectDuration) {
+		if (ejectedUntil != 0) {
+			if (prober.get() != Thread.currentThread())
+				return false;
+			// half-open probe failed, back off exponentially
+			ejectDuration = Math.min(Math.max(ejectDuration * 2, minEjectDuration), maxEjectDuration);
+			ejectedUntil = System.currentTimeMillis() + ejectDuration;
+			prober.set(null);
+			return false;
+		}
+		if (consecutiveFailures.incrementAndGet() < threshold)
+			return false;
+		synchronized (this) {
+			if (ejectedUntil != 0)
+				return false;
+			consecutiveFailures.set(0);
+			ejectDuration = minEjectDuration;
+			ejectedUntil = System.currentTimeMillis() + ejectDuration;
+			return true;
+		}
+	}
+
+	public void onQuery(long nanos) {
+		queryLatency.sample(nanos);
+	}
+
+	public void onOpen() {
+		inflight.incrementAndGet();
+	}
+
+	public void onClose() {
+		inflight.decrementAndGet();
+	}
+
+	public int getInflight() {
+		return inflight.get();
+	}
+
+	public double getAcquireLatency() {
+		return acquireLatency.get();
+	}
+
+	public double getQueryLatency() {
+		return queryLatency.get();
+	}
+
+	// lower is better
+	public double score() {
+		return (getAcquireLatency() + getQueryLatency() + 1) * (inflight.get() + 1) / weight;
+	}
+
+	private static class Ewma {
+
+		private final AtomicLong value = new AtomicLong(Double.doubleToLongBits(0));
+
+		private final AtomicLong lastSampleTime = new AtomicLong(System.nanoTime());
+
+		void sample(long nanos) {
+			long now = System.nanoTime();
+			long elapsed = Math.max(now - lastSampleTime.getAndSet(now), 0);
+			// recent samples weigh more after a quiet period
+			double w = Math.exp(-(double) elapsed / DECAY_NANOS);
+			long prev, next;
+			do {
+				prev = value.get();
+				double old = Double.longBitsToDouble(prev);
+				next = Double.doubleToLongBits(old == 0 ? nanos : old * w + nanos * (1 - w));
+			} while (!value.compareAndSet(prev, next));
+		}
+
+		// decays while no sample comes in, so that a slow node is retried later
+		double get() {
+			long elapsed = Math.max(System.nanoTime() - lastSampleTime.get(), 0);
+			return Double.longBitsToDouble(value.get()) * Math.exp(-(double) elapsed / DECAY_NANOS);
+		}
+
+	}
+
+}
@@ -1,13 +1,19 @@
 package org.ironrhino.core.dataroute;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.sql.DataSource;
 
@@ -52,6 +58,19 @@ public class GroupedDataSource extends LazyConnectionDataSourceProxy
 	@Setter
 	private int deadFailureThreshold = 3;
 
+	@Getter
+	@Setter
+	private SelectionStrategy selectionStrategy = SelectionStrategy.ROUND_ROBIN;
+
+	// milliseconds
+	@Getter
+	@Setter
+	private long minEjectDuration = 5000;
+
+	@Getter
+	@Setter
+	private long maxEjectDuration = 300000;
+
 	// inject end
 
 	@Getter
@@ -86,6 +105,13 @@ public class GroupedDataSource extends LazyConnectionDataSourceProxy
 		targetDataSource.tryRecover();
 	}
 
+	public enum SelectionStrategy {
+		// weighted round robin
+		ROUND_ROBIN,
+		// least ewma latency multiplied by in-flight connections divided by weight
+		LATENCY_AWARE
+	}
+
 	@Slf4j
 	static class InternalGroupedDataSource extends AbstractDataSource {
 
@@ -109,6 +135,18 @@ public class GroupedDataSource extends LazyConnectionDataSourceProxy
 		@Setter
 		private int deadFailureThreshold = 3;
 
+		@Getter
+		@Setter
+		private SelectionStrategy selectionStrategy = SelectionStrategy.ROUND_ROBIN;
+
+		@Getter
+		@Setter
+		private long minEjectDuration = 5000;
+
+		@Getter
+		@Setter
+		private long maxEjectDuration = 300000;
+
 		@Getter
 		@Setter
 		private BeanFactory beanFactory;
@@ -119,35 +157,36 @@ public class GroupedDataSource extends LazyConnectionDataSourceProxy
 
 		// inject end
 
-		private DataSource master;
+		private DataSourceNode master;
+
+		private Map<String, DataSourceNode> nodes = new HashMap<>();
 
-		private Map<String, DataSource> readSlaves = new HashMap<>();
+		private List<DataSourceNode> readNodes = new ArrayList<>();
 
-		private Map<String, DataSource> writeSlaves = new HashMap<>();
+		private List<DataSourceNode> writeNodes = new ArrayList<>();
 
 		private RoundRobin<String> readRoundRobin;
 
 		private RoundRobin<String> writeRoundRobin;
 
-		private Set<DataSource> deadDataSources = new HashSet<>();
-
-		private Map<DataSource, Integer> failureCount = new ConcurrentHashMap<>();
-
 		public void afterPropertiesSet() {
-			master = (DataSource) beanFactory.getBean(masterName);
 			if (readSlaveNames != null && readSlaveNames.size() > 0) {
-				for (String name : readSlaveNames.keySet())
-					readSlaves.put(name, (DataSource) beanFactory.getBean(name));
-				readRoundRobin = new RoundRobin<>(readSlaveNames,
-						target -> !deadDataSources.contains(readSlaves.get(target)));
+				for (Map.Entry<String, Integer> entry : readSlaveNames.entrySet())
+					readNodes.add(node(entry.getKey(), entry.getValue()));
+				readRoundRobin = new RoundRobin<>(readSlaveNames, target -> nodes.get(target).isAvailable());
 			}
 			if (writeSlaveNames != null && writeSlaveNames.size() > 0) {
-				for (String name : writeSlaveNames.keySet())
-					writeSlaves.put(name, (DataSource) beanFactory.getBean(name));
-				writeSlaves.put(masterName, master);
-				writeRoundRobin = new RoundRobin<>(writeSlaveNames,
-						target -> !deadDataSources.contains(writeSlaves.get(target)));
+				for (Map.Entry<String, Integer> entry : writeSlaveNames.entrySet())
+					writeNodes.add(node(entry.getKey(), entry.getValue()));
+				writeRoundRobin = new RoundRobin<>(writeSlaveNames, target -> nodes.get(target).isAvailable());
 			}
+			if (masterName != null)
+				master = node(masterName, null);
+		}
+
+		private DataSourceNode node(String name, Integer weight) {
+			return nodes.computeIfAbsent(name,
+					key -> new DataSourceNode(key, (DataSource) beanFactory.getBean(key), weight));
 		}
 
 		@Override
@@ -156,83 +195,158 @@ public class GroupedDataSource extends LazyConnectionDataSourceProxy
 		}
 
 		public Connection getConnection(String username, String password, int maxAttempts) throws SQLException {
-			DataSource ds = null;
-			String dbname = null;
-			boolean read = false;
 			boolean readonly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
-			if (readonly && readRoundRobin != null) {
-				read = true;
-				dbname = readRoundRobin.pick();
-				ds = readSlaves.get(dbname);
-			}
-			if (ds == null && writeRoundRobin != null) {
-				dbname = writeRoundRobin.pick();
-				ds = writeSlaves.get(dbname);
-			}
-			if (ds == null && masterName != null) {
-				dbname = masterName;
-				ds = master;
-			}
-			if (ds == null)
-				throw new IllegalStateException("No underlying DataSource found");
 			int remainingAttempts = maxAttempts;
 			do {
+				DataSourceNode node = null;
+				boolean read = false;
+				if (readonly && !readNodes.isEmpty()) {
+					node = select(readNodes, readRoundRobin);
+					read = node != null;
+				}
+				if (node == null && !writeNodes.isEmpty())
+					node = select(writeNodes, writeRoundRobin);
+				if (node == null)
+					node = master;
+				if (node == null)
+					throw new IllegalStateException("No underlying DataSource found");
+				long start = System.nanoTime();
+				Connection conn = null;
 				try {
-					Connection conn = username == null ? ds.getConnection() : ds.getConnection(username, password);
+					DataSource ds = node.getDataSource();
+					conn = username == null ? ds.getConnection() : ds.getConnection(username, password);
 					if (read)
 						conn.setReadOnly(true);
-					failureCount.remove(ds);
-					return conn;
-				} catch (SQLException e) {
+				} catch (Throwable e) {
+					// always record failure otherwise a half-open node stays probing forever
+					if (conn != null) {
+						try {
+							conn.close();
+						} catch (SQLException ex) {
+							e.addSuppressed(ex);
+						}
+					}
 					log.error(e.getMessage(), e);
-					if (remainingAttempts <= 1)
+					onFailure(node);
+					if (!(e instanceof SQLException) || remainingAttempts <= 1)
 						throw e;
-					Integer failureTimes = failureCount.get(ds);
-					if (failureTimes == null)
-						failureTimes = 1;
-					else
-						failureTimes += 1;
-					if (failureTimes == deadFailureThreshold) {
-						failureCount.remove(ds);
-						deadDataSources.add(ds);
-						log.error("dataSource[" + groupName + ':' + dbname + "] down!");
-					} else {
-						failureCount.put(ds, failureTimes);
-					}
+					continue;
 				}
+				if (node.onSuccess(System.nanoTime() - start))
+					log.warn("dataSource[" + groupName + ':' + node.getName() + "] recovered");
+				if (selectionStrategy == SelectionStrategy.LATENCY_AWARE)
+					conn = monitor(conn, node);
+				return conn;
 			} while (--remainingAttempts > 0);
 			throw new MaxAttemptsExceededException(maxAttempts);
 		}
 
+		private DataSourceNode select(List<DataSourceNode> candidates, RoundRobin<String> roundRobin) {
+			// an ejected node admits only one probe at a time
+			for (int i = 0; i < candidates.size(); i++) {
+				DataSourceNode node;
+				if (selectionStrategy == SelectionStrategy.LATENCY_AWARE) {
+					node = selectFastest(candidates);
+				} else {
+					String name = roundRobin.pick();
+					node = name != null ? nodes.get(name) : null;
+				}
+				if (node == null || node.beforeAcquire())
+					return node;
+			}
+			return null;
+		}
+
+		private static DataSourceNode selectFastest(List<DataSourceNode> candidates) {
+			DataSourceNode selected = null;
+			double min = Double.MAX_VALUE;
+			int ties = 0;
+			for (DataSourceNode node : candidates) {
+				if (!node.isAvailable())
+					continue;
+				double score = node.score();
+				if (score < min) {
+					selected = node;
+					min = score;
+					ties = 1;
+				} else if (score == min && ThreadLocalRandom.current().nextInt(++ties) == 0) {
+					selected = node;
+				}
+			}
+			return selected;
+		}
+
+		private Connection monitor(Connection conn, DataSourceNode node) {
+			node.onOpen();
+			AtomicBoolean closed = new AtomicBoolean();
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+						String name = method.getName();
+						if (name.equals("close") && closed.compareAndSet(false, true))
+							node.onClose();
+						Object result = invoke(conn, method, args, node);
+						if (result instanceof Statement && (name.startsWith("create") || name.startsWith("prepare")))
+							result = monitor((Statement) result, (Connection) proxy, node);
+						return result;
+					});
+		}
+
+		private Statement monitor(Statement stmt, Connection conn, DataSourceNode node) {
+			Class<?> type = stmt instanceof CallableStatement ? CallableStatement.class
+					: stmt instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+			return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { type },
+					(proxy, method, args) -> {
+						String name = method.getName();
+						if (name.equals("getConnection"))
+							return conn;
+						if (!name.startsWith("execute"))
+							return invoke(stmt, method, args, node);
+						long start = System.nanoTime();
+						Object result = invoke(stmt, method, args, node);
+						node.onQuery(System.nanoTime() - start);
+						return result;
+					});
+		}
+
+		private Object invoke(Object target, Method method, Object[] args, DataSourceNode node) throws Throwable {
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				Throwable cause = e.getCause();
+				// SQLState class 08 is connection exception
+				if (cause instanceof SQLException) {
+					String state = ((SQLException) cause).getSQLState();
+					if (state != null && state.startsWith("08"))
+						onFailure(node);
+				}
+				throw cause;
+			}
+		}
+
+		private void onFailure(DataSourceNode node) {
+			if (node.onFailure(deadFailureThreshold, minEjectDuration, maxEjectDuration))
+				log.error("dataSource[" + groupName + ':' + node.getName() + "] down!");
+		}
+
 		@Override
 		public Connection getConnection() throws SQLException {
 			return getConnection(null, null);
 		}
 
 		public void tryRecover() {
-			Iterator<DataSource> it = deadDataSources.iterator();
-			while (it.hasNext()) {
-				DataSource ds = it.next();
-				try (Connection conn = ds.getConnection()) {
+			for (DataSourceNode node : nodes.values()) {
+				if (!node.isEjected() || !node.beforeAcquire())
+					continue;
+				long start = System.nanoTime();
+				try (Connection conn = node.getDataSource().getConnection()) {
 					if (conn.isValid(5)) {
-						it.remove();
-						String dbname = null;
-						for (Map.Entry<String, DataSource> entry : writeSlaves.entrySet()) {
-							if (entry.getValue() == ds) {
-								dbname = entry.getKey();
-								break;
-							}
-						}
-						if (dbname == null)
-							for (Map.Entry<String, DataSource> entry : readSlaves.entrySet()) {
-								if (entry.getValue() == ds) {
-									dbname = entry.getKey();
-									break;
-								}
-							}
-						log.warn("dataSource[" + groupName + ':' + dbname + "] recovered");
+						if (node.onSuccess(System.nanoTime() - start))
+							log.warn("dataSource[" + groupName + ':' + node.getName() + "] recovered");
+					} else {
+						onFailure(node);
 					}
 				} catch (Exception e) {
+					onFailure(node);
 					log.debug(e.getMessage(), e);
 				}
 			}
@@ -240,4 +354,4 @@ public class GroupedDataSource extends LazyConnectionDataSourceProxy
 
 	}
 
-}
\ No newline at end of file
+}
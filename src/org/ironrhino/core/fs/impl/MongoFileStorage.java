@@ -9,36 +9,59 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.annotation.PostConstruct;
 
 import org.ironrhino.core.fs.FileInfo;
+import org.ironrhino.core.metadata.Trigger;
 import org.ironrhino.core.spring.configuration.ServiceImplementationConditional;
+import org.ironrhino.core.util.CodecUtils;
 import org.ironrhino.core.util.ErrorMessage;
 import org.ironrhino.core.util.FileUtils;
 import org.ironrhino.core.util.LimitExceededException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StreamUtils;
 import org.springframework.util.StringUtils;
 
+import com.mongodb.client.result.UpdateResult;
+
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 
 @Component("fileStorage")
 @ServiceImplementationConditional(profiles = { CLOUD, CLUSTER })
+@Slf4j
 public class MongoFileStorage extends AbstractFileStorage {
 
+	// same as GridFS, keeps chunk documents well below BSON size limit
+	public static final int DEFAULT_CHUNK_SIZE = 255 * 1024;
+
 	@Autowired
 	private MongoTemplate mongoTemplate;
 
+	@Getter
+	@Setter
+	@Value("${fileStorage.chunkSize:" + DEFAULT_CHUNK_SIZE + "}")
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
 	@PostConstruct
 	public void afterPropertiesSet() {
 		if (!mongoTemplate.collectionExists(File.class))
 			mongoTemplate.createCollection(File.class);
+		if (!mongoTemplate.collectionExists(FileChunk.class))
+			mongoTemplate.createCollection(FileChunk.class);
+		mongoTemplate.indexOps(FileChunk.class).ensureIndex(new Index().on("fileId", Sort.Direction.ASC));
 	}
 
 	@Override
@@ -49,13 +72,16 @@ public class MongoFileStorage extends AbstractFileStorage {
 		int lastIndex = path.lastIndexOf('/');
 		if (lastIndex > 0)
 			mkdir(path.substring(0, lastIndex));
+		File old = mongoTemplate.findById(path, File.class);
+		File file = new File();
+		file.setPath(path);
 		try (InputStream ins = is) {
-			File file = new File();
-			file.setPath(path);
-			file.setData(StreamUtils.copyToByteArray(is));
-			file.setLastModified(System.currentTimeMillis());
-			mongoTemplate.save(file);
+			writeChunks(ins, file);
 		}
+		file.setLastModified(System.currentTimeMillis());
+		mongoTemplate.save(file);
+		if (old != null)
+			removeChunks(old);
 	}
 
 	@Override
@@ -64,7 +90,80 @@ public class MongoFileStorage extends AbstractFileStorage {
 		File file = mongoTemplate.findById(path, File.class);
 		if (file == null || file.isDirectory())
 			return null;
-		return new ByteArrayInputStream(file.getData());
+		if (file.getData() != null)
+			return new ByteArrayInputStream(file.getData());
+		return new ChunkedInputStream(file);
+	}
+
+	/**
+	 * Move data of files written by previous version into chunks, files are
+	 * readable during migration since each file is switched atomically.
+	 */
+	@Trigger
+	public void migrate() throws IOException {
+		Query query = new Query(where("data").exists(true));
+		query.fields().include("path");
+		int migrated = 0;
+		for (File f : mongoTemplate.find(query, File.class)) {
+			File legacy = mongoTemplate.findById(f.getPath(), File.class);
+			if (legacy == null || legacy.getData() == null)
+				continue;
+			File file = new File();
+			file.setPath(legacy.getPath());
+			try (InputStream is = new ByteArrayInputStream(legacy.getData())) {
+				writeChunks(is, file);
+			}
+			UpdateResult result = mongoTemplate.updateFirst(
+					new Query(where("path").is(file.getPath()).and("data").exists(true)),
+					new Update().set("fileId", file.getFileId()).set("length", file.getLength())
+							.set("chunkSize", file.getChunkSize()).unset("data"),
+					File.class);
+			if (result.getModifiedCount() > 0)
+				migrated++;
+			else
+				removeChunks(file);
+		}
+		log.info("Migrated {} files to chunks", migrated);
+	}
+
+	private void writeChunks(InputStream is, File file) throws IOException {
+		String fileId = CodecUtils.nextId();
+		long length = 0;
+		int n = 0;
+		byte[] buffer = new byte[chunkSize];
+		try {
+			while (true) {
+				int size = 0;
+				int read;
+				while (size < buffer.length && (read = is.read(buffer, size, buffer.length - size)) > 0)
+					size += read;
+				if (size == 0)
+					break;
+				FileChunk chunk = new FileChunk();
+				chunk.setId(chunkId(fileId, n++));
+				chunk.setFileId(fileId);
+				chunk.setData(size < buffer.length ? Arrays.copyOf(buffer, size) : buffer);
+				mongoTemplate.insert(chunk);
+				length += size;
+				if (size < buffer.length)
+					break;
+			}
+		} catch (IOException | RuntimeException e) {
+			mongoTemplate.remove(new Query(where("fileId").is(fileId)), FileChunk.class);
+			throw e;
+		}
+		file.setFileId(fileId);
+		file.setLength(length);
+		file.setChunkSize(chunkSize);
+	}
+
+	private void removeChunks(File file) {
+		if (file.getFileId() != null)
+			mongoTemplate.remove(new Query(where("fileId").is(file.getFileId())), FileChunk.class);
+	}
+
+	private static String chunkId(String fileId, int n) {
+		return fileId + ':' + n;
 	}
 
 	@Override
@@ -116,7 +215,11 @@ public class MongoFileStorage extends AbstractFileStorage {
 			mongoTemplate.remove(new Query(where("path").is(path)), File.class);
 			return true;
 		} else {
-			mongoTemplate.remove(new Query(where("path").is(path)), File.class);
+			File file = mongoTemplate.findById(path, File.class);
+			if (file != null) {
+				mongoTemplate.remove(file);
+				removeChunks(file);
+			}
 			return true;
 		}
 	}
@@ -154,14 +257,19 @@ public class MongoFileStorage extends AbstractFileStorage {
 		if (fromfile == null)
 			return false;
 		File tofile = mongoTemplate.findById(toPath, File.class);
-		if (tofile == null) {
-			tofile = new File();
-			tofile.setPath(toPath);
-		}
+		File old = tofile;
+		tofile = new File();
+		tofile.setPath(toPath);
+		// chunks are shared by reference, no data copying
 		tofile.setData(fromfile.getData());
+		tofile.setFileId(fromfile.getFileId());
+		tofile.setLength(fromfile.getLength());
+		tofile.setChunkSize(fromfile.getChunkSize());
 		tofile.setLastModified(fromfile.getLastModified());
 		mongoTemplate.save(tofile);
 		mongoTemplate.remove(fromfile);
+		if (old != null)
+			removeChunks(old);
 		return true;
 	}
 
@@ -192,7 +300,7 @@ public class MongoFileStorage extends AbstractFileStorage {
 		for (File f : files) {
 			String name = f.getPath();
 			name = name.substring(path.length());
-			list.add(new FileInfo(name, true, f.getData().length, f.getLastModified()));
+			list.add(new FileInfo(name, true, f.getSize(), f.getLastModified()));
 			if (list.size() > MAX_PAGE_SIZE)
 				throw new LimitExceededException("Exceed max size:" + MAX_PAGE_SIZE);
 		}
@@ -218,7 +326,7 @@ public class MongoFileStorage extends AbstractFileStorage {
 			name = name.substring(path.length());
 			if (f.isDirectory() && name.endsWith("/"))
 				name = name.substring(0, name.length() - 1);
-			list.add(new FileInfo(name, !f.isDirectory(), f.isDirectory() ? 0 : f.getData().length,
+			list.add(new FileInfo(name, !f.isDirectory(), f.isDirectory() ? 0 : f.getSize(),
 					f.getLastModified()));
 			if (list.size() > MAX_PAGE_SIZE)
 				throw new LimitExceededException("Exceed max size:" + MAX_PAGE_SIZE);
@@ -243,8 +351,112 @@ public class MongoFileStorage extends AbstractFileStorage {
 
 		private long lastModified;
 
+		// inline data of files written by previous version
 		private byte[] data;
 
+		private String fileId;
+
+		private long length;
+
+		private int chunkSize;
+
+		long getSize() {
+			return data != null ? data.length : length;
+		}
+
+	}
+
+	@Data
+	private static class FileChunk implements Serializable {
+
+		private static final long serialVersionUID = 3412386186417543476L;
+
+		@Id
+		private String id;
+
+		private String fileId;
+
+		private byte[] data;
+
+	}
+
+	private class ChunkedInputStream extends InputStream {
+
+		private final String path;
+
+		private final String fileId;
+
+		private final long length;
+
+		private final int chunkSize;
+
+		private long position;
+
+		private int index = -1;
+
+		private byte[] chunk;
+
+		ChunkedInputStream(File file) {
+			this.path = file.getPath();
+			this.fileId = file.getFileId();
+			this.length = file.getLength();
+			this.chunkSize = file.getChunkSize();
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (position >= length)
+				return -1;
+			int offset = locate();
+			position++;
+			return chunk[offset] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			if (position >= length)
+				return -1;
+			int offset = locate();
+			int n = (int) Math.min(Math.min(len, chunk.length - offset), length - position);
+			System.arraycopy(chunk, offset, b, off, n);
+			position += n;
+			return n;
+		}
+
+		// range read, skipped chunks are not loaded
+		@Override
+		public long skip(long n) {
+			if (n <= 0)
+				return 0;
+			n = Math.min(n, length - position);
+			position += n;
+			return n;
+		}
+
+		@Override
+		public int available() {
+			if (chunk == null || position >= length)
+				return 0;
+			return (int) Math.max(Math.min((long) index * chunkSize + chunk.length - position, length - position), 0);
+		}
+
+		private int locate() throws IOException {
+			int i = (int) (position / chunkSize);
+			if (i != index) {
+				FileChunk fc = mongoTemplate.findById(chunkId(fileId, i), FileChunk.class);
+				if (fc == null)
+					throw new IOException("Chunk " + i + " of " + path + " is missing");
+				chunk = fc.getData();
+				index = i;
+			}
+			int offset = (int) (position - (long) index * chunkSize);
+			if (offset >= chunk.length)
+				throw new IOException("Chunk " + i + " of " + path + " is truncated");
+			return offset;
+		}
+
 	}
 
 }
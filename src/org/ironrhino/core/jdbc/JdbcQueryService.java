@@ -13,6 +13,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
@@ -20,8 +21,11 @@ import javax.annotation.PostConstruct;
 import javax.sql.DataSource;
 
 import org.apache.commons.lang3.StringUtils;
+import org.ironrhino.core.cache.CacheManager;
 import org.ironrhino.core.model.ResultPage;
+import org.ironrhino.core.model.ResultPage.CountStrategy;
 import org.ironrhino.core.spring.configuration.ResourcePresentConditional;
+import org.ironrhino.core.util.CodecUtils;
 import org.ironrhino.core.util.DateUtils;
 import org.ironrhino.core.util.ErrorMessage;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -54,6 +58,9 @@ public class JdbcQueryService {
 
 	private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
+	@Autowired(required = false)
+	private CacheManager cacheManager;
+
 	@Getter
 	@Setter
 	private DatabaseProduct databaseProduct;
@@ -443,7 +450,8 @@ public class JdbcQueryService {
 		boolean hasLimit = hasLimit(sql);
 		resultPage.setPaginating(!hasLimit);
 		jdbcTemplate.setQueryTimeout(queryTimeout);
-		resultPage.setTotalResults(count(sql, paramMap));
+		long totalResults = count(sql, paramMap, resultPage);
+		resultPage.setTotalResults(totalResults);
 		if (resultPage.getTotalResults() > getCsvMaxRows() && (hasLimit || !(databaseProduct == DatabaseProduct.MYSQL
 				|| databaseProduct == DatabaseProduct.MARIADB || databaseProduct == DatabaseProduct.POSTGRESQL
 				|| databaseProduct == DatabaseProduct.H2 || databaseProduct == DatabaseProduct.HSQL
@@ -454,12 +462,169 @@ public class JdbcQueryService {
 			throw new ErrorMessage("query.result.number.exceed", new Object[] { getCsvMaxRows() });
 		long time = System.currentTimeMillis();
 		jdbcTemplate.setQueryTimeout(queryTimeout);
-		resultPage.setResult(query(sql, paramMap, resultPage.getPageSize(),
-				(resultPage.getPageNo() - 1) * resultPage.getPageSize()));
+		if (resultPage.isKeysetPaginating()) {
+			queryByKeyset(sql, paramMap, resultPage);
+		} else if (!hasLimit && (totalResults < 0 || resultPage.isEstimated())) {
+			// fetch one more row to determine whether next page exists
+			List<Map<String, Object>> list = query(sql, paramMap, resultPage.getPageSize() + 1,
+					(resultPage.getPageNo() - 1) * resultPage.getPageSize());
+			boolean hasNext = list.size() > resultPage.getPageSize();
+			resultPage.setNextPageAvailable(hasNext);
+			resultPage.setResult(hasNext ? list.subList(0, resultPage.getPageSize()) : list);
+		} else {
+			resultPage.setResult(query(sql, paramMap, resultPage.getPageSize(),
+					(resultPage.getPageNo() - 1) * resultPage.getPageSize()));
+		}
 		resultPage.setTookInMillis(System.currentTimeMillis() - time);
 		return resultPage;
 	}
 
+	private long count(String sql, Map<String, ?> paramMap, ResultPage<?> resultPage) {
+		CountStrategy strategy = resultPage.getCountStrategy();
+		if (strategy == CountStrategy.SKIP)
+			return -1;
+		if (strategy == CountStrategy.ESTIMATE) {
+			String alias = "tfc";
+			while (sql.contains(alias))
+				alias += "0";
+			String countSql = new StringBuilder("select 1 as c from (\n").append(SqlUtils.trimOrderby(sql))
+					.append("\n) ").append(alias).toString();
+			String limitedSql = limit(countSql, ResultPage.ESTIMATED_COUNT_LIMIT + 1);
+			long count;
+			if (limitedSql != null) {
+				// limit and count in database instead of fetching rows
+				Long c = namedParameterJdbcTemplate.queryForObject(new StringBuilder("select count(*) from (\n")
+						.append(limitedSql).append("\n) ").append(alias).append('0').toString(), paramMap, Long.class);
+				if (c == null)
+					throw new RuntimeException("Unexpected null");
+				count = c;
+			} else {
+				count = query(countSql, paramMap, ResultPage.ESTIMATED_COUNT_LIMIT + 1).size();
+			}
+			resultPage.setEstimated(count > ResultPage.ESTIMATED_COUNT_LIMIT);
+			return Math.min(count, ResultPage.ESTIMATED_COUNT_LIMIT);
+		}
+		if (strategy == CountStrategy.CACHE && cacheManager != null) {
+			String key = CodecUtils.md5Hex(sql + ':' + paramMap);
+			Object cached = cacheManager.get(key, ResultPage.COUNT_CACHE_NAMESPACE);
+			if (cached instanceof Long)
+				return (Long) cached;
+			long count = count(sql, paramMap);
+			cacheManager.put(key, count, ResultPage.COUNT_CACHE_TIME_TO_LIVE, TimeUnit.SECONDS,
+					ResultPage.COUNT_CACHE_NAMESPACE);
+			return count;
+		}
+		return count(sql, paramMap);
+	}
+
+	private void queryByKeyset(String sql, Map<String, Object> paramMap, ResultPage<Map<String, Object>> resultPage) {
+		String column = resultPage.getKeysetName();
+		if (!KEYSET_PATTERN.matcher(column).matches())
+			throw new IllegalArgumentException("Invalid keyset column: " + column);
+		boolean desc = resultPage.isKeysetDescending();
+		String alias = "tfk";
+		while (sql.contains(alias))
+			alias += "0";
+		Map<String, Object> params = paramMap != null ? new HashMap<>(paramMap) : new HashMap<>();
+		StringBuilder sb = new StringBuilder("select * from (\n").append(SqlUtils.trimOrderby(sql)).append("\n) ")
+				.append(alias);
+		String cursor = resultPage.getCursor();
+		if (StringUtils.isNotBlank(cursor)) {
+			String name = "keysetCursor";
+			while (params.containsKey(name))
+				name += "0";
+			sb.append(" where ").append(alias).append('.').append(column).append(desc ? " < :" : " > :").append(name);
+			params.put(name, fromCursor(cursor));
+		}
+		sb.append(" order by ").append(alias).append('.').append(column);
+		if (desc)
+			sb.append(" desc");
+		List<Map<String, Object>> list = query(sb.toString(), params, resultPage.getPageSize() + 1);
+		boolean hasNext = list.size() > resultPage.getPageSize();
+		if (hasNext)
+			list = list.subList(0, resultPage.getPageSize());
+		resultPage.setNextPageAvailable(hasNext);
+		resultPage.setNextCursor(hasNext ? toCursor(list.get(list.size() - 1).get(column)) : null);
+		resultPage.setResult(list);
+	}
+
+	// cursor carries type of keyset column, so that it's bound as the same type
+	private static String toCursor(Object value) {
+		if (value == null)
+			return null;
+		String type;
+		if (value instanceof java.sql.Timestamp) {
+			type = "timestamp";
+		} else if (value instanceof java.sql.Date) {
+			type = "date";
+		} else if (value instanceof java.sql.Time) {
+			type = "time";
+		} else if (value instanceof Long || value instanceof Integer || value instanceof Short
+				|| value instanceof Byte) {
+			type = "long";
+		} else if (value instanceof Number) {
+			type = "decimal";
+			value = new BigDecimal(value.toString()).toPlainString();
+		} else {
+			type = "string";
+		}
+		return type + ':' + value;
+	}
+
+	private static Object fromCursor(String cursor) {
+		int index = cursor.indexOf(':');
+		String value = cursor.substring(index + 1);
+		try {
+			switch (index > 0 ? cursor.substring(0, index) : "") {
+			case "timestamp":
+				return java.sql.Timestamp.valueOf(value);
+			case "date":
+				return java.sql.Date.valueOf(value);
+			case "time":
+				return java.sql.Time.valueOf(value);
+			case "long":
+				return Long.valueOf(value);
+			case "decimal":
+				return new BigDecimal(value);
+			case "string":
+				return value;
+			default:
+				break;
+			}
+		} catch (IllegalArgumentException e) {
+			// malformed value
+		}
+		throw new IllegalArgumentException("Invalid cursor: " + cursor);
+	}
+
+	/**
+	 * @return sql limited to first rows, or null if not supported by database
+	 */
+	private String limit(String sql, int limit) {
+		sql = new StringBuilder(sql.length() + 2).append('\n').append(sql).append('\n').toString();
+		if (databaseProduct == DatabaseProduct.ORACLE && databaseMajorVersion >= 12
+				|| databaseProduct == DatabaseProduct.POSTGRESQL
+						&& (databaseMajorVersion > 8 || databaseMajorVersion == 8 && databaseMinorVersion >= 4)
+				|| databaseProduct == DatabaseProduct.DERBY || databaseProduct == DatabaseProduct.DB2)
+			return sql + " fetch first " + limit + " rows only";
+		if (databaseProduct == DatabaseProduct.SQLSERVER && databaseMajorVersion >= 11)
+			return sql + " order by (select 0) offset 0 rows fetch first " + limit + " rows only";
+		if (databaseProduct == DatabaseProduct.MYSQL || databaseProduct == DatabaseProduct.MARIADB
+				|| databaseProduct == DatabaseProduct.POSTGRESQL || databaseProduct == DatabaseProduct.H2
+				|| databaseProduct == DatabaseProduct.HSQL)
+			return sql + " limit " + limit;
+		if (databaseProduct == DatabaseProduct.ORACLE)
+			return "select * from ( " + sql + " ) where rownum <= " + limit;
+		if (databaseProduct == DatabaseProduct.SQLSERVER || databaseProduct == DatabaseProduct.SYBASE
+				|| databaseProduct == DatabaseProduct.INFORMIX) {
+			int position = sql.toLowerCase(Locale.ROOT).indexOf("select") + 6;
+			return new StringBuilder(sql.length() + 16).append(sql)
+					.insert(position, (databaseProduct == DatabaseProduct.INFORMIX ? " first " : " top ") + limit)
+					.toString();
+		}
+		return null;
+	}
+
 	@Transactional(readOnly = true)
 	public void query(String sql, Map<String, ?> paramMap, final LineHandler lh) {
 		query(sql, paramMap, new RowHandler() {
@@ -549,4 +714,6 @@ public class JdbcQueryService {
 	private static final Pattern NEXT_PATTERN = Pattern.compile("\\s+next\\s+\\d+\\s+", Pattern.CASE_INSENSITIVE);
 	private static final Pattern ROWNUM_PATTERN = Pattern.compile("\\s+rownum", Pattern.CASE_INSENSITIVE);
 
+	private static final Pattern KEYSET_PATTERN = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+
 }
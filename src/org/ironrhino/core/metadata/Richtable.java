@@ -8,6 +8,7 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 
 import org.ironrhino.core.model.ResultPage;
+import org.ironrhino.core.model.ResultPage.CountStrategy;
 
 @Target(TYPE)
 @Retention(RUNTIME)
@@ -26,6 +27,11 @@ public @interface Richtable {
 
 	boolean fixPageSize() default false;
 
+	// ordered unique property for keyset pagination, e.g. "id desc"
+	String keyset() default "";
+
+	CountStrategy countStrategy() default CountStrategy.EXACT;
+
 	boolean showPageSize() default true;
 
 	boolean showCheckColumn() default true;
@@ -5,6 +5,7 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -27,8 +28,16 @@ public class ResultPage<T> implements Serializable {
 
 	public static final String PAGESIZE_PARAM_NAME = "ps";
 
+	public static final String CURSOR_PARAM_NAME = "cursor";
+
 	public static final int DEFAULT_MAX_PAGESIZE = 1000;
 
+	public static final int ESTIMATED_COUNT_LIMIT = 10 * DEFAULT_MAX_PAGESIZE;
+
+	public static final String COUNT_CACHE_NAMESPACE = "resultPage.count";
+
+	public static final int COUNT_CACHE_TIME_TO_LIVE = 60;
+
 	public static ThreadLocal<Integer> MAX_PAGESIZE = new ThreadLocal<Integer>() {
 		@Override
 		protected Integer initialValue() {
@@ -59,7 +68,34 @@ public class ResultPage<T> implements Serializable {
 	@JsonIgnore
 	@Getter
 	@Setter
-	private boolean counting = true;
+	private CountStrategy countStrategy = CountStrategy.EXACT;
+
+	// totalResults is a lower bound if counting is stopped at limit
+	@JsonIgnore
+	@Getter
+	@Setter
+	private boolean estimated;
+
+	// ordered unique property or column such as "id" or "id desc"
+	@JsonIgnore
+	@Getter
+	@Setter
+	private String keyset;
+
+	// keyset value of last row of previous page
+	@Getter
+	@Setter
+	private String cursor;
+
+	@Getter
+	@Setter
+	private String nextCursor;
+
+	// null if not determined by fetching one more row
+	@JsonIgnore
+	@Getter
+	@Setter
+	private Boolean nextPageAvailable;
 
 	@JsonIgnore
 	@Getter
@@ -92,6 +128,33 @@ public class ResultPage<T> implements Serializable {
 		return paginating == null || paginating;
 	}
 
+	@JsonIgnore
+	public boolean isCounting() {
+		return countStrategy != CountStrategy.SKIP;
+	}
+
+	public void setCounting(boolean counting) {
+		this.countStrategy = counting ? CountStrategy.EXACT : CountStrategy.SKIP;
+	}
+
+	@JsonIgnore
+	public boolean isKeysetPaginating() {
+		return StringUtils.isNotBlank(keyset) && isPaginating();
+	}
+
+	@JsonIgnore
+	public String getKeysetName() {
+		return StringUtils.isBlank(keyset) ? null : keyset.trim().split("\\s+", 2)[0];
+	}
+
+	@JsonIgnore
+	public boolean isKeysetDescending() {
+		if (StringUtils.isBlank(keyset))
+			return false;
+		String[] arr = keyset.trim().split("\\s+", 2);
+		return arr.length == 2 && arr[1].equalsIgnoreCase("desc");
+	}
+
 	public int getPageNo() {
 		if (start >= 0)
 			return start / pageSize + 1;
@@ -112,7 +175,10 @@ public class ResultPage<T> implements Serializable {
 	}
 
 	public int getTotalPage() {
-		totalPage = (int) (totalResults % pageSize == 0 ? totalResults / pageSize : totalResults / pageSize + 1);
+		totalPage = totalResults < 0 ? 0
+				: (int) (totalResults % pageSize == 0 ? totalResults / pageSize : totalResults / pageSize + 1);
+		if (nextPageAvailable != null)
+			totalPage = Math.max(totalPage, getPageNo() + (nextPageAvailable ? 1 : 0));
 		return totalPage;
 	}
 
@@ -132,6 +198,8 @@ public class ResultPage<T> implements Serializable {
 
 	@JsonIgnore
 	public boolean isLast() {
+		if (nextPageAvailable != null)
+			return !nextPageAvailable;
 		return this.pageNo >= getTotalPage();
 	}
 
@@ -152,7 +220,7 @@ public class ResultPage<T> implements Serializable {
 
 	@JsonIgnore
 	public boolean isCanListAll() {
-		return this.totalResults <= DEFAULT_MAX_PAGESIZE;
+		return this.totalResults >= 0 && !this.estimated && this.totalResults <= DEFAULT_MAX_PAGESIZE;
 	}
 
 	public String renderUrl(int pn) {
@@ -170,17 +238,33 @@ public class ResultPage<T> implements Serializable {
 			if (pn <= 1)
 				return sb.toString();
 			else
-				return sb.append(StringUtils.isNotBlank(parameterString) ? "&" : "?").append(PAGENO_PARAM_NAME)
-						.append("=").append(pn).toString();
+				sb.append(StringUtils.isNotBlank(parameterString) ? "&" : "?").append(PAGENO_PARAM_NAME).append("=")
+						.append(pn);
 		} else {
 			if (pn <= 1)
 				return sb.append(StringUtils.isNotBlank(parameterString) ? "&" : "?").append(PAGESIZE_PARAM_NAME)
 						.append("=").append(pageSize).toString();
 			else
-				return sb.append(StringUtils.isNotBlank(parameterString) ? "&" : "?").append(PAGENO_PARAM_NAME)
-						.append("=").append(pn).append("&").append(PAGESIZE_PARAM_NAME).append("=").append(pageSize)
-						.toString();
+				sb.append(StringUtils.isNotBlank(parameterString) ? "&" : "?").append(PAGENO_PARAM_NAME).append("=")
+						.append(pn).append("&").append(PAGESIZE_PARAM_NAME).append("=").append(pageSize);
 		}
+		// only next page is reachable by keyset
+		if (isKeysetPaginating() && nextCursor != null && pn == getPageNo() + 1) {
+			try {
+				sb.append("&").append(CURSOR_PARAM_NAME).append("=").append(URLEncoder.encode(nextCursor, "UTF-8"));
+			} catch (UnsupportedEncodingException e) {
+				e.printStackTrace();
+			}
+		}
+		return sb.toString();
+	}
+
+	public static String toCursor(Object value) {
+		if (value == null)
+			return null;
+		if (value instanceof Date)
+			return String.valueOf(((Date) value).getTime());
+		return value.toString();
 	}
 
 	private String _parameterString;
@@ -193,7 +277,7 @@ public class ResultPage<T> implements Serializable {
 				String name = entry.getKey();
 				String[] values = entry.getValue();
 				if (values.length == 1 && values[0].equals("") || name.equals("_") || name.equals(PAGENO_PARAM_NAME)
-						|| name.equals(PAGESIZE_PARAM_NAME)
+						|| name.equals(PAGESIZE_PARAM_NAME) || name.equals(CURSOR_PARAM_NAME)
 						|| name.startsWith(StringUtils.uncapitalize(ResultPage.class.getSimpleName()) + '.'))
 					continue;
 				try {
@@ -212,4 +296,19 @@ public class ResultPage<T> implements Serializable {
 		return _parameterString;
 	}
 
+	public static enum CountStrategy {
+
+		EXACT,
+
+		// don't count, determine last page by fetching one more row
+		SKIP,
+
+		// count at most a limited number of rows
+		ESTIMATE,
+
+		// exact count cached for a while
+		CACHE;
+
+	}
+
 }
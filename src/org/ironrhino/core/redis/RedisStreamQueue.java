@@ -0,0 +1,330 @@
+package org.ironrhino.core.redis;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.ironrhino.core.spring.configuration.PriorityQualifier;
+import org.ironrhino.core.util.AppInfo;
+import org.ironrhino.core.util.NameableThreadFactory;
+import org.ironrhino.core.util.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import io.lettuce.core.Consumer;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.Limit;
+import io.lettuce.core.Range;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XAddArgs;
+import io.lettuce.core.XClaimArgs;
+import io.lettuce.core.XReadArgs;
+import io.lettuce.core.XReadArgs.StreamOffset;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.models.stream.PendingMessage;
+import io.lettuce.core.models.stream.PendingParser;
+import io.lettuce.core.output.StatusOutput;
+import io.lettuce.core.protocol.CommandArgs;
+import io.lettuce.core.protocol.CommandType;
+import lombok.Setter;
+
+/**
+ * Queue backed by Redis Streams (requires Redis 5.0+), messages are read in
+ * batch by consumer group and acknowledged after consumed successfully, failed
+ * messages remain pending and are claimed again after {@link #claimIdleTime},
+ * they are moved to {@link #deadLetterQueueName} after {@link #maxDeliveries}
+ * deliveries. Lettuce connection is required, and {@link #queueName} and
+ * {@link #deadLetterQueueName} should share a hash tag for Redis Cluster.
+ */
+public abstract class RedisStreamQueue<T extends Serializable> implements org.ironrhino.core.message.Queue<T> {
+
+	private static final byte[] FIELD_PAYLOAD = "payload".getBytes(StandardCharsets.UTF_8);
+
+	private static final long COMMAND_TIMEOUT = 10000;
+
+	// KEYS: queue, dead letter queue ARGV: group, id, fields and values
+	private static final byte[] MOVE_TO_DEAD_LETTER_SCRIPT = ("if redis.call('xack',KEYS[1],ARGV[1],ARGV[2]) == 1 then "
+			+ "redis.call('xadd',KEYS[2],'*',unpack(ARGV,3)) redis.call('xdel',KEYS[1],ARGV[2]) return 1 end return 0")
+					.getBytes(StandardCharsets.UTF_8);
+
+	protected Logger logger = LoggerFactory.getLogger(getClass());
+
+	@Setter
+	protected String queueName;
+
+	@Setter
+	protected boolean consuming;
+
+	@Setter
+	protected String groupName;
+
+	@Setter
+	protected int concurrency = 1;
+
+	@Setter
+	protected int batchSize = 10;
+
+	// max sleep in milliseconds while queue is empty
+	@Setter
+	protected long pollInterval = 1000;
+
+	@Setter
+	protected long claimIdleTime = 60000;
+
+	@Setter
+	protected int maxDeliveries = 3;
+
+	@Setter
+	protected String deadLetterQueueName;
+
+	// approximate, 0 means unbounded
+	@Setter
+	protected long maxLength;
+
+	private AtomicBoolean stopConsuming = new AtomicBoolean();
+
+	private ExecutorService consumers;
+
+	@Setter
+	@Autowired
+	@PriorityQualifier({ "mqRedisTemplate", "globalRedisTemplate" })
+	private RedisTemplate<String, T> mqRedisTemplate;
+
+	private byte[] key;
+
+	private byte[] group;
+
+	public RedisStreamQueue() {
+		Class<?> clazz = ReflectionUtils.getGenericClass(getClass(), RedisStreamQueue.class);
+		queueName = clazz.getName();
+	}
+
+	@PostConstruct
+	public void afterPropertiesSet() {
+		if (groupName == null)
+			groupName = AppInfo.getAppName();
+		if (deadLetterQueueName == null)
+			deadLetterQueueName = queueName + ".dead";
+		// spring data redis doesn't support streams yet
+		mqRedisTemplate.execute((RedisCallback<Void>) conn -> {
+			Object nativeConnection = conn.getNativeConnection();
+			if (!(nativeConnection instanceof RedisClusterAsyncCommands))
+				throw new IllegalStateException(getClass().getName() + " requires lettuce connection but found "
+						+ (nativeConnection != null ? nativeConnection.getClass().getName() : null));
+			return null;
+		});
+		key = serializeKey(queueName);
+		group = serializeKey(groupName);
+		if (consuming) {
+			createGroup();
+			consumers = Executors.newFixedThreadPool(concurrency,
+					new NameableThreadFactory("redisStreamQueue-" + getClass().getSimpleName()));
+			for (int i = 0; i < concurrency; i++) {
+				String consumerName = AppInfo.getInstanceId(true) + '-' + i;
+				consumers.execute(() -> consumeLoop(consumerName));
+			}
+		}
+	}
+
+	@PreDestroy
+	public void stop() {
+		stopConsuming.set(true);
+		if (consumers != null)
+			consumers.shutdownNow();
+	}
+
+	@Override
+	public void produce(T message) {
+		XAddArgs args = new XAddArgs();
+		if (maxLength > 0)
+			args.maxlen(maxLength).approximateTrimming();
+		execute(commands -> commands.xadd(key, args,
+				Collections.singletonMap(FIELD_PAYLOAD, serializeValue(message))));
+	}
+
+	private void consumeLoop(String consumerName) {
+		Consumer<byte[]> consumer = Consumer.from(group, serializeKey(consumerName));
+		// redeliver entries left pending by previous run of the same consumer
+		String offset = "0";
+		long idle = 0;
+		long lastClaimed = System.currentTimeMillis();
+		while (!stopConsuming.get()) {
+			try {
+				if (System.currentTimeMillis() - lastClaimed >= claimIdleTime) {
+					lastClaimed = System.currentTimeMillis();
+					reclaim(consumer);
+				}
+				StreamOffset<byte[]> streamOffset = offset == null ? StreamOffset.lastConsumed(key)
+						: StreamOffset.from(key, offset);
+				List<StreamMessage<byte[], byte[]>> messages = execute(
+						commands -> commands.xreadgroup(consumer, XReadArgs.Builder.count(batchSize), streamOffset));
+				if (messages == null || messages.isEmpty()) {
+					if (offset != null) {
+						offset = null;
+						continue;
+					}
+					// back off while queue is empty instead of blocking shared connection
+					idle = Math.min(Math.max(idle * 2, 10), pollInterval);
+					Thread.sleep(idle);
+					continue;
+				}
+				idle = 0;
+				if (offset != null)
+					offset = messages.get(messages.size() - 1).getId();
+				handle(messages);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (Throwable e) {
+				logger.error(e.getMessage(), e);
+				try {
+					Thread.sleep(pollInterval);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+	}
+
+	private void handle(List<StreamMessage<byte[], byte[]>> messages) {
+		List<String> acknowledged = new ArrayList<>(messages.size());
+		for (StreamMessage<byte[], byte[]> message : messages) {
+			if (stopConsuming.get())
+				break;
+			try {
+				consume(deserialize(message));
+				acknowledged.add(message.getId());
+			} catch (Throwable e) {
+				// leave pending, it will be claimed later
+				logger.error("Failed to consume message " + message.getId() + " of " + queueName, e);
+			}
+		}
+		if (!acknowledged.isEmpty())
+			execute(commands -> commands.xack(key, group, acknowledged.toArray(new String[acknowledged.size()])));
+	}
+
+	private void reclaim(Consumer<byte[]> consumer) {
+		String start = "-";
+		while (!stopConsuming.get()) {
+			Range<String> range = Range.create(start, "+");
+			List<Object> result = execute(commands -> commands.xpending(key, group, range, Limit.from(batchSize)));
+			if (result == null || result.isEmpty())
+				return;
+			List<PendingMessage> pendingMessages = PendingParser.parseRange(result);
+			List<String> retries = new ArrayList<>();
+			List<String> exhausted = new ArrayList<>();
+			for (PendingMessage pm : pendingMessages) {
+				if (pm.getMsSinceLastDelivery() < claimIdleTime)
+					continue;
+				if (pm.getRedeliveryCount() >= maxDeliveries)
+					exhausted.add(pm.getId());
+				else
+					retries.add(pm.getId());
+			}
+			if (!exhausted.isEmpty()) {
+				// claim first to make sure only one consumer moves them
+				for (StreamMessage<byte[], byte[]> message : claim(consumer, exhausted))
+					moveToDeadLetterQueue(message);
+			}
+			if (!retries.isEmpty())
+				handle(claim(consumer, retries));
+			if (pendingMessages.size() < batchSize)
+				return;
+			// range of XPENDING is inclusive
+			start = nextId(pendingMessages.get(pendingMessages.size() - 1).getId());
+		}
+	}
+
+	private void moveToDeadLetterQueue(StreamMessage<byte[], byte[]> message) {
+		List<byte[]> keysAndArgs = new ArrayList<>();
+		keysAndArgs.add(key);
+		keysAndArgs.add(serializeKey(deadLetterQueueName));
+		keysAndArgs.add(group);
+		keysAndArgs.add(message.getId().getBytes(StandardCharsets.UTF_8));
+		for (Map.Entry<byte[], byte[]> entry : message.getBody().entrySet()) {
+			keysAndArgs.add(entry.getKey());
+			keysAndArgs.add(entry.getValue());
+		}
+		Long moved = mqRedisTemplate.execute((RedisCallback<Long>) conn -> conn.eval(MOVE_TO_DEAD_LETTER_SCRIPT,
+				ReturnType.INTEGER, 2, keysAndArgs.toArray(new byte[keysAndArgs.size()][])));
+		if (moved != null && moved == 1)
+			logger.warn("Move message {} of {} to {} after {} deliveries", message.getId(), queueName,
+					deadLetterQueueName, maxDeliveries);
+	}
+
+	private List<StreamMessage<byte[], byte[]>> claim(Consumer<byte[]> consumer, List<String> ids) {
+		List<StreamMessage<byte[], byte[]>> messages = execute(commands -> commands.xclaim(key, consumer,
+				XClaimArgs.Builder.minIdleTime(claimIdleTime), ids.toArray(new String[ids.size()])));
+		if (messages == null)
+			return Collections.emptyList();
+		// entries trimmed or deleted are returned as null
+		messages.removeIf(m -> m == null || m.getBody() == null);
+		return messages;
+	}
+
+	private void createGroup() {
+		// lettuce doesn't support MKSTREAM yet
+		CommandArgs<byte[], byte[]> args = new CommandArgs<>(ByteArrayCodec.INSTANCE).add("CREATE").addKey(key)
+				.addKey(group).add("0").add("MKSTREAM");
+		try {
+			execute(commands -> commands.dispatch(CommandType.XGROUP, new StatusOutput<>(ByteArrayCodec.INSTANCE),
+					args));
+		} catch (Exception e) {
+			String message = e.getMessage();
+			if (message == null || !message.contains("BUSYGROUP"))
+				throw e;
+		}
+	}
+
+	private static String nextId(String id) {
+		int i = id.indexOf('-');
+		return id.substring(0, i + 1) + (Long.parseLong(id.substring(i + 1)) + 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <R> R execute(Function<RedisClusterAsyncCommands<byte[], byte[]>, RedisFuture<R>> function) {
+		return mqRedisTemplate.execute((RedisCallback<R>) conn -> LettuceFutures.awaitOrCancel(
+				function.apply((RedisClusterAsyncCommands<byte[], byte[]>) conn.getNativeConnection()),
+				COMMAND_TIMEOUT, TimeUnit.MILLISECONDS));
+	}
+
+	@SuppressWarnings("unchecked")
+	private byte[] serializeKey(String name) {
+		return ((RedisSerializer<String>) mqRedisTemplate.getKeySerializer()).serialize(name);
+	}
+
+	@SuppressWarnings("unchecked")
+	private byte[] serializeValue(T message) {
+		return ((RedisSerializer<T>) mqRedisTemplate.getValueSerializer()).serialize(message);
+	}
+
+	@SuppressWarnings("unchecked")
+	private T deserialize(StreamMessage<byte[], byte[]> message) {
+		byte[] payload = null;
+		for (Map.Entry<byte[], byte[]> entry : message.getBody().entrySet())
+			if (Arrays.equals(FIELD_PAYLOAD, entry.getKey()))
+				payload = entry.getValue();
+		return (T) mqRedisTemplate.getValueSerializer().deserialize(payload);
+	}
+
+}
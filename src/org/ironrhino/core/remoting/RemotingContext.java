@@ -11,6 +11,8 @@ public class RemotingContext {
 
 	public static final String CONTENT_TYPE_FST_SERIALIZED_OBJECT = "application/x-fst-serialized-object";
 
+	public static final String CONTENT_TYPE_BINARY_SERIALIZED_OBJECT = "application/x-binary-serialized-object";
+
 	public static final String CONTENT_TYPE_JSON_RPC = "application/json-rpc";
 
 	public static final String CONTENT_TYPE_SMILE_RPC = "application/smile-rpc";
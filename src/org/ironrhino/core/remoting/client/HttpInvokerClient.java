@@ -7,6 +7,8 @@ import java.net.ConnectException;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import javax.annotation.PostConstruct;
 
@@ -181,16 +183,31 @@ public class HttpInvokerClient extends FallbackSupportMethodInterceptorFactoryBe
 			RemoteAccessException rae = convertHttpInvokerAccessException(ex);
 			throw (rae != null ? rae : ex);
 		}
-		try {
-			return recreateRemoteInvocationResult(result);
-		} catch (Throwable ex) {
-			if (result.hasInvocationTargetException()) {
-				throw ex;
-			} else {
-				throw new RemoteInvocationFailureException("Invocation of method [" + methodInvocation.getMethod()
-						+ "] failed in HTTP invoker remote service at [" + serviceUrl + "]", ex);
+		return recreateRemoteInvocationResult(result, methodInvocation);
+	}
+
+	@Override
+	protected CompletableFuture<Object> doInvokeAsync(MethodInvocation methodInvocation) {
+		if (!httpInvokerRequestExecutor.supportsAsync())
+			return super.doInvokeAsync(methodInvocation);
+		RemoteInvocation invocation = httpInvokerRequestExecutor.getSerializer()
+				.createRemoteInvocation(methodInvocation);
+		CompletableFuture<Object> future = new CompletableFuture<>();
+		executeRequestAsync(invocation, methodInvocation).whenComplete((result, ex) -> {
+			if (ex != null) {
+				if (ex instanceof CompletionException && ex.getCause() != null)
+					ex = ex.getCause();
+				RemoteAccessException rae = convertHttpInvokerAccessException(ex);
+				future.completeExceptionally(rae != null ? rae : ex);
+				return;
 			}
-		}
+			try {
+				future.complete(recreateRemoteInvocationResult(result, methodInvocation));
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
 	}
 
 	protected RemoteInvocationResult executeRequest(RemoteInvocation invocation, MethodInvocation methodInvocation)
@@ -201,57 +218,47 @@ public class HttpInvokerClient extends FallbackSupportMethodInterceptorFactoryBe
 				: doExecuteRequest(invocation, methodInvocation);
 	}
 
+	protected CompletableFuture<RemoteInvocationResult> executeRequestAsync(RemoteInvocation invocation,
+			MethodInvocation methodInvocation) {
+		return circuitBreakerEnabled
+				? CircuitBreaking.executeCompletableFuture(getServiceInterface().getName(),
+						ex -> ex instanceof IOException, () -> doExecuteRequestAsync(invocation, methodInvocation))
+				: doExecuteRequestAsync(invocation, methodInvocation);
+	}
+
 	protected RemoteInvocationResult doExecuteRequest(RemoteInvocation invocation, MethodInvocation methodInvocation)
 			throws Exception {
-		String requestId = MDC.get(AccessFilter.MDC_KEY_REQUEST_ID);
-		boolean requestIdGenerated = false;
-		if (requestId == null) {
-			requestId = CodecUtils.generateRequestId();
-			MDC.put(AccessFilter.MDC_KEY_REQUEST_ID, requestId);
-			MDC.put("request", "request:" + requestId);
-			requestIdGenerated = true;
-		}
-		String service = ReflectionUtils.stringify(methodInvocation.getMethod());
-		MDC.put("role", "CLIENT");
-		MDC.put("service", service);
-		if (loggingPayload) {
-			Object payload;
-			Object[] arguments = methodInvocation.getArguments();
-			String[] parameterNames = ReflectionUtils.getParameterNames(methodInvocation.getMethod());
-			if (parameterNames != null) {
-				Map<String, Object> parameters = new LinkedHashMap<>();
-				for (int i = 0; i < parameterNames.length; i++)
-					parameters.put(parameterNames[i], arguments[i]);
-				payload = parameters;
-			} else {
-				payload = arguments;
-			}
-			remotingLogger.info("Request: {}", JsonDesensitizer.DEFAULT_INSTANCE.toJson(payload));
-		}
+		boolean requestIdGenerated = prepareMDC(methodInvocation);
+		logRequest(methodInvocation);
 		RemoteInvocationResult result;
 		try {
 			result = doExecuteRequest(invocation, methodInvocation, maxAttempts);
 			result = transformResult(invocation, methodInvocation, result);
-			if (loggingPayload) {
-				if (!result.hasInvocationTargetException()) {
-					remotingLogger.info("Response: {}", JsonDesensitizer.DEFAULT_INSTANCE.toJson(result.getValue()));
-				} else {
-					InvocationTargetException ite = (InvocationTargetException) result.getException();
-					if (ite != null)
-						remotingLogger.error("Error:", ite.getTargetException());
-				}
-			}
-
+			logResponse(result);
 		} finally {
-			if (requestIdGenerated) {
-				MDC.remove(AccessFilter.MDC_KEY_REQUEST_ID);
-				MDC.remove("request");
-			}
-			MDC.remove("role");
+			cleanupMDC(requestIdGenerated);
 		}
 		return result;
 	}
 
+	protected CompletableFuture<RemoteInvocationResult> doExecuteRequestAsync(RemoteInvocation invocation,
+			MethodInvocation methodInvocation) {
+		boolean requestIdGenerated = prepareMDC(methodInvocation);
+		try {
+			logRequest(methodInvocation);
+			Map<String, String> contextMap = MDC.getCopyOfContextMap();
+			CompletableFuture<RemoteInvocationResult> future = new CompletableFuture<>();
+			doExecuteRequestAsync(invocation, methodInvocation, maxAttempts, contextMap, future);
+			return future.thenApply(result -> {
+				RemoteInvocationResult transformed = transformResult(invocation, methodInvocation, result);
+				runWithMDC(contextMap, () -> logResponse(transformed));
+				return transformed;
+			});
+		} finally {
+			cleanupMDC(requestIdGenerated);
+		}
+	}
+
 	protected RemoteInvocationResult doExecuteRequest(RemoteInvocation invocation, MethodInvocation methodInvocation,
 			int maxAttempts) throws Exception {
 		String method = null;
@@ -259,71 +266,179 @@ public class HttpInvokerClient extends FallbackSupportMethodInterceptorFactoryBe
 			method = ReflectionUtils.stringify(methodInvocation.getMethod(), false, true);
 		int remainingAttempts = maxAttempts;
 		do {
-			String targetServiceUrl;
-			if (polling) {
-				targetServiceUrl = discoverServiceUrl(true);
-			} else {
-				targetServiceUrl = serviceUrl;
-				if (targetServiceUrl == null) {
-					targetServiceUrl = discoverServiceUrl(false);
-				}
-			}
+			String targetServiceUrl = resolveServiceUrl();
 			String targetDiscoveredHost = discoveredHost;
 			long time = System.currentTimeMillis();
 			try {
 				RemoteInvocationResult result = httpInvokerRequestExecutor.executeRequest(targetServiceUrl, invocation,
 						methodInvocation);
-				if (urlFromDiscovery) {
-					time = System.currentTimeMillis() - time;
-					remotingLogger.info("Invoked to {} success in {}ms", targetDiscoveredHost, time);
-					if (serviceStats != null) {
-						serviceStats.clientSideEmit(targetDiscoveredHost, getServiceInterface().getName(), method, time,
-								false);
-					}
-				}
+				emitStats(targetDiscoveredHost, method, time, false);
 				return result;
 			} catch (Exception e) {
 				remotingLogger.error("Exception:", e.getCause() != null ? e.getCause() : e);
-				if (urlFromDiscovery) {
-					time = System.currentTimeMillis() - time;
-					remotingLogger.info("Invoked to {} fail in {}ms", targetDiscoveredHost, time);
-					if (serviceStats != null) {
-						serviceStats.clientSideEmit(targetDiscoveredHost, getServiceInterface().getName(), method, time,
-								true);
-					}
-				}
+				emitStats(targetDiscoveredHost, method, time, true);
 				if (remainingAttempts <= 1)
 					throw e;
-				if ((e instanceof SerializationFailedException) && !httpInvokerRequestExecutor.getSerializer()
-						.equals(HttpInvokerSerializers.DEFAULT_SERIALIZER)) {
-					log.error("Downgrade service[{}] serialization from {} to {}: {}", getServiceInterface().getName(),
-							httpInvokerRequestExecutor.getSerializer().getSerializationType(),
-							HttpInvokerSerializers.DEFAULT_SERIALIZER.getSerializationType(), e.getMessage());
-					httpInvokerRequestExecutor.setSerializer(HttpInvokerSerializers.DEFAULT_SERIALIZER);
-					RemoteInvocation newInvocation = HttpInvokerSerializers.DEFAULT_SERIALIZER
-							.createRemoteInvocation(methodInvocation);
-					newInvocation.setAttributes(invocation.getAttributes());
-					invocation = newInvocation;
-				} else {
-					if (urlFromDiscovery) {
-						if (targetDiscoveredHost != null) {
-							serviceRegistry.evict(targetDiscoveredHost);
-						}
-						if (!polling && targetServiceUrl.equals(serviceUrl)) {
-							// avoid duplicated discoverServiceUrl, normally evict will trigger relocate
-							String newServiceUrl = discoverServiceUrl(false);
-							if (!newServiceUrl.equals(targetServiceUrl)) {
-								targetServiceUrl = newServiceUrl;
-								log.info("Relocate service url {}", targetServiceUrl);
-							}
-						}
-					}
-				}
+				invocation = recover(e, invocation, methodInvocation, targetServiceUrl, targetDiscoveredHost);
 			}
 		} while (--remainingAttempts > 0);
 		throw new MaxAttemptsExceededException(maxAttempts);
 	}
 
+	private void doExecuteRequestAsync(RemoteInvocation invocation, MethodInvocation methodInvocation,
+			int remainingAttempts, Map<String, String> contextMap, CompletableFuture<RemoteInvocationResult> future) {
+		String method = serviceStats != null
+				? ReflectionUtils.stringify(methodInvocation.getMethod(), false, true)
+				: null;
+		String targetServiceUrl;
+		try {
+			targetServiceUrl = resolveServiceUrl();
+		} catch (Exception e) {
+			future.completeExceptionally(e);
+			return;
+		}
+		String targetDiscoveredHost = discoveredHost;
+		long time = System.currentTimeMillis();
+		// stats, recovering and retrying run on callback executor instead of I/O thread
+		httpInvokerRequestExecutor
+				.executeRequestAsync(targetServiceUrl, invocation, methodInvocation, getExecutorService())
+				.whenComplete((result, ex) -> runWithMDC(contextMap, () -> {
+					if (ex == null) {
+						emitStats(targetDiscoveredHost, method, time, false);
+						future.complete(result);
+						return;
+					}
+					Throwable e = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+					remotingLogger.error("Exception:", e.getCause() != null ? e.getCause() : e);
+					emitStats(targetDiscoveredHost, method, time, true);
+					if (remainingAttempts <= 1) {
+						future.completeExceptionally(e);
+						return;
+					}
+					RemoteInvocation newInvocation;
+					try {
+						newInvocation = recover(e, invocation, methodInvocation, targetServiceUrl,
+								targetDiscoveredHost);
+					} catch (Exception ee) {
+						future.completeExceptionally(ee);
+						return;
+					}
+					doExecuteRequestAsync(newInvocation, methodInvocation, remainingAttempts - 1, contextMap, future);
+				}));
+	}
+
+	private String resolveServiceUrl() {
+		if (polling)
+			return discoverServiceUrl(true);
+		String targetServiceUrl = serviceUrl;
+		if (targetServiceUrl == null)
+			targetServiceUrl = discoverServiceUrl(false);
+		return targetServiceUrl;
+	}
+
+	private RemoteInvocation recover(Throwable e, RemoteInvocation invocation, MethodInvocation methodInvocation,
+			String targetServiceUrl, String targetDiscoveredHost) {
+		if ((e instanceof SerializationFailedException)
+				&& !httpInvokerRequestExecutor.getSerializer().equals(HttpInvokerSerializers.DEFAULT_SERIALIZER)) {
+			log.error("Downgrade service[{}] serialization from {} to {}: {}", getServiceInterface().getName(),
+					httpInvokerRequestExecutor.getSerializer().getSerializationType(),
+					HttpInvokerSerializers.DEFAULT_SERIALIZER.getSerializationType(), e.getMessage());
+			httpInvokerRequestExecutor.setSerializer(HttpInvokerSerializers.DEFAULT_SERIALIZER);
+			RemoteInvocation newInvocation = HttpInvokerSerializers.DEFAULT_SERIALIZER
+					.createRemoteInvocation(methodInvocation);
+			newInvocation.setAttributes(invocation.getAttributes());
+			return newInvocation;
+		}
+		if (urlFromDiscovery) {
+			if (targetDiscoveredHost != null) {
+				serviceRegistry.evict(targetDiscoveredHost);
+			}
+			if (!polling && targetServiceUrl.equals(serviceUrl)) {
+				// avoid duplicated discoverServiceUrl, normally evict will trigger relocate
+				String newServiceUrl = discoverServiceUrl(false);
+				if (!newServiceUrl.equals(targetServiceUrl)) {
+					log.info("Relocate service url {}", newServiceUrl);
+				}
+			}
+		}
+		return invocation;
+	}
+
+	private void emitStats(String targetDiscoveredHost, String method, long time, boolean failed) {
+		if (urlFromDiscovery) {
+			time = System.currentTimeMillis() - time;
+			remotingLogger.info("Invoked to {} {} in {}ms", targetDiscoveredHost, failed ? "fail" : "success", time);
+			if (serviceStats != null) {
+				serviceStats.clientSideEmit(targetDiscoveredHost, getServiceInterface().getName(), method, time,
+						failed);
+			}
+		}
+	}
+
+	private boolean prepareMDC(MethodInvocation methodInvocation) {
+		boolean requestIdGenerated = false;
+		if (MDC.get(AccessFilter.MDC_KEY_REQUEST_ID) == null) {
+			String requestId = CodecUtils.generateRequestId();
+			MDC.put(AccessFilter.MDC_KEY_REQUEST_ID, requestId);
+			MDC.put("request", "request:" + requestId);
+			requestIdGenerated = true;
+		}
+		MDC.put("role", "CLIENT");
+		MDC.put("service", ReflectionUtils.stringify(methodInvocation.getMethod()));
+		return requestIdGenerated;
+	}
+
+	private void cleanupMDC(boolean requestIdGenerated) {
+		if (requestIdGenerated) {
+			MDC.remove(AccessFilter.MDC_KEY_REQUEST_ID);
+			MDC.remove("request");
+		}
+		MDC.remove("role");
+	}
+
+	private static void runWithMDC(Map<String, String> contextMap, Runnable runnable) {
+		Map<String, String> previous = MDC.getCopyOfContextMap();
+		if (contextMap != null)
+			MDC.setContextMap(contextMap);
+		try {
+			runnable.run();
+		} finally {
+			if (previous != null)
+				MDC.setContextMap(previous);
+			else
+				MDC.clear();
+		}
+	}
+
+	private void logRequest(MethodInvocation methodInvocation) {
+		if (loggingPayload) {
+			Object payload;
+			Object[] arguments = methodInvocation.getArguments();
+			String[] parameterNames = ReflectionUtils.getParameterNames(methodInvocation.getMethod());
+			if (parameterNames != null) {
+				Map<String, Object> parameters = new LinkedHashMap<>();
+				for (int i = 0; i < parameterNames.length; i++)
+					parameters.put(parameterNames[i], arguments[i]);
+				payload = parameters;
+			} else {
+				payload = arguments;
+			}
+			remotingLogger.info("Request: {}", JsonDesensitizer.DEFAULT_INSTANCE.toJson(payload));
+		}
+	}
+
+	private void logResponse(RemoteInvocationResult result) {
+		if (loggingPayload) {
+			if (!result.hasInvocationTargetException()) {
+				remotingLogger.info("Response: {}", JsonDesensitizer.DEFAULT_INSTANCE.toJson(result.getValue()));
+			} else {
+				InvocationTargetException ite = (InvocationTargetException) result.getException();
+				if (ite != null)
+					remotingLogger.error("Error:", ite.getTargetException());
+			}
+		}
+	}
+
 	protected RemoteAccessException convertHttpInvokerAccessException(Throwable ex) {
 		RemoteAccessException rae = null;
 		if (ex instanceof ConnectException) {
@@ -358,6 +473,20 @@ public class HttpInvokerClient extends FallbackSupportMethodInterceptorFactoryBe
 		return result;
 	}
 
+	protected Object recreateRemoteInvocationResult(RemoteInvocationResult result, MethodInvocation methodInvocation)
+			throws Throwable {
+		try {
+			return recreateRemoteInvocationResult(result);
+		} catch (Throwable ex) {
+			if (result.hasInvocationTargetException()) {
+				throw ex;
+			} else {
+				throw new RemoteInvocationFailureException("Invocation of method [" + methodInvocation.getMethod()
+						+ "] failed in HTTP invoker remote service at [" + serviceUrl + "]", ex);
+			}
+		}
+	}
+
 	protected Object recreateRemoteInvocationResult(RemoteInvocationResult result) throws Throwable {
 		Throwable exception = result.getException();
 		if (exception != null) {
@@ -1,6 +1,8 @@
 package org.ironrhino.core.remoting.client;
 
 import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import org.aopalliance.intercept.MethodInvocation;
 import org.ironrhino.core.remoting.serializer.HttpInvokerSerializer;
@@ -44,7 +46,34 @@ public abstract class HttpInvokerRequestExecutor {
 		return doExecuteRequest(serviceUrl, methodInvocation, baos);
 	}
 
+	public boolean supportsAsync() {
+		return false;
+	}
+
+	/**
+	 * @param callbackExecutor
+	 *            executor on which response is handled and returned future is
+	 *            completed, null means the executor's own I/O thread
+	 */
+	public CompletableFuture<RemoteInvocationResult> executeRequestAsync(String serviceUrl,
+			RemoteInvocation invocation, MethodInvocation methodInvocation, Executor callbackExecutor) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(SERIALIZED_INVOCATION_BYTE_ARRAY_INITIAL_SIZE);
+		try {
+			serializer.writeRemoteInvocation(invocation, baos);
+		} catch (Exception e) {
+			CompletableFuture<RemoteInvocationResult> future = new CompletableFuture<>();
+			future.completeExceptionally(e);
+			return future;
+		}
+		return doExecuteRequestAsync(serviceUrl, methodInvocation, baos, callbackExecutor);
+	}
+
 	protected abstract RemoteInvocationResult doExecuteRequest(String serviceUrl, MethodInvocation methodInvocation,
 			ByteArrayOutputStream baos) throws Exception;
 
+	protected CompletableFuture<RemoteInvocationResult> doExecuteRequestAsync(String serviceUrl,
+			MethodInvocation methodInvocation, ByteArrayOutputStream baos, Executor callbackExecutor) {
+		throw new UnsupportedOperationException(getClass().getName() + " doesn't support async request");
+	}
+
 }
@@ -0,0 +1,320 @@
+package org.ironrhino.core.remoting.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PreDestroy;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.commons.lang3.StringUtils;
+import org.ironrhino.core.remoting.RemotingContext;
+import org.ironrhino.core.remoting.serializer.HttpInvokerSerializer;
+import org.ironrhino.core.remoting.serializer.HttpInvokerSerializers;
+import org.ironrhino.core.servlet.AccessFilter;
+import org.ironrhino.core.util.AppInfo;
+import org.ironrhino.core.util.NameableThreadFactory;
+import org.slf4j.MDC;
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.remoting.support.RemoteInvocationResult;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.AbstractChannelPoolMap;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpContentDecompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Non-blocking executor which keeps a pool of keep-alive connections per host,
+ * response is deserialized and futures are completed on the callback executor,
+ * or on netty event loop if it's absent, then callbacks shouldn't block.
+ */
+public class NettyHttpInvokerRequestExecutor extends HttpInvokerRequestExecutor {
+
+	private static final String HANDLER_NAME = "httpInvokerResponseHandler";
+
+	@Getter
+	@Setter
+	private int eventLoopThreads; // 0 means netty default
+
+	@Getter
+	@Setter
+	private int maxConnectionsPerHost = 100;
+
+	@Getter
+	@Setter
+	private int maxPendingAcquiresPerHost = Integer.MAX_VALUE;
+
+	@Getter
+	@Setter
+	private int maxContentLength = 64 * 1024 * 1024;
+
+	private volatile EventLoopGroup eventLoopGroup;
+
+	private volatile AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool> channelPools;
+
+	@PreDestroy
+	public void destroy() {
+		if (channelPools != null) {
+			channelPools.close();
+			channelPools = null;
+		}
+		if (eventLoopGroup != null) {
+			eventLoopGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+			eventLoopGroup = null;
+		}
+	}
+
+	@Override
+	public boolean supportsAsync() {
+		return true;
+	}
+
+	@Override
+	protected RemoteInvocationResult doExecuteRequest(String serviceUrl, MethodInvocation methodInvocation,
+			ByteArrayOutputStream baos) throws Exception {
+		try {
+			return doExecuteRequestAsync(serviceUrl, methodInvocation, baos, null).get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception)
+				throw (Exception) cause;
+			throw e;
+		}
+	}
+
+	@Override
+	protected CompletableFuture<RemoteInvocationResult> doExecuteRequestAsync(String serviceUrl,
+			MethodInvocation methodInvocation, ByteArrayOutputStream baos, Executor callbackExecutor) {
+		CompletableFuture<RemoteInvocationResult> future = new CompletableFuture<>();
+		URI uri = URI.create(serviceUrl);
+		if (!"http".equalsIgnoreCase(uri.getScheme())) {
+			future.completeExceptionally(new IOException("Unsupported service url: " + serviceUrl));
+			return future;
+		}
+		int port = uri.getPort() > 0 ? uri.getPort() : 80;
+		HttpInvokerSerializer serializer = getSerializer();
+		String path = uri.getRawPath();
+		if (uri.getRawQuery() != null)
+			path += '?' + uri.getRawQuery();
+		FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, path,
+				Unpooled.wrappedBuffer(baos.toByteArray()));
+		HttpHeaders headers = request.headers();
+		headers.set(HttpHeaderNames.HOST, port != 80 ? uri.getHost() + ':' + port : uri.getHost());
+		headers.set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+		String requestId = MDC.get(AccessFilter.MDC_KEY_REQUEST_ID);
+		if (requestId != null)
+			headers.set(AccessFilter.HTTP_HEADER_REQUEST_ID, requestId);
+		String requestChain = MDC.get(AccessFilter.MDC_KEY_REQUEST_CHAIN);
+		if (requestChain != null)
+			headers.set(AccessFilter.HTTP_HEADER_REQUEST_CHAIN, requestChain);
+		headers.set(AccessFilter.HTTP_HEADER_REQUEST_FROM, AppInfo.getInstanceId(true));
+		headers.set(HTTP_HEADER_CONTENT_TYPE, serializer.getContentType());
+		headers.set(HTTP_HEADER_CONTENT_LENGTH, baos.size());
+		if (isAcceptGzipEncoding())
+			headers.set(HTTP_HEADER_ACCEPT_ENCODING, ENCODING_GZIP);
+		FixedChannelPool pool = getChannelPools().get(InetSocketAddress.createUnresolved(uri.getHost(), port));
+		pool.acquire().addListener((io.netty.util.concurrent.Future<Channel> f) -> {
+			if (!f.isSuccess()) {
+				request.release();
+				completeExceptionally(future, f.cause(), callbackExecutor);
+				return;
+			}
+			Channel channel = f.getNow();
+			ResponseHandler handler = new ResponseHandler(pool, channel, serializer, methodInvocation, future,
+					callbackExecutor);
+			channel.pipeline().addLast(HANDLER_NAME, handler);
+			if (getReadTimeout() > 0)
+				handler.timeout = channel.eventLoop().schedule(
+						() -> handler.fail(new SocketTimeoutException("Read timed out")), getReadTimeout(),
+						TimeUnit.MILLISECONDS);
+			channel.writeAndFlush(request).addListener(w -> {
+				if (!w.isSuccess())
+					handler.fail(w.cause());
+			});
+		});
+		return future;
+	}
+
+	private AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool> getChannelPools() {
+		AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool> pools = channelPools;
+		if (pools == null) {
+			synchronized (this) {
+				pools = channelPools;
+				if (pools == null) {
+					eventLoopGroup = new NioEventLoopGroup(eventLoopThreads,
+							new NameableThreadFactory("httpInvokerClient"));
+					Bootstrap bootstrap = new Bootstrap().group(eventLoopGroup).channel(NioSocketChannel.class)
+							.option(ChannelOption.TCP_NODELAY, true).option(ChannelOption.SO_KEEPALIVE, true);
+					channelPools = pools = new AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool>() {
+						@Override
+						protected FixedChannelPool newPool(InetSocketAddress address) {
+							Bootstrap b = bootstrap.clone().remoteAddress(address);
+							if (getConnectTimeout() > 0)
+								b.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, getConnectTimeout());
+							return new FixedChannelPool(b, new AbstractChannelPoolHandler() {
+								@Override
+								public void channelCreated(Channel ch) {
+									ch.pipeline().addLast(new HttpClientCodec(), new HttpContentDecompressor(),
+											new HttpObjectAggregator(maxContentLength));
+								}
+							}, ChannelHealthChecker.ACTIVE, null, -1, maxConnectionsPerHost,
+									maxPendingAcquiresPerHost, true);
+						}
+					};
+				}
+			}
+		}
+		return pools;
+	}
+
+	private static void completeExceptionally(CompletableFuture<?> future, Throwable cause, Executor executor) {
+		if (executor == null) {
+			future.completeExceptionally(cause);
+			return;
+		}
+		try {
+			executor.execute(() -> future.completeExceptionally(cause));
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(cause);
+		}
+	}
+
+	private static class ResponseHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+		private final FixedChannelPool pool;
+
+		private final Channel channel;
+
+		private final HttpInvokerSerializer serializer;
+
+		private final MethodInvocation methodInvocation;
+
+		private final CompletableFuture<RemoteInvocationResult> future;
+
+		private final Executor callbackExecutor;
+
+		private final AtomicBoolean done = new AtomicBoolean();
+
+		private volatile ScheduledFuture<?> timeout;
+
+		ResponseHandler(FixedChannelPool pool, Channel channel, HttpInvokerSerializer serializer,
+				MethodInvocation methodInvocation, CompletableFuture<RemoteInvocationResult> future,
+				Executor callbackExecutor) {
+			this.pool = pool;
+			this.channel = channel;
+			this.serializer = serializer;
+			this.methodInvocation = methodInvocation;
+			this.future = future;
+			this.callbackExecutor = callbackExecutor;
+		}
+
+		@Override
+		protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse response) {
+			if (!finish(!HttpUtil.isKeepAlive(response)))
+				return;
+			if (callbackExecutor == null) {
+				handle(response);
+				return;
+			}
+			// response is released after returned, retain it for callback executor
+			FullHttpResponse retained = response.retain();
+			try {
+				callbackExecutor.execute(() -> {
+					try {
+						handle(retained);
+					} finally {
+						retained.release();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				retained.release();
+				future.completeExceptionally(e);
+			}
+		}
+
+		private void handle(FullHttpResponse response) {
+			try {
+				int status = response.status().code();
+				if (status == RemotingContext.SC_SERIALIZATION_FAILED) {
+					String message = response.headers().get(RemotingContext.HTTP_HEADER_EXCEPTION_MESSAGE);
+					throw new SerializationFailedException(message != null ? message : "");
+				} else if (status >= 300) {
+					throw new IOException("Did not receive successful HTTP response: status code = " + status
+							+ ", status message = [" + response.status().reasonPhrase() + "]");
+				}
+				String contentType = response.headers().get(HttpHeaderNames.CONTENT_TYPE);
+				HttpInvokerSerializer responseSerializer = StringUtils.isNotBlank(contentType)
+						? HttpInvokerSerializers.ofContentType(contentType)
+						: serializer;
+				future.complete(responseSerializer.readRemoteInvocationResult(methodInvocation,
+						new ByteBufInputStream(response.content())));
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		}
+
+		@Override
+		public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+			fail(new IOException("Connection closed before response completed"));
+			super.channelInactive(ctx);
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+			fail(cause);
+		}
+
+		void fail(Throwable cause) {
+			if (finish(true))
+				completeExceptionally(future, cause, callbackExecutor);
+		}
+
+		private boolean finish(boolean close) {
+			if (!done.compareAndSet(false, true))
+				return false;
+			if (timeout != null)
+				timeout.cancel(false);
+			if (channel.pipeline().get(HANDLER_NAME) == this)
+				channel.pipeline().remove(this);
+			if (close)
+				channel.close();
+			pool.release(channel);
+			return true;
+		}
+
+	}
+
+}
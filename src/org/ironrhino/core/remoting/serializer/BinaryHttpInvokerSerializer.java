@@ -0,0 +1,132 @@
+package org.ironrhino.core.remoting.serializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.ironrhino.core.remoting.RemotingContext;
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationResult;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Compact binary serializer, method is identified by hash of its signature,
+ * class names are written once per message and field layouts are cached per
+ * class, layout mismatch will fail with {@link SerializationFailedException}
+ * so client will downgrade to default serializer. Classes not
+ * {@link Serializable} are instantiated only if reachable from the method
+ * signature, and collections and maps only if standard implementations.
+ */
+public class BinaryHttpInvokerSerializer implements HttpInvokerSerializer {
+
+	public static BinaryHttpInvokerSerializer INSTANCE = new BinaryHttpInvokerSerializer();
+
+	private static final byte VERSION = 1;
+
+	private static final byte RESULT_VALUE = 0;
+
+	private static final byte RESULT_EXCEPTION = 1;
+
+	private BinaryHttpInvokerSerializer() {
+
+	}
+
+	@Override
+	public String getContentType() {
+		return RemotingContext.CONTENT_TYPE_BINARY_SERIALIZED_OBJECT;
+	}
+
+	@Override
+	public void writeRemoteInvocation(RemoteInvocation invocation, OutputStream os) throws IOException {
+		BinaryObjectOutput out = new BinaryObjectOutput();
+		out.writeByte(VERSION);
+		out.writeInt(BinarySchema.methodKey(invocation.getMethodName(), invocation.getParameterTypes()));
+		Object[] arguments = invocation.getArguments();
+		out.writeUnsignedVarInt(arguments.length);
+		try {
+			for (Object argument : arguments)
+				out.writeObject(argument);
+			out.writeObject(invocation.getAttributes());
+		} catch (NotSerializableException e) {
+			throw new SerializationFailedException(e.getMessage(), e);
+		}
+		out.writeTo(os);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public RemoteInvocation readRemoteInvocation(Class<?> serviceInterface, InputStream is) throws IOException {
+		try {
+			BinaryObjectInput in = new BinaryObjectInput(StreamUtils.copyToByteArray(is));
+			checkVersion(in.readByte());
+			Method method = BinarySchema.findMethod(serviceInterface, in.readInt());
+			if (method == null)
+				throw new SerializationFailedException("No unique method matched in " + serviceInterface.getName());
+			in.setTrustedTypes(BinarySchema.signatureTypes(method));
+			Object[] arguments = new Object[in.readUnsignedVarInt()];
+			if (arguments.length != method.getParameterCount())
+				throw new StreamCorruptedException("Mismatched arguments of method: " + method);
+			for (int i = 0; i < arguments.length; i++)
+				arguments[i] = in.readObject();
+			RemoteInvocation invocation = new RemoteInvocation(method.getName(), method.getParameterTypes(),
+					arguments);
+			invocation.setAttributes((Map<String, Serializable>) in.readObject());
+			return invocation;
+		} catch (SerializationFailedException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SerializationFailedException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public void writeRemoteInvocationResult(RemoteInvocation invocation, RemoteInvocationResult result, OutputStream os)
+			throws IOException {
+		BinaryObjectOutput out = new BinaryObjectOutput();
+		out.writeByte(VERSION);
+		try {
+			if (result.hasException()) {
+				out.writeByte(RESULT_EXCEPTION);
+				out.writeObject(result.getException());
+			} else {
+				out.writeByte(RESULT_VALUE);
+				out.writeObject(result.getValue());
+			}
+		} catch (NotSerializableException e) {
+			throw new SerializationFailedException(e.getMessage(), e);
+		}
+		out.writeTo(os);
+	}
+
+	@Override
+	public RemoteInvocationResult readRemoteInvocationResult(MethodInvocation methodInvocation, InputStream is)
+			throws IOException {
+		try {
+			BinaryObjectInput in = new BinaryObjectInput(StreamUtils.copyToByteArray(is));
+			in.setTrustedTypes(BinarySchema.signatureTypes(methodInvocation.getMethod()));
+			checkVersion(in.readByte());
+			byte type = in.readByte();
+			Object value = in.readObject();
+			if (type == RESULT_EXCEPTION)
+				return new RemoteInvocationResult((Throwable) value);
+			return new RemoteInvocationResult(value);
+		} catch (SerializationFailedException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SerializationFailedException(e.getMessage(), e);
+		}
+	}
+
+	private static void checkVersion(byte version) throws IOException {
+		if (version != VERSION)
+			throw new StreamCorruptedException("Unsupported version: " + version);
+	}
+
+}
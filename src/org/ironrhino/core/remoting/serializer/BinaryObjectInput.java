@@ -0,0 +1,301 @@
+package org.ironrhino.core.remoting.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.ironrhino.core.remoting.serializer.BinarySchema.Kind;
+import org.springframework.core.serializer.support.SerializationFailedException;
+
+final class BinaryObjectInput {
+
+	private final byte[] buffer;
+
+	private int position;
+
+	private final List<Class<?>> classes = new ArrayList<>();
+
+	private final List<Object> references = new ArrayList<>();
+
+	// non serializable classes allowed to be instantiated
+	private Set<Class<?>> trustedTypes = Collections.emptySet();
+
+	BinaryObjectInput(byte[] buffer) {
+		this.buffer = buffer;
+	}
+
+	void setTrustedTypes(Set<Class<?>> trustedTypes) {
+		this.trustedTypes = trustedTypes;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	Object readObject() throws IOException, ReflectiveOperationException {
+		byte tag = readByte();
+		switch (tag) {
+		case BinarySchema.NULL:
+			return null;
+		case BinarySchema.REFERENCE:
+			int index = readUnsignedVarInt();
+			if (index >= references.size())
+				throw new StreamCorruptedException("Invalid reference: " + index);
+			return references.get(index);
+		case BinarySchema.TRUE:
+			return Boolean.TRUE;
+		case BinarySchema.FALSE:
+			return Boolean.FALSE;
+		case BinarySchema.BYTE:
+			return readByte();
+		case BinarySchema.SHORT:
+			return (short) readVarInt();
+		case BinarySchema.INT:
+			return readVarInt();
+		case BinarySchema.LONG:
+			return readVarLong();
+		case BinarySchema.FLOAT:
+			return Float.intBitsToFloat(readInt());
+		case BinarySchema.DOUBLE:
+			return Double.longBitsToDouble(readLong());
+		case BinarySchema.CHAR:
+			return (char) readUnsignedVarInt();
+		case BinarySchema.STRING:
+			return readString();
+		case BinarySchema.ENUM:
+			Class enumClass = readClass();
+			return Enum.valueOf(enumClass, readString());
+		case BinarySchema.BYTES:
+			return readBytes(readLength());
+		case BinarySchema.ARRAY:
+			Class<?> componentType = readClass();
+			Object array = Array.newInstance(componentType, readLength());
+			references.add(array);
+			readArray(array, BinarySchema.typeOf(componentType));
+			return array;
+		case BinarySchema.COLLECTION:
+			Collection<Object> collection = (Collection<Object>) newInstance(readClass(), Kind.COLLECTION);
+			references.add(collection);
+			for (int i = readLength(); i > 0; i--)
+				collection.add(readObject());
+			return collection;
+		case BinarySchema.MAP:
+			Map<Object, Object> map = (Map<Object, Object>) newInstance(readClass(), Kind.MAP);
+			references.add(map);
+			for (int i = readLength(); i > 0; i--)
+				map.put(readObject(), readObject());
+			return map;
+		case BinarySchema.OPTIONAL:
+			return Optional.ofNullable(readObject());
+		case BinarySchema.DATE:
+			return new Date(readVarLong());
+		case BinarySchema.BIG_DECIMAL:
+			int scale = readVarInt();
+			return new BigDecimal(new BigInteger(readBytes(readLength())), scale);
+		case BinarySchema.BIG_INTEGER:
+			return new BigInteger(readBytes(readLength()));
+		case BinarySchema.OBJECT:
+			BinarySchema schema = BinarySchema.of(readClass());
+			if (schema.kind != Kind.OBJECT)
+				throw new StreamCorruptedException("Unexpected " + schema.kind + ": " + schema.type.getName());
+			if (!Serializable.class.isAssignableFrom(schema.type) && !trustedTypes.contains(schema.type))
+				throw new SerializationFailedException("Untrusted class: " + schema.type.getName());
+			Object object = schema.newInstance();
+			references.add(object);
+			Field[] fields = schema.fields;
+			byte[] fieldTypes = schema.fieldTypes;
+			for (int i = 0; i < fields.length; i++)
+				readField(object, fields[i], fieldTypes[i]);
+			return object;
+		case BinarySchema.SERIALIZABLE:
+			int length = readLength();
+			try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(buffer, position, length))) {
+				position += length;
+				return ois.readObject();
+			}
+		case BinarySchema.CLASS:
+			return readClass();
+		default:
+			throw new StreamCorruptedException("Unknown tag: " + tag);
+		}
+	}
+
+	private Object newInstance(Class<?> clazz, Kind kind) throws IOException, ReflectiveOperationException {
+		BinarySchema schema = BinarySchema.of(clazz);
+		if (schema.kind != kind)
+			throw new StreamCorruptedException("Unexpected " + schema.kind + ": " + clazz.getName());
+		// only standard implementations are written
+		if (schema.concreteType != clazz)
+			throw new SerializationFailedException("Untrusted " + kind + ": " + clazz.getName());
+		return schema.newInstance();
+	}
+
+	private void readField(Object target, Field field, byte type) throws IOException, ReflectiveOperationException {
+		switch (type) {
+		case BinarySchema.TYPE_BOOLEAN:
+			field.setBoolean(target, readByte() != 0);
+			break;
+		case BinarySchema.TYPE_BYTE:
+			field.setByte(target, readByte());
+			break;
+		case BinarySchema.TYPE_SHORT:
+			field.setShort(target, (short) readVarInt());
+			break;
+		case BinarySchema.TYPE_INT:
+			field.setInt(target, readVarInt());
+			break;
+		case BinarySchema.TYPE_LONG:
+			field.setLong(target, readVarLong());
+			break;
+		case BinarySchema.TYPE_FLOAT:
+			field.setFloat(target, Float.intBitsToFloat(readInt()));
+			break;
+		case BinarySchema.TYPE_DOUBLE:
+			field.setDouble(target, Double.longBitsToDouble(readLong()));
+			break;
+		case BinarySchema.TYPE_CHAR:
+			field.setChar(target, (char) readUnsignedVarInt());
+			break;
+		default:
+			field.set(target, readObject());
+		}
+	}
+
+	private void readArray(Object array, byte componentType) throws IOException, ReflectiveOperationException {
+		int length = Array.getLength(array);
+		switch (componentType) {
+		case BinarySchema.TYPE_BOOLEAN:
+			boolean[] booleans = (boolean[]) array;
+			for (int i = 0; i < length; i++)
+				booleans[i] = readByte() != 0;
+			break;
+		case BinarySchema.TYPE_BYTE:
+			System.arraycopy(buffer, position, array, 0, length);
+			position += length;
+			break;
+		case BinarySchema.TYPE_SHORT:
+			short[] shorts = (short[]) array;
+			for (int i = 0; i < length; i++)
+				shorts[i] = (short) readVarInt();
+			break;
+		case BinarySchema.TYPE_INT:
+			int[] ints = (int[]) array;
+			for (int i = 0; i < length; i++)
+				ints[i] = readVarInt();
+			break;
+		case BinarySchema.TYPE_LONG:
+			long[] longs = (long[]) array;
+			for (int i = 0; i < length; i++)
+				longs[i] = readVarLong();
+			break;
+		case BinarySchema.TYPE_FLOAT:
+			float[] floats = (float[]) array;
+			for (int i = 0; i < length; i++)
+				floats[i] = Float.intBitsToFloat(readInt());
+			break;
+		case BinarySchema.TYPE_DOUBLE:
+			double[] doubles = (double[]) array;
+			for (int i = 0; i < length; i++)
+				doubles[i] = Double.longBitsToDouble(readLong());
+			break;
+		case BinarySchema.TYPE_CHAR:
+			char[] chars = (char[]) array;
+			for (int i = 0; i < length; i++)
+				chars[i] = (char) readUnsignedVarInt();
+			break;
+		default:
+			Object[] objects = (Object[]) array;
+			for (int i = 0; i < length; i++)
+				objects[i] = readObject();
+		}
+	}
+
+	Class<?> readClass() throws IOException, ClassNotFoundException {
+		int index = readUnsignedVarInt();
+		if (index < classes.size())
+			return classes.get(index);
+		if (index != classes.size())
+			throw new StreamCorruptedException("Invalid class index: " + index);
+		String name = readString();
+		int fingerprint = readVarInt();
+		Class<?> clazz = BinarySchema.forName(name);
+		if (!clazz.isPrimitive() && BinarySchema.of(clazz).fingerprint != fingerprint)
+			throw new SerializationFailedException("Incompatible fields layout of class: " + name);
+		classes.add(clazz);
+		return clazz;
+	}
+
+	String readString() throws IOException {
+		int length = readLength();
+		String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+		position += length;
+		return value;
+	}
+
+	byte readByte() {
+		return buffer[position++];
+	}
+
+	byte[] readBytes(int length) {
+		byte[] bytes = new byte[length];
+		System.arraycopy(buffer, position, bytes, 0, length);
+		position += length;
+		return bytes;
+	}
+
+	int readInt() {
+		return (buffer[position++] & 0xFF) << 24 | (buffer[position++] & 0xFF) << 16
+				| (buffer[position++] & 0xFF) << 8 | (buffer[position++] & 0xFF);
+	}
+
+	long readLong() {
+		return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+	}
+
+	int readVarInt() {
+		int value = readUnsignedVarInt();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	int readUnsignedVarInt() {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = buffer[position++];
+			value |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+		throw new IllegalStateException("Malformed varint");
+	}
+
+	long readVarLong() {
+		long value = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			byte b = buffer[position++];
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return (value >>> 1) ^ -(value & 1);
+		}
+		throw new IllegalStateException("Malformed varlong");
+	}
+
+	private int readLength() throws IOException {
+		int length = readUnsignedVarInt();
+		if (length < 0 || length > buffer.length - position)
+			throw new StreamCorruptedException("Invalid length: " + length);
+		return length;
+	}
+
+}
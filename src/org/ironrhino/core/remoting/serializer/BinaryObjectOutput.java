@@ -0,0 +1,329 @@
+package org.ironrhino.core.remoting.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import org.ironrhino.core.remoting.serializer.BinarySchema.Kind;
+
+final class BinaryObjectOutput {
+
+	private byte[] buffer = new byte[256];
+
+	private int position;
+
+	private final Map<Class<?>, Integer> classes = new IdentityHashMap<>();
+
+	private Map<Object, Integer> references;
+
+	void writeTo(OutputStream os) throws IOException {
+		os.write(buffer, 0, position);
+	}
+
+	void writeObject(Object value) throws IOException {
+		if (value == null) {
+			writeByte(BinarySchema.NULL);
+			return;
+		}
+		Class<?> clazz = value.getClass();
+		if (clazz == String.class) {
+			writeByte(BinarySchema.STRING);
+			writeString((String) value);
+		} else if (clazz == Integer.class) {
+			writeByte(BinarySchema.INT);
+			writeVarInt((Integer) value);
+		} else if (clazz == Long.class) {
+			writeByte(BinarySchema.LONG);
+			writeVarLong((Long) value);
+		} else if (clazz == Boolean.class) {
+			writeByte((Boolean) value ? BinarySchema.TRUE : BinarySchema.FALSE);
+		} else if (clazz == Double.class) {
+			writeByte(BinarySchema.DOUBLE);
+			writeLong(Double.doubleToLongBits((Double) value));
+		} else if (clazz == Float.class) {
+			writeByte(BinarySchema.FLOAT);
+			writeInt(Float.floatToIntBits((Float) value));
+		} else if (clazz == Short.class) {
+			writeByte(BinarySchema.SHORT);
+			writeVarInt((Short) value);
+		} else if (clazz == Byte.class) {
+			writeByte(BinarySchema.BYTE);
+			writeByte((Byte) value);
+		} else if (clazz == Character.class) {
+			writeByte(BinarySchema.CHAR);
+			writeUnsignedVarInt((Character) value);
+		} else if (value instanceof Enum) {
+			writeByte(BinarySchema.ENUM);
+			writeClass(((Enum<?>) value).getDeclaringClass());
+			writeString(((Enum<?>) value).name());
+		} else if (clazz == byte[].class) {
+			byte[] bytes = (byte[]) value;
+			writeByte(BinarySchema.BYTES);
+			writeUnsignedVarInt(bytes.length);
+			writeBytes(bytes, 0, bytes.length);
+		} else if (clazz == Date.class) {
+			writeByte(BinarySchema.DATE);
+			writeVarLong(((Date) value).getTime());
+		} else if (clazz == BigDecimal.class) {
+			BigDecimal bd = (BigDecimal) value;
+			writeByte(BinarySchema.BIG_DECIMAL);
+			writeVarInt(bd.scale());
+			byte[] bytes = bd.unscaledValue().toByteArray();
+			writeUnsignedVarInt(bytes.length);
+			writeBytes(bytes, 0, bytes.length);
+		} else if (clazz == BigInteger.class) {
+			byte[] bytes = ((BigInteger) value).toByteArray();
+			writeByte(BinarySchema.BIG_INTEGER);
+			writeUnsignedVarInt(bytes.length);
+			writeBytes(bytes, 0, bytes.length);
+		} else if (clazz == Optional.class) {
+			writeByte(BinarySchema.OPTIONAL);
+			writeObject(((Optional<?>) value).orElse(null));
+		} else if (clazz == Class.class) {
+			writeByte(BinarySchema.CLASS);
+			writeClass((Class<?>) value);
+		} else {
+			writeComplexObject(value, BinarySchema.of(clazz));
+		}
+	}
+
+	private void writeComplexObject(Object value, BinarySchema schema) throws IOException {
+		if (schema.kind == Kind.SERIALIZABLE
+				|| value instanceof SortedSet && ((SortedSet<?>) value).comparator() != null
+				|| value instanceof SortedMap && ((SortedMap<?, ?>) value).comparator() != null) {
+			writeSerializable(value);
+			return;
+		}
+		if (references == null) {
+			references = new IdentityHashMap<>();
+		} else {
+			Integer index = references.get(value);
+			if (index != null) {
+				writeByte(BinarySchema.REFERENCE);
+				writeUnsignedVarInt(index);
+				return;
+			}
+		}
+		references.put(value, references.size());
+		switch (schema.kind) {
+		case ARRAY:
+			writeByte(BinarySchema.ARRAY);
+			writeClass(schema.type.getComponentType());
+			writeArray(value, schema.componentType);
+			break;
+		case COLLECTION:
+			Collection<?> collection = (Collection<?>) value;
+			writeByte(BinarySchema.COLLECTION);
+			writeClass(schema.concreteType);
+			writeUnsignedVarInt(collection.size());
+			for (Object element : collection)
+				writeObject(element);
+			break;
+		case MAP:
+			Map<?, ?> map = (Map<?, ?>) value;
+			writeByte(BinarySchema.MAP);
+			writeClass(schema.concreteType);
+			writeUnsignedVarInt(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				writeObject(entry.getKey());
+				writeObject(entry.getValue());
+			}
+			break;
+		default:
+			writeByte(BinarySchema.OBJECT);
+			writeClass(schema.type);
+			Field[] fields = schema.fields;
+			byte[] fieldTypes = schema.fieldTypes;
+			try {
+				for (int i = 0; i < fields.length; i++)
+					writeField(value, fields[i], fieldTypes[i]);
+			} catch (IllegalAccessException e) {
+				throw new IOException(e);
+			}
+		}
+	}
+
+	private void writeField(Object target, Field field, byte type) throws IOException, IllegalAccessException {
+		switch (type) {
+		case BinarySchema.TYPE_BOOLEAN:
+			writeByte(field.getBoolean(target) ? 1 : 0);
+			break;
+		case BinarySchema.TYPE_BYTE:
+			writeByte(field.getByte(target));
+			break;
+		case BinarySchema.TYPE_SHORT:
+			writeVarInt(field.getShort(target));
+			break;
+		case BinarySchema.TYPE_INT:
+			writeVarInt(field.getInt(target));
+			break;
+		case BinarySchema.TYPE_LONG:
+			writeVarLong(field.getLong(target));
+			break;
+		case BinarySchema.TYPE_FLOAT:
+			writeInt(Float.floatToIntBits(field.getFloat(target)));
+			break;
+		case BinarySchema.TYPE_DOUBLE:
+			writeLong(Double.doubleToLongBits(field.getDouble(target)));
+			break;
+		case BinarySchema.TYPE_CHAR:
+			writeUnsignedVarInt(field.getChar(target));
+			break;
+		default:
+			writeObject(field.get(target));
+		}
+	}
+
+	private void writeArray(Object array, byte componentType) throws IOException {
+		int length = Array.getLength(array);
+		writeUnsignedVarInt(length);
+		switch (componentType) {
+		case BinarySchema.TYPE_BOOLEAN:
+			for (boolean b : (boolean[]) array)
+				writeByte(b ? 1 : 0);
+			break;
+		case BinarySchema.TYPE_BYTE:
+			writeBytes((byte[]) array, 0, length);
+			break;
+		case BinarySchema.TYPE_SHORT:
+			for (short s : (short[]) array)
+				writeVarInt(s);
+			break;
+		case BinarySchema.TYPE_INT:
+			for (int i : (int[]) array)
+				writeVarInt(i);
+			break;
+		case BinarySchema.TYPE_LONG:
+			for (long l : (long[]) array)
+				writeVarLong(l);
+			break;
+		case BinarySchema.TYPE_FLOAT:
+			for (float f : (float[]) array)
+				writeInt(Float.floatToIntBits(f));
+			break;
+		case BinarySchema.TYPE_DOUBLE:
+			for (double d : (double[]) array)
+				writeLong(Double.doubleToLongBits(d));
+			break;
+		case BinarySchema.TYPE_CHAR:
+			for (char c : (char[]) array)
+				writeUnsignedVarInt(c);
+			break;
+		default:
+			for (Object element : (Object[]) array)
+				writeObject(element);
+		}
+	}
+
+	private void writeSerializable(Object value) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+		try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+			oos.writeObject(value);
+		}
+		writeByte(BinarySchema.SERIALIZABLE);
+		writeUnsignedVarInt(baos.size());
+		byte[] bytes = baos.toByteArray();
+		writeBytes(bytes, 0, bytes.length);
+	}
+
+	void writeClass(Class<?> clazz) {
+		Integer index = classes.get(clazz);
+		if (index != null) {
+			writeUnsignedVarInt(index);
+			return;
+		}
+		index = classes.size();
+		classes.put(clazz, index);
+		writeUnsignedVarInt(index);
+		writeString(clazz.getName());
+		writeVarInt(clazz.isPrimitive() ? 0 : BinarySchema.of(clazz).fingerprint);
+	}
+
+	void writeString(String value) {
+		int length = value.length();
+		boolean ascii = true;
+		for (int i = 0; i < length; i++) {
+			if (value.charAt(i) >= 0x80) {
+				ascii = false;
+				break;
+			}
+		}
+		if (ascii) {
+			writeUnsignedVarInt(length);
+			ensureCapacity(length);
+			for (int i = 0; i < length; i++)
+				buffer[position++] = (byte) value.charAt(i);
+		} else {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeUnsignedVarInt(bytes.length);
+			writeBytes(bytes, 0, bytes.length);
+		}
+	}
+
+	void writeByte(int value) {
+		ensureCapacity(1);
+		buffer[position++] = (byte) value;
+	}
+
+	void writeBytes(byte[] bytes, int offset, int length) {
+		ensureCapacity(length);
+		System.arraycopy(bytes, offset, buffer, position, length);
+		position += length;
+	}
+
+	void writeInt(int value) {
+		ensureCapacity(4);
+		buffer[position++] = (byte) (value >>> 24);
+		buffer[position++] = (byte) (value >>> 16);
+		buffer[position++] = (byte) (value >>> 8);
+		buffer[position++] = (byte) value;
+	}
+
+	void writeLong(long value) {
+		writeInt((int) (value >>> 32));
+		writeInt((int) value);
+	}
+
+	void writeVarInt(int value) {
+		writeUnsignedVarInt((value << 1) ^ (value >> 31));
+	}
+
+	void writeUnsignedVarInt(int value) {
+		ensureCapacity(5);
+		while ((value & ~0x7F) != 0) {
+			buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+	}
+
+	void writeVarLong(long value) {
+		value = (value << 1) ^ (value >> 63);
+		ensureCapacity(10);
+		while ((value & ~0x7FL) != 0) {
+			buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+	}
+
+	private void ensureCapacity(int length) {
+		if (position + length > buffer.length)
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + length));
+	}
+
+}
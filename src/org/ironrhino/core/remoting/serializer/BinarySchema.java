@@ -0,0 +1,348 @@
+package org.ironrhino.core.remoting.serializer;
+
+import java.io.Externalizable;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.objenesis.Objenesis;
+import org.springframework.objenesis.SpringObjenesis;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Cached wire layout of a class for {@link BinaryHttpInvokerSerializer}.
+ */
+final class BinarySchema {
+
+	static final byte NULL = 0;
+	static final byte REFERENCE = 1;
+	static final byte TRUE = 2;
+	static final byte FALSE = 3;
+	static final byte BYTE = 4;
+	static final byte SHORT = 5;
+	static final byte INT = 6;
+	static final byte LONG = 7;
+	static final byte FLOAT = 8;
+	static final byte DOUBLE = 9;
+	static final byte CHAR = 10;
+	static final byte STRING = 11;
+	static final byte ENUM = 12;
+	static final byte BYTES = 13;
+	static final byte ARRAY = 14;
+	static final byte COLLECTION = 15;
+	static final byte MAP = 16;
+	static final byte OPTIONAL = 17;
+	static final byte DATE = 18;
+	static final byte BIG_DECIMAL = 19;
+	static final byte BIG_INTEGER = 20;
+	static final byte OBJECT = 21;
+	static final byte SERIALIZABLE = 22;
+	static final byte CLASS = 23;
+
+	static final byte TYPE_OBJECT = 0;
+	static final byte TYPE_BOOLEAN = 1;
+	static final byte TYPE_BYTE = 2;
+	static final byte TYPE_SHORT = 3;
+	static final byte TYPE_INT = 4;
+	static final byte TYPE_LONG = 5;
+	static final byte TYPE_FLOAT = 6;
+	static final byte TYPE_DOUBLE = 7;
+	static final byte TYPE_CHAR = 8;
+
+	enum Kind {
+		OBJECT, ARRAY, COLLECTION, MAP, SERIALIZABLE
+	}
+
+	private static final Map<Class<?>, BinarySchema> schemas = new ConcurrentHashMap<>();
+
+	private static final Map<String, Class<?>> classes = new ConcurrentHashMap<>();
+
+	private static final Map<Class<?>, Map<Integer, Method>> methods = new ConcurrentHashMap<>();
+
+	private static final Map<Method, Set<Class<?>>> signatureTypes = new ConcurrentHashMap<>();
+
+	private static final Objenesis objenesis = new SpringObjenesis();
+
+	final Class<?> type;
+
+	final Kind kind;
+
+	// class written to the wire, collections and maps without public no-arg
+	// constructor are substituted with their nearest standard implementation
+	final Class<?> concreteType;
+
+	final Field[] fields;
+
+	final byte[] fieldTypes;
+
+	final int fingerprint;
+
+	final byte componentType;
+
+	private final Constructor<?> constructor;
+
+	private BinarySchema(Class<?> type) {
+		this.type = type;
+		this.kind = kindOf(type);
+		Field[] fields = new Field[0];
+		byte[] fieldTypes = new byte[0];
+		int fingerprint = 0;
+		if (kind == Kind.OBJECT) {
+			List<Field> list = new ArrayList<>();
+			List<Class<?>> hierarchy = new ArrayList<>();
+			for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass())
+				hierarchy.add(0, c);
+			for (Class<?> c : hierarchy) {
+				Field[] declared = c.getDeclaredFields();
+				Arrays.sort(declared, Comparator.comparing(Field::getName));
+				for (Field f : declared) {
+					int mod = f.getModifiers();
+					if (Modifier.isStatic(mod) || Modifier.isTransient(mod) || f.isSynthetic())
+						continue;
+					ReflectionUtils.makeAccessible(f);
+					list.add(f);
+				}
+			}
+			fields = list.toArray(fields);
+			fieldTypes = new byte[fields.length];
+			StringBuilder sb = new StringBuilder(type.getName());
+			for (int i = 0; i < fields.length; i++) {
+				fieldTypes[i] = typeOf(fields[i].getType());
+				sb.append(';').append(fields[i].getName()).append(':').append(fields[i].getType().getName());
+			}
+			fingerprint = sb.toString().hashCode();
+		}
+		this.fields = fields;
+		this.fieldTypes = fieldTypes;
+		this.fingerprint = fingerprint;
+		this.componentType = kind == Kind.ARRAY ? typeOf(type.getComponentType()) : TYPE_OBJECT;
+		this.concreteType = kind == Kind.COLLECTION ? concreteCollectionType(type)
+				: kind == Kind.MAP ? concreteMapType(type) : type;
+		Constructor<?> constructor = null;
+		if (kind != Kind.ARRAY && kind != Kind.SERIALIZABLE && !Modifier.isAbstract(concreteType.getModifiers())) {
+			try {
+				constructor = concreteType.getDeclaredConstructor();
+				ReflectionUtils.makeAccessible(constructor);
+			} catch (NoSuchMethodException e) {
+				// instantiate by objenesis
+			}
+		}
+		this.constructor = constructor;
+	}
+
+	Object newInstance() throws ReflectiveOperationException {
+		if (constructor != null)
+			return constructor.newInstance();
+		if (kind != Kind.OBJECT || type.isInterface() || Modifier.isAbstract(type.getModifiers()))
+			throw new InstantiationException("Could not instantiate " + concreteType.getName());
+		return objenesis.newInstance(type);
+	}
+
+	static BinarySchema of(Class<?> type) {
+		BinarySchema schema = schemas.get(type);
+		if (schema == null)
+			schema = schemas.computeIfAbsent(type, BinarySchema::new);
+		return schema;
+	}
+
+	static Class<?> forName(String name) throws ClassNotFoundException {
+		Class<?> clazz = classes.get(name);
+		if (clazz == null) {
+			clazz = ClassUtils.forName(name, BinarySchema.class.getClassLoader());
+			classes.put(name, clazz);
+		}
+		return clazz;
+	}
+
+	static int methodKey(String methodName, Class<?>[] parameterTypes) {
+		StringBuilder sb = new StringBuilder(methodName).append('(');
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (i > 0)
+				sb.append(',');
+			sb.append(parameterTypes[i].getName());
+		}
+		return sb.append(')').toString().hashCode();
+	}
+
+	static Method findMethod(Class<?> serviceInterface, int methodKey) {
+		return methods.computeIfAbsent(serviceInterface, clazz -> {
+			Map<Integer, Method> map = new HashMap<>();
+			Set<Integer> duplicated = new LinkedHashSet<>();
+			for (Method m : clazz.getMethods()) {
+				int key = methodKey(m.getName(), m.getParameterTypes());
+				if (map.put(key, m) != null)
+					duplicated.add(key);
+			}
+			duplicated.forEach(map::remove);
+			return map;
+		}).get(methodKey);
+	}
+
+	/**
+	 * Classes reachable from parameters and return type of method through
+	 * declared fields, they are trusted to be instantiated without being
+	 * {@link java.io.Serializable}.
+	 */
+	static Set<Class<?>> signatureTypes(Method method) {
+		return signatureTypes.computeIfAbsent(method, m -> {
+			Set<Type> visited = new HashSet<>();
+			for (Type t : m.getGenericParameterTypes())
+				collect(t, visited);
+			collect(m.getGenericReturnType(), visited);
+			Set<Class<?>> types = new HashSet<>();
+			for (Type t : visited)
+				if (t instanceof Class)
+					types.add((Class<?>) t);
+			return types;
+		});
+	}
+
+	private static void collect(Type type, Set<Type> visited) {
+		if (!visited.add(type))
+			return;
+		if (type instanceof Class) {
+			Class<?> clazz = (Class<?>) type;
+			if (clazz.isArray()) {
+				collect(clazz.getComponentType(), visited);
+				return;
+			}
+			if (clazz.isPrimitive() || clazz.getName().startsWith("java."))
+				return;
+			for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass())
+				for (Field f : c.getDeclaredFields())
+					if (!Modifier.isStatic(f.getModifiers()) && !Modifier.isTransient(f.getModifiers()))
+						collect(f.getGenericType(), visited);
+		} else if (type instanceof ParameterizedType) {
+			collect(((ParameterizedType) type).getRawType(), visited);
+			for (Type t : ((ParameterizedType) type).getActualTypeArguments())
+				collect(t, visited);
+		} else if (type instanceof GenericArrayType) {
+			collect(((GenericArrayType) type).getGenericComponentType(), visited);
+		} else if (type instanceof WildcardType) {
+			for (Type t : ((WildcardType) type).getUpperBounds())
+				collect(t, visited);
+		} else if (type instanceof TypeVariable) {
+			for (Type t : ((TypeVariable<?>) type).getBounds())
+				collect(t, visited);
+		}
+	}
+
+	static byte typeOf(Class<?> clazz) {
+		if (!clazz.isPrimitive())
+			return TYPE_OBJECT;
+		if (clazz == boolean.class)
+			return TYPE_BOOLEAN;
+		if (clazz == byte.class)
+			return TYPE_BYTE;
+		if (clazz == short.class)
+			return TYPE_SHORT;
+		if (clazz == int.class)
+			return TYPE_INT;
+		if (clazz == long.class)
+			return TYPE_LONG;
+		if (clazz == float.class)
+			return TYPE_FLOAT;
+		if (clazz == double.class)
+			return TYPE_DOUBLE;
+		return TYPE_CHAR;
+	}
+
+	private static Kind kindOf(Class<?> type) {
+		if (type.isArray())
+			return Kind.ARRAY;
+		if (Collection.class.isAssignableFrom(type))
+			return EnumSet.class.isAssignableFrom(type) ? Kind.SERIALIZABLE : Kind.COLLECTION;
+		if (Map.class.isAssignableFrom(type))
+			return EnumMap.class.isAssignableFrom(type) ? Kind.SERIALIZABLE : Kind.MAP;
+		if (type.isInterface() || Modifier.isAbstract(type.getModifiers()))
+			return Kind.OBJECT; // only used as component type of arrays
+		if (Throwable.class.isAssignableFrom(type) || Externalizable.class.isAssignableFrom(type)
+				|| Proxy.isProxyClass(type))
+			return Kind.SERIALIZABLE;
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			String name = c.getName();
+			if (name.startsWith("java.") || name.startsWith("javax.") || name.contains("$$Lambda$"))
+				return Kind.SERIALIZABLE;
+			// respect custom serialization
+			if (hasDeclaredMethod(c, "writeObject", ObjectOutputStream.class)
+					|| hasDeclaredMethod(c, "readObject", ObjectInputStream.class)
+					|| hasDeclaredMethod(c, "writeReplace") || hasDeclaredMethod(c, "readResolve"))
+				return Kind.SERIALIZABLE;
+		}
+		return Kind.OBJECT;
+	}
+
+	private static boolean hasDeclaredMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+		try {
+			clazz.getDeclaredMethod(name, parameterTypes);
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	private static boolean isStandard(Class<?> type) {
+		if (!type.getName().startsWith("java.util.") || Modifier.isAbstract(type.getModifiers()))
+			return false;
+		try {
+			return Modifier.isPublic(type.getConstructor().getModifiers());
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	private static Class<?> concreteCollectionType(Class<?> type) {
+		if (isStandard(type))
+			return type;
+		if (SortedSet.class.isAssignableFrom(type))
+			return TreeSet.class;
+		if (Set.class.isAssignableFrom(type))
+			return LinkedHashSet.class;
+		if (Queue.class.isAssignableFrom(type) || Deque.class.isAssignableFrom(type))
+			return LinkedList.class;
+		return ArrayList.class;
+	}
+
+	private static Class<?> concreteMapType(Class<?> type) {
+		if (isStandard(type))
+			return type;
+		if (SortedMap.class.isAssignableFrom(type))
+			return TreeMap.class;
+		if (ConcurrentMap.class.isAssignableFrom(type))
+			return ConcurrentHashMap.class;
+		return LinkedHashMap.class;
+	}
+
+}
@@ -23,6 +23,7 @@ public final class HttpInvokerSerializers {
 	static {
 		SERIALIZERS.add(DEFAULT_SERIALIZER);
 		SERIALIZERS.add(JsonHttpInvokerSerializer.INSTANCE);
+		SERIALIZERS.add(BinaryHttpInvokerSerializer.INSTANCE);
 		if (ClassUtils.isPresent("com.fasterxml.jackson.dataformat.smile.SmileFactory",
 				HttpInvokerSerializers.class.getClassLoader()))
 			SERIALIZERS.add(SmileHttpInvokerSerializer.INSTANCE);
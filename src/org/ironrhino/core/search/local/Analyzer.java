@@ -0,0 +1,51 @@
+package org.ironrhino.core.search.local;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Split text into lower case words, ideographs are indexed as unigrams and
+ * bigrams since they are not separated by spaces.
+ */
+@UtilityClass
+public class Analyzer {
+
+	public static List<String> analyze(String text) {
+		List<String> tokens = new ArrayList<>();
+		if (text == null)
+			return tokens;
+		int length = text.length();
+		int wordStart = -1;
+		int prevIdeograph = -1;
+		for (int i = 0; i < length;) {
+			int cp = text.codePointAt(i);
+			int next = i + Character.charCount(cp);
+			if (Character.isIdeographic(cp)) {
+				if (wordStart >= 0) {
+					tokens.add(text.substring(wordStart, i).toLowerCase());
+					wordStart = -1;
+				}
+				tokens.add(text.substring(i, next));
+				if (prevIdeograph >= 0)
+					tokens.add(text.substring(prevIdeograph, next));
+				prevIdeograph = i;
+			} else {
+				prevIdeograph = -1;
+				if (Character.isLetterOrDigit(cp)) {
+					if (wordStart < 0)
+						wordStart = i;
+				} else if (wordStart >= 0) {
+					tokens.add(text.substring(wordStart, i).toLowerCase());
+					wordStart = -1;
+				}
+			}
+			i = next;
+		}
+		if (wordStart >= 0)
+			tokens.add(text.substring(wordStart).toLowerCase());
+		return tokens;
+	}
+
+}
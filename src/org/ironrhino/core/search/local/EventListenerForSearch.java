@@ -0,0 +1,70 @@
+package org.ironrhino.core.search.local;
+
+import java.io.Serializable;
+
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.ironrhino.core.spring.configuration.ApplicationContextPropertiesConditional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Documents are built within transaction and applied to index after
+ * successful completion, so rolled back changes never reach index.
+ */
+@Component
+@ApplicationContextPropertiesConditional(key = "search.local.enabled", value = "true")
+public class EventListenerForSearch implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+	private static final long serialVersionUID = -2871390472625640214L;
+
+	// break cycle of SessionFactory -> listeners -> LocalSearchService
+	@Lazy
+	@Autowired
+	private LocalSearchService<?> localSearchService;
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		index(event.getSession(), event.getEntity());
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		index(event.getSession(), event.getEntity());
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		String type = localSearchService.getType(event.getEntity().getClass());
+		if (type == null)
+			return;
+		Serializable id = event.getId();
+		event.getSession().getActionQueue().registerProcess((success, session) -> {
+			if (success)
+				localSearchService.unindex(type, id);
+		});
+	}
+
+	@Override
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return false;
+	}
+
+	private void index(EventSource source, Object entity) {
+		SearchDocument document = localSearchService.toDocument(entity);
+		if (document == null)
+			return;
+		source.getActionQueue().registerProcess((success, session) -> {
+			if (success)
+				localSearchService.index(document);
+		});
+	}
+
+}
@@ -0,0 +1,524 @@
+package org.ironrhino.core.search.local;
+
+import java.beans.PropertyDescriptor;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.ironrhino.core.model.Persistable;
+import org.ironrhino.core.model.ResultPage;
+import org.ironrhino.core.search.SearchCriteria;
+import org.ironrhino.core.search.SearchService;
+import org.ironrhino.core.search.elasticsearch.annotations.Index;
+import org.ironrhino.core.search.elasticsearch.annotations.Searchable;
+import org.ironrhino.core.search.elasticsearch.annotations.SearchableProperty;
+import org.ironrhino.core.spring.configuration.ApplicationContextPropertiesConditional;
+import org.ironrhino.core.util.AnnotationUtils;
+import org.ironrhino.core.util.AppInfo;
+import org.ironrhino.core.util.ReflectionUtils;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-process {@link SearchService} backed by {@link SearchIndex} per
+ * {@link Searchable} entity, kept up to date by {@link EventListenerForSearch}.
+ * <p>
+ * Index is local to each JVM and only sees modifications made by this JVM, so
+ * indexes of cluster nodes diverge, use elasticsearch for cluster deployment.
+ * </p>
+ */
+@Component
+@ApplicationContextPropertiesConditional(key = "search.local.enabled", value = "true")
+@Slf4j
+public class LocalSearchService<T extends Persistable<?>> implements SearchService<T> {
+
+	private static final Mapping NONE = new Mapping(null, null, Collections.emptyList(), Collections.emptyMap());
+
+	@Autowired
+	private ApplicationContext ctx;
+
+	@Autowired
+	private SessionFactory sessionFactory;
+
+	@Getter
+	@Setter
+	@Value("${search.local.directory:}")
+	private String directory;
+
+	@Getter
+	@Setter
+	@Value("${search.local.compactThreshold:10000}")
+	private int compactThreshold = 10000;
+
+	@Getter
+	@Setter
+	@Value("${search.local.rebuildBatchSize:500}")
+	private int rebuildBatchSize = 500;
+
+	private final Map<Class<?>, Mapping> mappings = new ConcurrentHashMap<>();
+
+	@Autowired(required = false)
+	private ExecutorService executorService;
+
+	private final Map<String, SearchIndex> indexes = new ConcurrentHashMap<>();
+
+	// writes during rebuilding by type, document is null if deleted
+	private final Map<String, Map<String, SearchDocument>> pendings = new ConcurrentHashMap<>();
+
+	@EventListener
+	public void onApplicationEvent(ContextRefreshedEvent event) {
+		if (event.getApplicationContext() != ctx)
+			return;
+		MetamodelImplementor metamodel = (MetamodelImplementor) sessionFactory.getMetamodel();
+		List<Class<?>> rebuilds = new ArrayList<>();
+		for (String entityName : metamodel.getAllEntityNames()) {
+			Class<?> clazz = metamodel.entityPersister(entityName).getMappedClass();
+			Mapping mapping = getMapping(clazz);
+			if (mapping == null || indexes.containsKey(mapping.type))
+				continue;
+			SearchIndex index = createIndex(mapping);
+			indexes.put(mapping.type, index);
+			try {
+				if (index.load())
+					log.info("Loaded {} documents of {}", index.size(), mapping.type);
+				else
+					rebuilds.add(clazz);
+			} catch (IOException e) {
+				log.warn("Failed to load index of " + mapping.type + ", rebuilding", e);
+				rebuilds.add(clazz);
+			}
+		}
+		if (rebuilds.isEmpty())
+			return;
+		// don't block startup, searches return partial results until rebuilt
+		(executorService != null ? executorService : ForkJoinPool.commonPool()).execute(() -> {
+			for (Class<?> clazz : rebuilds) {
+				try {
+					rebuild(clazz);
+				} catch (Exception e) {
+					log.error("Failed to rebuild index of " + clazz.getName(), e);
+				}
+			}
+		});
+	}
+
+	@PreDestroy
+	public void destroy() {
+		for (SearchIndex index : indexes.values()) {
+			try {
+				index.close();
+			} catch (IOException e) {
+				log.error(e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Build a fresh index in memory and swap it in, the current index keeps
+	 * serving searches meanwhile. Writes during rebuilding are recorded and
+	 * replayed before swapping, since they may be missed by or older than the
+	 * scan.
+	 */
+	public synchronized void rebuild(Class<?> clazz) {
+		Mapping mapping = getMapping(clazz);
+		if (mapping == null)
+			throw new IllegalArgumentException(clazz + " is not @" + Searchable.class.getSimpleName());
+		if (!indexes.containsKey(mapping.type))
+			throw new IllegalStateException("Index of " + mapping.type + " is not initialized");
+		long time = System.currentTimeMillis();
+		int count = 0;
+		SearchIndex index = createIndex(mapping);
+		Map<String, SearchDocument> pending = new LinkedHashMap<>();
+		pendings.put(mapping.type, pending);
+		try {
+			try (Session session = sessionFactory.openSession()) {
+				session.setDefaultReadOnly(true);
+				session.setCacheMode(CacheMode.IGNORE);
+				try (ScrollableResults results = session.createQuery("from " + mapping.clazz.getName())
+						.setFetchSize(rebuildBatchSize).scroll(ScrollMode.FORWARD_ONLY)) {
+					while (results.next()) {
+						SearchDocument document = toDocument(results.get(0));
+						if (document != null)
+							index.bulkPut(document);
+						if (++count % rebuildBatchSize == 0)
+							session.clear();
+					}
+				}
+			}
+			synchronized (pending) {
+				pending.forEach((key, document) -> {
+					if (document != null)
+						index.bulkPut(document);
+					else
+						index.bulkDelete(key);
+				});
+				SearchIndex old = indexes.put(mapping.type, index);
+				if (old != null)
+					old.discard();
+			}
+			index.compact();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			pendings.remove(mapping.type, pending);
+		}
+		log.info("Rebuilt {} documents of {} in {}ms", count, mapping.type, System.currentTimeMillis() - time);
+	}
+
+	public boolean isSearchable(Class<?> clazz) {
+		return getMapping(clazz) != null;
+	}
+
+	public SearchDocument toDocument(Object entity) {
+		if (!(entity instanceof Persistable))
+			return null;
+		Mapping mapping = getMapping(ReflectionUtils.getActualClass(entity));
+		if (mapping == null)
+			return null;
+		Serializable id = (Serializable) ((Persistable<?>) entity).getId();
+		if (id == null)
+			return null;
+		Map<String, String[]> terms = new HashMap<>();
+		List<String> all = new ArrayList<>();
+		for (FieldMapping fm : mapping.fields) {
+			Object value = read(fm.readMethod, entity);
+			if (value == null)
+				continue;
+			List<String> list = new ArrayList<>();
+			for (Object element : value instanceof Collection ? (Collection<?>) value
+					: Collections.singleton(value)) {
+				if (element == null)
+					continue;
+				String text = element instanceof Persistable ? String.valueOf(((Persistable<?>) element).getId())
+						: element instanceof Date ? String.valueOf(((Date) element).getTime()) : element.toString();
+				List<String> tokens = Analyzer.analyze(text);
+				if (fm.analyzed)
+					list.addAll(tokens);
+				else
+					list.add(text);
+				if (fm.includeInAll)
+					all.addAll(tokens);
+			}
+			if (!list.isEmpty())
+				terms.put(fm.name, list.toArray(new String[list.size()]));
+		}
+		if (!all.isEmpty())
+			terms.put(SearchIndex.ALL_FIELD, all.toArray(new String[all.size()]));
+		Map<String, Serializable> values = new HashMap<>();
+		for (Map.Entry<String, Method> entry : mapping.values.entrySet()) {
+			Object value = read(entry.getValue(), entity);
+			if (value instanceof Serializable)
+				values.put(entry.getKey(), (Serializable) value);
+		}
+		return new SearchDocument(mapping.type, id, terms, values);
+	}
+
+	public void index(SearchDocument document) {
+		SearchIndex index = getIndexForWrite(document.getType(), document.getKey(), document);
+		if (index == null)
+			return;
+		try {
+			index.put(document);
+		} catch (IOException e) {
+			log.error("Failed to index " + document.getType() + "#" + document.getKey(), e);
+		}
+	}
+
+	public void unindex(String type, Serializable id) {
+		SearchIndex index = getIndexForWrite(type, String.valueOf(id), null);
+		if (index == null)
+			return;
+		try {
+			index.delete(String.valueOf(id));
+		} catch (IOException e) {
+			log.error("Failed to unindex " + type + "#" + id, e);
+		}
+	}
+
+	public String getType(Class<?> clazz) {
+		Mapping mapping = getMapping(ReflectionUtils.getActualClass(clazz));
+		return mapping != null ? mapping.type : null;
+	}
+
+	@Override
+	public ResultPage<T> search(ResultPage<T> resultPage) {
+		return search(resultPage, null);
+	}
+
+	@Override
+	public List<T> search(SearchCriteria searchCriteria) {
+		return search(searchCriteria, null);
+	}
+
+	@Override
+	public ResultPage<T> search(ResultPage<T> resultPage, Mapper<T> mapper) {
+		long time = System.currentTimeMillis();
+		SearchCriteria criteria = resultPage.getCriteria();
+		List<SearchDocument> documents = find(criteria);
+		resultPage.setTotalResults(documents.size());
+		if (resultPage.isPaginating()) {
+			int start = Math.max(0, Math.min(resultPage.getStart(), documents.size()));
+			documents = documents.subList(start, Math.min(start + resultPage.getPageSize(), documents.size()));
+		}
+		resultPage.setResult(map(documents, mapper));
+		resultPage.setTookInMillis(System.currentTimeMillis() - time);
+		return resultPage;
+	}
+
+	@Override
+	public List<T> search(SearchCriteria searchCriteria, Mapper<T> mapper) {
+		return map(find(searchCriteria), mapper);
+	}
+
+	@Override
+	public List<T> search(SearchCriteria searchCriteria, Mapper<T> mapper, int limit) {
+		List<SearchDocument> documents = find(searchCriteria);
+		if (limit > 0 && documents.size() > limit)
+			documents = documents.subList(0, limit);
+		return map(documents, mapper);
+	}
+
+	@Override
+	public Map<String, Integer> countTermsByField(SearchCriteria searchCriteria, String field) {
+		SearchQuery query = SearchQuery.parse(searchCriteria.getQuery());
+		Map<String, Integer> result = new HashMap<>();
+		for (SearchIndex index : getIndexes(searchCriteria))
+			index.countTerms(query, field).forEach((k, v) -> result.merge(k, v, Integer::sum));
+		return result;
+	}
+
+	private SearchIndex getIndexForWrite(String type, String key, SearchDocument document) {
+		Map<String, SearchDocument> pending = pendings.get(type);
+		if (pending == null)
+			return indexes.get(type);
+		// record and lookup atomically, write to replaced index is replayed
+		synchronized (pending) {
+			pending.put(key, document);
+			return indexes.get(type);
+		}
+	}
+
+	private List<SearchDocument> find(SearchCriteria criteria) {
+		if (criteria == null)
+			criteria = new SearchCriteria();
+		SearchQuery query = SearchQuery.parse(criteria.getQuery());
+		List<SearchIndex> list = getIndexes(criteria);
+		if (list.size() == 1)
+			return list.get(0).search(query, criteria.getSorts());
+		List<SearchDocument> documents = new ArrayList<>();
+		for (SearchIndex index : list)
+			documents.addAll(index.search(query, criteria.getSorts()));
+		return documents;
+	}
+
+	private List<SearchIndex> getIndexes(SearchCriteria criteria) {
+		String[] types = criteria.getTypes();
+		if (types == null || types.length == 0)
+			return new ArrayList<>(indexes.values());
+		List<SearchIndex> list = new ArrayList<>(types.length);
+		for (String type : types) {
+			SearchIndex index = indexes.get(type);
+			if (index != null)
+				list.add(index);
+		}
+		return list;
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<T> map(List<SearchDocument> documents, Mapper<T> mapper) {
+		List<T> list = new ArrayList<>(documents.size());
+		if (documents.isEmpty())
+			return list;
+		if (mapper != null) {
+			for (SearchDocument document : documents) {
+				T entity = mapper.map((T) toStub(document));
+				if (entity != null)
+					list.add(entity);
+			}
+			return list;
+		}
+		// load each type with single query and keep the order of documents
+		Map<String, List<Serializable>> ids = new LinkedHashMap<>();
+		for (SearchDocument document : documents)
+			ids.computeIfAbsent(document.getType(), k -> new ArrayList<>()).add(document.getId());
+		Map<String, Object> entities = new HashMap<>();
+		Session session = sessionFactory.getCurrentSession();
+		for (Map.Entry<String, List<Serializable>> entry : ids.entrySet()) {
+			Mapping mapping = getMapping(entry.getKey());
+			if (mapping == null)
+				continue;
+			for (Object entity : session.byMultipleIds(mapping.clazz).multiLoad(entry.getValue()))
+				if (entity != null)
+					entities.put(entry.getKey() + '#' + ((Persistable<?>) entity).getId(), entity);
+		}
+		for (SearchDocument document : documents) {
+			Object entity = entities.get(document.getType() + '#' + document.getKey());
+			if (entity != null)
+				list.add((T) entity);
+		}
+		return list;
+	}
+
+	private Object toStub(SearchDocument document) {
+		Mapping mapping = getMapping(document.getType());
+		if (mapping == null)
+			return null;
+		BeanWrapperImpl bw = new BeanWrapperImpl(mapping.clazz);
+		if (bw.isWritableProperty("id"))
+			bw.setPropertyValue("id", document.getId());
+		for (Map.Entry<String, Serializable> entry : document.getValues().entrySet()) {
+			if (bw.isWritableProperty(entry.getKey())) {
+				try {
+					bw.setPropertyValue(entry.getKey(), entry.getValue());
+				} catch (Exception e) {
+					log.warn("Failed to set {} of {}: {}", entry.getKey(), document.getType(), e.getMessage());
+				}
+			}
+		}
+		return bw.getWrappedInstance();
+	}
+
+	private SearchIndex createIndex(Mapping mapping) {
+		SearchIndex index = new SearchIndex(mapping.type, new File(getBaseDirectory(), mapping.type));
+		index.setCompactThreshold(compactThreshold);
+		for (FieldMapping fm : mapping.fields) {
+			if (fm.analyzed)
+				index.getAnalyzedFields().add(fm.name);
+			if (fm.boost != 1.0f)
+				index.setBoost(fm.name, fm.boost);
+		}
+		return index;
+	}
+
+	private File getBaseDirectory() {
+		return StringUtils.isNotBlank(directory) ? new File(directory)
+				: new File(AppInfo.getAppHome() + File.separator + "search");
+	}
+
+	private Mapping getMapping(String type) {
+		for (Mapping mapping : mappings.values())
+			if (mapping != NONE && mapping.type.equals(type))
+				return mapping;
+		return null;
+	}
+
+	private Mapping getMapping(Class<?> clazz) {
+		Mapping mapping = mappings.computeIfAbsent(clazz, LocalSearchService::createMapping);
+		return mapping != NONE ? mapping : null;
+	}
+
+	private static Mapping createMapping(Class<?> clazz) {
+		Searchable searchable = clazz.getAnnotation(Searchable.class);
+		if (searchable == null || !searchable.root())
+			return NONE;
+		String type = StringUtils.isNotBlank(searchable.type()) ? searchable.type()
+				: StringUtils.uncapitalize(clazz.getSimpleName());
+		List<FieldMapping> fields = new ArrayList<>();
+		Map<String, Method> values = new HashMap<>();
+		Map<String, SearchableProperty> properties = AnnotationUtils.getAnnotatedPropertyNameAndAnnotations(clazz,
+				SearchableProperty.class);
+		for (Map.Entry<String, SearchableProperty> entry : properties.entrySet()) {
+			SearchableProperty sp = entry.getValue();
+			if (sp.index() == Index.NO)
+				continue;
+			PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(clazz, entry.getKey());
+			if (pd == null || pd.getReadMethod() == null)
+				continue;
+			boolean analyzed = sp.index() != Index.NOT_ANALYZED;
+			fields.add(new FieldMapping(entry.getKey(), pd.getReadMethod(), analyzed, sp.include_in_all(), sp.boost()));
+			if (!analyzed && pd.getPropertyType() == String.class)
+				values.put(entry.getKey(), pd.getReadMethod());
+		}
+		for (PropertyDescriptor pd : BeanUtils.getPropertyDescriptors(clazz)) {
+			Class<?> propertyType = pd.getPropertyType();
+			if (pd.getReadMethod() != null && propertyType != null && (propertyType.isPrimitive()
+					|| Number.class.isAssignableFrom(propertyType) || Date.class.isAssignableFrom(propertyType)
+					|| propertyType.isEnum() || propertyType == Boolean.class))
+				values.put(pd.getName(), pd.getReadMethod());
+		}
+		return new Mapping(type, clazz, fields, values);
+	}
+
+	private static Object read(Method method, Object entity) {
+		try {
+			return method.invoke(entity);
+		} catch (Exception e) {
+			log.warn("Failed to read {} of {}: {}", method.getName(), entity.getClass().getName(), e.getMessage());
+			return null;
+		}
+	}
+
+	private static class Mapping {
+
+		final String type;
+
+		final Class<?> clazz;
+
+		final List<FieldMapping> fields;
+
+		// used for sorting and stubbing
+		final Map<String, Method> values;
+
+		Mapping(String type, Class<?> clazz, List<FieldMapping> fields, Map<String, Method> values) {
+			this.type = type;
+			this.clazz = clazz;
+			this.fields = fields;
+			this.values = values;
+		}
+
+	}
+
+	private static class FieldMapping {
+
+		final String name;
+
+		final Method readMethod;
+
+		final boolean analyzed;
+
+		final boolean includeInAll;
+
+		final float boost;
+
+		FieldMapping(String name, Method readMethod, boolean analyzed, boolean includeInAll, float boost) {
+			this.name = name;
+			this.readMethod = readMethod;
+			this.analyzed = analyzed;
+			this.includeInAll = includeInAll;
+			this.boost = boost;
+		}
+
+	}
+
+}
@@ -0,0 +1,36 @@
+package org.ironrhino.core.search.local;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Indexed form of an entity, terms are used for matching and values for
+ * sorting.
+ */
+@Getter
+public class SearchDocument implements Serializable {
+
+	private static final long serialVersionUID = -3216472981957428155L;
+
+	private final String type;
+
+	private final Serializable id;
+
+	private final Map<String, String[]> terms;
+
+	private final Map<String, Serializable> values;
+
+	public SearchDocument(String type, Serializable id, Map<String, String[]> terms, Map<String, Serializable> values) {
+		this.type = type;
+		this.id = id;
+		this.terms = terms;
+		this.values = values;
+	}
+
+	public String getKey() {
+		return String.valueOf(id);
+	}
+
+}
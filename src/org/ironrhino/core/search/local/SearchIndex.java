@@ -0,0 +1,357 @@
+package org.ironrhino.core.search.local;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * In-memory inverted index of one type, modifications are appended to a log
+ * file and compacted into a segment file periodically.
+ */
+public class SearchIndex implements Closeable {
+
+	public static final String ALL_FIELD = "_all";
+
+	private static final String SEGMENT_FILE = "segment";
+
+	private static final String LOG_FILE = "log";
+
+	@Getter
+	private final String type;
+
+	private final File directory;
+
+	private final Map<String, SearchDocument> documents = new ConcurrentHashMap<>();
+
+	private final Map<String, NavigableMap<String, Map<String, Integer>>> postings = new ConcurrentHashMap<>();
+
+	@Getter
+	private final Set<String> analyzedFields = ConcurrentHashMap.newKeySet();
+
+	private final Map<String, Float> boosts = new ConcurrentHashMap<>();
+
+	@Getter
+	@Setter
+	private int compactThreshold = 10000;
+
+	private DataOutputStream log;
+
+	private int logSize;
+
+	private boolean discarded;
+
+	public SearchIndex(String type, File directory) {
+		this.type = type;
+		this.directory = directory;
+		analyzedFields.add(ALL_FIELD);
+	}
+
+	public void setBoost(String field, float boost) {
+		boosts.put(field, boost);
+	}
+
+	public float getBoost(String field) {
+		return boosts.getOrDefault(field, 1.0f);
+	}
+
+	public int size() {
+		return documents.size();
+	}
+
+	public SearchDocument get(String key) {
+		return documents.get(key);
+	}
+
+	/**
+	 * @return false if nothing persisted yet
+	 */
+	public synchronized boolean load() throws IOException {
+		if (directory == null)
+			return false;
+		File segment = new File(directory, SEGMENT_FILE);
+		File logFile = new File(directory, LOG_FILE);
+		if (!segment.exists() && !logFile.exists())
+			return false;
+		if (segment.exists()) {
+			try (ObjectInputStream ois = new ObjectInputStream(
+					new GZIPInputStream(new BufferedInputStream(new FileInputStream(segment))))) {
+				int count = ois.readInt();
+				for (int i = 0; i < count; i++)
+					apply((SearchDocument) ois.readObject());
+			} catch (ClassNotFoundException e) {
+				throw new IOException(e);
+			}
+		}
+		if (logFile.exists()) {
+			try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+				while (true) {
+					byte[] bytes;
+					try {
+						bytes = new byte[dis.readInt()];
+						dis.readFully(bytes);
+					} catch (EOFException e) {
+						// ignore partially written tail
+						break;
+					}
+					try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+						LogEntry entry = (LogEntry) ois.readObject();
+						if (entry.document != null)
+							apply(entry.document);
+						else
+							remove(entry.key);
+						logSize++;
+					} catch (ClassNotFoundException e) {
+						throw new IOException(e);
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	public synchronized void put(SearchDocument document) throws IOException {
+		append(new LogEntry(document.getKey(), document));
+		apply(document);
+		compactIfNecessary();
+	}
+
+	/**
+	 * Add document without logging, for bulk loading a fresh index which should
+	 * be compacted once afterwards.
+	 */
+	synchronized void bulkPut(SearchDocument document) {
+		apply(document);
+	}
+
+	synchronized void bulkDelete(String key) {
+		remove(key);
+	}
+
+	public synchronized void delete(String key) throws IOException {
+		if (!documents.containsKey(key))
+			return;
+		append(new LogEntry(key, null));
+		remove(key);
+		compactIfNecessary();
+	}
+
+	public synchronized void clear() throws IOException {
+		documents.clear();
+		postings.clear();
+		compact();
+	}
+
+	public synchronized void compact() throws IOException {
+		if (directory == null || discarded)
+			return;
+		if (!directory.exists() && !directory.mkdirs())
+			throw new IOException("Failed to create directory: " + directory);
+		closeLog();
+		File tmp = new File(directory, SEGMENT_FILE + ".tmp");
+		List<SearchDocument> list = new ArrayList<>(documents.values());
+		try (ObjectOutputStream oos = new ObjectOutputStream(
+				new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))) {
+			oos.writeInt(list.size());
+			for (SearchDocument document : list)
+				oos.writeObject(document);
+		}
+		Files.move(tmp.toPath(), new File(directory, SEGMENT_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		Files.deleteIfExists(new File(directory, LOG_FILE).toPath());
+		logSize = 0;
+	}
+
+	/**
+	 * Release log file without persisting anything, directory is taken over by
+	 * another index.
+	 */
+	synchronized void discard() throws IOException {
+		discarded = true;
+		closeLog();
+		logSize = 0;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (logSize > 0)
+			compact();
+		closeLog();
+	}
+
+	public List<SearchDocument> search(SearchQuery query, Map<String, Boolean> sorts) {
+		Map<String, Float> hits = query.execute(this);
+		List<SearchDocument> list = new ArrayList<>(hits.size());
+		for (String key : hits.keySet()) {
+			SearchDocument document = documents.get(key);
+			if (document != null)
+				list.add(document);
+		}
+		list.sort(comparator(hits, sorts));
+		return list;
+	}
+
+	public Map<String, Integer> countTerms(SearchQuery query, String field) {
+		Map<String, Integer> result = new HashMap<>();
+		for (String key : query.execute(this).keySet()) {
+			SearchDocument document = documents.get(key);
+			if (document == null)
+				continue;
+			String[] terms = document.getTerms().get(field);
+			if (terms == null)
+				continue;
+			for (int i = 0; i < terms.length; i++) {
+				boolean duplicated = false;
+				for (int j = 0; j < i && !duplicated; j++)
+					duplicated = terms[j].equals(terms[i]);
+				if (!duplicated)
+					result.merge(terms[i], 1, Integer::sum);
+			}
+		}
+		return result;
+	}
+
+	Set<String> keys() {
+		return documents.keySet();
+	}
+
+	Map<String, Integer> postings(String field, String term) {
+		NavigableMap<String, Map<String, Integer>> terms = postings.get(field);
+		if (terms == null)
+			return Collections.emptyMap();
+		Map<String, Integer> map = terms.get(term);
+		return map != null ? map : Collections.emptyMap();
+	}
+
+	NavigableMap<String, Map<String, Integer>> prefixPostings(String field, String prefix) {
+		NavigableMap<String, Map<String, Integer>> terms = postings.get(field);
+		if (terms == null)
+			return Collections.emptyNavigableMap();
+		return terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+	}
+
+	private void append(LogEntry entry) throws IOException {
+		if (directory == null || discarded)
+			return;
+		if (log == null) {
+			if (!directory.exists() && !directory.mkdirs())
+				throw new IOException("Failed to create directory: " + directory);
+			log = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(new File(directory, LOG_FILE), true)));
+		}
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+			oos.writeObject(entry);
+		}
+		log.writeInt(baos.size());
+		baos.writeTo(log);
+		log.flush();
+		logSize++;
+	}
+
+	private void compactIfNecessary() throws IOException {
+		if (logSize >= compactThreshold)
+			compact();
+	}
+
+	private void closeLog() throws IOException {
+		if (log != null) {
+			log.close();
+			log = null;
+		}
+	}
+
+	private void apply(SearchDocument document) {
+		String key = document.getKey();
+		remove(key);
+		documents.put(key, document);
+		for (Map.Entry<String, String[]> entry : document.getTerms().entrySet()) {
+			NavigableMap<String, Map<String, Integer>> terms = postings.computeIfAbsent(entry.getKey(),
+					k -> new ConcurrentSkipListMap<>());
+			for (String term : entry.getValue())
+				terms.computeIfAbsent(term, k -> new ConcurrentHashMap<>()).merge(key, 1, Integer::sum);
+		}
+	}
+
+	private void remove(String key) {
+		SearchDocument document = documents.remove(key);
+		if (document == null)
+			return;
+		for (Map.Entry<String, String[]> entry : document.getTerms().entrySet()) {
+			NavigableMap<String, Map<String, Integer>> terms = postings.get(entry.getKey());
+			if (terms == null)
+				continue;
+			for (String term : entry.getValue()) {
+				Map<String, Integer> docs = terms.get(term);
+				if (docs != null) {
+					docs.remove(key);
+					if (docs.isEmpty())
+						terms.remove(term, docs);
+				}
+			}
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Comparator<SearchDocument> comparator(Map<String, Float> hits, Map<String, Boolean> sorts) {
+		Comparator<SearchDocument> byScore = Comparator
+				.comparing((SearchDocument d) -> hits.getOrDefault(d.getKey(), 0f)).reversed();
+		if (sorts == null || sorts.isEmpty())
+			return byScore.thenComparing(SearchDocument::getKey);
+		Comparator<SearchDocument> comparator = null;
+		for (Map.Entry<String, Boolean> entry : sorts.entrySet()) {
+			String name = entry.getKey();
+			Comparator<Comparable> values = Comparator.naturalOrder();
+			if (entry.getValue())
+				values = values.reversed();
+			Comparator<SearchDocument> c = Comparator.comparing(
+					(SearchDocument d) -> (Comparable) d.getValues().get(name), Comparator.nullsLast(values));
+			comparator = comparator == null ? c : comparator.thenComparing(c);
+		}
+		return comparator.thenComparing(byScore).thenComparing(SearchDocument::getKey);
+	}
+
+	private static class LogEntry implements Serializable {
+
+		private static final long serialVersionUID = 5093127375361937062L;
+
+		final String key;
+
+		final SearchDocument document;
+
+		LogEntry(String key, SearchDocument document) {
+			this.key = key;
+			this.document = document;
+		}
+
+	}
+
+}
@@ -0,0 +1,346 @@
+package org.ironrhino.core.search.local;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Subset of query string syntax: {@code field:term}, {@code field:prefix*},
+ * {@code "phrase"}, {@code AND}, {@code OR}, {@code NOT}, {@code +}, {@code -}
+ * and parentheses, terms without field match {@value SearchIndex#ALL_FIELD},
+ * adjacent clauses are joined by {@code OR}.
+ */
+public abstract class SearchQuery {
+
+	/**
+	 * @return score of matched documents keyed by document key
+	 */
+	public abstract Map<String, Float> execute(SearchIndex index);
+
+	public static SearchQuery parse(String query) {
+		if (query == null || query.trim().isEmpty() || query.trim().equals("*"))
+			return new MatchAll();
+		return new Parser(query).parse();
+	}
+
+	static class MatchAll extends SearchQuery {
+
+		@Override
+		public Map<String, Float> execute(SearchIndex index) {
+			Map<String, Float> result = new HashMap<>();
+			for (String key : index.keys())
+				result.put(key, 1f);
+			return result;
+		}
+
+	}
+
+	static class Term extends SearchQuery {
+
+		final String field;
+
+		final String value;
+
+		final boolean prefix;
+
+		// value is already analyzed
+		final boolean analyzed;
+
+		Term(String field, String value, boolean prefix) {
+			this(field, value, prefix, false);
+		}
+
+		private Term(String field, String value, boolean prefix, boolean analyzed) {
+			this.field = field;
+			this.value = value;
+			this.prefix = prefix;
+			this.analyzed = analyzed;
+		}
+
+		@Override
+		public Map<String, Float> execute(SearchIndex index) {
+			if (!analyzed && index.getAnalyzedFields().contains(field)) {
+				List<String> tokens = Analyzer.analyze(value);
+				if (tokens.isEmpty())
+					return Collections.emptyMap();
+				if (tokens.size() > 1 || !prefix) {
+					// phrase is approximated by conjunction of its tokens
+					List<SearchQuery> clauses = new ArrayList<>(tokens.size());
+					for (int i = 0; i < tokens.size(); i++)
+						clauses.add(new Term(field, tokens.get(i), prefix && i == tokens.size() - 1, true));
+					return clauses.size() == 1 ? clauses.get(0).execute(index) : new And(clauses).execute(index);
+				}
+				return new Term(field, tokens.get(0), true, true).execute(index);
+			}
+			return match(index);
+		}
+
+		private Map<String, Float> match(SearchIndex index) {
+			float boost = index.getBoost(field);
+			Map<String, Float> result = new HashMap<>();
+			if (prefix) {
+				for (Map<String, Integer> docs : index.prefixPostings(field, value).values())
+					for (Map.Entry<String, Integer> entry : docs.entrySet())
+						result.merge(entry.getKey(), entry.getValue() * boost, Float::sum);
+			} else {
+				for (Map.Entry<String, Integer> entry : index.postings(field, value).entrySet())
+					result.put(entry.getKey(), entry.getValue() * boost);
+			}
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return field + ':' + value + (prefix ? "*" : "");
+		}
+
+	}
+
+	static class And extends SearchQuery {
+
+		final List<SearchQuery> clauses;
+
+		And(List<SearchQuery> clauses) {
+			this.clauses = clauses;
+		}
+
+		@Override
+		public Map<String, Float> execute(SearchIndex index) {
+			Map<String, Float> result = null;
+			List<Map<String, Float>> excludes = new ArrayList<>();
+			for (SearchQuery clause : clauses) {
+				if (clause instanceof Not) {
+					excludes.add(((Not) clause).clause.execute(index));
+					continue;
+				}
+				Map<String, Float> hits = clause.execute(index);
+				if (result == null) {
+					result = new HashMap<>(hits);
+				} else {
+					result.keySet().retainAll(hits.keySet());
+					for (Map.Entry<String, Float> entry : result.entrySet())
+						entry.setValue(entry.getValue() + hits.get(entry.getKey()));
+				}
+				if (result.isEmpty())
+					return result;
+			}
+			if (result == null)
+				result = new MatchAll().execute(index);
+			for (Map<String, Float> exclude : excludes)
+				result.keySet().removeAll(exclude.keySet());
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return join(clauses, " AND ");
+		}
+
+	}
+
+	static class Or extends SearchQuery {
+
+		final List<SearchQuery> clauses;
+
+		Or(List<SearchQuery> clauses) {
+			this.clauses = clauses;
+		}
+
+		@Override
+		public Map<String, Float> execute(SearchIndex index) {
+			Map<String, Float> result = null;
+			List<Map<String, Float>> excludes = new ArrayList<>();
+			for (SearchQuery clause : clauses) {
+				// "a -b" means a and not b
+				if (clause instanceof Not) {
+					excludes.add(((Not) clause).clause.execute(index));
+					continue;
+				}
+				Map<String, Float> hits = clause.execute(index);
+				if (result == null)
+					result = new HashMap<>(hits);
+				else
+					for (Map.Entry<String, Float> entry : hits.entrySet())
+						result.merge(entry.getKey(), entry.getValue(), Float::sum);
+			}
+			if (result == null)
+				result = new MatchAll().execute(index);
+			for (Map<String, Float> exclude : excludes)
+				result.keySet().removeAll(exclude.keySet());
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return join(clauses, " OR ");
+		}
+
+	}
+
+	static class Not extends SearchQuery {
+
+		final SearchQuery clause;
+
+		Not(SearchQuery clause) {
+			this.clause = clause;
+		}
+
+		@Override
+		public Map<String, Float> execute(SearchIndex index) {
+			Map<String, Float> result = new MatchAll().execute(index);
+			result.keySet().removeAll(clause.execute(index).keySet());
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return "NOT " + clause;
+		}
+
+	}
+
+	private static String join(List<SearchQuery> clauses, String operator) {
+		StringBuilder sb = new StringBuilder("(");
+		for (int i = 0; i < clauses.size(); i++) {
+			if (i > 0)
+				sb.append(operator);
+			sb.append(clauses.get(i));
+		}
+		return sb.append(')').toString();
+	}
+
+	private static class Parser {
+
+		private final String input;
+
+		private int pos;
+
+		private boolean quoted;
+
+		Parser(String input) {
+			this.input = input;
+		}
+
+		SearchQuery parse() {
+			SearchQuery query = or();
+			skipWhitespace();
+			if (pos < input.length())
+				throw new IllegalArgumentException("Unexpected '" + input.charAt(pos) + "' at " + pos + ": " + input);
+			return query;
+		}
+
+		private SearchQuery or() {
+			List<SearchQuery> clauses = new ArrayList<>();
+			clauses.add(and());
+			while (true) {
+				skipWhitespace();
+				if (pos >= input.length() || input.charAt(pos) == ')')
+					break;
+				// adjacent clauses are joined by OR too
+				if (!keyword("OR"))
+					symbol("||");
+				clauses.add(and());
+			}
+			return clauses.size() == 1 ? clauses.get(0) : new Or(clauses);
+		}
+
+		private SearchQuery and() {
+			List<SearchQuery> clauses = new ArrayList<>();
+			clauses.add(unary());
+			while (keyword("AND") || symbol("&&"))
+				clauses.add(unary());
+			return clauses.size() == 1 ? clauses.get(0) : new And(clauses);
+		}
+
+		private SearchQuery unary() {
+			skipWhitespace();
+			if (keyword("NOT") || symbol("-") || symbol("!"))
+				return new Not(unary());
+			if (symbol("+"))
+				return unary();
+			return primary();
+		}
+
+		private SearchQuery primary() {
+			skipWhitespace();
+			if (symbol("(")) {
+				SearchQuery query = or();
+				skipWhitespace();
+				if (!symbol(")"))
+					throw new IllegalArgumentException("Missing ')' at " + pos + ": " + input);
+				return query;
+			}
+			String field = SearchIndex.ALL_FIELD;
+			String value = value();
+			if (value.isEmpty())
+				throw new IllegalArgumentException("Missing term at " + pos + ": " + input);
+			if (pos < input.length() && input.charAt(pos) == ':') {
+				pos++;
+				field = value;
+				value = value();
+				if (value.isEmpty())
+					throw new IllegalArgumentException("Missing term at " + pos + ": " + input);
+			}
+			boolean prefix = value.length() > 1 && value.endsWith("*") && !quoted;
+			if (prefix)
+				value = value.substring(0, value.length() - 1);
+			return new Term(field, value, prefix);
+		}
+
+		private String value() {
+			quoted = false;
+			if (pos < input.length() && input.charAt(pos) == '"') {
+				int end = input.indexOf('"', pos + 1);
+				if (end < 0)
+					throw new IllegalArgumentException("Missing '\"' at " + pos + ": " + input);
+				String value = input.substring(pos + 1, end);
+				pos = end + 1;
+				quoted = true;
+				return value;
+			}
+			StringBuilder sb = new StringBuilder();
+			while (pos < input.length()) {
+				char c = input.charAt(pos);
+				if (c == '\\' && pos + 1 < input.length()) {
+					sb.append(input.charAt(pos + 1));
+					pos += 2;
+					continue;
+				}
+				if (Character.isWhitespace(c) || c == ':' || c == '(' || c == ')')
+					break;
+				sb.append(c);
+				pos++;
+			}
+			return sb.toString();
+		}
+
+		private boolean keyword(String keyword) {
+			skipWhitespace();
+			int end = pos + keyword.length();
+			if (input.startsWith(keyword, pos)
+					&& (end == input.length() || Character.isWhitespace(input.charAt(end)) || input.charAt(end) == '(')) {
+				pos = end;
+				return true;
+			}
+			return false;
+		}
+
+		private boolean symbol(String symbol) {
+			skipWhitespace();
+			if (input.startsWith(symbol, pos)) {
+				pos += symbol.length();
+				return true;
+			}
+			return false;
+		}
+
+		private void skipWhitespace() {
+			while (pos < input.length() && Character.isWhitespace(input.charAt(pos)))
+				pos++;
+		}
+
+	}
+
+}
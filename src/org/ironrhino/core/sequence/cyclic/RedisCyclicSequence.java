@@ -4,6 +4,11 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.ironrhino.core.spring.configuration.PriorityQualifier;
 import org.ironrhino.core.util.DateUtils;
@@ -17,17 +22,40 @@ import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.util.Assert;
 
+import lombok.Getter;
+import lombok.Setter;
+
 public class RedisCyclicSequence extends AbstractCyclicSequence {
 
 	public static final String KEY_SEQUENCE = "seq:";
 
+	private static final Segment EMPTY_SEGMENT = new Segment(0, 0, 0);
+
 	@Autowired
 	@Qualifier("stringRedisTemplate")
 	@PriorityQualifier
 	private StringRedisTemplate sequenceStringRedisTemplate;
 
+	@Autowired(required = false)
+	private ExecutorService executorService;
+
 	private BoundValueOperations<String, String> boundValueOperations;
 
+	// values reserved by one INCRBY, 1 means INCR per value
+	@Getter
+	@Setter
+	private int segmentSize = 1;
+
+	// prefetch next segment in background if remaining values of current
+	// segment drop to this threshold, defaults to a fifth of segmentSize
+	@Getter
+	@Setter
+	private int prefetchThreshold;
+
+	private volatile Segment segment = EMPTY_SEGMENT;
+
+	private final AtomicReference<CompletableFuture<Segment>> prefetching = new AtomicReference<>();
+
 	private RedisScript<Boolean> compareAndSetScript = new DefaultRedisScript<>(
 			"if redis.call('get',KEYS[1]) == ARGV[1] then redis.call('set',KEYS[1],ARGV[2]) return true else return false end",
 			Boolean.class);
@@ -38,6 +66,10 @@ public class RedisCyclicSequence extends AbstractCyclicSequence {
 		Assert.isTrue(getPaddingLength() > 0, "paddingLength should large than 0");
 		int maxlength = String.valueOf(Long.MAX_VALUE).length() - getCycleType().getPattern().length();
 		Assert.isTrue(getPaddingLength() <= maxlength, "paddingLength should not large than " + maxlength);
+		Assert.isTrue(segmentSize > 0 && String.valueOf(segmentSize).length() <= getPaddingLength(),
+				"segmentSize should large than 0 and fit in paddingLength");
+		if (prefetchThreshold <= 0 || prefetchThreshold >= segmentSize)
+			prefetchThreshold = segmentSize / 5;
 		boundValueOperations = sequenceStringRedisTemplate.boundValueOps(KEY_SEQUENCE + getSequenceName());
 		Long time = sequenceStringRedisTemplate.execute((RedisConnection connection) -> connection.time());
 		if (time == null)
@@ -47,6 +79,94 @@ public class RedisCyclicSequence extends AbstractCyclicSequence {
 
 	@Override
 	public String nextStringValue() {
+		if (segmentSize <= 1)
+			return incrementAndGet();
+		while (true) {
+			Segment current = segment;
+			if (System.currentTimeMillis() <= current.deadline) {
+				int index = current.cursor.getAndIncrement();
+				if (index < current.size) {
+					if (index == current.size - prefetchThreshold)
+						prefetch();
+					return String.valueOf(current.first + index);
+				}
+			}
+			synchronized (this) {
+				if (segment == current) {
+					Segment next = nextSegment();
+					if (next == null) {
+						segment = EMPTY_SEGMENT;
+						return incrementAndGet();
+					}
+					segment = next;
+				}
+			}
+		}
+	}
+
+	private void prefetch() {
+		CompletableFuture<Segment> future = new CompletableFuture<>();
+		if (!prefetching.compareAndSet(null, future))
+			return;
+		(executorService != null ? executorService : ForkJoinPool.commonPool()).execute(() -> {
+			try {
+				future.complete(reserve());
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		});
+	}
+
+	private Segment nextSegment() {
+		CompletableFuture<Segment> future = prefetching.getAndSet(null);
+		if (future != null) {
+			try {
+				Segment next = future.join();
+				// discard segment prefetched before cycle rollover
+				if (next != null && System.currentTimeMillis() <= next.deadline)
+					return next;
+			} catch (Exception e) {
+				logger.warn("Prefetch segment of " + getSequenceName() + " failed: " + e.getMessage());
+			}
+		}
+		return reserve();
+	}
+
+	// returns null if counter is ahead of current cycle
+	private Segment reserve() {
+		@SuppressWarnings("unchecked")
+		byte[] key = ((RedisSerializer<String>) sequenceStringRedisTemplate.getKeySerializer())
+				.serialize(boundValueOperations.getKey());
+		long cycleCapacity = (long) Math.pow(10, getPaddingLength());
+		while (true) {
+			List<Object> results = sequenceStringRedisTemplate.executePipelined((RedisConnection connection) -> {
+				connection.incrBy(key, segmentSize);
+				connection.time();
+				return null;
+			});
+			long value = (Long) results.get(0);
+			long time = (Long) results.get(1);
+			Date now = new Date(time);
+			// segment never spans cycle rollover
+			long deadline = getCycleType().getCycleEnd(now).getTime() - time + System.currentTimeMillis();
+			long base = Long.valueOf(getCycleType().format(now)) * cycleCapacity;
+			if (value >= base + cycleCapacity)
+				return null;
+			if (value > base) {
+				long first = Math.max(value - segmentSize + 1, base + 1);
+				return new Segment(first, (int) (value - first + 1), deadline);
+			}
+			String restart = getStringValue(now, getPaddingLength(), segmentSize);
+			Boolean success = sequenceStringRedisTemplate.execute(compareAndSetScript,
+					Collections.singletonList(boundValueOperations.getKey()), String.valueOf(value), restart);
+			if (success == null)
+				throw new RuntimeException("Unexpected null");
+			if (success)
+				return new Segment(base + 1, segmentSize, deadline);
+		}
+	}
+
+	private String incrementAndGet() {
 		@SuppressWarnings("unchecked")
 		byte[] key = ((RedisSerializer<String>) sequenceStringRedisTemplate.getKeySerializer())
 				.serialize(boundValueOperations.getKey());
@@ -93,7 +213,25 @@ public class RedisCyclicSequence extends AbstractCyclicSequence {
 		} catch (InterruptedException e) {
 			e.printStackTrace();
 		}
-		return nextStringValue();
+		return incrementAndGet();
+	}
+
+	private static class Segment {
+
+		private final long first;
+
+		private final int size;
+
+		private final long deadline;
+
+		private final AtomicInteger cursor = new AtomicInteger();
+
+		Segment(long first, int size, long deadline) {
+			this.first = first;
+			this.size = size;
+			this.deadline = deadline;
+		}
+
 	}
 
-}
\ No newline at end of file
+}
@@ -1,5 +1,7 @@
 package org.ironrhino.core.sequence.simple;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.sql.DataSource;
 
 import lombok.Getter;
@@ -7,6 +9,10 @@ import lombok.Setter;
 
 public abstract class AbstractDatabaseSimpleSequence extends AbstractSimpleSequence {
 
+	private static final long ADAPTIVE_INTERVAL = 1000;
+
+	private static final Block EMPTY_BLOCK = new Block(new long[0]);
+
 	@Getter
 	@Setter
 	private DataSource dataSource;
@@ -19,8 +25,96 @@ public abstract class AbstractDatabaseSimpleSequence extends AbstractSimpleSeque
 	@Setter
 	private int cacheSize = 1;
 
+	@Getter
+	@Setter
+	private boolean adaptive;
+
+	@Getter
+	@Setter
+	private int maxCacheSize = 1000;
+
+	private volatile Block block = EMPTY_BLOCK;
+
+	private int blockSize;
+
+	private long lastAllocated;
+
 	protected String getActualSequenceName() {
 		return new StringBuilder(getSequenceName()).append("_SEQ").toString();
 	}
 
+	@Override
+	public long nextLongValue() {
+		while (true) {
+			Block current = block;
+			int index = current.cursor.getAndIncrement();
+			if (index < current.size)
+				return current.valueAt(index);
+			synchronized (this) {
+				if (block == current)
+					block = allocate(nextBlockSize());
+			}
+		}
+	}
+
+	@Override
+	public void restart() {
+		synchronized (this) {
+			doRestart();
+			block = EMPTY_BLOCK;
+		}
+	}
+
+	/**
+	 * Reserve {@code size} values from database in one round trip, unused values
+	 * of the block are skipped if application shutdown or sequence restart.
+	 */
+	protected abstract Block allocate(int size);
+
+	protected abstract void doRestart();
+
+	private int nextBlockSize() {
+		int min = Math.max(cacheSize, 1);
+		if (!adaptive)
+			return min;
+		long now = System.currentTimeMillis();
+		long elapsed = now - lastAllocated;
+		if (blockSize < min)
+			blockSize = min;
+		else if (elapsed < ADAPTIVE_INTERVAL)
+			blockSize = Math.min(blockSize * 2, Math.max(maxCacheSize, min));
+		else if (elapsed > ADAPTIVE_INTERVAL * 10)
+			blockSize = Math.max(blockSize / 2, min);
+		lastAllocated = now;
+		return blockSize;
+	}
+
+	protected static final class Block {
+
+		private final long first;
+
+		private final long[] values;
+
+		private final int size;
+
+		private final AtomicInteger cursor = new AtomicInteger();
+
+		public Block(long first, int size) {
+			this.first = first;
+			this.values = null;
+			this.size = size;
+		}
+
+		public Block(long[] values) {
+			this.first = 0;
+			this.values = values;
+			this.size = values.length;
+		}
+
+		long valueAt(int index) {
+			return values != null ? values[index] : first + index;
+		}
+
+	}
+
 }
@@ -9,13 +9,20 @@ import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.Locale;
 
-import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataAccessResourceFailureException;
 
 public abstract class AbstractSequenceSimpleSequence extends AbstractDatabaseSimpleSequence {
 
 	protected abstract String getQuerySequenceStatement();
 
+	/**
+	 * Statement returns {@code count} rows of next values, {@code null} means not
+	 * supported by database.
+	 */
+	protected String getQuerySequenceStatement(int count) {
+		return null;
+	}
+
 	protected String getCreateSequenceStatement() {
 		StringBuilder sb = new StringBuilder("CREATE SEQUENCE ").append(getActualSequenceName());
 		if (getCacheSize() > 1)
@@ -59,19 +66,37 @@ public abstract class AbstractSequenceSimpleSequence extends AbstractDatabaseSim
 	}
 
 	@Override
-	public long nextLongValue() throws DataAccessException {
-		try (Connection con = getDataSource().getConnection();
-				Statement stmt = con.createStatement();
-				ResultSet rs = stmt.executeQuery(getQuerySequenceStatement())) {
-			rs.next();
-			return rs.getLong(1);
+	protected Block allocate(int size) {
+		long[] values = new long[size];
+		try (Connection con = getDataSource().getConnection(); Statement stmt = con.createStatement()) {
+			String sql = size > 1 ? getQuerySequenceStatement(size) : null;
+			if (sql != null) {
+				try (ResultSet rs = stmt.executeQuery(sql)) {
+					for (int i = 0; i < size; i++) {
+						if (!rs.next())
+							throw new DataAccessResourceFailureException(
+									"Expected " + size + " rows but " + i + " rows returned");
+						values[i] = rs.getLong(1);
+					}
+				}
+				Arrays.sort(values);
+			} else {
+				sql = getQuerySequenceStatement();
+				for (int i = 0; i < size; i++) {
+					try (ResultSet rs = stmt.executeQuery(sql)) {
+						rs.next();
+						values[i] = rs.getLong(1);
+					}
+				}
+			}
 		} catch (SQLException ex) {
 			throw new DataAccessResourceFailureException("Could not obtain next value of sequence", ex);
 		}
+		return new Block(values);
 	}
 
 	@Override
-	public void restart() {
+	protected void doRestart() {
 		try (Connection con = getDataSource().getConnection(); Statement stmt = con.createStatement()) {
 			con.setAutoCommit(true);
 			restartSequence(con, stmt);
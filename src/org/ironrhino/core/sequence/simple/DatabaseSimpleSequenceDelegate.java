@@ -56,6 +56,8 @@ public class DatabaseSimpleSequenceDelegate extends AbstractDatabaseSimpleSequen
 		seq.setDataSource(getDataSource());
 		if (getCacheSize() > 1)
 			seq.setCacheSize(getCacheSize());
+		seq.setAdaptive(isAdaptive());
+		seq.setMaxCacheSize(getMaxCacheSize());
 		seq.setPaddingLength(getPaddingLength());
 		seq.setTableName(getTableName());
 		seq.setSequenceName(getSequenceName());
@@ -67,6 +69,16 @@ public class DatabaseSimpleSequenceDelegate extends AbstractDatabaseSimpleSequen
 		seq.restart();
 	}
 
+	@Override
+	protected void doRestart() {
+		seq.doRestart();
+	}
+
+	@Override
+	protected Block allocate(int size) {
+		return seq.allocate(size);
+	}
+
 	@Override
 	public long nextLongValue() {
 		return seq.nextLongValue();
@@ -7,4 +7,10 @@ public class H2SimpleSequence extends AbstractSequenceSimpleSequence {
 		return new StringBuilder("CALL NEXT VALUE FOR ").append(getActualSequenceName()).toString();
 	}
 
+	@Override
+	protected String getQuerySequenceStatement(int count) {
+		return new StringBuilder("SELECT NEXT VALUE FOR ").append(getActualSequenceName())
+				.append(" FROM SYSTEM_RANGE(1, ").append(count).append(")").toString();
+	}
+
 }
@@ -20,19 +20,19 @@ public class MySQLSimpleSequence extends AbstractDatabaseSimpleSequence {
 	}
 
 	@Override
-	public long nextLongValue() {
+	protected Block allocate(int size) {
 		try (Connection con = getDataSource().getConnection()) {
 			con.setAutoCommit(true);
 			try (Statement stmt = con.createStatement()) {
 				String sequenceName = getSequenceName();
-				stmt.executeUpdate("UPDATE `" + getTableName() + "` SET VALUE = LAST_INSERT_ID(VALUE + 1) WHERE NAME='"
-						+ sequenceName + "'");
+				stmt.executeUpdate("UPDATE `" + getTableName() + "` SET VALUE = LAST_INSERT_ID(VALUE + " + size
+						+ ") WHERE NAME='" + sequenceName + "'");
 				try (ResultSet rs = stmt.executeQuery("SELECT LAST_INSERT_ID()")) {
 					if (!rs.next()) {
 						throw new DataAccessResourceFailureException(
 								"LAST_INSERT_ID() failed after executing an update");
 					}
-					return rs.getLong(1);
+					return new Block(rs.getLong(1) - size + 1, size);
 				}
 			}
 		} catch (SQLException ex) {
@@ -41,7 +41,7 @@ public class MySQLSimpleSequence extends AbstractDatabaseSimpleSequence {
 	}
 
 	@Override
-	public void restart() {
+	protected void doRestart() {
 		try (Connection con = getDataSource().getConnection()) {
 			con.setAutoCommit(true);
 			try (Statement stmt = con.createStatement()) {
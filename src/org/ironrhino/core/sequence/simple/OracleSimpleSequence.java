@@ -12,6 +12,12 @@ public class OracleSimpleSequence extends AbstractSequenceSimpleSequence {
 		return new StringBuilder("SELECT ").append(getActualSequenceName()).append(".NEXTVAL FROM DUAL").toString();
 	}
 
+	@Override
+	protected String getQuerySequenceStatement(int count) {
+		return new StringBuilder("SELECT ").append(getActualSequenceName())
+				.append(".NEXTVAL FROM DUAL CONNECT BY LEVEL <= ").append(count).toString();
+	}
+
 	@Override
 	protected void restartSequence(Connection con, Statement stmt) throws SQLException {
 		boolean autoCommit = con.getAutoCommit();
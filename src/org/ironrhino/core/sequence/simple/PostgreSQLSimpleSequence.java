@@ -7,4 +7,10 @@ public class PostgreSQLSimpleSequence extends AbstractSequenceSimpleSequence {
 		return new StringBuilder("SELECT NEXTVAL('").append(getActualSequenceName()).append("')").toString();
 	}
 
+	@Override
+	protected String getQuerySequenceStatement(int count) {
+		return new StringBuilder("SELECT NEXTVAL('").append(getActualSequenceName())
+				.append("') FROM GENERATE_SERIES(1, ").append(count).append(")").toString();
+	}
+
 }
@@ -1,5 +1,11 @@
 package org.ironrhino.core.sequence.simple;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.ironrhino.core.spring.configuration.PriorityQualifier;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -7,36 +13,128 @@ import org.springframework.data.redis.core.BoundValueOperations;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.util.Assert;
 
+import lombok.Getter;
+import lombok.Setter;
+
 public class RedisSimpleSequence extends AbstractSimpleSequence {
 
 	public static final String KEY_SEQUENCE = "seq:";
 
+	private static final Segment EMPTY_SEGMENT = new Segment(0, 0);
+
 	@Autowired
 	@Qualifier("stringRedisTemplate")
 	@PriorityQualifier
 	private StringRedisTemplate sequenceStringRedisTemplate;
 
+	@Autowired(required = false)
+	private ExecutorService executorService;
+
 	private BoundValueOperations<String, String> boundValueOperations;
 
+	// values reserved by one INCRBY, 1 means INCR per value
+	@Getter
+	@Setter
+	private int segmentSize = 1;
+
+	// prefetch next segment in background if remaining values of current
+	// segment drop to this threshold, defaults to a fifth of segmentSize
+	@Getter
+	@Setter
+	private int prefetchThreshold;
+
+	private volatile Segment segment = EMPTY_SEGMENT;
+
+	private final AtomicReference<CompletableFuture<Segment>> prefetching = new AtomicReference<>();
+
 	@Override
 	public void afterPropertiesSet() {
 		Assert.hasText(getSequenceName(), "sequenceName shouldn't be blank");
 		Assert.isTrue(getPaddingLength() > 0, "paddingLength should large than 0");
+		Assert.isTrue(segmentSize > 0, "segmentSize should large than 0");
+		if (prefetchThreshold <= 0 || prefetchThreshold >= segmentSize)
+			prefetchThreshold = segmentSize / 5;
 		boundValueOperations = sequenceStringRedisTemplate.boundValueOps(KEY_SEQUENCE + getSequenceName());
 		boundValueOperations.setIfAbsent("0");
 	}
 
 	@Override
 	public void restart() {
-		boundValueOperations.set("0");
+		synchronized (this) {
+			boundValueOperations.set("0");
+			segment = EMPTY_SEGMENT;
+			prefetching.set(null);
+		}
 	}
 
 	@Override
 	public long nextLongValue() {
-		Long value = boundValueOperations.increment(1);
+		if (segmentSize <= 1)
+			return increment(1);
+		while (true) {
+			Segment current = segment;
+			int index = current.cursor.getAndIncrement();
+			if (index < current.size) {
+				if (index == current.size - prefetchThreshold)
+					prefetch();
+				return current.first + index;
+			}
+			synchronized (this) {
+				if (segment == current)
+					segment = nextSegment();
+			}
+		}
+	}
+
+	private void prefetch() {
+		CompletableFuture<Segment> future = new CompletableFuture<>();
+		if (!prefetching.compareAndSet(null, future))
+			return;
+		(executorService != null ? executorService : ForkJoinPool.commonPool()).execute(() -> {
+			try {
+				future.complete(reserve());
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		});
+	}
+
+	private Segment nextSegment() {
+		CompletableFuture<Segment> future = prefetching.getAndSet(null);
+		if (future != null) {
+			try {
+				return future.join();
+			} catch (Exception e) {
+				logger.warn("Prefetch segment of " + getSequenceName() + " failed: " + e.getMessage());
+			}
+		}
+		return reserve();
+	}
+
+	private Segment reserve() {
+		return new Segment(increment(segmentSize) - segmentSize + 1, segmentSize);
+	}
+
+	private long increment(int delta) {
+		Long value = boundValueOperations.increment(delta);
 		if (value == null)
 			throw new RuntimeException("Unexpected null");
 		return value;
 	}
 
-}
\ No newline at end of file
+	private static class Segment {
+
+		private final long first;
+
+		private final int size;
+
+		private final AtomicInteger cursor = new AtomicInteger();
+
+		Segment(long first, int size) {
+			this.first = first;
+			this.size = size;
+		}
+
+	}
+
+}
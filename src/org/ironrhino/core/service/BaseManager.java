@@ -95,6 +95,23 @@ public interface BaseManager<T extends Persistable<?>> {
 	public long iterate(int fetchSize, IterateCallback<T> callback, Consumer<T[]> afterCommitConsumer,
 			DetachedCriteria dc);
 
+	/**
+	 * Split rows into id range partitions and iterate them concurrently, each
+	 * partition in its own session and commits per fetch, failed partition is
+	 * retried from last committed row. afterCommitConsumer is never invoked
+	 * concurrently, and is invoked in id order if ordered is true. callback is
+	 * invoked concurrently by partitions and must be thread safe, unless
+	 * ordered is true, then invocations are serialized but not in id order.
+	 */
+	public long iterate(int fetchSize, IterateCallback<T> callback, Consumer<T[]> afterCommitConsumer,
+			DetachedCriteria dc, int parallelism, boolean ordered);
+
+	/**
+	 * Invoked with entities of each fetch inside transaction, it's invoked
+	 * concurrently by parallel
+	 * {@link BaseManager#iterate(int, IterateCallback, Consumer, DetachedCriteria, int, boolean)}
+	 * with separate session per partition.
+	 */
 	@FunctionalInterface
 	public static interface IterateCallback<T> {
 		public void process(T[] entityArray, Session session);
@@ -5,20 +5,32 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 
+import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
@@ -32,26 +44,43 @@ import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.annotations.NaturalId;
 import org.hibernate.criterion.CriteriaSpecification;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.dialect.pagination.LimitHandler;
+import org.hibernate.engine.jdbc.spi.JdbcServices;
+import org.hibernate.engine.spi.QueryParameters;
+import org.hibernate.engine.spi.RowSelection;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.internal.CriteriaImpl;
+import org.hibernate.internal.CriteriaImpl.CriterionEntry;
 import org.hibernate.internal.CriteriaImpl.OrderEntry;
+import org.hibernate.loader.criteria.CriteriaJoinWalker;
+import org.hibernate.loader.criteria.CriteriaQueryTranslator;
+import org.hibernate.persister.entity.OuterJoinLoadable;
 import org.hibernate.query.Query;
 import org.hibernate.transform.ResultTransformer;
+import org.hibernate.type.Type;
+import org.ironrhino.core.cache.CacheManager;
 import org.ironrhino.core.hibernate.IgnoreCaseSimpleExpression;
 import org.ironrhino.core.model.BaseTreeableEntity;
 import org.ironrhino.core.model.Ordered;
 import org.ironrhino.core.model.Persistable;
 import org.ironrhino.core.model.ResultPage;
+import org.ironrhino.core.model.ResultPage.CountStrategy;
 import org.ironrhino.core.struts.EntityClassHelper;
 import org.ironrhino.core.util.AnnotationUtils;
 import org.ironrhino.core.util.BeanUtils;
+import org.ironrhino.core.util.CodecUtils;
+import org.ironrhino.core.util.NameableThreadFactory;
 import org.ironrhino.core.util.ReflectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.SimpleTypeConverter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.orm.hibernate5.HibernateCallback;
 import org.springframework.transaction.annotation.Transactional;
@@ -69,6 +98,11 @@ public abstract class BaseManagerImpl<T extends Persistable<?>> implements BaseM
 	@Autowired
 	private DeleteChecker deleteChecker;
 
+	@Autowired(required = false)
+	private CacheManager cacheManager;
+
+	private static final int MAX_PARTITION_RETRIES = 2;
+
 	private static final MethodHandle CRITERIA_IMPL_GETTER;
 
 	static {
@@ -291,37 +325,93 @@ public abstract class BaseManagerImpl<T extends Persistable<?>> implements BaseM
 	@Override
 	@Transactional(readOnly = true)
 	public long countByCriteria(DetachedCriteria dc) {
-		CriteriaImpl impl;
-		try {
-			impl = (CriteriaImpl) CRITERIA_IMPL_GETTER.invokeExact(dc);
-		} catch (Throwable e) {
-			throw new RuntimeException(e.getMessage(), e);
-		}
+		return countByCriteria(dc, 0);
+	}
+
+	// count at most limit rows if limit > 0
+	private long countByCriteria(DetachedCriteria dc, int limit) {
+		CriteriaImpl impl = criteriaImpl(dc);
 		ResultTransformer rt = impl.getResultTransformer();
-		Iterator<OrderEntry> it = impl.iterateOrderings();
-		List<OrderEntry> orderEntries = null;
-		boolean notEmpty = it.hasNext();
-		if (notEmpty) {
-			// remove order
-			orderEntries = new ArrayList<>();
-			while (it.hasNext()) {
-				orderEntries.add(it.next());
-				it.remove();
-			}
-		}
+		List<OrderEntry> orderEntries = removeOrderings(impl);
 		Criteria c = dc.getExecutableCriteria(sessionFactory.getCurrentSession());
-		c.setProjection(Projections.projectionList().add(Projections.rowCount()));
-		long count = (Long) c.uniqueResult();
-		if (notEmpty) {
-			// restore order
-			for (OrderEntry oe : orderEntries)
-				impl.addOrder(oe.getOrder());
+		long count;
+		if (limit > 0) {
+			c.setProjection(Projections.id());
+			count = countLimited(impl, limit);
+		} else {
+			c.setProjection(Projections.projectionList().add(Projections.rowCount()));
+			count = (Long) c.uniqueResult();
 		}
+		// restore order
+		for (OrderEntry oe : orderEntries)
+			impl.addOrder(oe.getOrder());
 		dc.setProjection(null);
 		dc.setResultTransformer(rt);
 		return count;
 	}
 
+	// select count(*) from (select id from ... limit ?) so that only count is fetched
+	private long countLimited(CriteriaImpl impl, int limit) {
+		SessionImplementor session = (SessionImplementor) sessionFactory.getCurrentSession();
+		SessionFactoryImplementor factory = session.getFactory();
+		LimitHandler limitHandler = factory.getServiceRegistry().getService(JdbcServices.class).getDialect()
+				.getLimitHandler();
+		if (!limitHandler.supportsLimit()) {
+			impl.setMaxResults(limit);
+			return impl.list().size();
+		}
+		String entityName = impl.getEntityOrClassName();
+		OuterJoinLoadable persister = (OuterJoinLoadable) factory.getMetamodel().entityPersister(entityName);
+		CriteriaQueryTranslator translator = new CriteriaQueryTranslator(factory, impl, entityName,
+				CriteriaQueryTranslator.ROOT_SQL_ALIAS);
+		CriteriaJoinWalker walker = new CriteriaJoinWalker(persister, translator, factory, impl, entityName,
+				session.getLoadQueryInfluencers());
+		QueryParameters parameters = translator.getQueryParameters();
+		parameters.processFilters(walker.getSQLString(), session);
+		RowSelection selection = new RowSelection();
+		selection.setFirstRow(0);
+		selection.setMaxRows(limit);
+		String sql = "select count(*) from (" + limitHandler.processSql(parameters.getFilteredSQL(), selection)
+				+ ") count_";
+		Type[] types = parameters.getFilteredPositionalParameterTypes();
+		Object[] values = parameters.getFilteredPositionalParameterValues();
+		return session.doReturningWork(connection -> {
+			try (PreparedStatement ps = connection.prepareStatement(sql)) {
+				int index = 1;
+				index += limitHandler.bindLimitParametersAtStartOfQuery(selection, ps, index);
+				for (int i = 0; i < types.length; i++) {
+					types[i].nullSafeSet(ps, values[i], index, session);
+					index += types[i].getColumnSpan(factory);
+				}
+				limitHandler.bindLimitParametersAtEndOfQuery(selection, ps, index);
+				limitHandler.setMaxRows(selection, ps);
+				try (ResultSet rs = ps.executeQuery()) {
+					return rs.next() ? rs.getLong(1) : 0;
+				}
+			}
+		});
+	}
+
+	private static CriteriaImpl criteriaImpl(DetachedCriteria dc) {
+		try {
+			return (CriteriaImpl) CRITERIA_IMPL_GETTER.invokeExact(dc);
+		} catch (Throwable e) {
+			throw new RuntimeException(e.getMessage(), e);
+		}
+	}
+
+	private static List<OrderEntry> removeOrderings(CriteriaImpl impl) {
+		Iterator<OrderEntry> it = impl.iterateOrderings();
+		if (!it.hasNext())
+			return Collections.emptyList();
+		List<OrderEntry> orderEntries = new ArrayList<>();
+		while (it.hasNext()) {
+			orderEntries.add(it.next());
+			it.remove();
+		}
+		return orderEntries;
+	}
+
 	@Override
 	@Transactional(readOnly = true)
 	public T findByCriteria(DetachedCriteria dc) {
@@ -367,20 +457,29 @@ public abstract class BaseManagerImpl<T extends Persistable<?>> implements BaseM
 		DetachedCriteria detachedCriteria = resultPage.getCriteria();
 		if (detachedCriteria == null)
 			detachedCriteria = detachedCriteria();
-		long totalResults = -1;
-		if (resultPage.isCounting()) {
-			totalResults = countByCriteria(detachedCriteria);
+		if (resultPage.isReverse() && !resultPage.isKeysetPaginating())
+			resultPage.setCountStrategy(CountStrategy.EXACT); // reverse paging requires total
+		long totalResults = count(detachedCriteria, resultPage);
+		if (totalResults >= 0) {
 			resultPage.setTotalResults(totalResults);
 			if (resultPage.getPageNo() < 1)
 				resultPage.setPageNo(1);
-			else if (resultPage.getPageNo() > resultPage.getTotalPage()) {
+			else if (!resultPage.isEstimated() && !resultPage.isKeysetPaginating()
+					&& resultPage.getPageNo() > resultPage.getTotalPage()) {
 				// resultPage.setPageNo(resultPage.getTotalPage());
 				resultPage.setResult(Collections.EMPTY_LIST);
 				return resultPage;
 			}
+		} else if (resultPage.getPageNo() < 1) {
+			resultPage.setPageNo(1);
 		}
 		long time = System.currentTimeMillis();
-		if (resultPage.isPaginating()) {
+		if (resultPage.isKeysetPaginating()) {
+			if (totalResults != 0)
+				findByKeyset(detachedCriteria, resultPage);
+			else
+				resultPage.setResult(Collections.EMPTY_LIST);
+		} else if (resultPage.isPaginating()) {
 			int start, end;
 			if (!resultPage.isReverse()) {
 				start = (resultPage.getPageNo() - 1) * resultPage.getPageSize();
@@ -389,10 +488,17 @@ public abstract class BaseManagerImpl<T extends Persistable<?>> implements BaseM
 				start = (int) (resultPage.getTotalResults() - resultPage.getPageNo() * resultPage.getPageSize());
 				end = (int) (resultPage.getTotalResults() - (resultPage.getPageNo() - 1) * resultPage.getPageSize());
 			}
-			if (!(resultPage.isCounting() && totalResults == 0))
-				resultPage.setResult(findBetweenListByCriteria(detachedCriteria, start, end));
-			else
+			if (totalResults == 0) {
 				resultPage.setResult(Collections.EMPTY_LIST);
+			} else if (totalResults < 0 || resultPage.isEstimated()) {
+				// fetch one more row to determine whether next page exists
+				List<T> list = findBetweenListByCriteria(detachedCriteria, start, end + 1);
+				boolean hasNext = list.size() > end - Math.max(start, 0);
+				resultPage.setNextPageAvailable(hasNext);
+				resultPage.setResult(hasNext ? list.subList(0, list.size() - 1) : list);
+			} else {
+				resultPage.setResult(findBetweenListByCriteria(detachedCriteria, start, end));
+			}
 			resultPage.setStart(start);
 		} else {
 			resultPage.setResult(findListByCriteria(detachedCriteria));
@@ -401,6 +507,73 @@ public abstract class BaseManagerImpl<T extends Persistable<?>> implements BaseM
 		return resultPage;
 	}
 
+	private long count(DetachedCriteria dc, ResultPage<T> resultPage) {
+		CountStrategy strategy = resultPage.getCountStrategy();
+		if (strategy == CountStrategy.SKIP)
+			return -1;
+		if (strategy == CountStrategy.ESTIMATE) {
+			long count = countByCriteria(dc, ResultPage.ESTIMATED_COUNT_LIMIT + 1);
+			resultPage.setEstimated(count > ResultPage.ESTIMATED_COUNT_LIMIT);
+			return Math.min(count, ResultPage.ESTIMATED_COUNT_LIMIT);
+		}
+		if (strategy == CountStrategy.CACHE && cacheManager != null) {
+			String key = CodecUtils.md5Hex(getEntityClass().getName() + ':' + dc);
+			Object cached = cacheManager.get(key, ResultPage.COUNT_CACHE_NAMESPACE);
+			if (cached instanceof Long)
+				return (Long) cached;
+			long count = countByCriteria(dc);
+			cacheManager.put(key, count, ResultPage.COUNT_CACHE_TIME_TO_LIVE, TimeUnit.SECONDS,
+					ResultPage.COUNT_CACHE_NAMESPACE);
+			return count;
+		}
+		return countByCriteria(dc);
+	}
+
+	private void findByKeyset(DetachedCriteria dc, ResultPage<T> resultPage) {
+		String name = resultPage.getKeysetName();
+		boolean desc = resultPage.isKeysetDescending();
+		CriteriaImpl impl = criteriaImpl(dc);
+		List<OrderEntry> orderEntries = removeOrderings(impl);
+		Criterion criterion = null;
+		try {
+			if (resultPage.getCursor() != null) {
+				Object value = fromCursor(name, resultPage.getCursor());
+				criterion = desc ? Restrictions.lt(name, value) : Restrictions.gt(name, value);
+				dc.add(criterion);
+			}
+			dc.addOrder(desc ? Order.desc(name) : Order.asc(name));
+			List<T> list = findBetweenListByCriteria(dc, 0, resultPage.getPageSize() + 1);
+			boolean hasNext = list.size() > resultPage.getPageSize();
+			if (hasNext)
+				list = list.subList(0, resultPage.getPageSize());
+			resultPage.setNextPageAvailable(hasNext);
+			resultPage.setNextCursor(hasNext
+					? ResultPage.toCursor(new BeanWrapperImpl(list.get(list.size() - 1)).getPropertyValue(name))
+					: null);
+			resultPage.setResult(list);
+		} finally {
+			// restore criteria
+			removeOrderings(impl);
+			for (OrderEntry oe : orderEntries)
+				impl.addOrder(oe.getOrder());
+			if (criterion != null) {
+				Iterator<CriterionEntry> it = impl.iterateExpressionEntries();
+				while (it.hasNext())
+					if (it.next().getCriterion() == criterion)
+						it.remove();
+			}
+		}
+	}
+
+	private Object fromCursor(String name, String cursor) {
+		Class<?> type = new BeanWrapperImpl(getEntityClass()).getPropertyType(name);
+		if (type == null)
+			throw new IllegalArgumentException("Unknown keyset property: " + name);
+		if (Date.class.isAssignableFrom(type))
+			return new Date(Long.valueOf(cursor));
+		return new SimpleTypeConverter().convertIfNecessary(cursor, type);
+	}
+
 	@Override
 	@Transactional(readOnly = true)
 	public long countAll() {
@@ -575,47 +748,46 @@ public abstract class BaseManagerImpl<T extends Persistable<?>> implements BaseM
 		}
 	}
 
-	private <TE extends BaseTreeableEntity<TE>> void assemble(TE te, List<TE> list) throws Exception {
-		List<TE> children = new ArrayList<>();
-		Iterator<TE> it = list.iterator();
-		while (it.hasNext()) {
-			TE r = it.next();
-			// already order by level asc
-			if (r.getLevel() <= te.getLevel())
-				continue;
-			if (r.getLevel() - te.getLevel() > 1)
-				break;
-			boolean isChild = false;
-			if (te.getId() == null && StringUtils.isNotBlank(te.getFullId())) {
+	// O(n) by indexing copies by id, parent is resolved from fullId
+	static <TE extends BaseTreeableEntity<TE>> void assemble(TE root, List<TE> list) throws Exception {
+		Map<Long, TE> nodes = new HashMap<>(list.size() * 4 / 3 + 1);
+		List<TE> copies = new ArrayList<>(list.size());
+		for (TE r : list) {
+			TE rr = (TE) root.getClass().getConstructor().newInstance();
+			BeanUtils.copyProperties(r, rr);
+			rr.setChildren(new ArrayList<>());
+			if (rr.getId() == null && StringUtils.isNotBlank(rr.getFullId())) {
 				// workaround for javassist-3.16.x
-				String fullId = te.getFullId();
+				String fullId = rr.getFullId();
 				if (fullId.endsWith("."))
 					fullId = fullId.substring(0, fullId.length() - 1);
-				String id = fullId.substring(fullId.lastIndexOf('.') + 1);
-				te.setId(Long.valueOf(id));
-			}
-			String fullId = r.getFullId();
-			if (fullId.endsWith("."))
-				fullId = fullId.substring(0, fullId.length() - 1);
-			if (te.getId() == 0) {
-				if (fullId.indexOf('.') < 0)
-					isChild = true;
-			} else {
-				if (fullId.indexOf('.') > 0 && te.getFullId().equals(fullId.substring(0, fullId.lastIndexOf('.') + 1)))
-					isChild = true;
-			}
-			if (isChild) {
-				it.remove();
-				TE rr = (TE) te.getClass().getConstructor().newInstance();
-				BeanUtils.copyProperties(r, rr);
-				children.add(rr);
-				rr.setParent(te);
+				rr.setId(Long.valueOf(fullId.substring(fullId.lastIndexOf('.') + 1)));
 			}
+			nodes.put(rr.getId(), rr);
+			copies.add(rr);
+		}
+		root.setChildren(new ArrayList<>());
+		nodes.put(root.getId(), root);
+		for (TE rr : copies) {
+			TE parent = nodes.get(getParentId(rr.getFullId()));
+			if (parent == null)
+				continue; // orphan
+			rr.setParent(parent);
+			parent.getChildren().add(rr);
 		}
-		children.sort(null);
-		te.setChildren(children);
-		for (TE r : children)
-			assemble(r, list);
+		for (TE rr : nodes.values())
+			if (rr.getChildren().size() > 1)
+				((List<TE>) rr.getChildren()).sort(null);
+	}
+
+	private static Long getParentId(String fullId) {
+		if (fullId.endsWith("."))
+			fullId = fullId.substring(0, fullId.length() - 1);
+		int index = fullId.lastIndexOf('.');
+		if (index < 0)
+			return 0L;
+		fullId = fullId.substring(0, index);
+		return Long.valueOf(fullId.substring(fullId.lastIndexOf('.') + 1));
 	}
 
 	@Override
@@ -670,6 +842,161 @@ public abstract class BaseManagerImpl<T extends Persistable<?>> implements BaseM
 		return iterate(fetchSize, callback, afterCommitConsumer, dc, true);
 	}
 
+	@Override
+	public long iterate(int fetchSize, IterateCallback<T> callback, Consumer<T[]> afterCommitConsumer,
+			DetachedCriteria dc, int parallelism, boolean ordered) {
+		if (dc == null)
+			dc = detachedCriteria();
+		List<Serializable> boundaries = parallelism > 1 ? partition(dc, parallelism) : Collections.emptyList();
+		int partitions = boundaries.size() + 1;
+		if (partitions == 1) {
+			DetachedCriteria pdc = SerializationUtils.clone(dc);
+			removeOrderings(criteriaImpl(pdc));
+			pdc.addOrder(Order.asc("id"));
+			return iterate(fetchSize, callback, afterCommitConsumer, pdc, true);
+		}
+		boolean queueing = ordered && afterCommitConsumer != null;
+		IterateCallback<T> partitionCallback = callback;
+		if (ordered) {
+			partitionCallback = (entities, session) -> {
+				synchronized (callback) {
+					callback.process(entities, session);
+				}
+			};
+		}
+		List<BlockingQueue<T[]>> queues = new ArrayList<>(partitions);
+		List<Future<Long>> futures = new ArrayList<>(partitions);
+		// one thread per partition, ordered delivery blocks partitions ahead
+		ExecutorService executor = Executors.newFixedThreadPool(partitions,
+				new NameableThreadFactory("iterate-" + getEntityClass().getSimpleName()));
+		try {
+			for (int i = 0; i < partitions; i++) {
+				Serializable lower = i > 0 ? boundaries.get(i - 1) : null;
+				Serializable upper = i < partitions - 1 ? boundaries.get(i) : null;
+				BlockingQueue<T[]> queue = queueing ? new ArrayBlockingQueue<>(4) : null;
+				queues.add(queue);
+				Consumer<T[]> consumer;
+				if (afterCommitConsumer == null) {
+					consumer = null;
+				} else if (queue != null) {
+					consumer = entities -> {
+						try {
+							queue.put(entities);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new RuntimeException(e);
+						}
+					};
+				} else {
+					consumer = entities -> {
+						synchronized (afterCommitConsumer) {
+							afterCommitConsumer.accept(entities);
+						}
+					};
+				}
+				String name = (i + 1) + "/" + partitions;
+				DetachedCriteria pdc = dc;
+				IterateCallback<T> cb = partitionCallback;
+				futures.add(
+						executor.submit(() -> iteratePartition(name, fetchSize, cb, consumer, pdc, lower, upper)));
+			}
+			if (queueing) {
+				for (int i = 0; i < partitions; i++) {
+					BlockingQueue<T[]> queue = queues.get(i);
+					Future<Long> future = futures.get(i);
+					while (true) {
+						T[] entities = queue.poll(100, TimeUnit.MILLISECONDS);
+						if (entities != null)
+							afterCommitConsumer.accept(entities);
+						else if (future.isDone() && queue.isEmpty())
+							break;
+					}
+					future.get();
+				}
+			}
+			long count = 0;
+			for (Future<Long> future : futures)
+				count += future.get();
+			return count;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private long iteratePartition(String name, int fetchSize, IterateCallback<T> callback,
+			Consumer<T[]> afterCommitConsumer, DetachedCriteria dc, Serializable lower, Serializable upper) {
+		long time = System.currentTimeMillis();
+		long[] processed = new long[1];
+		Serializable[] lastId = new Serializable[1];
+		int retries = 0;
+		while (true) {
+			DetachedCriteria pdc = SerializationUtils.clone(dc);
+			removeOrderings(criteriaImpl(pdc));
+			// resume from last committed row if retrying
+			if (lastId[0] != null)
+				pdc.add(Restrictions.gt("id", lastId[0]));
+			else if (lower != null)
+				pdc.add(Restrictions.ge("id", lower));
+			if (upper != null)
+				pdc.add(Restrictions.lt("id", upper));
+			pdc.addOrder(Order.asc("id"));
+			try {
+				iterate(fetchSize, callback, entities -> {
+					if (entities.length == 0)
+						return;
+					lastId[0] = entities[entities.length - 1].getId();
+					processed[0] += entities.length;
+					if (afterCommitConsumer != null)
+						afterCommitConsumer.accept(entities);
+				}, pdc, true);
+				logger.info("Iterated partition {} of {} with {} rows in {} ms", name, getEntityClass().getSimpleName(),
+						processed[0], System.currentTimeMillis() - time);
+				return processed[0];
+			} catch (RuntimeException e) {
+				if (Thread.currentThread().isInterrupted() || ++retries > MAX_PARTITION_RETRIES)
+					throw e;
+				logger.warn("Iterate partition " + name + " of " + getEntityClass().getSimpleName() + " failed after "
+						+ processed[0] + " rows, retrying", e);
+			}
+		}
+	}
+
+	// ids at evenly spaced offsets as lower bound of partitions except first one
+	private List<Serializable> partition(DetachedCriteria dc, int partitions) {
+		DetachedCriteria pdc = SerializationUtils.clone(dc);
+		removeOrderings(criteriaImpl(pdc));
+		try (Session session = sessionFactory.openSession()) {
+			Criteria c = pdc.getExecutableCriteria(session);
+			c.setProjection(Projections.rowCount());
+			long count = (Long) c.uniqueResult();
+			List<Serializable> boundaries = new ArrayList<>(partitions - 1);
+			pdc.setProjection(Projections.id());
+			pdc.addOrder(Order.asc("id"));
+			for (int i = 1; i < partitions; i++) {
+				long offset = count * i / partitions;
+				if (offset == 0 || offset > Integer.MAX_VALUE)
+					continue;
+				c = pdc.getExecutableCriteria(session);
+				c.setFirstResult((int) offset);
+				c.setMaxResults(1);
+				Serializable id = (Serializable) c.uniqueResult();
+				if (id != null && (boundaries.isEmpty() || !id.equals(boundaries.get(boundaries.size() - 1))))
+					boundaries.add(id);
+			}
+			return boundaries;
+		}
+	}
+
 	protected long iterate(int fetchSize, IterateCallback<T> callback, Consumer<T[]> afterCommitConsumer,
 			DetachedCriteria dc, boolean commitPerFetch) {
 		Session iterateSession = sessionFactory.openSession();
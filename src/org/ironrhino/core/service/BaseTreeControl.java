@@ -1,8 +1,13 @@
 package org.ironrhino.core.service;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.Table;
 
@@ -27,10 +32,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
 import org.springframework.transaction.annotation.Transactional;
 
+/**
+ * Tree is loaded once and maintained incrementally by entity operation events,
+ * nodes are indexed by id and children collections are replaced instead of
+ * modified in place, so readers can iterate them without locking.
+ */
 public class BaseTreeControl<T extends BaseTreeableEntity<T>> {
 
 	private volatile T tree;
 
+	private volatile Map<Long, T> nodes;
+
 	private Class<T> entityClass;
 
 	@Autowired
@@ -59,13 +71,39 @@ public class BaseTreeControl<T extends BaseTreeableEntity<T>> {
 		if (temp == null) {
 			synchronized (this) {
 				temp = tree;
-				if (temp == null)
-					tree = temp = buildTree();
+				if (temp == null) {
+					temp = buildTree();
+					nodes = index(temp);
+					tree = temp;
+				}
 			}
 		}
 		return temp;
 	}
 
+	/**
+	 * Same as {@code getTree().getDescendantOrSelfById(id)} without traversing
+	 */
+	public T getTreeNode(Long id) {
+		if (id == null)
+			throw new IllegalArgumentException("id must not be null");
+		getTree();
+		return nodes.get(id);
+	}
+
+	private Map<Long, T> index(T root) {
+		Map<Long, T> map = new ConcurrentHashMap<>();
+		Deque<T> stack = new ArrayDeque<>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			T node = stack.pop();
+			map.put(node.getId(), node);
+			for (T child : node.getChildren())
+				stack.push(child);
+		}
+		return map;
+	}
+
 	public T getTree(String name) {
 		T subtree = null;
 		for (T t : getTree().getChildren())
@@ -135,79 +173,101 @@ public class BaseTreeControl<T extends BaseTreeableEntity<T>> {
 		tree = null;
 	}
 
-	@SuppressWarnings({ "unchecked", "rawtypes" })
 	private synchronized void create(T treeNode) {
-		T parent;
-		String fullId = treeNode.getFullId();
-		if (fullId.endsWith("."))
-			fullId = fullId.substring(0, fullId.length() - 1);
-		if (treeNode.getId().toString().equals(fullId)) {
-			parent = tree;
-		} else {
-			String parentId = fullId.substring(0, fullId.lastIndexOf('.'));
-			if (parentId.indexOf('.') > -1)
-				parentId = parentId.substring(parentId.lastIndexOf('.') + 1);
-			parent = tree.getDescendantOrSelfById(Long.valueOf(parentId));
+		if (tree == null)
+			return;
+		T parent = nodes.get(getParentId(treeNode.getFullId()));
+		if (parent == null) {
+			// out of sync, rebuild lazily
+			tree = null;
+			return;
 		}
 		try {
 			T t = entityClass.getConstructor().newInstance();
 			t.setChildren(new ArrayList<>());
 			BeanUtils.copyProperties(treeNode, t, new String[] { "parent", "children" });
-			parent.addChild(t);
-			if (parent.getChildren() instanceof List)
-				((List) parent.getChildren()).sort(null);
+			t.setParent(parent);
+			insertChild(parent, t);
+			nodes.put(t.getId(), t);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
 
-	@SuppressWarnings({ "unchecked", "rawtypes" })
 	private synchronized void update(T treeNode) {
-		T t = tree.getDescendantOrSelfById(treeNode.getId());
+		if (tree == null)
+			return;
+		T t = nodes.get(treeNode.getId());
 		if (t == null)
 			return;
-		boolean needsort = t.compareTo(treeNode) != 0 || !t.getFullId().equals(treeNode.getFullId());
-		if (!t.getFullId().equals(treeNode.getFullId())) {
-			t.getParent().getChildren().remove(t);
-			String str = treeNode.getFullId();
-			if (str.endsWith("."))
-				str = str.substring(0, str.length() - 1);
-			long newParentId = 0;
-			if (str.indexOf('.') > 0) {
-				str = str.substring(0, str.lastIndexOf('.'));
-				if (str.indexOf('.') > 0)
-					str = str.substring(str.lastIndexOf('.') + 1);
-				newParentId = Long.valueOf(str);
+		T oldParent = t.getParent();
+		T newParent = oldParent;
+		boolean moved = !t.getFullId().equals(treeNode.getFullId());
+		if (moved) {
+			newParent = nodes.get(getParentId(treeNode.getFullId()));
+			if (newParent == null || newParent.isDescendantOrSelfOf(t)) {
+				// out of sync, rebuild lazily
+				tree = null;
+				return;
 			}
-			T newParent;
-			if (newParentId == 0)
-				newParent = tree;
-			else
-				newParent = tree.getDescendantOrSelfById(newParentId);
-			t.setParent(newParent);
-			newParent.getChildren().add(t);
-			resetChildren(t);
 		}
+		boolean needsort = moved || t.compareTo(treeNode) != 0;
 		BeanUtils.copyProperties(treeNode, t, new String[] { "parent", "children" });
-		if (needsort && t.getParent().getChildren() instanceof List)
-			((List) t.getParent().getChildren()).sort(null);
-	}
-
-	private void resetChildren(T treeNode) {
-		if (treeNode.isHasChildren())
-			for (T t : treeNode.getChildren()) {
-				String fullId = (t.getParent()).getFullId() + String.valueOf(t.getId()) + ".";
-				t.setFullId(fullId);
-				t.setLevel(fullId.split("\\.").length);
-				treeNode.setParent(treeNode.getParent());
-				resetChildren(t);
-			}
+		if (!needsort)
+			return;
+		if (moved) {
+			removeChild(oldParent, t);
+			t.setParent(newParent);
+			resetDescendants(t);
+		}
+		insertChild(newParent, t);
 	}
 
 	private synchronized void delete(T treeNode) {
-		T t = tree.getDescendantOrSelfById(treeNode.getId());
-		if (t != null)
-			t.getParent().getChildren().remove(t);
+		if (tree == null)
+			return;
+		T t = nodes.get(treeNode.getId());
+		if (t == null)
+			return;
+		removeChild(t.getParent(), t);
+		for (T descendant : t.getDescendantsAndSelf())
+			nodes.remove(descendant.getId());
+	}
+
+	// copy on write, removes child if present then inserts it in order
+	private void insertChild(T parent, T child) {
+		List<T> children = new ArrayList<>(parent.getChildren().size() + 1);
+		for (T t : parent.getChildren())
+			if (t != child)
+				children.add(t);
+		int index = Collections.binarySearch(children, child);
+		children.add(index < 0 ? -index - 1 : index, child);
+		parent.setChildren(children);
+	}
+
+	// copy on write
+	private void removeChild(T parent, T child) {
+		List<T> children = new ArrayList<>(parent.getChildren());
+		children.remove(child);
+		parent.setChildren(children);
+	}
+
+	private void resetDescendants(T treeNode) {
+		for (T t : treeNode.getChildren()) {
+			t.setFullId(treeNode.getFullId() + t.getId() + ".");
+			t.setLevel(treeNode.getLevel() + 1);
+			resetDescendants(t);
+		}
+	}
+
+	private static Long getParentId(String fullId) {
+		if (fullId.endsWith("."))
+			fullId = fullId.substring(0, fullId.length() - 1);
+		int index = fullId.lastIndexOf('.');
+		if (index < 0)
+			return 0L;
+		fullId = fullId.substring(0, index);
+		return Long.valueOf(fullId.substring(fullId.lastIndexOf('.') + 1));
 	}
 
 	@EventListener
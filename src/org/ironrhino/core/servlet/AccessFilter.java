@@ -1,10 +1,10 @@
 package org.ironrhino.core.servlet;
 
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
 import javax.servlet.DispatcherType;
@@ -25,6 +25,7 @@ import org.ironrhino.core.util.AppInfo;
 import org.ironrhino.core.util.CodecUtils;
 import org.ironrhino.core.util.RequestUtils;
 import org.ironrhino.core.util.UserAgent;
+import org.ironrhino.core.util.WildcardMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -66,22 +67,29 @@ public class AccessFilter implements Filter {
 	@Value("${accessFilter.print:" + DEFAULT_PRINT + "}")
 	private boolean print = DEFAULT_PRINT;
 
-	@Setter
 	@Value("${accessFilter.excludePatterns:}")
 	private String excludePatterns;
 
-	private List<String> excludePatternsList = Collections.emptyList();
+	private volatile WildcardMatcher excludeMatcher = WildcardMatcher.EMPTY;
 
 	@Autowired(required = false)
 	private List<AccessHandler> handlers;
 
+	private List<HandlerMatcher> handlerMatchers = Collections.emptyList();
+
 	@Autowired
 	private HttpSessionManager httpSessionManager;
 
 	@PostConstruct
 	public void _init() {
-		if (StringUtils.isNotBlank(excludePatterns))
-			excludePatternsList = Arrays.asList(excludePatterns.split("\\s*,\\s*"));
+		excludeMatcher = WildcardMatcher.compile(excludePatterns);
+		if (handlers != null)
+			handlerMatchers = handlers.stream().map(HandlerMatcher::new).collect(Collectors.toList());
+	}
+
+	public void setExcludePatterns(String excludePatterns) {
+		this.excludePatterns = excludePatterns;
+		this.excludeMatcher = WildcardMatcher.compile(excludePatterns);
 	}
 
 	@Override
@@ -108,35 +116,15 @@ public class AccessFilter implements Filter {
 			if (isRequestDispatcher && RequestUtils.isInternalTesting(request))
 				response.addHeader(HTTP_HEADER_INSTANCE_ID, AppInfo.getInstanceId());
 
-			for (String pattern : excludePatternsList) {
-				if (org.ironrhino.core.util.StringUtils.matchesWildcard(uri, pattern)) {
-					chain.doFilter(request, response);
-					return;
-				}
+			if (excludeMatcher.matches(uri)) {
+				chain.doFilter(request, response);
+				return;
 			}
 
-			if (isRequestDispatcher && handlers != null)
-				loop: for (AccessHandler handler : handlers) {
-					String excludePattern = handler.getExcludePattern();
-					if (StringUtils.isNotBlank(excludePattern)) {
-						String[] arr = excludePattern.split("\\s*,\\s*");
-						for (String pa : arr)
-							if (org.ironrhino.core.util.StringUtils.matchesWildcard(uri, pa)) {
-								continue loop;
-							}
-					}
-					String pattern = handler.getPattern();
-					boolean matched = StringUtils.isBlank(pattern);
-					if (!matched) {
-						String[] arr = pattern.split("\\s*,\\s*");
-						for (String pa : arr)
-							if (org.ironrhino.core.util.StringUtils.matchesWildcard(uri, pa)) {
-								matched = true;
-								break;
-							}
-					}
-					if (matched) {
-						if (handler.handle(request, response)) {
+			if (isRequestDispatcher)
+				for (HandlerMatcher handlerMatcher : handlerMatchers) {
+					if (handlerMatcher.matches(uri)) {
+						if (handlerMatcher.handler.handle(request, response)) {
 							return;
 						}
 					}
@@ -239,4 +227,37 @@ public class AccessFilter implements Filter {
 
 	}
 
+	// patterns of handler are recompiled only if changed
+	private static class HandlerMatcher {
+
+		final AccessHandler handler;
+
+		private volatile WildcardMatcher patternMatcher = WildcardMatcher.EMPTY;
+
+		private volatile WildcardMatcher excludePatternMatcher = WildcardMatcher.EMPTY;
+
+		HandlerMatcher(AccessHandler handler) {
+			this.handler = handler;
+		}
+
+		boolean matches(String uri) {
+			String excludePattern = handler.getExcludePattern();
+			if (StringUtils.isNotBlank(excludePattern)) {
+				WildcardMatcher matcher = excludePatternMatcher;
+				if (!excludePattern.equals(matcher.getSource()))
+					excludePatternMatcher = matcher = WildcardMatcher.compile(excludePattern);
+				if (matcher.matches(uri))
+					return false;
+			}
+			String pattern = handler.getPattern();
+			if (StringUtils.isBlank(pattern))
+				return true;
+			WildcardMatcher matcher = patternMatcher;
+			if (!pattern.equals(matcher.getSource()))
+				patternMatcher = matcher = WildcardMatcher.compile(pattern);
+			return matcher.matches(uri);
+		}
+
+	}
+
 }
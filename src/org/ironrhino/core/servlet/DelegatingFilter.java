@@ -1,8 +1,6 @@
 package org.ironrhino.core.servlet;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.List;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -12,8 +10,8 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 
-import org.apache.commons.lang3.StringUtils;
 import org.ironrhino.core.util.RequestUtils;
+import org.ironrhino.core.util.WildcardMatcher;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.filter.DelegatingFilterProxy;
@@ -22,7 +20,7 @@ public class DelegatingFilter extends DelegatingFilterProxy {
 
 	private static Filter dummy = new DummyFilter();
 
-	private List<String> excludePatternsList;
+	private WildcardMatcher excludeMatcher = WildcardMatcher.EMPTY;
 
 	@Override
 	protected Filter initDelegate(WebApplicationContext wac) throws ServletException {
@@ -34,8 +32,7 @@ public class DelegatingFilter extends DelegatingFilterProxy {
 		String str = wac.getEnvironment().getProperty(beanName + ".excludePatterns");
 		if (str != null)
 			excludePatterns = str;
-		if (StringUtils.isNotBlank(excludePatterns))
-			excludePatternsList = Arrays.asList(excludePatterns.split("\\s*,\\s*"));
+		excludeMatcher = WildcardMatcher.compile(excludePatterns);
 		try {
 			Filter delegate = wac.getBean(beanName, Filter.class);
 			if (isTargetFilterLifecycle()) {
@@ -57,12 +54,10 @@ public class DelegatingFilter extends DelegatingFilterProxy {
 			return;
 		}
 		String uri = RequestUtils.getRequestUri((HttpServletRequest) req);
-		if (excludePatternsList != null)
-			for (String pattern : excludePatternsList)
-				if (org.ironrhino.core.util.StringUtils.matchesWildcard(uri, pattern)) {
-					chain.doFilter(req, res);
-					return;
-				}
+		if (excludeMatcher.matches(uri)) {
+			chain.doFilter(req, res);
+			return;
+		}
 		super.doFilter(req, res, chain);
 	}
 
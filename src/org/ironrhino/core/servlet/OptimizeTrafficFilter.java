@@ -2,9 +2,13 @@ package org.ironrhino.core.servlet;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPOutputStream;
@@ -19,12 +23,17 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.codec.digest.DigestUtils;
+import org.ironrhino.core.util.WildcardMatcher;
 
+import lombok.AllArgsConstructor;
 import lombok.Setter;
 
 public class OptimizeTrafficFilter implements Filter {
 
+	public static final int DEFAULT_STREAMING_THRESHOLD = 128 * 1024;
+
+	public static final int DEFAULT_IMMUTABLE_CACHE_CAPACITY = 1000;
+
 	@Setter
 	private boolean etag = true;
 
@@ -34,74 +43,89 @@ public class OptimizeTrafficFilter implements Filter {
 	@Setter
 	private int cacheSeconds = 86400;
 
+	// response larger than it will be streamed, 0 means always buffered
+	@Setter
+	private int streamingThreshold = DEFAULT_STREAMING_THRESHOLD;
+
+	@Setter
+	private int immutableCacheCapacity = DEFAULT_IMMUTABLE_CACHE_CAPACITY;
+
+	/**
+	 * Response of matched url is cached after compressed and shared by all
+	 * clients, so patterns must only match public and non-personalized url.
+	 * Requests carrying credentials or cookies are never served from or stored
+	 * into cache.
+	 */
+	private WildcardMatcher immutablePatterns = WildcardMatcher.EMPTY;
+
+	// least recently used is evicted
+	private final Map<String, CachedResponse> immutableCache = Collections
+			.synchronizedMap(new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+					return size() > immutableCacheCapacity;
+				}
+
+			});
+
+	public void setImmutablePatterns(String immutablePatterns) {
+		this.immutablePatterns = WildcardMatcher.compile(immutablePatterns);
+		immutableCache.clear();
+	}
+
 	@Override
 	public void doFilter(ServletRequest rq, ServletResponse rs, FilterChain chain)
 			throws IOException, ServletException {
-		if (!etag && !compress)
+		if (!etag && !compress) {
 			chain.doFilter(rq, rs);
+			return;
+		}
 		HttpServletRequest request = (HttpServletRequest) rq;
 		HttpServletResponse response = (HttpServletResponse) rs;
-		LazyCommitResponseWrapper brw = new LazyCommitResponseWrapper(response);
-		chain.doFilter(request, brw);
-		byte[] bytes = brw.getContents();
-		if (bytes != null) {
-			boolean notmodified = false;
-			if (etag) {
-				String token = '"' + DigestUtils.md5Hex(bytes) + '"';
-				response.setHeader("ETag", token);
-				String previousToken = request.getHeader("If-None-Match");
-				if (previousToken != null && previousToken.equals(token)) {
-					response.setHeader("Last-Modified", request.getHeader("If-Modified-Since"));
-					response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-					notmodified = true;
-				} else {
-					Calendar cal = Calendar.getInstance();
-					cal.set(Calendar.MILLISECOND, 0);
-					Date lastModified = cal.getTime();
-					response.setDateHeader("Last-Modified", lastModified.getTime());
-				}
+		String contentEncoding = null;
+		if (compress) {
+			// shared caches should keep compressed and uncompressed apart
+			response.addHeader("Vary", "Accept-Encoding");
+			contentEncoding = getContentEncoding(request);
+		}
+		String cacheKey = null;
+		if (immutableCacheCapacity > 0 && immutablePatterns.matches(request.getRequestURI())
+				&& !hasCredentials(request)) {
+			StringBuilder sb = new StringBuilder(request.getRequestURI());
+			if (request.getQueryString() != null)
+				sb.append('?').append(request.getQueryString());
+			cacheKey = sb.append(' ').append(contentEncoding != null ? contentEncoding : "identity").toString();
+			CachedResponse cached = immutableCache.get(cacheKey);
+			if (cached != null) {
+				if (cached.contentType != null)
+					response.setContentType(cached.contentType);
+				write(request, response, cached);
+				return;
 			}
-			if (!notmodified) {
-				if (compress && brw.getContentType() != null && brw.getContentType().indexOf("text") >= 0) {
-					String acceptEncoding = request.getHeader("Accept-Encoding");
-					if (acceptEncoding != null) {
-						acceptEncoding = acceptEncoding.toLowerCase(Locale.ROOT);
-						if (acceptEncoding.indexOf("gzip") >= 0) {
-							ByteArrayOutputStream boas = new ByteArrayOutputStream(10 * 1024);
-							GZIPOutputStream gzos = new GZIPOutputStream(boas);
-							gzos.write(bytes);
-							gzos.flush();
-							gzos.close();
-							bytes = boas.toByteArray();
-							response.setHeader("Content-Encoding",
-									acceptEncoding.indexOf("x-gzip") >= 0 ? "x-gzip" : "gzip");
-						} else if (acceptEncoding.indexOf("deflate") >= 0) {
-							// has problem with IE6
-							ByteArrayOutputStream boas = new ByteArrayOutputStream(bytes.length / 2);
-							DeflaterOutputStream dfos = new DeflaterOutputStream(boas,
-									new Deflater(Deflater.BEST_COMPRESSION), bytes.length / 2);
-							dfos.write(bytes);
-							dfos.flush();
-							dfos.close();
-							bytes = boas.toByteArray();
-							response.setHeader("Content-Encoding", "deflate");
-						}
-					}
-				}
-
-				response.setContentLength(bytes.length);
-				response.addHeader("Cache-Control", "public");
-				response.addHeader("Cache-Control", "max-age=" + cacheSeconds);
-				Calendar cal = Calendar.getInstance();
-				cal.set(Calendar.MILLISECOND, 0);
-				cal.add(Calendar.SECOND, cacheSeconds);
-				response.setDateHeader("Expires", cal.getTime().getTime());
-				ServletOutputStream sos = response.getOutputStream();
-				sos.write(bytes);
-				sos.flush();
-				sos.close();
+		}
+		String te = request.getHeader("TE");
+		OptimizeTrafficResponseWrapper wrapper = new OptimizeTrafficResponseWrapper(response, this, contentEncoding,
+				etag, te != null && te.toLowerCase(Locale.ROOT).contains("trailers"), streamingThreshold);
+		chain.doFilter(request, wrapper);
+		byte[] bytes = wrapper.finish();
+		if (bytes == null || response.isCommitted())
+			return;
+		String encoding = isCompressible(wrapper.getContentType()) ? contentEncoding : null;
+		if (encoding != null) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(bytes.length / 2 + 64);
+			try (OutputStream os = compress(baos, encoding)) {
+				os.write(bytes);
 			}
+			bytes = baos.toByteArray();
 		}
+		CachedResponse cached = new CachedResponse(wrapper.getETag(), wrapper.getContentType(), encoding, bytes);
+		if (cacheKey != null && response.getStatus() == HttpServletResponse.SC_OK
+				&& !response.containsHeader("Set-Cookie"))
+			immutableCache.put(cacheKey, cached);
+		write(request, response, cached);
 	}
 
 	@Override
@@ -112,10 +136,109 @@ public class OptimizeTrafficFilter implements Filter {
 			compress = false;
 		if (filterConfig.getInitParameter("cacheSeconds") != null)
 			cacheSeconds = Integer.valueOf(filterConfig.getInitParameter("cacheSeconds"));
+		if (filterConfig.getInitParameter("streamingThreshold") != null)
+			streamingThreshold = Integer.valueOf(filterConfig.getInitParameter("streamingThreshold"));
+		if (filterConfig.getInitParameter("immutableCacheCapacity") != null)
+			immutableCacheCapacity = Integer.valueOf(filterConfig.getInitParameter("immutableCacheCapacity"));
+		if (filterConfig.getInitParameter("immutablePatterns") != null)
+			setImmutablePatterns(filterConfig.getInitParameter("immutablePatterns"));
 	}
 
 	@Override
 	public void destroy() {
+		immutableCache.clear();
+	}
+
+	boolean isCompressible(String contentType) {
+		return contentType != null && (contentType.indexOf("text") >= 0 || contentType.indexOf("json") >= 0
+				|| contentType.indexOf("javascript") >= 0 || contentType.indexOf("xml") >= 0);
+	}
+
+	void setHeaders(HttpServletResponse response, String contentEncoding, boolean lastModified) {
+		if (lastModified) {
+			Calendar cal = Calendar.getInstance();
+			cal.set(Calendar.MILLISECOND, 0);
+			Date date = cal.getTime();
+			response.setDateHeader("Last-Modified", date.getTime());
+		}
+		if (contentEncoding != null)
+			response.setHeader("Content-Encoding", contentEncoding);
+		response.addHeader("Cache-Control", "public");
+		response.addHeader("Cache-Control", "max-age=" + cacheSeconds);
+		Calendar cal = Calendar.getInstance();
+		cal.set(Calendar.MILLISECOND, 0);
+		cal.add(Calendar.SECOND, cacheSeconds);
+		response.setDateHeader("Expires", cal.getTime().getTime());
+	}
+
+	OutputStream compress(OutputStream out, String contentEncoding) throws IOException {
+		if (contentEncoding == null)
+			return out;
+		if (contentEncoding.indexOf("gzip") >= 0)
+			return new GZIPOutputStream(out, 8 * 1024);
+		// has problem with IE6
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		return new DeflaterOutputStream(out, deflater, 8 * 1024) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					deflater.end();
+				}
+			}
+		};
+	}
+
+	private void write(HttpServletRequest request, HttpServletResponse response, CachedResponse cached)
+			throws IOException {
+		if (cached.etag != null) {
+			response.setHeader("ETag", cached.etag);
+			String previousToken = request.getHeader("If-None-Match");
+			if (previousToken != null && previousToken.equals(cached.etag)) {
+				String ifModifiedSince = request.getHeader("If-Modified-Since");
+				if (ifModifiedSince != null)
+					response.setHeader("Last-Modified", ifModifiedSince);
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+		}
+		setHeaders(response, cached.contentEncoding, cached.etag != null);
+		response.setContentLength(cached.body.length);
+		ServletOutputStream sos = response.getOutputStream();
+		sos.write(cached.body);
+		sos.flush();
+		sos.close();
+	}
+
+	// session cookie included
+	private static boolean hasCredentials(HttpServletRequest request) {
+		return request.getHeader("Authorization") != null || request.getHeader("Cookie") != null
+				|| request.getUserPrincipal() != null;
+	}
+
+	private static String getContentEncoding(HttpServletRequest request) {
+		String acceptEncoding = request.getHeader("Accept-Encoding");
+		if (acceptEncoding == null)
+			return null;
+		acceptEncoding = acceptEncoding.toLowerCase(Locale.ROOT);
+		if (acceptEncoding.indexOf("gzip") >= 0)
+			return acceptEncoding.indexOf("x-gzip") >= 0 ? "x-gzip" : "gzip";
+		if (acceptEncoding.indexOf("deflate") >= 0)
+			return "deflate";
+		return null;
+	}
+
+	@AllArgsConstructor
+	private static class CachedResponse {
+
+		final String etag;
+
+		final String contentType;
+
+		final String contentEncoding;
+
+		final byte[] body;
 
 	}
 
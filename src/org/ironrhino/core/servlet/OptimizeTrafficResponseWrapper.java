@@ -0,0 +1,201 @@
+package org.ironrhino.core.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Body is digested as it's written and buffered up to threshold, beyond that
+ * it's compressed into underlying output stream on the fly and ETag is sent as
+ * trailer if both client and container (Servlet 4.0+) support trailers.
+ */
+class OptimizeTrafficResponseWrapper extends HttpServletResponseWrapper {
+
+	private static final Method SET_TRAILER_FIELDS = ClassUtils.getMethodIfAvailable(HttpServletResponse.class,
+			"setTrailerFields", Supplier.class);
+
+	private final OptimizeTrafficFilter filter;
+
+	// accepted by client, null means identity
+	private final String contentEncoding;
+
+	private final boolean trailers;
+
+	private final int threshold;
+
+	private final MessageDigest digest;
+
+	private final ServletOutputStream body = new BodyOutputStream();
+
+	private ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+
+	private OutputStream streaming;
+
+	private PrintWriter writer;
+
+	private boolean outputStreamUsed;
+
+	private volatile String trailingETag;
+
+	OptimizeTrafficResponseWrapper(HttpServletResponse response, OptimizeTrafficFilter filter, String contentEncoding,
+			boolean etag, boolean trailers, int threshold) {
+		super(response);
+		this.filter = filter;
+		this.contentEncoding = contentEncoding;
+		this.trailers = trailers;
+		this.threshold = threshold;
+		this.digest = etag ? DigestUtils.getMd5Digest() : null;
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() {
+		if (writer != null)
+			throw new IllegalStateException("response.getOutputStream() called after response.getWriter()");
+		outputStreamUsed = true;
+		return body;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws UnsupportedEncodingException {
+		if (outputStreamUsed)
+			throw new IllegalStateException("response.getWriter() called after response.getOutputStream()");
+		if (writer == null) {
+			String encoding = getCharacterEncoding();
+			if (StringUtils.isBlank(encoding))
+				encoding = "UTF-8";
+			writer = new PrintWriter(new OutputStreamWriter(body, encoding));
+		}
+		return writer;
+	}
+
+	@Override
+	public void setContentLength(int len) {
+		// computed after compressed
+	}
+
+	@Override
+	public void setContentLengthLong(long len) {
+		// computed after compressed
+	}
+
+	@Override
+	public void flushBuffer() throws IOException {
+		if (streaming == null)
+			return;
+		if (writer != null)
+			writer.flush();
+		streaming.flush();
+	}
+
+	@Override
+	public void resetBuffer() {
+		if (streaming != null)
+			throw new IllegalStateException("Response Already Committed");
+		buffer.reset();
+		if (digest != null)
+			digest.reset();
+	}
+
+	public boolean isStreaming() {
+		return streaming != null;
+	}
+
+	/**
+	 * @return buffered body or null if body is streamed or not written at all
+	 */
+	public byte[] finish() throws IOException {
+		if (writer != null)
+			writer.flush();
+		if (streaming != null) {
+			if (digest != null)
+				trailingETag = '"' + Hex.encodeHexString(digest.digest()) + '"';
+			streaming.close();
+			return null;
+		}
+		if (writer == null && !outputStreamUsed)
+			return null;
+		return buffer.toByteArray();
+	}
+
+	public String getETag() {
+		return digest != null ? '"' + Hex.encodeHexString(digest.digest()) + '"' : null;
+	}
+
+	private void write(byte[] b, int off, int len) throws IOException {
+		if (digest != null)
+			digest.update(b, off, len);
+		if (streaming == null && threshold > 0 && buffer.size() + len > threshold && !isCommitted())
+			startStreaming();
+		if (streaming != null)
+			streaming.write(b, off, len);
+		else
+			buffer.write(b, off, len);
+	}
+
+	private void startStreaming() throws IOException {
+		HttpServletResponse response = (HttpServletResponse) getResponse();
+		String encoding = filter.isCompressible(getContentType()) ? contentEncoding : null;
+		if (digest != null && trailers && SET_TRAILER_FIELDS != null) {
+			response.setHeader("Trailer", "ETag");
+			Supplier<Map<String, String>> supplier = () -> trailingETag != null
+					? Collections.singletonMap("ETag", trailingETag)
+					: Collections.emptyMap();
+			ReflectionUtils.invokeMethod(SET_TRAILER_FIELDS, response, supplier);
+		}
+		filter.setHeaders(response, encoding, digest != null);
+		streaming = filter.compress(response.getOutputStream(), encoding);
+		buffer.writeTo(streaming);
+		buffer = null;
+	}
+
+	private class BodyOutputStream extends ServletOutputStream {
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			OptimizeTrafficResponseWrapper.this.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			// buffered body is not committed by flushing
+			if (streaming != null)
+				streaming.flush();
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setWriteListener(WriteListener listener) {
+
+		}
+
+	}
+
+}
@@ -7,6 +7,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang3.StringUtils;
 import org.ironrhino.core.servlet.AccessHandler;
+import org.ironrhino.core.util.WildcardMatcher;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
@@ -26,6 +27,8 @@ public class FirewallHandler extends AccessHandler {
 	@Value("${" + KEY_ALLOWEDADDRPATTERN + ":}")
 	private String allowedAddrPattern;
 
+	private volatile WildcardMatcher allowedAddrMatcher = WildcardMatcher.EMPTY;
+
 	@Override
 	public boolean handle(HttpServletRequest request, HttpServletResponse response) {
 		String addr = request.getRemoteAddr();
@@ -43,7 +46,7 @@ public class FirewallHandler extends AccessHandler {
 				return true;
 			}
 			return false;
-		} else if (!isAllowed(addr, allowedAddrPattern)) {
+		} else if (!isAllowed(addr)) {
 			response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
 			return true;
 		} else {
@@ -51,15 +54,14 @@ public class FirewallHandler extends AccessHandler {
 		}
 	}
 
-	private static boolean isAllowed(String addr, String allow) {
+	private boolean isAllowed(String addr) {
+		String allow = allowedAddrPattern;
 		if (StringUtils.isBlank(allow))
 			return true;
-		String[] arr = allow.split("\\s*,\\s*");
-		for (String s : arr) {
-			if (org.ironrhino.core.util.StringUtils.matchesWildcard(addr, s))
-				return true;
-		}
-		return false;
+		WildcardMatcher matcher = allowedAddrMatcher;
+		if (!allow.equals(matcher.getSource()))
+			allowedAddrMatcher = matcher = WildcardMatcher.compile(allow);
+		return matcher.matches(addr);
 	}
 
 }
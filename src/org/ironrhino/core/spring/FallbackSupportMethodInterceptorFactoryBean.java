@@ -1,5 +1,10 @@
 package org.ironrhino.core.spring;
 
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.aopalliance.intercept.MethodInvocation;
@@ -8,6 +13,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
+import org.springframework.util.concurrent.ListenableFuture;
 
 public abstract class FallbackSupportMethodInterceptorFactoryBean extends MethodInterceptorFactoryBean {
 
@@ -23,32 +29,78 @@ public abstract class FallbackSupportMethodInterceptorFactoryBean extends Method
 			return super.invoke(methodInvocation);
 		} catch (Throwable ex) {
 			if (shouldFallBackFor(ex)) {
-				if (!fallbackSearched.get() && fallbackSearched.compareAndSet(false, true)) {
-					ApplicationContext ctx = getApplicationContext();
-					if (ctx != null) {
-						for (String beanName : ctx.getBeanNamesForAnnotation(Fallback.class)) {
-							try {
-								Class<?> objectType = getObjectType();
-								if (objectType == null)
-									throw new RuntimeException("Unexpected null");
-								this.fallback = ctx.getBean(beanName, objectType);
-								log.info("Pick bean {} as fallback of {}", beanName, objectType);
-								break;
-							} catch (BeansException e) {
-								continue;
-							}
-						}
-					}
-				}
-				if (fallback != null) {
-					log.error("Fallback to " + fallback, ex);
-					return methodInvocation.getMethod().invoke(fallback, methodInvocation.getArguments());
+				Object target = getFallback();
+				if (target != null) {
+					log.error("Fallback to " + target, ex);
+					return methodInvocation.getMethod().invoke(target, methodInvocation.getArguments());
 				}
 			}
 			throw ex;
 		}
 	}
 
+	@Override
+	protected CompletableFuture<Object> invokeAsync(MethodInvocation methodInvocation) {
+		CompletableFuture<Object> future = new CompletableFuture<>();
+		super.invokeAsync(methodInvocation).whenComplete((result, ex) -> {
+			if (ex == null) {
+				future.complete(result);
+				return;
+			}
+			if (ex instanceof CompletionException && ex.getCause() != null)
+				ex = ex.getCause();
+			Object target = shouldFallBackFor(ex) ? getFallback() : null;
+			if (target == null) {
+				future.completeExceptionally(ex);
+				return;
+			}
+			log.error("Fallback to " + target, ex);
+			try {
+				Object value = methodInvocation.getMethod().invoke(target, methodInvocation.getArguments());
+				if (value instanceof ListenableFuture)
+					value = ((ListenableFuture<?>) value).completable();
+				if (value instanceof CompletionStage) {
+					((CompletionStage<?>) value).whenComplete((r, e) -> {
+						if (e == null)
+							future.complete(r);
+						else
+							future.completeExceptionally(e);
+					});
+				} else if (value instanceof Future) {
+					future.complete(((Future<?>) value).get());
+				} else {
+					future.complete(value);
+				}
+			} catch (InvocationTargetException e) {
+				future.completeExceptionally(e.getTargetException());
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	private Object getFallback() {
+		if (!fallbackSearched.get() && fallbackSearched.compareAndSet(false, true)) {
+			ApplicationContext ctx = getApplicationContext();
+			if (ctx != null) {
+				for (String beanName : ctx.getBeanNamesForAnnotation(Fallback.class)) {
+					try {
+						Class<?> objectType = getObjectType();
+						if (objectType == null)
+							throw new RuntimeException("Unexpected null");
+						this.fallback = ctx.getBean(beanName, objectType);
+						log.info("Pick bean {} as fallback of {}", beanName, objectType);
+						break;
+					} catch (BeansException e) {
+						continue;
+					}
+				}
+			}
+		}
+		return fallback;
+	}
+
 	protected abstract boolean shouldFallBackFor(Throwable ex);
 
 }
@@ -4,6 +4,8 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -24,8 +26,8 @@ import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.concurrent.CompletableToListenableFutureAdapter;
 import org.springframework.util.concurrent.ListenableFuture;
-import org.springframework.util.concurrent.ListenableFutureTask;
 import org.springframework.validation.annotation.Validated;
 
 import lombok.Getter;
@@ -74,8 +76,8 @@ public abstract class MethodInterceptorFactoryBean implements MethodInterceptor,
 		if (method.isDefault())
 			return ReflectionUtils.invokeDefaultMethod(bean, method, methodInvocation.getArguments());
 		Class<?> returnType = method.getReturnType();
-		if (returnType == Callable.class || returnType == ListenableFuture.class || returnType == Future.class) {
-			Callable<Object> callable = new Callable<Object>() {
+		if (returnType == Callable.class) {
+			return new Callable<Object>() {
 				@Override
 				public Object call() throws Exception {
 					try {
@@ -87,17 +89,11 @@ public abstract class MethodInterceptorFactoryBean implements MethodInterceptor,
 					}
 				}
 			};
-			if (returnType == Callable.class) {
-				return callable;
-			}
-			if (returnType == ListenableFuture.class) {
-				ListenableFutureTask<Object> future = new ListenableFutureTask<>(callable);
-				getExecutorService().execute(future);
-				return future;
-			}
-			if (returnType == Future.class) {
-				return getExecutorService().submit(callable);
-			}
+		}
+		if (returnType == CompletableFuture.class || returnType == CompletionStage.class
+				|| returnType == ListenableFuture.class || returnType == Future.class) {
+			CompletableFuture<Object> future = invokeAsync(methodInvocation);
+			return returnType == ListenableFuture.class ? new CompletableToListenableFutureAdapter<>(future) : future;
 		}
 		Object returnValue = doInvoke(methodInvocation);
 		if (executableValidator != null) {
@@ -111,6 +107,24 @@ public abstract class MethodInterceptorFactoryBean implements MethodInterceptor,
 
 	protected abstract Object doInvoke(MethodInvocation methodInvocation) throws Throwable;
 
+	protected CompletableFuture<Object> invokeAsync(MethodInvocation methodInvocation) {
+		return doInvokeAsync(methodInvocation);
+	}
+
+	protected CompletableFuture<Object> doInvokeAsync(MethodInvocation methodInvocation) {
+		CompletableFuture<Object> future = new CompletableFuture<>();
+		getExecutorService().execute(() -> {
+			try {
+				future.complete(doInvoke(methodInvocation));
+			} catch (Exception e) {
+				future.completeExceptionally(e);
+			} catch (Throwable e) {
+				future.completeExceptionally(new InvocationTargetException(e));
+			}
+		});
+		return future;
+	}
+
 	protected Class<?>[] determineValidationGroups(Method method) {
 		Validated validatedAnn = AnnotationUtils.findAnnotation(method, Validated.class);
 		if (validatedAnn == null)
@@ -118,7 +132,7 @@ public abstract class MethodInterceptorFactoryBean implements MethodInterceptor,
 		return (validatedAnn != null ? validatedAnn.value() : new Class<?>[0]);
 	}
 
-	private ExecutorService getExecutorService() {
+	protected ExecutorService getExecutorService() {
 		ExecutorService es = executorService;
 		if (es == null) {
 			synchronized (this) {
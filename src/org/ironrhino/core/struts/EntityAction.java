@@ -1,9 +1,16 @@
 package org.ironrhino.core.struts;
 
 import java.beans.PropertyDescriptor;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.net.URLEncoder;
 import java.sql.Time;
@@ -19,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 
 import javax.persistence.EntityManagerFactory;
 import javax.servlet.http.HttpServletRequest;
@@ -54,6 +62,7 @@ import org.ironrhino.core.model.Enableable;
 import org.ironrhino.core.model.Ordered;
 import org.ironrhino.core.model.Persistable;
 import org.ironrhino.core.model.ResultPage;
+import org.ironrhino.core.model.ResultPage.CountStrategy;
 import org.ironrhino.core.model.Tuple;
 import org.ironrhino.core.search.SearchCriteria;
 import org.ironrhino.core.search.SearchService;
@@ -73,6 +82,7 @@ import org.ironrhino.core.util.CompareUtils;
 import org.ironrhino.core.util.DateUtils;
 import org.ironrhino.core.util.JsonUtils;
 import org.ironrhino.core.util.ReflectionUtils;
+import org.ironrhino.core.util.XlsxWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanWrapperImpl;
@@ -146,6 +156,9 @@ public class EntityAction<EN extends Persistable<?>> extends BaseAction {
 	@Value("${csv.maxRows:0}")
 	private int csvMaxRows;
 
+	@Value("${csv.fetchSize:1000}")
+	private int csvFetchSize = 1000;
+
 	public int getCsvMaxRows() {
 		return csvMaxRows > 0 ? csvMaxRows : 1000 * ResultPage.DEFAULT_PAGE_SIZE;
 	}
@@ -370,6 +383,11 @@ public class EntityAction<EN extends Persistable<?>> extends BaseAction {
 				resultPage.setPageSize(richtableConfig.defaultPageSize());
 			if (richtableConfig != null && resultPage.getPaginating() == null)
 				resultPage.setPaginating(richtableConfig.paginating());
+			if (richtableConfig != null) {
+				resultPage.setKeyset(StringUtils.trimToNull(richtableConfig.keyset()));
+				if (richtableConfig.countStrategy() != CountStrategy.EXACT)
+					resultPage.setCountStrategy(richtableConfig.countStrategy());
+			}
 			resultPage
 					.setCriteria(doPrepareCriteria(entityManager, bw, richtableConfig, isSearchable(), ownerProperty));
 			resultPage = entityManager.findByResultPage(resultPage);
@@ -1366,34 +1384,23 @@ public class EntityAction<EN extends Persistable<?>> extends BaseAction {
 	}
 
 	public String csv() throws Exception {
+		return doExport(false);
+	}
+
+	public String xlsx() throws Exception {
+		return doExport(true);
+	}
+
+	protected String doExport(boolean xlsx) throws Exception {
 		HttpServletRequest request = ServletActionContext.getRequest();
 		HttpServletResponse response = ServletActionContext.getResponse();
-		String columns = request.getParameter("columns");
-		List<String> columnsList = null;
-		final List<String> exportColumnsList = new ArrayList<>();
-		final Map<String, Number> sumColumns = new HashMap<>();
-		final Map<String, Template> csvTemplates = new HashMap<>();
-		if (StringUtils.isNotBlank(columns))
-			columnsList = Arrays.asList(columns.split("\\s*,\\s*"));
-		for (Map.Entry<String, UiConfigImpl> entry : getUiConfigs().entrySet()) {
-			String name = entry.getKey();
-			if (columnsList != null && !columnsList.contains(name))
-				continue;
-			UiConfigImpl uc = entry.getValue();
-			HiddenImpl hidden = uc.getHiddenInList();
-			if (hidden.isValue())
-				continue;
-			exportColumnsList.add(name);
-			if (uc.isShowSum())
-				sumColumns.put(name, null);
-			if (StringUtils.isNotBlank(uc.getCsvTemplate()))
-				csvTemplates.put(name, new Template(null, uc.getCsvTemplate(), freemarkerManager.getConfig()));
-		}
-
+		List<ExportColumn> exportColumns = compileExportColumns(request.getParameter("columns"));
 		DetachedCriteria dc = detachedCriteria();
 		BaseManager entityManager = getEntityManager(getEntityClass());
 		long count = entityManager.countByCriteria(dc);
 		int maxRows = getCsvMaxRows();
+		if (xlsx)
+			maxRows = Math.min(maxRows, XlsxWriter.MAX_ROWS - 2);
 		if (count == 0) {
 			addActionError(getText("query.result.empty"));
 			return ERROR;
@@ -1401,138 +1408,225 @@ public class EntityAction<EN extends Persistable<?>> extends BaseAction {
 			addActionError(getText("query.result.number.exceed", new String[] { String.valueOf(maxRows) }));
 			return ERROR;
 		}
-		response.setCharacterEncoding(csvDefaultEncoding);
-		response.setHeader("Content-type", "text/csv");
-		response.setHeader("Content-disposition", "attachment;filename=data.csv");
-		final String columnSeperator = ",";
-		final String lineSeperator = "\r\n";
-		final PrintWriter writer = response.getWriter();
-		for (int i = 0; i < exportColumnsList.size(); i++) {
-			String label = exportColumnsList.get(i);
-			UiConfigImpl uic = getUiConfigs().get(label);
-			if (uic != null && StringUtils.isNotBlank(uic.getAlias()))
-				label = uic.getAlias();
-			writer.print(getText(label));
-			writer.print(i == exportColumnsList.size() - 1 ? lineSeperator : columnSeperator);
-		}
-		entityManager.iterate(10, (entityArray, session) -> {
-			for (Object en : entityArray) {
-				BeanWrapperImpl bw = new BeanWrapperImpl(en);
-				for (int i = 0; i < exportColumnsList.size(); i++) {
-					String name = exportColumnsList.get(i);
-					Object value = bw.getPropertyValue(name);
-					if (value != null && sumColumns.containsKey(name)) {
-						Class<?> clazz = value.getClass();
-						Object sum;
-						if (clazz == float.class || clazz == Float.class) {
-							BigDecimal old = (BigDecimal) sumColumns.get(name);
-							if (old == null)
-								old = BigDecimal.ZERO;
-							sum = old.add(new BigDecimal((Float) value));
-						} else if (clazz == double.class || clazz == Double.class) {
-							BigDecimal old = (BigDecimal) sumColumns.get(name);
-							if (old == null)
-								old = BigDecimal.ZERO;
-							sum = old.add(new BigDecimal((Double) value));
-						} else if (clazz == BigDecimal.class) {
-							BigDecimal old = (BigDecimal) sumColumns.get(name);
-							if (old == null)
-								old = BigDecimal.ZERO;
-							sum = old.add((BigDecimal) value);
-						} else if (clazz == short.class || clazz == Short.class) {
-							Long old = (Long) sumColumns.get(name);
-							if (old == null)
-								old = 0L;
-							sum = old + (Short) value;
-						} else if (clazz == int.class || clazz == Integer.class) {
-							Long old = (Long) sumColumns.get(name);
-							if (old == null)
-								old = 0L;
-							sum = old + (Integer) value;
-						} else if (clazz == long.class || clazz == Long.class) {
-							Long old = (Long) sumColumns.get(name);
-							if (old == null)
-								old = 0L;
-							sum = old + (Long) value;
-						} else {
-							throw new IllegalArgumentException("Unsupported type: " + clazz.getName());
-						}
-						sumColumns.put(name, (Number) sum);
-					}
-					String text;
-					Template csvTemplate = csvTemplates.get(name);
-					if (csvTemplate != null) {
-						StringWriter sw = new StringWriter();
-						Map<String, Object> rootMap = new HashMap<>(4, 1);
-						rootMap.put("entity", en);
-						rootMap.put("value", value);
-						try {
-							csvTemplate.process(rootMap, sw);
-							text = sw.toString();
-						} catch (Exception e) {
-							text = e.getMessage();
-						}
-					} else {
-						if (value == null) {
-							text = "";
-						} else if (value instanceof Collection) {
-							text = StringUtils.join((Collection) value, ",");
-						} else if (value instanceof Object[]) {
-							text = StringUtils.join((Object[]) value, ",");
-						} else if (value instanceof Boolean) {
-							text = getText(value.toString());
-						} else if (value instanceof Date) {
-							if (value instanceof Time) {
-								text = DateUtils.format((Date) value, "HH:mm:ss");
-							} else if (value instanceof java.sql.Date) {
-								text = DateUtils.formatDate8((Date) value);
-							} else {
-								text = DateUtils.formatDatetime((Date) value);
-							}
-						} else {
-							text = String.valueOf(value);
-						}
-					}
-					if (text.contains(String.valueOf(columnSeperator)) || text.contains("\"") || text.contains("\n")) {
-						if (text.contains("\""))
-							text = text.replaceAll("\"", "\"\"");
-						text = new StringBuilder(text.length() + 2).append("\"").append(text).append("\"").toString();
+		boolean hasSum = exportColumns.stream().anyMatch(c -> c.showSum);
+		List<String> labels = new ArrayList<>(exportColumns.size());
+		for (ExportColumn column : exportColumns)
+			labels.add(column.label);
+		if (xlsx) {
+			response.setHeader("Content-type", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+			response.setHeader("Content-disposition", "attachment;filename=data.xlsx");
+			XlsxWriter writer = new XlsxWriter(response.getOutputStream());
+			writer.writeRow(labels);
+			List<Object> cells = new ArrayList<>(exportColumns.size());
+			entityManager.iterate(csvFetchSize, (entityArray, session) -> {
+				try {
+					for (Object en : entityArray) {
+						cells.clear();
+						for (ExportColumn column : exportColumns)
+							cells.add(column.cell(en));
+						writer.writeRow(cells);
 					}
-					writer.print(text);
-					writer.print(i == exportColumnsList.size() - 1 ? lineSeperator : columnSeperator);
+					writer.flush();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
 				}
-
+			}, dc);
+			if (hasSum) {
+				cells.clear();
+				for (ExportColumn column : exportColumns)
+					cells.add(column.sumCell());
+				writer.writeRow(cells);
 			}
-			writer.flush();
-		}, dc);
-		if (!sumColumns.isEmpty()) {
-			for (int i = 0; i < exportColumnsList.size(); i++) {
-				String name = exportColumnsList.get(i);
-				if (sumColumns.containsKey(name)) {
-					Object value = sumColumns.get(name);
-					String text = value.toString();
-					Template csvTemplate = csvTemplates.get(name);
-					if (csvTemplate != null) {
-						StringWriter sw = new StringWriter();
-						Map<String, Object> rootMap = new HashMap<>(4, 1);
-						rootMap.put("value", value);
-						try {
-							csvTemplate.process(rootMap, sw);
-							text = sw.toString();
-						} catch (Exception e) {
-							text = e.getMessage();
-						}
+			writer.close();
+		} else {
+			response.setCharacterEncoding(csvDefaultEncoding);
+			response.setHeader("Content-type", "text/csv");
+			response.setHeader("Content-disposition", "attachment;filename=data.csv");
+			Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), csvDefaultEncoding),
+					64 * 1024);
+			writeCsvRow(writer, labels);
+			List<Object> cells = new ArrayList<>(exportColumns.size());
+			entityManager.iterate(csvFetchSize, (entityArray, session) -> {
+				try {
+					for (Object en : entityArray) {
+						cells.clear();
+						for (ExportColumn column : exportColumns)
+							cells.add(column.cell(en));
+						writeCsvRow(writer, cells);
 					}
-					if (text.contains(String.valueOf(columnSeperator)))
-						text = new StringBuilder(text.length() + 2).append("\"").append(text).append("\"").toString();
-					writer.print(text);
+					writer.flush();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
 				}
-				writer.print(i == exportColumnsList.size() - 1 ? lineSeperator : columnSeperator);
+			}, dc);
+			if (hasSum) {
+				cells.clear();
+				for (ExportColumn column : exportColumns)
+					cells.add(column.sumCell());
+				writeCsvRow(writer, cells);
 			}
+			writer.flush();
 		}
 		return NONE;
 	}
 
+	private static void writeCsvRow(Writer writer, List<?> cells) throws IOException {
+		for (int i = 0; i < cells.size(); i++) {
+			Object cell = cells.get(i);
+			if (cell != null) {
+				String text = cell instanceof BigDecimal ? ((BigDecimal) cell).toPlainString() : cell.toString();
+				if (text.indexOf(',') > -1 || text.indexOf('"') > -1 || text.indexOf('\n') > -1) {
+					writer.write('"');
+					writer.write(text.replace("\"", "\"\""));
+					writer.write('"');
+				} else {
+					writer.write(text);
+				}
+			}
+			writer.write(i == cells.size() - 1 ? "\r\n" : ",");
+		}
+	}
+
+	// resolve accessors and templates once per export instead of per row
+	private List<ExportColumn> compileExportColumns(String columns) throws IOException {
+		List<String> columnsList = null;
+		if (StringUtils.isNotBlank(columns))
+			columnsList = Arrays.asList(columns.split("\\s*,\\s*"));
+		List<ExportColumn> exportColumns = new ArrayList<>();
+		for (Map.Entry<String, UiConfigImpl> entry : getUiConfigs().entrySet()) {
+			String name = entry.getKey();
+			if (columnsList != null && !columnsList.contains(name))
+				continue;
+			UiConfigImpl uc = entry.getValue();
+			HiddenImpl hidden = uc.getHiddenInList();
+			if (hidden.isValue())
+				continue;
+			String label = getText(StringUtils.isNotBlank(uc.getAlias()) ? uc.getAlias() : name);
+			Template template = StringUtils.isNotBlank(uc.getCsvTemplate())
+					? new Template(null, uc.getCsvTemplate(), freemarkerManager.getConfig())
+					: null;
+			exportColumns.add(new ExportColumn(label, compileAccessor(name), template, uc.isShowSum()));
+		}
+		return exportColumns;
+	}
+
+	private Function<Object, Object> compileAccessor(String name) {
+		if (name.indexOf('.') < 0 && name.indexOf('[') < 0) {
+			PropertyDescriptor pd = org.springframework.beans.BeanUtils.getPropertyDescriptor(getEntityClass(), name);
+			Method readMethod = pd != null ? pd.getReadMethod() : null;
+			if (readMethod != null) {
+				readMethod.setAccessible(true);
+				return en -> {
+					try {
+						return readMethod.invoke(en);
+					} catch (InvocationTargetException e) {
+						Throwable cause = e.getCause();
+						throw cause instanceof RuntimeException ? (RuntimeException) cause
+								: new RuntimeException(cause);
+					} catch (IllegalAccessException e) {
+						throw new RuntimeException(e);
+					}
+				};
+			}
+		}
+		return en -> new BeanWrapperImpl(en).getPropertyValue(name);
+	}
+
+	private String formatExportValue(Object value) {
+		if (value instanceof Collection)
+			return StringUtils.join((Collection<?>) value, ",");
+		if (value instanceof Object[])
+			return StringUtils.join((Object[]) value, ",");
+		if (value instanceof Boolean)
+			return getText(value.toString());
+		if (value instanceof Date) {
+			if (value instanceof Time)
+				return DateUtils.format((Date) value, "HH:mm:ss");
+			if (value instanceof java.sql.Date)
+				return DateUtils.formatDate8((Date) value);
+			return DateUtils.formatDatetime((Date) value);
+		}
+		return String.valueOf(value);
+	}
+
+	private class ExportColumn {
+
+		final String label;
+
+		final Function<Object, Object> accessor;
+
+		final Template template;
+
+		final boolean showSum;
+
+		final Map<String, Object> rootMap;
+
+		final StringWriter buffer;
+
+		Number sum;
+
+		ExportColumn(String label, Function<Object, Object> accessor, Template template, boolean showSum) {
+			this.label = label;
+			this.accessor = accessor;
+			this.template = template;
+			this.showSum = showSum;
+			this.rootMap = template != null ? new HashMap<>(4, 1) : null;
+			this.buffer = template != null ? new StringWriter() : null;
+		}
+
+		// number is kept for numeric cell if not templated
+		Object cell(Object entity) {
+			Object value = accessor.apply(entity);
+			if (value != null && showSum)
+				sum = add(sum, value);
+			if (template != null)
+				return render(entity, value);
+			if (value == null)
+				return null;
+			if (value instanceof Number)
+				return value;
+			return formatExportValue(value);
+		}
+
+		Object sumCell() {
+			if (!showSum)
+				return null;
+			if (template != null)
+				return render(null, sum);
+			return sum;
+		}
+
+		private String render(Object entity, Object value) {
+			rootMap.clear();
+			if (entity != null)
+				rootMap.put("entity", entity);
+			rootMap.put("value", value);
+			buffer.getBuffer().setLength(0);
+			try {
+				template.process(rootMap, buffer);
+				return buffer.toString();
+			} catch (Exception e) {
+				return e.getMessage();
+			}
+		}
+
+		private Number add(Number old, Object value) {
+			if (value instanceof Float || value instanceof Double) {
+				BigDecimal bd = old != null ? (BigDecimal) old : BigDecimal.ZERO;
+				return bd.add(new BigDecimal(((Number) value).doubleValue()));
+			} else if (value instanceof BigDecimal) {
+				BigDecimal bd = old != null ? (BigDecimal) old : BigDecimal.ZERO;
+				return bd.add((BigDecimal) value);
+			} else if (value instanceof Short || value instanceof Integer || value instanceof Long) {
+				long l = old != null ? old.longValue() : 0L;
+				return l + ((Number) value).longValue();
+			} else {
+				throw new IllegalArgumentException("Unsupported type: " + value.getClass().getName());
+			}
+		}
+
+	}
+
 	public String enable() throws Exception {
 		if (!isEnableable() || getReadonly().isValue())
 			return ACCESSDENIED;
@@ -1654,13 +1748,13 @@ public class EntityAction<EN extends Persistable<?>> extends BaseAction {
 			if (parent == null || parent < 1) {
 				if (tree != null && tree > 0) {
 					children = new ArrayList<>();
-					children.add((EN) baseTreeControl.getTree().getDescendantOrSelfById(tree));
+					children.add((EN) baseTreeControl.getTreeNode(tree));
 					return JSON;
 				} else {
 					parentEntity = baseTreeControl.getTree();
 				}
 			} else {
-				parentEntity = baseTreeControl.getTree().getDescendantOrSelfById(parent);
+				parentEntity = baseTreeControl.getTreeNode(parent);
 			}
 			if (parentEntity != null)
 				children = parentEntity.getChildren();
@@ -152,13 +152,16 @@ public class DefaultActionMapper extends AbstractActionMapper {
 		mapping.setNamespace(namespace);
 		mapping.setName(name);
 		Map<String, Object> params = new HashMap<>(4, 1);
-		// process resultPage.pageNo and resultPage.pageSize
+		// process resultPage.pageNo, resultPage.pageSize and resultPage.cursor
 		String pn = request.getParameter(ResultPage.PAGENO_PARAM_NAME);
 		if (StringUtils.isNumeric(pn))
 			params.put("resultPage.pageNo", pn);
 		String ps = request.getParameter(ResultPage.PAGESIZE_PARAM_NAME);
 		if (StringUtils.isNumeric(ps))
 			params.put("resultPage.pageSize", ps);
+		String cursor = request.getParameter(ResultPage.CURSOR_PARAM_NAME);
+		if (StringUtils.isNotBlank(cursor))
+			params.put("resultPage.cursor", cursor);
 		if (StringUtils.isNotBlank(methodAndUid)) {
 			String uid = null;
 			if (methodAndUid.indexOf('/') < 0
@@ -9,8 +9,11 @@ import static io.github.resilience4j.circuitbreaker.utils.MetricNames.SUCCESSFUL
 
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import org.ironrhino.core.metrics.Metrics;
 import org.ironrhino.core.util.ThrowableCallable;
@@ -87,6 +90,31 @@ public class CircuitBreaking {
 		}
 	}
 
+	public static <T> CompletableFuture<T> executeCompletableFuture(String name, Predicate<Throwable> predicate,
+			Supplier<CompletableFuture<T>> supplier) {
+		if (!resilience4jPresent)
+			return supplier.get();
+		CircuitBreaker circuitBreaker = of(name, predicate);
+		try {
+			CircuitBreakerUtils.isCallPermitted(circuitBreaker);
+		} catch (Exception e) {
+			CompletableFuture<T> future = new CompletableFuture<>();
+			future.completeExceptionally(e);
+			return future;
+		}
+		long start = System.nanoTime();
+		return supplier.get().whenComplete((value, throwable) -> {
+			long durationInNanos = System.nanoTime() - start;
+			if (throwable == null) {
+				circuitBreaker.onSuccess(durationInNanos);
+			} else {
+				if (throwable instanceof CompletionException && throwable.getCause() != null)
+					throwable = throwable.getCause();
+				circuitBreaker.onError(durationInNanos, throwable);
+			}
+		});
+	}
+
 	private static CircuitBreaker of(String key, Predicate<Throwable> predicate) {
 		return circuitBreakers.computeIfAbsent(key, name -> {
 			CircuitBreaker circuitBreaker = CircuitBreaker.of(name,
@@ -19,4 +19,8 @@ public @interface Frequency {
 
 	TimeUnit timeUnit() default TimeUnit.HOURS;
 
+	// count requests in the past duration instead of fixed window start from
+	// first request
+	boolean slidingWindow() default false;
+
 }
@@ -31,8 +31,8 @@ public class FrequencyAspect extends BaseAspect {
 			key = jp.getSignature().toLongString();
 		}
 		int limits = ExpressionUtils.evalInt(frequency.limits(), context, 0);
-		if (frequencyService.available(key, limits) > 0) {
-			frequencyService.increment(key, 1, frequency.duration(), frequency.timeUnit());
+		if (frequencyService.tryAcquire(key, limits, frequency.duration(), frequency.timeUnit(),
+				frequency.slidingWindow())) {
 			return jp.proceed();
 		} else {
 			throw new FrequencyLimitExceededException(key);
@@ -8,4 +8,23 @@ public interface FrequencyService {
 
 	public void increment(String name, long delta, int duration, TimeUnit timeUnit);
 
+	/**
+	 * Check and increment, the default implementation is not atomic and
+	 * concurrent callers may exceed limits, implementations should override it
+	 * to make it atomic.
+	 *
+	 * @return false if limits exceeded in the window
+	 * @throws UnsupportedOperationException
+	 *             if slidingWindow is not supported by implementation
+	 */
+	public default boolean tryAcquire(String name, int limits, int duration, TimeUnit timeUnit,
+			boolean slidingWindow) {
+		if (slidingWindow)
+			throw new UnsupportedOperationException("Sliding window is not supported by " + getClass().getName());
+		if (available(name, limits) <= 0)
+			return false;
+		increment(name, 1, duration, timeUnit);
+		return true;
+	}
+
 }
\ No newline at end of file
@@ -4,85 +4,284 @@ import static org.ironrhino.core.metadata.Profiles.CLOUD;
 import static org.ironrhino.core.metadata.Profiles.CLUSTER;
 import static org.ironrhino.core.metadata.Profiles.DUAL;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.ironrhino.core.spring.configuration.PriorityQualifier;
 import org.ironrhino.core.spring.configuration.ServiceImplementationConditional;
 import org.ironrhino.core.throttle.ConcurrencyService;
+import org.ironrhino.core.util.AppInfo;
+import org.ironrhino.core.util.CodecUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Component;
 
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fair semaphore, permits are held with leases renewed by holder, waiters
+ * queue in order and are woken up by release notification.
+ */
 @Component("concurrencyService")
 @ServiceImplementationConditional(profiles = { DUAL, CLOUD, CLUSTER })
+@Slf4j
 public class RedisConcurrencyService implements ConcurrencyService {
 
 	private static final String NAMESPACE = "concurrency:";
 
+	private static final String CHANNEL_RELEASED = NAMESPACE + "released";
+
+	// waiters in queue should retry before heartbeat timeout
+	private static final long WAITER_TIMEOUT = 3000;
+
+	@Getter
+	@Value("${concurrencyService.leaseTime:60000}")
+	private long leaseTime = 60000;
+
 	@Autowired
 	@Qualifier("stringRedisTemplate")
 	@PriorityQualifier
 	private StringRedisTemplate throttleStringRedisTemplate;
 
+	@Autowired(required = false)
+	@PriorityQualifier
+	private RedisMessageListenerContainer throttleRedisMessageListenerContainer;
+
+	@Autowired(required = false)
+	private TaskScheduler taskScheduler;
+
+	private ThreadPoolTaskScheduler internalTaskScheduler;
+
+	private ScheduledFuture<?> renewal;
+
+	private MessageListener releasedListener;
+
+	private final Map<String, Deque<String>> leases = new ConcurrentHashMap<>();
+
+	private final Map<String, Waiters> waiters = new ConcurrentHashMap<>();
+
+	// KEYS: holders, queue, waiter timeouts, ticket ARGV: permits, id, leaseTime,
+	// waiterTimeout(0 means don't queue)
+	private RedisScript<Long> acquireScript = new DefaultRedisScript<>(
+			"redis.replicate_commands() local t = redis.call('time') local now = t[1] * 1000 + math.floor(t[2] / 1000) "
+					+ "redis.call('zremrangebyscore',KEYS[1],'-inf',now) "
+					+ "local stale = redis.call('zrangebyscore',KEYS[3],'-inf',now) for i = 1, #stale do redis.call('zrem',KEYS[2],stale[i]) end "
+					+ "redis.call('zremrangebyscore',KEYS[3],'-inf',now) "
+					+ "local rank = redis.call('zrank',KEYS[2],ARGV[2]) local position = rank or redis.call('zcard',KEYS[2]) "
+					+ "if position < tonumber(ARGV[1]) - redis.call('zcard',KEYS[1]) then "
+					+ "redis.call('zadd',KEYS[1],now + tonumber(ARGV[3]),ARGV[2]) redis.call('pexpire',KEYS[1],ARGV[3]) "
+					+ "if rank then redis.call('zrem',KEYS[2],ARGV[2]) redis.call('zrem',KEYS[3],ARGV[2]) end return 1 end "
+					+ "local timeout = tonumber(ARGV[4]) if timeout > 0 then "
+					+ "if not rank then redis.call('zadd',KEYS[2],redis.call('incr',KEYS[4]),ARGV[2]) end "
+					+ "redis.call('zadd',KEYS[3],now + timeout,ARGV[2]) "
+					+ "for i = 2, 4 do redis.call('pexpire',KEYS[i],timeout) end end return 0",
+			Long.class);
+
+	// KEYS: holders ARGV: id, channel, name
+	private RedisScript<Long> releaseScript = new DefaultRedisScript<>(
+			"local r = redis.call('zrem',KEYS[1],ARGV[1]) redis.call('publish',ARGV[2],ARGV[3]) return r", Long.class);
+
+	// KEYS: queue, waiter timeouts ARGV: id, channel, name
+	private RedisScript<Long> cancelScript = new DefaultRedisScript<>(
+			"local r = redis.call('zrem',KEYS[1],ARGV[1]) redis.call('zrem',KEYS[2],ARGV[1]) if r == 1 then redis.call('publish',ARGV[2],ARGV[3]) end return r",
+			Long.class);
+
+	// KEYS: holders ARGV: leaseTime, ids...
+	private RedisScript<Long> renewScript = new DefaultRedisScript<>(
+			"redis.replicate_commands() local t = redis.call('time') local now = t[1] * 1000 + math.floor(t[2] / 1000) "
+					+ "local n = 0 for i = 2, #ARGV do n = n + redis.call('zadd',KEYS[1],'XX','CH',now + tonumber(ARGV[1]),ARGV[i]) end "
+					+ "if n > 0 then redis.call('pexpire',KEYS[1],ARGV[1]) end return n",
+			Long.class);
+
+	@PostConstruct
+	public void init() {
+		if (throttleRedisMessageListenerContainer != null) {
+			releasedListener = (message, pattern) -> {
+				String name = throttleStringRedisTemplate.getStringSerializer().deserialize(message.getBody());
+				Waiters w = waiters.get(name);
+				if (w != null)
+					w.signal();
+			};
+			throttleRedisMessageListenerContainer.addMessageListener(releasedListener,
+					new ChannelTopic(CHANNEL_RELEASED));
+		}
+		if (taskScheduler == null) {
+			internalTaskScheduler = new ThreadPoolTaskScheduler();
+			internalTaskScheduler.setThreadNamePrefix("concurrencyService-");
+			internalTaskScheduler.setDaemon(true);
+			internalTaskScheduler.initialize();
+		}
+		renewal = (taskScheduler != null ? taskScheduler : internalTaskScheduler).scheduleAtFixedRate(this::renew,
+				leaseTime / 3);
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if (renewal != null)
+			renewal.cancel(true);
+		if (internalTaskScheduler != null)
+			internalTaskScheduler.shutdown();
+		if (releasedListener != null)
+			throttleRedisMessageListenerContainer.removeMessageListener(releasedListener);
+	}
+
 	@Override
 	public boolean tryAcquire(String name, int permits) {
-		String key = NAMESPACE + name;
-		Long value = throttleStringRedisTemplate.opsForValue().increment(key, 1);
-		boolean success = value != null && value.intValue() <= permits;
-		if (!success)
-			throttleStringRedisTemplate.opsForValue().increment(key, -1);
-		return success;
+		String id = newId();
+		if (!acquire(name, permits, id, 0))
+			return false;
+		hold(name, id);
+		return true;
 	}
 
 	@Override
 	public boolean tryAcquire(String name, int permits, long timeout, TimeUnit unit) throws InterruptedException {
 		if (timeout <= 0)
 			return tryAcquire(name, permits);
-		String key = NAMESPACE + name;
-		Long value = throttleStringRedisTemplate.opsForValue().increment(key, 1);
-		boolean success = value != null && value.intValue() <= permits;
-		if (!success)
-			throttleStringRedisTemplate.opsForValue().increment(key, -1);
-		long millisTimeout = unit.toMillis(timeout);
-		long start = System.currentTimeMillis();
-		while (!success) {
-			Thread.sleep(100);
-			if ((System.currentTimeMillis() - start) >= millisTimeout)
-				break;
-			value = throttleStringRedisTemplate.opsForValue().increment(key, 1);
-			success = value != null && value.intValue() <= permits;
-			if (!success)
-				throttleStringRedisTemplate.opsForValue().increment(key, -1);
-		}
-		return success;
+		return acquire(name, permits, System.currentTimeMillis() + unit.toMillis(timeout));
 	}
 
 	@Override
-	public void acquire(String name, int permits) {
-		String key = NAMESPACE + name;
-		Long value = throttleStringRedisTemplate.opsForValue().increment(key, 1);
-		boolean success = value != null && value.intValue() <= permits;
-		if (!success)
-			throttleStringRedisTemplate.opsForValue().increment(key, -1);
-		while (!success) {
+	public void acquire(String name, int permits) throws InterruptedException {
+		acquire(name, permits, Long.MAX_VALUE);
+	}
+
+	@Override
+	public void release(String name) {
+		Deque<String> ids = leases.get(name);
+		String id = ids != null ? ids.pollLast() : null;
+		if (id == null) {
+			log.warn("No permit of '{}' is held by this instance, release is ignored", name);
+			return;
+		}
+		Long ret = throttleStringRedisTemplate.execute(releaseScript, Collections.singletonList(holdersKey(name)),
+				id, CHANNEL_RELEASED, name);
+		if (ret != null && ret == 0)
+			log.warn("Lease {} of '{}' is expired before release", id, name);
+	}
+
+	private boolean acquire(String name, int permits, long deadline) throws InterruptedException {
+		String id = newId();
+		long pollInterval = throttleRedisMessageListenerContainer != null ? 1000 : 100;
+		boolean acquired = false;
+		boolean queued = false;
+		Waiters w = waiters.compute(name, (key, value) -> {
+			if (value == null)
+				value = new Waiters();
+			value.count++;
+			return value;
+		});
+		try {
+			while (true) {
+				long version = w.version;
+				long remaining = deadline - System.currentTimeMillis();
+				acquired = acquire(name, permits, id, remaining > 0 ? WAITER_TIMEOUT : 0);
+				if (acquired) {
+					hold(name, id);
+					return true;
+				}
+				if (remaining <= 0)
+					return false;
+				queued = true;
+				w.await(version, Math.min(remaining, pollInterval));
+			}
+		} finally {
+			waiters.computeIfPresent(name, (key, value) -> --value.count > 0 ? value : null);
+			if (queued && !acquired)
+				throttleStringRedisTemplate.execute(cancelScript, Arrays.asList(queueKey(name), timeoutsKey(name)),
+						id, CHANNEL_RELEASED, name);
+		}
+	}
+
+	private boolean acquire(String name, int permits, String id, long waiterTimeout) {
+		Long ret = throttleStringRedisTemplate.execute(acquireScript,
+				Arrays.asList(holdersKey(name), queueKey(name), timeoutsKey(name), NAMESPACE + '{' + name + "}:ticket"),
+				String.valueOf(permits), id, String.valueOf(leaseTime), String.valueOf(waiterTimeout));
+		if (ret == null)
+			throw new RuntimeException("Unexpected null");
+		return ret == 1;
+	}
+
+	private void hold(String name, String id) {
+		leases.compute(name, (key, ids) -> {
+			if (ids == null)
+				ids = new ConcurrentLinkedDeque<>();
+			ids.add(id);
+			return ids;
+		});
+	}
+
+	private void renew() {
+		for (String name : leases.keySet()) {
+			Deque<String> ids = leases.computeIfPresent(name, (key, value) -> value.isEmpty() ? null : value);
+			if (ids == null)
+				continue;
+			List<String> args = new ArrayList<>(ids.size() + 1);
+			args.add(String.valueOf(leaseTime));
+			args.addAll(ids);
 			try {
-				Thread.sleep(100);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
+				throttleStringRedisTemplate.execute(renewScript, Collections.singletonList(holdersKey(name)),
+						args.toArray());
+			} catch (Exception e) {
+				log.error("Renew leases of '" + name + "' failed", e);
 			}
-			value = throttleStringRedisTemplate.opsForValue().increment(key, 1);
-			success = value != null && value.intValue() <= permits;
-			if (!success)
-				throttleStringRedisTemplate.opsForValue().increment(key, -1);
 		}
+	}
 
+	private static String newId() {
+		return AppInfo.getInstanceId() + '$' + CodecUtils.nextId();
 	}
 
-	@Override
-	public void release(String name) {
-		String key = NAMESPACE + name;
-		throttleStringRedisTemplate.opsForValue().increment(key, -1);
+	// hash tag keeps keys of same semaphore in one slot of redis cluster
+	private static String holdersKey(String name) {
+		return NAMESPACE + '{' + name + "}:holders";
+	}
+
+	private static String queueKey(String name) {
+		return NAMESPACE + '{' + name + "}:queue";
+	}
+
+	private static String timeoutsKey(String name) {
+		return NAMESPACE + '{' + name + "}:timeouts";
+	}
+
+	private static class Waiters {
+
+		private int count;
+
+		private volatile long version;
+
+		synchronized void await(long version, long timeout) throws InterruptedException {
+			if (this.version == version)
+				wait(timeout);
+		}
+
+		synchronized void signal() {
+			version++;
+			notifyAll();
+		}
+
 	}
 
 }
@@ -0,0 +1,80 @@
+package org.ironrhino.core.throttle.impl;
+
+import static org.ironrhino.core.metadata.Profiles.CLOUD;
+import static org.ironrhino.core.metadata.Profiles.CLUSTER;
+import static org.ironrhino.core.metadata.Profiles.DUAL;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.ironrhino.core.spring.configuration.PriorityQualifier;
+import org.ironrhino.core.spring.configuration.ServiceImplementationConditional;
+import org.ironrhino.core.throttle.FrequencyService;
+import org.ironrhino.core.util.CodecUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+@Component("frequencyService")
+@ServiceImplementationConditional(profiles = { DUAL, CLOUD, CLUSTER })
+public class RedisFrequencyService implements FrequencyService {
+
+	private static final String NAMESPACE = "frequency:";
+
+	private static final String NAMESPACE_SLIDING = "frequency:sliding:";
+
+	@Autowired
+	@Qualifier("stringRedisTemplate")
+	@PriorityQualifier
+	private StringRedisTemplate throttleStringRedisTemplate;
+
+	private RedisScript<Long> incrementScript = new DefaultRedisScript<>(
+			"local c = redis.call('incrby',KEYS[1],ARGV[1]) if redis.call('pttl',KEYS[1]) < 0 then redis.call('pexpire',KEYS[1],ARGV[2]) end return c",
+			Long.class);
+
+	private RedisScript<Long> fixedWindowScript = new DefaultRedisScript<>(
+			"if tonumber(redis.call('get',KEYS[1]) or '0') >= tonumber(ARGV[1]) then return 0 end redis.call('incr',KEYS[1]) if redis.call('pttl',KEYS[1]) < 0 then redis.call('pexpire',KEYS[1],ARGV[2]) end return 1",
+			Long.class);
+
+	// requests log in sorted set scored by redis server time
+	private RedisScript<Long> slidingWindowScript = new DefaultRedisScript<>(
+			"redis.replicate_commands() local t = redis.call('time') local now = t[1] * 1000 + math.floor(t[2] / 1000) redis.call('zremrangebyscore',KEYS[1],'-inf',now - tonumber(ARGV[2])) if redis.call('zcard',KEYS[1]) >= tonumber(ARGV[1]) then return 0 end redis.call('zadd',KEYS[1],now,ARGV[3]) redis.call('pexpire',KEYS[1],ARGV[2]) return 1",
+			Long.class);
+
+	@Override
+	public int available(String name, int limits) {
+		String value = throttleStringRedisTemplate.opsForValue().get(NAMESPACE + name);
+		if (value == null)
+			return limits;
+		int current = Integer.valueOf(value);
+		return current > limits ? 0 : limits - current;
+	}
+
+	@Override
+	public void increment(String name, long delta, int duration, TimeUnit timeUnit) {
+		throttleStringRedisTemplate.execute(incrementScript, Collections.singletonList(NAMESPACE + name),
+				String.valueOf(delta), String.valueOf(timeUnit.toMillis(duration)));
+	}
+
+	@Override
+	public boolean tryAcquire(String name, int limits, int duration, TimeUnit timeUnit, boolean slidingWindow) {
+		if (limits <= 0)
+			return false;
+		String window = String.valueOf(timeUnit.toMillis(duration));
+		Long result;
+		if (slidingWindow)
+			result = throttleStringRedisTemplate.execute(slidingWindowScript,
+					Collections.singletonList(NAMESPACE_SLIDING + name), String.valueOf(limits), window,
+					CodecUtils.nextId());
+		else
+			result = throttleStringRedisTemplate.execute(fixedWindowScript,
+					Collections.singletonList(NAMESPACE + name), String.valueOf(limits), window);
+		if (result == null)
+			throw new RuntimeException("Unexpected null");
+		return result == 1;
+	}
+
+}
@@ -0,0 +1,152 @@
+package org.ironrhino.core.throttle.impl;
+
+import static org.ironrhino.core.metadata.Profiles.DEFAULT;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ironrhino.core.spring.configuration.ServiceImplementationConditional;
+import org.ironrhino.core.throttle.FrequencyService;
+import org.springframework.stereotype.Component;
+
+@Component("frequencyService")
+@ServiceImplementationConditional(profiles = DEFAULT)
+public class StandaloneFrequencyService implements FrequencyService {
+
+	private static final int SWEEP_INTERVAL = 1024;
+
+	private final ConcurrentHashMap<String, FixedWindow> fixedWindows = new ConcurrentHashMap<>();
+
+	private final ConcurrentHashMap<String, SlidingWindow> slidingWindows = new ConcurrentHashMap<>();
+
+	private final AtomicInteger operations = new AtomicInteger();
+
+	@Override
+	public int available(String name, int limits) {
+		long now = System.currentTimeMillis();
+		long current = 0;
+		FixedWindow window = fixedWindows.get(name);
+		if (window != null && window.expiresAt > now)
+			current = window.count;
+		long[] sliding = new long[1];
+		slidingWindows.computeIfPresent(name, (key, w) -> {
+			sliding[0] = w.count(now);
+			return w;
+		});
+		current = Math.max(current, sliding[0]);
+		return current > limits ? 0 : (int) (limits - current);
+	}
+
+	@Override
+	public void increment(String name, long delta, int duration, TimeUnit timeUnit) {
+		sweepIfNecessary();
+		long now = System.currentTimeMillis();
+		fixedWindows.compute(name, (key, window) -> {
+			if (window == null || window.expiresAt <= now)
+				window = new FixedWindow(now + timeUnit.toMillis(duration));
+			window.count += delta;
+			return window;
+		});
+	}
+
+	@Override
+	public boolean tryAcquire(String name, int limits, int duration, TimeUnit timeUnit, boolean slidingWindow) {
+		if (limits <= 0)
+			return false;
+		sweepIfNecessary();
+		long now = System.currentTimeMillis();
+		long millis = timeUnit.toMillis(duration);
+		boolean[] acquired = new boolean[1];
+		if (slidingWindow) {
+			slidingWindows.compute(name, (key, window) -> {
+				if (window == null || window.millis != millis)
+					window = new SlidingWindow(millis);
+				acquired[0] = window.tryAcquire(now, limits);
+				return window;
+			});
+		} else {
+			fixedWindows.compute(name, (key, window) -> {
+				if (window == null || window.expiresAt <= now)
+					window = new FixedWindow(now + millis);
+				if (window.count < limits) {
+					window.count++;
+					acquired[0] = true;
+				}
+				return window;
+			});
+		}
+		return acquired[0];
+	}
+
+	private void sweepIfNecessary() {
+		if (operations.incrementAndGet() % SWEEP_INTERVAL != 0)
+			return;
+		long now = System.currentTimeMillis();
+		fixedWindows.values().removeIf(window -> window.expiresAt <= now);
+		slidingWindows.values().removeIf(window -> window.expiresAt <= now);
+	}
+
+	private static class FixedWindow {
+
+		private final long expiresAt;
+
+		private volatile long count;
+
+		FixedWindow(long expiresAt) {
+			this.expiresAt = expiresAt;
+		}
+
+	}
+
+	/**
+	 * Counts acquisitions in buckets of tenth window, one more bucket is kept so
+	 * that the counted span always covers the whole window, it may reject early
+	 * by at most one bucket but never exceeds limits.
+	 */
+	private static class SlidingWindow {
+
+		private static final int BUCKETS = 10;
+
+		private final long millis;
+
+		private final long bucketMillis;
+
+		private final long[] counts = new long[BUCKETS + 1];
+
+		// bucket sequence since epoch, stale if out of window
+		private final long[] sequences = new long[BUCKETS + 1];
+
+		private volatile long expiresAt;
+
+		SlidingWindow(long millis) {
+			this.millis = millis;
+			this.bucketMillis = Math.max(1, (millis + BUCKETS - 1) / BUCKETS);
+		}
+
+		long count(long now) {
+			long oldest = now / bucketMillis - BUCKETS;
+			long count = 0;
+			for (int i = 0; i < counts.length; i++)
+				if (sequences[i] >= oldest)
+					count += counts[i];
+			return count;
+		}
+
+		boolean tryAcquire(long now, int limits) {
+			if (count(now) >= limits)
+				return false;
+			long sequence = now / bucketMillis;
+			int i = (int) (sequence % counts.length);
+			if (sequences[i] != sequence) {
+				sequences[i] = sequence;
+				counts[i] = 0;
+			}
+			counts[i]++;
+			expiresAt = now + millis + bucketMillis;
+			return true;
+		}
+
+	}
+
+}
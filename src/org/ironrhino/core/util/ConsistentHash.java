@@ -5,36 +5,55 @@ import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * http://fisheye5.cenqua.com/browse/~raw,r=1.11/sailfin/clb/src/main/java/org/
  * jvnet/glassfish/comms/clb/core/util/ConsistentHash.java
+ * <p>
+ * Nodes are held in an immutable snapshot which is replaced on modification,
+ * lookup takes no lock.
+ * </p>
+ * <p>
+ * {@link Algorithm#RING} keeps mapping of previous versions which only looks
+ * up leading points of the ring, keys are unevenly distributed, new
+ * deployment should use {@link Algorithm#BALANCED_RING}, switching existing
+ * deployment moves most keys, so data should be migrated or cache should be
+ * warmed up.
+ * </p>
  */
 public class ConsistentHash<K, V> {
-	private Map<V, Integer> nodes = new HashMap<>();
-	private int totalWeights;
-	private Point<V>[] points;
-	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
-	private ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
-	private ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
-	private Hash hash;
-	private int pointsPerWeight = 160;
+
+	private static final int POINTS_PER_WEIGHT = 160;
+
+	private static final int MURMUR_SEED = 0x1234ABCD;
+
+	private final Hash hash;
+
+	private final Algorithm algorithm;
+
+	private volatile Snapshot<V> snapshot;
 
 	public ConsistentHash(Map<V, Integer> nodes) {
 		this(nodes, null);
 	}
 
 	public ConsistentHash(Map<V, Integer> nodes, Hash hash) {
+		this(nodes, hash, null);
+	}
+
+	public ConsistentHash(Map<V, Integer> nodes, Hash hash, Algorithm algorithm) {
+		this.hash = hash != null ? hash : new MurmurHash();
+		this.algorithm = algorithm != null ? algorithm : Algorithm.RING;
+		Map<V, Integer> map = new LinkedHashMap<>();
 		if (nodes != null)
-			this.nodes = nodes;
-		if (hash == null)
-			hash = new MurmurHash();
-		this.hash = hash;
-		setup();
+			nodes.forEach((k, v) -> {
+				if (v != null && v > 0)
+					map.put(k, v);
+			});
+		this.snapshot = build(map);
 	}
 
 	public ConsistentHash(Collection<V> nodes) {
@@ -42,26 +61,38 @@ public class ConsistentHash<K, V> {
 	}
 
 	public ConsistentHash(Collection<V> nodes, Hash hash) {
-		if (nodes != null && nodes.size() > 0) {
-			for (V v : nodes)
-				this.nodes.put(v, 1);
-		}
-		if (hash == null)
-			hash = new MurmurHash();
-		this.hash = hash;
-		setup();
+		this(nodes, hash, null);
+	}
+
+	public ConsistentHash(Collection<V> nodes, Hash hash, Algorithm algorithm) {
+		this(toMap(nodes), hash, algorithm);
 	}
 
-	public void addNode(V node, int weight) {
+	public Algorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	public Map<V, Integer> getNodes() {
+		return snapshot.nodes;
+	}
+
+	public synchronized void addNode(V node, int weight) {
 		if (weight < 1)
 			return;
-		writeLock.lock();
-		try {
-			nodes.put(node, weight);
-			points = null;
-			setup();
-		} finally {
-			writeLock.unlock();
+		Snapshot<V> current = snapshot;
+		Integer old = current.nodes.get(node);
+		if (old != null && old == weight)
+			return;
+		Map<V, Integer> map = new LinkedHashMap<>(current.nodes);
+		map.put(node, weight);
+		if (current instanceof Ring) {
+			// merge points of new node into existing ring
+			Ring<V> ring = (Ring<V>) current;
+			if (old != null)
+				ring = ring.without(node);
+			snapshot = ring.merge(Collections.unmodifiableMap(map), node, points(node, weight));
+		} else {
+			snapshot = build(map);
 		}
 	}
 
@@ -69,70 +100,279 @@ public class ConsistentHash<K, V> {
 		addNode(node, 1);
 	}
 
-	public void removeNode(V node) {
-		writeLock.lock();
-		try {
-			nodes.remove(node);
-			points = null;
-			setup();
-		} finally {
-			writeLock.unlock();
-		}
-	}
-
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private void setup() {
-		writeLock.lock();
-		try {
-			if (points != null)
-				return;
-			totalWeights = 0;
-			for (Iterator<Integer> it = nodes.values().iterator(); it.hasNext();)
-				totalWeights += (it.next()).intValue();
-			points = new Point[totalWeights * pointsPerWeight];
-			int point = 0;
-			for (Iterator<V> keys = nodes.keySet().iterator(); keys.hasNext();) {
-				Object node = keys.next();
-				int n = nodes.get(node).intValue() * pointsPerWeight;
-				for (int i = 0; i < n; i++)
-					points[point++] = new Point(hash.hash(node.toString() + '/' + i), node);
-			}
-			Arrays.sort(points);
-		} finally {
-			writeLock.unlock();
-		}
+	public synchronized void removeNode(V node) {
+		Snapshot<V> current = snapshot;
+		if (!current.nodes.containsKey(node))
+			return;
+		Map<V, Integer> map = new LinkedHashMap<>(current.nodes);
+		map.remove(node);
+		if (current instanceof Ring)
+			snapshot = ((Ring<V>) current).without(node).withNodes(Collections.unmodifiableMap(map));
+		else
+			snapshot = build(map);
 	}
 
 	public V get(K key) {
-		if (key == null) {
+		if (key == null)
+			return null;
+		Snapshot<V> current = snapshot;
+		if (current.nodes.isEmpty())
 			return null;
-		}
 		String tobeHash = key.toString();
 		int i = tobeHash.indexOf('{');
 		int j = tobeHash.indexOf('}');
 		if (i > -1 && j > i)
 			tobeHash = tobeHash.substring(i + 1, j);
-		readLock.lock();
-		try {
-			long hashValue = hash.hash(tobeHash);
-			if (points == null || points.length == 0)
+		return current.get(hash.hash(tobeHash));
+	}
+
+	private Snapshot<V> build(Map<V, Integer> map) {
+		Map<V, Integer> nodes = Collections.unmodifiableMap(map);
+		switch (algorithm) {
+		case JUMP:
+			return new Jump<>(nodes);
+		case RENDEZVOUS:
+			return new Rendezvous<>(nodes, hash);
+		default:
+			Ring<V> ring = new Ring<>(nodes, new long[0], new Object[0], algorithm == Algorithm.RING);
+			for (Map.Entry<V, Integer> entry : map.entrySet())
+				ring = ring.merge(nodes, entry.getKey(), points(entry.getKey(), entry.getValue()));
+			return ring;
+		}
+	}
+
+	// sorted hashes of virtual nodes "node/0", "node/1" ...
+	private long[] points(V node, int weight) {
+		int n = weight * POINTS_PER_WEIGHT;
+		long[] points = new long[n];
+		String name = String.valueOf(node);
+		if (hash.getClass() == MurmurHash.class) {
+			// avoid string concatenation per virtual node
+			byte[] prefix = name.getBytes(StandardCharsets.UTF_8);
+			byte[] buf = Arrays.copyOf(prefix, prefix.length + 11);
+			buf[prefix.length] = '/';
+			for (int i = 0; i < n; i++) {
+				int len = prefix.length + 1 + writeDigits(buf, prefix.length + 1, i);
+				points[i] = MurmurHash.hash64A(buf, 0, len, MURMUR_SEED);
+			}
+		} else {
+			StringBuilder sb = new StringBuilder(name.length() + 11).append(name).append('/');
+			for (int i = 0; i < n; i++) {
+				sb.setLength(name.length() + 1);
+				points[i] = hash.hash(sb.append(i).toString());
+			}
+		}
+		Arrays.sort(points);
+		return points;
+	}
+
+	private static int writeDigits(byte[] buf, int offset, int value) {
+		if (value == 0) {
+			buf[offset] = '0';
+			return 1;
+		}
+		int len = 0;
+		for (int v = value; v > 0; v /= 10)
+			len++;
+		for (int i = offset + len - 1; value > 0; i--, value /= 10)
+			buf[i] = (byte) ('0' + value % 10);
+		return len;
+	}
+
+	private static <V> Map<V, Integer> toMap(Collection<V> nodes) {
+		Map<V, Integer> map = new LinkedHashMap<>();
+		if (nodes != null)
+			for (V v : nodes)
+				map.put(v, 1);
+		return map;
+	}
+
+	// 64-bit finalizer of MurmurHash3
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	public enum Algorithm {
+		// ring with virtual nodes, compatible with previous versions which only
+		// look up the leading sum of weights points
+		RING,
+		// ring with virtual nodes looking up all points, honors weight
+		BALANCED_RING,
+		// jump consistent hash, ignores weight and moves keys only if last node
+		// changes, suitable for append only nodes
+		JUMP,
+		// highest random weight, honors weight
+		RENDEZVOUS
+	}
+
+	private static abstract class Snapshot<V> {
+
+		final Map<V, Integer> nodes;
+
+		Snapshot(Map<V, Integer> nodes) {
+			this.nodes = nodes;
+		}
+
+		abstract V get(long hash);
+
+	}
+
+	private static class Ring<V> extends Snapshot<V> {
+
+		final long[] points;
+
+		final Object[] owners;
+
+		final boolean legacy;
+
+		// number of leading points looked up
+		final int bound;
+
+		Ring(Map<V, Integer> nodes, long[] points, Object[] owners, boolean legacy) {
+			super(nodes);
+			this.points = points;
+			this.owners = owners;
+			this.legacy = legacy;
+			int bound = points.length;
+			if (legacy) {
+				int totalWeights = 0;
+				for (int weight : nodes.values())
+					totalWeights += weight;
+				bound = Math.min(totalWeights, bound);
+			}
+			this.bound = bound;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		V get(long hash) {
+			if (bound == 0)
 				return null;
-			if (hashValue < points[0].start)
-				return points[totalWeights - 1].node;
+			if (hash < points[0])
+				return (V) owners[bound - 1];
 			int lo = 0;
-			int hi = totalWeights;
-
+			int hi = bound;
 			while (lo < (hi - 1)) {
 				int mid = (lo + hi) >>> 1;
-				if (points[mid].start > hashValue)
+				if (points[mid] > hash)
 					hi = mid;
 				else
 					lo = mid;
 			}
-			return points[lo].node;
-		} finally {
-			readLock.unlock();
+			return (V) owners[lo];
+		}
+
+		Ring<V> merge(Map<V, Integer> nodes, V owner, long[] added) {
+			long[] p = new long[points.length + added.length];
+			Object[] o = new Object[p.length];
+			int i = 0, j = 0, k = 0;
+			while (i < points.length || j < added.length) {
+				if (j == added.length || i < points.length && points[i] <= added[j]) {
+					p[k] = points[i];
+					o[k++] = owners[i++];
+				} else {
+					p[k] = added[j++];
+					o[k++] = owner;
+				}
+			}
+			return new Ring<>(nodes, p, o, legacy);
+		}
+
+		Ring<V> without(V node) {
+			int n = 0;
+			for (Object owner : owners)
+				if (!owner.equals(node))
+					n++;
+			long[] p = new long[n];
+			Object[] o = new Object[n];
+			for (int i = 0, k = 0; i < owners.length; i++) {
+				if (!owners[i].equals(node)) {
+					p[k] = points[i];
+					o[k++] = owners[i];
+				}
+			}
+			return new Ring<>(nodes, p, o, legacy);
+		}
+
+		Ring<V> withNodes(Map<V, Integer> nodes) {
+			return new Ring<>(nodes, points, owners, legacy);
+		}
+
+	}
+
+	private static class Jump<V> extends Snapshot<V> {
+
+		final Object[] buckets;
+
+		Jump(Map<V, Integer> nodes) {
+			super(nodes);
+			this.buckets = nodes.keySet().toArray();
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		V get(long hash) {
+			return (V) buckets[jump(hash, buckets.length)];
+		}
+
+		// John Lamping, Eric Veach: A Fast, Minimal Memory, Consistent Hash
+		// Algorithm
+		static int jump(long key, int buckets) {
+			long b = -1, j = 0;
+			while (j < buckets) {
+				b = j;
+				key = key * 2862933555777941757L + 1;
+				j = (long) ((b + 1) * ((double) (1L << 31) / ((double) ((key >>> 33) + 1))));
+			}
+			return (int) b;
+		}
+
+	}
+
+	private static class Rendezvous<V> extends Snapshot<V> {
+
+		final Object[] members;
+
+		final long[] seeds;
+
+		final double[] weights;
+
+		Rendezvous(Map<V, Integer> nodes, Hash hash) {
+			super(nodes);
+			int n = nodes.size();
+			members = new Object[n];
+			seeds = new long[n];
+			weights = new double[n];
+			int i = 0;
+			for (Map.Entry<V, Integer> entry : nodes.entrySet()) {
+				members[i] = entry.getKey();
+				seeds[i] = hash.hash(String.valueOf(entry.getKey()));
+				weights[i++] = entry.getValue();
+			}
 		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		V get(long hash) {
+			int selected = -1;
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < members.length; i++) {
+				// uniform in (0, 1)
+				double u = ((mix(hash ^ seeds[i]) >>> 11) + 0.5) * 0x1.0p-53;
+				double score = -weights[i] / Math.log(u);
+				if (score > max) {
+					max = score;
+					selected = i;
+				}
+			}
+			return (V) members[selected];
+		}
+
 	}
 
 	@FunctionalInterface
@@ -253,36 +493,4 @@ public class ConsistentHash<K, V> {
 		}
 	}
 
-	private static class Point<V> implements Comparable<Point<V>> {
-
-		Long start;
-		V node;
-
-		Point(long start, V node) {
-			this.start = start;
-			this.node = node;
-		}
-
-		@Override
-		public int compareTo(Point<V> o) {
-			return start.compareTo(o.start);
-		}
-
-		@Override
-		public boolean equals(Object o) {
-			return o instanceof Point && o.toString().equals(this.toString());
-		}
-
-		@Override
-		public int hashCode() {
-			return start.hashCode();
-		}
-
-		@Override
-		public String toString() {
-			return "{" + node + ',' + start + "}";
-		}
-
-	}
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,192 @@
+package org.ironrhino.core.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable set of wildcard patterns with the same semantics as
+ * {@link StringUtils#matchesWildcard(String, String)}, patterns are classified
+ * once so that matching doesn't split or allocate: literals are hashed,
+ * {@code prefix*} and {@code *suffix} are stored in tries, the rest are
+ * matched in turn.
+ */
+public final class WildcardMatcher {
+
+	public static final WildcardMatcher EMPTY = new WildcardMatcher(null, Collections.emptyList());
+
+	private final String source;
+
+	private final boolean matchAll;
+
+	private final Set<String> literals = new HashSet<>();
+
+	// patterns like "/assets/*"
+	private final Node prefixes = new Node();
+
+	// patterns like "*.json", stored reversed
+	private final Node suffixes = new Node();
+
+	private final char[][] patterns;
+
+	private final boolean empty;
+
+	private WildcardMatcher(String source, Collection<String> patterns) {
+		this.source = source;
+		boolean matchAll = false;
+		List<char[]> list = new ArrayList<>();
+		for (String pattern : patterns) {
+			if (pattern == null || pattern.isEmpty())
+				continue;
+			int first = indexOfWildcard(pattern, 0, pattern.length());
+			int last = pattern.length() - 1;
+			if (first < 0) {
+				literals.add(pattern);
+			} else if (pattern.equals("*")) {
+				matchAll = true;
+			} else if (first == last && pattern.charAt(last) == '*') {
+				prefixes.add(pattern, 0, last, false);
+			} else if (first == 0 && pattern.charAt(0) == '*' && indexOfWildcard(pattern, 1, pattern.length()) < 0) {
+				suffixes.add(pattern, 1, pattern.length(), true);
+			} else {
+				list.add(pattern.toCharArray());
+			}
+		}
+		this.matchAll = matchAll;
+		this.patterns = list.toArray(new char[list.size()][]);
+		this.empty = !matchAll && literals.isEmpty() && prefixes.isLeaf() && suffixes.isLeaf()
+				&& this.patterns.length == 0;
+	}
+
+	/**
+	 * @param patterns
+	 *            comma separated patterns
+	 */
+	public static WildcardMatcher compile(String patterns) {
+		if (patterns == null || patterns.trim().isEmpty())
+			return EMPTY;
+		return new WildcardMatcher(patterns, Arrays.asList(patterns.trim().split("\\s*,\\s*")));
+	}
+
+	public static WildcardMatcher compile(Collection<String> patterns) {
+		if (patterns == null || patterns.isEmpty())
+			return EMPTY;
+		return new WildcardMatcher(String.join(",", patterns), patterns);
+	}
+
+	public boolean isEmpty() {
+		return empty;
+	}
+
+	public boolean matches(String text) {
+		if (empty || text == null)
+			return false;
+		if (matchAll || literals.contains(text) || prefixes.matches(text, false) || suffixes.matches(text, true))
+			return true;
+		for (char[] pattern : patterns)
+			if (matches(pattern, text))
+				return true;
+		return false;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	@Override
+	public String toString() {
+		return source != null ? source : "";
+	}
+
+	private static int indexOfWildcard(String pattern, int from, int to) {
+		for (int i = from; i < to; i++) {
+			char c = pattern.charAt(i);
+			if (c == '*' || c == '?')
+				return i;
+		}
+		return -1;
+	}
+
+	// backtracks to last '*' only, no recursion nor allocation
+	private static boolean matches(char[] pattern, String text) {
+		int i = 0, j = 0, star = -1, mark = 0;
+		int length = text.length();
+		while (i < length) {
+			if (j < pattern.length && (pattern[j] == '?' || pattern[j] == text.charAt(i))) {
+				i++;
+				j++;
+			} else if (j < pattern.length && pattern[j] == '*') {
+				star = j++;
+				mark = i;
+			} else if (star >= 0) {
+				j = star + 1;
+				i = ++mark;
+			} else {
+				return false;
+			}
+		}
+		while (j < pattern.length && pattern[j] == '*')
+			j++;
+		return j == pattern.length;
+	}
+
+	private static class Node {
+
+		private char[] keys = new char[0];
+
+		private Node[] children = new Node[0];
+
+		private boolean terminal;
+
+		boolean isLeaf() {
+			return keys.length == 0 && !terminal;
+		}
+
+		void add(String s, int from, int to, boolean reversed) {
+			Node node = this;
+			for (int i = from; i < to; i++)
+				node = node.getOrCreate(s.charAt(reversed ? to - 1 - i + from : i));
+			node.terminal = true;
+		}
+
+		// true if any terminal node is reached while walking text
+		boolean matches(String text, boolean reversed) {
+			Node node = this;
+			int length = text.length();
+			for (int i = 0; i < length; i++) {
+				if (node.terminal)
+					return true;
+				int index = Arrays.binarySearch(node.keys, text.charAt(reversed ? length - 1 - i : i));
+				if (index < 0)
+					return false;
+				node = node.children[index];
+			}
+			return node.terminal;
+		}
+
+		private Node getOrCreate(char c) {
+			int index = Arrays.binarySearch(keys, c);
+			if (index >= 0)
+				return children[index];
+			index = -index - 1;
+			Node child = new Node();
+			char[] newKeys = new char[keys.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			newKeys[index] = c;
+			newChildren[index] = child;
+			System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+			System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+			keys = newKeys;
+			children = newChildren;
+			return child;
+		}
+
+	}
+
+}
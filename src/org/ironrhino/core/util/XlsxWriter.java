@@ -0,0 +1,149 @@
+package org.ironrhino.core.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Write single sheet workbook row by row without keeping rows in memory,
+ * numbers are written as numeric cells and others as inline strings.
+ */
+public class XlsxWriter implements Flushable, Closeable {
+
+	public static final int MAX_ROWS = 1048576;
+
+	private final ZipOutputStream zos;
+
+	private final Writer writer;
+
+	private int rows;
+
+	private boolean closed;
+
+	public XlsxWriter(OutputStream os) throws IOException {
+		zos = new ZipOutputStream(os, StandardCharsets.UTF_8);
+		writer = new BufferedWriter(new OutputStreamWriter(zos, StandardCharsets.UTF_8), 64 * 1024);
+		zos.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		writer.write("<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>");
+	}
+
+	public void writeRow(Object... cells) throws IOException {
+		writeRow(Arrays.asList(cells));
+	}
+
+	public void writeRow(Iterable<?> cells) throws IOException {
+		if (closed)
+			throw new IllegalStateException("Already closed");
+		if (rows == MAX_ROWS)
+			throw new IllegalStateException("Exceed max rows: " + MAX_ROWS);
+		rows++;
+		writer.write("<row r=\"");
+		writer.write(String.valueOf(rows));
+		writer.write("\">");
+		for (Object cell : cells) {
+			if (cell == null) {
+				writer.write("<c/>");
+			} else if (isNumeric(cell)) {
+				writer.write("<c><v>");
+				writer.write(cell instanceof BigDecimal ? ((BigDecimal) cell).toPlainString() : cell.toString());
+				writer.write("</v></c>");
+			} else {
+				writer.write("<c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+				escape(cell.toString());
+				writer.write("</t></is></c>");
+			}
+		}
+		writer.write("</row>");
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		writer.write("</sheetData></worksheet>");
+		writer.flush();
+		zos.closeEntry();
+		writeEntry("[Content_Types].xml",
+				"<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+						+ "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+						+ "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+						+ "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+						+ "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+						+ "</Types>");
+		writeEntry("_rels/.rels",
+				"<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+						+ "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+						+ "</Relationships>");
+		writeEntry("xl/workbook.xml",
+				"<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+						+ "<sheets><sheet name=\"Sheet1\" sheetId=\"1\" r:id=\"rId1\"/></sheets></workbook>");
+		writeEntry("xl/_rels/workbook.xml.rels",
+				"<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+						+ "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+						+ "</Relationships>");
+		zos.close();
+	}
+
+	private void writeEntry(String name, String content) throws IOException {
+		zos.putNextEntry(new ZipEntry(name));
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		writer.write(content);
+		writer.flush();
+		zos.closeEntry();
+	}
+
+	private void escape(String text) throws IOException {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '&':
+				writer.write("&amp;");
+				break;
+			case '<':
+				writer.write("&lt;");
+				break;
+			case '>':
+				writer.write("&gt;");
+				break;
+			case '"':
+				writer.write("&quot;");
+				break;
+			default:
+				// drop characters not allowed in XML 1.0
+				if (c >= 0x20 && c != 0xFFFE && c != 0xFFFF || c == '\t' || c == '\n' || c == '\r')
+					writer.write(c);
+			}
+		}
+	}
+
+	private static boolean isNumeric(Object value) {
+		if (value instanceof Double)
+			return !((Double) value).isNaN() && !((Double) value).isInfinite();
+		if (value instanceof Float)
+			return !((Float) value).isNaN() && !((Float) value).isInfinite();
+		return value instanceof BigDecimal || value instanceof Integer || value instanceof Long
+				|| value instanceof Short || value instanceof Byte || value instanceof BigInteger;
+	}
+
+}
@@ -5,6 +5,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
 import javax.validation.Valid;
@@ -89,6 +90,8 @@ public interface TestService {
 
 	public ListenableFuture<? extends UserDetails> loadListenableFutureUserDetailsByUsername(String username);
 
+	public CompletableFuture<User> loadCompletableFutureUserByUsername(String username);
+
 	public Callable<User> loadCallableUserByUsername(String username);
 
 	public Callable<? extends UserDetails> loadCallableUserDetailsByUsername(String username);
@@ -221,6 +221,18 @@ public class TestServiceImpl implements TestService {
 		return loadListenableFutureUserByUsername(username);
 	}
 
+	@Override
+	public CompletableFuture<User> loadCompletableFutureUserByUsername(String username) {
+		return CompletableFuture.supplyAsync(() -> {
+			if (StringUtils.isBlank(username))
+				throw new IllegalArgumentException("username shouldn't be blank");
+			User user = new User();
+			user.setUsername(username);
+			user.setAuthorities(AuthorityUtils.createAuthorityList("test"));
+			return user;
+		}, es);
+	}
+
 	@Override
 	public Callable<User> loadCallableUserByUsername(String username) {
 		if (username == null)
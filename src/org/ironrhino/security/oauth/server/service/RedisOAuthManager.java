@@ -10,7 +10,12 @@ import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.apache.commons.lang3.StringUtils;
+import org.cache2k.Cache;
+import org.cache2k.configuration.Cache2kConfiguration;
 import org.ironrhino.core.servlet.RequestContext;
 import org.ironrhino.core.util.CodecUtils;
 import org.ironrhino.core.util.JsonUtils;
@@ -20,9 +25,14 @@ import org.ironrhino.security.oauth.server.enums.ResponseType;
 import org.ironrhino.security.oauth.server.model.Authorization;
 import org.ironrhino.security.oauth.server.model.Client;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import lombok.extern.slf4j.Slf4j;
@@ -37,15 +47,33 @@ public class RedisOAuthManager extends AbstractOAuthManager {
 	@Autowired
 	private StringRedisTemplate stringRedisTemplate;
 
+	@Autowired(required = false)
+	private RedisMessageListenerContainer redisMessageListenerContainer;
+
+	// seconds, upper bound of staleness if invalidation message is lost, 0 means disabled
+	@Value("${oauth.authorization.cache.timeToLive:5}")
+	private long cacheTimeToLive;
+
+	@Value("${oauth.authorization.cache.capacity:10000}")
+	private int cacheCapacity;
+
+	private org.cache2k.CacheManager cacheManager;
+
+	// accessToken -> authorization
+	private Cache<String, Authorization> cache;
+
+	private MessageListener invalidationListener;
+
 	private static final String NAMESPACE_AUTHORIZATION = "oauth:authorization:";
 	private static final String NAMESPACE_AUTHORIZATION_GRANTOR = "oauth:authorization:grantor:";
+	private static final String CHANNEL_INVALIDATION = "oauth:authorization:invalidation";
 
 	private static final String NAMESPACE_CLIENT = "oauth:client:";
 	private static final String NAMESPACE_CLIENT_OWNER = "oauth:client:owner:";
 
 	// oauth:authorization:{id} -> authorization
 	// oauth:authorization:{code} -> id
-	// oauth:authorization:{accessToken} -> id
+	// oauth:authorization:{accessToken} -> authorization
 	// oauth:authorization:{refreshToken} -> id
 	// oauth:authorization:grantor:{username} -> [id]
 
@@ -53,6 +81,38 @@ public class RedisOAuthManager extends AbstractOAuthManager {
 		this.expireTime = expireTime;
 	}
 
+	@PostConstruct
+	public void init() {
+		if (cacheTimeToLive <= 0)
+			return;
+		if (redisMessageListenerContainer == null) {
+			log.warn("Authorization cache is disabled because RedisMessageListenerContainer is missing");
+			return;
+		}
+		cacheManager = org.cache2k.CacheManager.getInstance("oauthManager-" + CodecUtils.nextId());
+		Cache2kConfiguration<String, Authorization> cfg = Cache2kConfiguration.of(String.class, Authorization.class);
+		cfg.setName("authorization");
+		cfg.setExpireAfterWrite(TimeUnit.SECONDS.toMillis(cacheTimeToLive));
+		cfg.setEntryCapacity(cacheCapacity);
+		cache = cacheManager.createCache(cfg);
+		invalidationListener = (message, pattern) -> {
+			try {
+				cache.remove(stringRedisTemplate.getStringSerializer().deserialize(message.getBody()));
+			} catch (Exception e) {
+				log.error(e.getMessage(), e);
+			}
+		};
+		redisMessageListenerContainer.addMessageListener(invalidationListener, new ChannelTopic(CHANNEL_INVALIDATION));
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if (invalidationListener != null)
+			redisMessageListenerContainer.removeMessageListener(invalidationListener);
+		if (cacheManager != null)
+			cacheManager.close();
+	}
+
 	@Override
 	public Authorization grant(Client client, String deviceId, String deviceName) {
 		Client orig = findClientById(client.getClientId());
@@ -78,10 +138,7 @@ public class RedisOAuthManager extends AbstractOAuthManager {
 		}
 		stringRedisTemplate.execute((SessionCallback) redisOperations -> {
 			redisOperations.multi();
-			redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth.getId(), JsonUtils.toJson(auth),
-					expireTime, TimeUnit.SECONDS);
-			redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth.getAccessToken(), auth.getId(),
-					auth.getExpiresIn(), TimeUnit.SECONDS);
+			save(redisOperations, auth, expireTime);
 			redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth.getRefreshToken(), auth.getId(),
 					auth.getExpiresIn(), TimeUnit.SECONDS);
 			return redisOperations.exec();
@@ -122,10 +179,7 @@ public class RedisOAuthManager extends AbstractOAuthManager {
 		}
 		stringRedisTemplate.execute((SessionCallback) redisOperations -> {
 			redisOperations.multi();
-			redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth.getId(), JsonUtils.toJson(auth),
-					expireTime, TimeUnit.SECONDS);
-			redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth.getAccessToken(), auth.getId(),
-					auth.getExpiresIn(), TimeUnit.SECONDS);
+			save(redisOperations, auth, expireTime);
 			redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth.getRefreshToken(), auth.getId(),
 					auth.getExpiresIn(), TimeUnit.SECONDS);
 			redisOperations.opsForList().leftPush(NAMESPACE_AUTHORIZATION_GRANTOR + auth.getGrantor(), auth.getId());
@@ -159,12 +213,17 @@ public class RedisOAuthManager extends AbstractOAuthManager {
 		auth.setLifetime(Authorization.DEFAULT_LIFETIME);
 		stringRedisTemplate.execute((SessionCallback) redisOperations -> {
 			redisOperations.multi();
-			redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth.getId(), JsonUtils.toJson(auth),
-					expireTime, TimeUnit.SECONDS);
+			String json = JsonUtils.toJson(auth);
+			redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth.getId(), json, expireTime,
+					TimeUnit.SECONDS);
+			// access token is mapped only if granted already
+			redisOperations.opsForValue().setIfPresent(NAMESPACE_AUTHORIZATION + auth.getAccessToken(), json,
+					auth.getExpiresIn(), TimeUnit.SECONDS);
 			redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth.getCode(), auth.getId(), expireTime,
 					TimeUnit.SECONDS);
 			return redisOperations.exec();
 		});
+		invalidate(auth.getAccessToken());
 		return auth;
 	}
 
@@ -189,9 +248,7 @@ public class RedisOAuthManager extends AbstractOAuthManager {
 		if (auth.isClientSide()) {
 			stringRedisTemplate.execute((SessionCallback) redisOperations -> {
 				redisOperations.multi();
-				redisOperations.delete(key);
-				redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth2.getAccessToken(), auth2.getId(),
-						auth2.getExpiresIn(), TimeUnit.SECONDS);
+				save(redisOperations, auth2, auth2.getExpiresIn());
 				redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth2.getRefreshToken(), auth2.getId(),
 						auth2.getExpiresIn(), TimeUnit.SECONDS);
 				redisOperations.opsForList().leftPush(NAMESPACE_AUTHORIZATION_GRANTOR + auth2.getGrantor(),
@@ -202,7 +259,7 @@ public class RedisOAuthManager extends AbstractOAuthManager {
 			auth.setCode(CodecUtils.nextId());
 			stringRedisTemplate.execute((SessionCallback) redisOperations -> {
 				redisOperations.multi();
-				redisOperations.delete(key);
+				redisOperations.opsForValue().set(key, JsonUtils.toJson(auth2), expireTime, TimeUnit.SECONDS);
 				redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth2.getCode(), auth2.getId(), expireTime,
 						TimeUnit.SECONDS);
 				redisOperations.opsForList().leftPush(NAMESPACE_AUTHORIZATION_GRANTOR + auth2.getGrantor(),
@@ -254,10 +311,9 @@ public class RedisOAuthManager extends AbstractOAuthManager {
 		stringRedisTemplate.execute((SessionCallback) redisOperations -> {
 			redisOperations.multi();
 			redisOperations.delete(key);
-			redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth2.getId(), JsonUtils.toJson(auth2),
+			save(redisOperations, auth2, auth2.getExpiresIn());
+			redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth2.getRefreshToken(), auth2.getId(),
 					auth2.getExpiresIn(), TimeUnit.SECONDS);
-			redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth2.getRefreshToken(),
-					NAMESPACE_AUTHORIZATION + auth2.getId(), auth2.getExpiresIn(), TimeUnit.SECONDS);
 			return redisOperations.exec();
 		});
 		return auth;
@@ -265,22 +321,54 @@ public class RedisOAuthManager extends AbstractOAuthManager {
 
 	@Override
 	public Authorization retrieve(String accessToken) {
-		String key = NAMESPACE_AUTHORIZATION + accessToken;
-		String id = stringRedisTemplate.opsForValue().get(key);
-		if (id == null)
+		if (StringUtils.isBlank(accessToken))
 			return null;
-		Authorization auth = null;
-		try {
-			auth = JsonUtils.fromJson(stringRedisTemplate.opsForValue().get(NAMESPACE_AUTHORIZATION + id),
-					Authorization.class);
-		} catch (Exception e) {
-			log.error(e.getMessage(), e);
+		Authorization auth = cache != null ? cache.peek(accessToken) : null;
+		if (auth == null) {
+			auth = load(accessToken);
+			if (auth != null && cache != null)
+				cache.put(accessToken, auth);
 		}
 		if (auth != null && auth.getExpiresIn() < 0)
 			return null;
 		return auth;
 	}
 
+	// {id} and {accessToken} both hold authorization, always write them together in
+	// same transaction
+	private static void save(RedisOperations redisOperations, Authorization auth, long timeout) {
+		String json = JsonUtils.toJson(auth);
+		redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth.getId(), json, timeout, TimeUnit.SECONDS);
+		redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth.getAccessToken(), json, auth.getExpiresIn(),
+				TimeUnit.SECONDS);
+	}
+
+	private Authorization load(String accessToken) {
+		String value = stringRedisTemplate.opsForValue().get(NAMESPACE_AUTHORIZATION + accessToken);
+		// value is id if it's written by previous version
+		if (value != null && !value.startsWith("{"))
+			value = stringRedisTemplate.opsForValue().get(NAMESPACE_AUTHORIZATION + value);
+		if (value == null)
+			return null;
+		try {
+			return JsonUtils.fromJson(value, Authorization.class);
+		} catch (Exception e) {
+			log.error(e.getMessage(), e);
+			return null;
+		}
+	}
+
+	private void invalidate(String accessToken) {
+		if (cache == null)
+			return;
+		cache.remove(accessToken);
+		try {
+			stringRedisTemplate.convertAndSend(CHANNEL_INVALIDATION, accessToken);
+		} catch (Exception e) {
+			log.error(e.getMessage(), e);
+		}
+	}
+
 	@Override
 	public Authorization refresh(Client client, String refreshToken) {
 		Client orig = findClientById(client.getClientId());
@@ -302,6 +390,7 @@ public class RedisOAuthManager extends AbstractOAuthManager {
 		if (auth == null)
 			throw new OAuthError(OAuthError.INVALID_GRANT);
 		final Authorization auth2 = auth;
+		String previousAccessToken = auth.getAccessToken();
 		stringRedisTemplate.execute((SessionCallback) redisOperations -> {
 			redisOperations.multi();
 			redisOperations.delete(keyRefreshToken);
@@ -309,28 +398,19 @@ public class RedisOAuthManager extends AbstractOAuthManager {
 			auth2.setAccessToken(CodecUtils.nextId());
 			auth2.setRefreshToken(CodecUtils.nextId());
 			auth2.setModifyDate(new Date());
-			redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth2.getAccessToken(), auth2.getId(),
-					auth2.getExpiresIn(), TimeUnit.SECONDS);
+			save(redisOperations, auth2, expireTime);
 			redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth2.getRefreshToken(), auth2.getId(),
 					auth2.getExpiresIn(), TimeUnit.SECONDS);
 			return redisOperations.exec();
 		});
+		invalidate(previousAccessToken);
 		return auth;
 	}
 
 	@Override
 	public boolean revoke(String accessToken) {
 		String key = NAMESPACE_AUTHORIZATION + accessToken;
-		String id = stringRedisTemplate.opsForValue().get(key);
-		if (id == null)
-			return false;
-		Authorization auth = null;
-		try {
-			auth = JsonUtils.fromJson(stringRedisTemplate.opsForValue().get(NAMESPACE_AUTHORIZATION + id),
-					Authorization.class);
-		} catch (Exception e) {
-			log.error(e.getMessage(), e);
-		}
+		Authorization auth = load(accessToken);
 		if (auth != null) {
 			final Authorization auth2 = auth;
 			stringRedisTemplate.execute((SessionCallback) redisOperations -> {
@@ -342,6 +422,7 @@ public class RedisOAuthManager extends AbstractOAuthManager {
 						auth2.getId());
 				return redisOperations.exec();
 			});
+			invalidate(accessToken);
 			return true;
 		} else {
 			return false;
@@ -352,8 +433,7 @@ public class RedisOAuthManager extends AbstractOAuthManager {
 	public void create(Authorization auth) {
 		stringRedisTemplate.execute((SessionCallback) redisOperations -> {
 			redisOperations.multi();
-			redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth.getAccessToken(), auth.getId(),
-					auth.getExpiresIn(), TimeUnit.SECONDS);
+			save(redisOperations, auth, auth.getExpiresIn());
 			redisOperations.opsForValue().set(NAMESPACE_AUTHORIZATION + auth.getRefreshToken(), auth.getId(),
 					auth.getExpiresIn(), TimeUnit.SECONDS);
 			redisOperations.opsForList().leftPush(NAMESPACE_AUTHORIZATION_GRANTOR + auth.getGrantor(), auth.getId());
@@ -399,6 +479,7 @@ public class RedisOAuthManager extends AbstractOAuthManager {
 							authorization.getId());
 					return redisOperations.exec();
 				});
+				invalidate(authorization.getAccessToken());
 			}
 	}
 
@@ -224,18 +224,26 @@ ${formHeader!}
 <li class="disabled"><a title="${getText('previouspage')}"><i class="glyphicon glyphicon-step-backward"></i></a></li>
 <#else>
 <li class="firstPage"><a title="${getText('firstpage')}" href="${resultPage.renderUrl(1)}" rel="first"><i class="glyphicon glyphicon-fast-backward"></i></a></li>
+<#if resultPage.keysetPaginating>
+<li class="disabled"><a title="${getText('previouspage')}"><i class="glyphicon glyphicon-step-backward"></i></a></li>
+<#else>
 <li class="prevPage"><a title="${getText('previouspage')}" href="${resultPage.renderUrl(resultPage.previousPage)}" rel="prev"><i class="glyphicon glyphicon-step-backward"></i></a></li>
 </#if>
+</#if>
 <#if resultPage.last>
 <li class="disabled"><a title="${getText('nextpage')}"><i class="glyphicon glyphicon-step-forward"></i></a></li>
 <li class="disabled lastPage"><a title="${getText('lastpage')}"><i class="glyphicon glyphicon-fast-forward"></i></a></li>
 <#else>
 <li class="nextPage"><a title="${getText('nextpage')}" href="${resultPage.renderUrl(resultPage.nextPage)}" rel="next"><i class="glyphicon glyphicon-step-forward"></i></a></li>
+<#if resultPage.keysetPaginating || resultPage.totalResults lt 0 || resultPage.estimated>
+<li class="disabled lastPage"><a title="${getText('lastpage')}"><i class="glyphicon glyphicon-fast-forward"></i></a></li>
+<#else>
 <li class="lastPage"><a title="${getText('lastpage')}" href="${resultPage.renderUrl(resultPage.totalPage)}" rel="last"><i class="glyphicon glyphicon-fast-forward"></i></a></li>
 </#if>
+</#if>
 <li class="pageNo">
 <span class="input-append">
-    <input type="text" name="resultPage.pageNo" value="${resultPage.pageNo}" class="inputPage integer positive" title="${getText('currentpage')}"/><span class="add-on totalPage" title="${getText('totalpage')}">${resultPage.totalPage}</span>
+    <input type="text" name="resultPage.pageNo" value="${resultPage.pageNo}" class="inputPage integer positive" title="${getText('currentpage')}"<#if resultPage.keysetPaginating> readonly</#if>/><span class="add-on totalPage" title="${getText('totalpage')}">${resultPage.totalPage}<#if (resultPage.totalResults lt 0 || resultPage.estimated) && !resultPage.last>+</#if></span>
 </span>
 <#if showPageSize>
 <li class="visible-desktop">
@@ -305,17 +313,18 @@ ${formHeader!}
 <#elseif list?? && list?size gt 0>
 <#local totalResults=list?size/>
 </#if>
-${totalResults}<span class="recordLabel"> ${getText('record')}</span>
+${totalResults}<#if resultPage?? && resultPage.estimated>+</#if><span class="recordLabel"> ${getText('record')}</span>
 <#if downloadable && request.requestURI?ends_with(actionBaseUrl) && totalResults gt 0 && totalResults lte (csvMaxRows!10000) && action.csv??>
-<#local downloadUrl=actionBaseUrl+'/csv'>
+<#local downloadQuery=''>
 <#list request.parameterMap as name,values>
 <#list values as value>
 <#if name!='_'&&name!='pn'&&name!='ps'&&!name?starts_with('resultPage.')&&(name!='keyword'||value?has_content)>
-<#local downloadUrl+=downloadUrl?contains('?')?then('&','?')+name+'='+value?url>
+<#local downloadQuery+=downloadQuery?has_content?then('&','?')+name+'='+value?url>
 </#if>
 </#list>
 </#list>
-<a download="data.csv" href="${downloadUrl}"><span class="glyphicon glyphicon-download-alt clickable"></span></a>
+<a download="data.csv" href="${actionBaseUrl+'/csv'+downloadQuery}"><span class="glyphicon glyphicon-download-alt clickable"></span></a>
+<#if action.xlsx??><a download="data.xlsx" href="${actionBaseUrl+'/xlsx'+downloadQuery}"><span class="glyphicon glyphicon-th clickable"></span></a></#if>
 </#if>
 </div>
 </div>
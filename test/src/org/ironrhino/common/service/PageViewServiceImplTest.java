@@ -0,0 +1,79 @@
+package org.ironrhino.common.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class PageViewServiceImplTest {
+
+	private PageViewServiceImpl pageViewService;
+
+	private StringRedisTemplate stringRedisTemplate;
+
+	private StringRedisConnection connection;
+
+	@Before
+	public void setup() {
+		stringRedisTemplate = mock(StringRedisTemplate.class);
+		connection = mock(StringRedisConnection.class);
+		pageViewService = new PageViewServiceImpl();
+		pageViewService.setBuffered(true);
+		ReflectionTestUtils.setField(pageViewService, "pageViewStringRedisTemplate", stringRedisTemplate);
+	}
+
+	@Test
+	public void testRetainOnFlushFailure() {
+		given(stringRedisTemplate.executePipelined(any(RedisCallback.class)))
+				.willThrow(new RedisConnectionFailureException("redis is down"));
+		visit();
+		pageViewService.flush();
+
+		succeed();
+		visit();
+		pageViewService.flush();
+		verify(connection).incrBy("pv:pv", 2);
+		verify(connection).incrBy("pv:test.com:pv", 2);
+		verify(connection).zIncrBy("pv:url", 2, "http://test.com/");
+	}
+
+	@Test
+	public void testDiscardIfExceedsMaxRetainedSize() {
+		pageViewService.setMaxRetainedSize(1);
+		given(stringRedisTemplate.executePipelined(any(RedisCallback.class)))
+				.willThrow(new RedisConnectionFailureException("redis is down"));
+		visit();
+		pageViewService.flush();
+
+		succeed();
+		pageViewService.flush();
+		verify(connection, never()).incrBy(anyString(), anyLong());
+	}
+
+	private void visit() {
+		pageViewService.put(new Date(), null, "http://test.com/", null, null, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void succeed() {
+		given(stringRedisTemplate.executePipelined(any(RedisCallback.class))).willAnswer(invocation -> {
+			((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection);
+			return Collections.emptyList();
+		});
+	}
+
+}
@@ -0,0 +1,100 @@
+package org.ironrhino.common.service;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Date;
+import java.util.Set;
+
+import org.ironrhino.common.service.PageViewServiceImplTests.PageViewServiceConfiguration;
+import org.ironrhino.core.spring.configuration.RedisConfiguration;
+import org.ironrhino.core.util.DateUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = PageViewServiceConfiguration.class)
+public class PageViewServiceImplTests {
+
+	@Autowired
+	private PageViewServiceImpl pageViewService;
+
+	@Autowired
+	private StringRedisTemplate stringRedisTemplate;
+
+	@Before
+	public void clear() {
+		Set<String> keys = stringRedisTemplate.keys(PageViewServiceImpl.KEY_PAGE_VIEW + "*");
+		if (keys != null && !keys.isEmpty())
+			stringRedisTemplate.delete(keys);
+	}
+
+	@Test
+	public void testBufferedEqualsUnbuffered() {
+		pageViewService.setBuffered(false);
+		visit("http://www.direct.com");
+		pageViewService.setBuffered(true);
+		visit("http://buffered.com");
+		assertThat(pageViewService.getPageView(null, "buffered.com"), is(0L));
+		pageViewService.flush();
+		String day = DateUtils.formatDate8(new Date());
+		assertThat(pageViewService.getDomains().size(), is(2));
+		for (String domain : new String[] { "direct.com", "buffered.com" }) {
+			assertThat(pageViewService.getPageView(null, domain), is(6L));
+			assertThat(pageViewService.getPageView(day, domain), is(6L));
+			assertThat(pageViewService.getUniqueIp(day, domain), is(3L));
+			assertThat(pageViewService.getUniqueSessionId(day, domain), is(2L));
+			assertThat(pageViewService.getUniqueUsername(day, domain), is(1L));
+			assertThat(pageViewService.getTopPageViewUrls(day, 1, domain).values().iterator().next(), is(4L));
+			assertThat(pageViewService.getTopKeywords(day, 1, domain).get("ironrhino"), is(2L));
+			assertThat(pageViewService.getTopSearchEngines(day, 1, domain).get("baidu"), is(2L));
+		}
+		assertThat(pageViewService.getPageView(null, null), is(12L));
+		assertThat(pageViewService.getUniqueIp(day, null), is(3L));
+		assertThat(pageViewService.getUniqueSessionId(day, null), is(2L));
+	}
+
+	@Test
+	public void testFlushIfBufferIsFull() {
+		pageViewService.setBuffered(true);
+		int bufferSize = pageViewService.getBufferSize();
+		pageViewService.setBufferSize(10);
+		try {
+			visit("http://buffered.com");
+			assertThat(pageViewService.getPageView(null, "buffered.com") > 0, is(true));
+		} finally {
+			pageViewService.setBufferSize(bufferSize);
+			pageViewService.flush();
+		}
+		assertThat(pageViewService.getPageView(null, "buffered.com"), is(6L));
+	}
+
+	private void visit(String site) {
+		Date now = new Date();
+		String referer = "https://www.baidu.com/s?wd=ironrhino";
+		pageViewService.put(now, "10.0.0.1", site + "/", "s1", "admin", referer);
+		pageViewService.put(now, "10.0.0.2", site + "/", "s1", "admin", null);
+		pageViewService.put(now, "10.0.0.3", site + "/", "s2", null, referer);
+		pageViewService.put(now, "10.0.0.1", site + "/", "s2", null, null);
+		pageViewService.put(now, "10.0.0.1", site + "/about", "s2", null, null);
+		pageViewService.put(now, "10.0.0.2", site + "/about", "s1", null, null);
+	}
+
+	@Configuration
+	static class PageViewServiceConfiguration extends RedisConfiguration {
+
+		@Bean
+		public PageViewServiceImpl pageViewService() {
+			return new PageViewServiceImpl();
+		}
+
+	}
+
+}
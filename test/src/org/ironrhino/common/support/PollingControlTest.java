@@ -0,0 +1,239 @@
+package org.ironrhino.common.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+import org.ironrhino.common.model.BasePollingEntity;
+import org.ironrhino.common.model.PollingStatus;
+import org.ironrhino.core.model.ResultPage;
+import org.ironrhino.core.service.EntityManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.BoundListOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.orm.hibernate5.HibernateCallback;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class PollingControlTest {
+
+	private SampleControl control;
+
+	private EntityManager<SampleEntity> entityManager;
+
+	private BoundListOperations<String, String> boundListOperations;
+
+	private Session session;
+
+	@SuppressWarnings("rawtypes")
+	private Query query;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		entityManager = mock(EntityManager.class);
+		boundListOperations = mock(BoundListOperations.class);
+		session = mock(Session.class);
+		query = mock(Query.class);
+		StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+		given(stringRedisTemplate.boundListOps(anyString())).willReturn(boundListOperations);
+		given(session.createQuery(anyString())).willReturn(query);
+		given(entityManager.execute(any())).willAnswer(
+				invocation -> ((HibernateCallback<?>) invocation.getArgument(0)).doInHibernate(session));
+		control = new SampleControl();
+		control.entityManager = entityManager;
+		control.stringRedisTemplate = stringRedisTemplate;
+		ReflectionTestUtils.invokeMethod(control, "init");
+	}
+
+	@Test
+	public void testPopInQueueOrder() {
+		// script returns tail of list from left to right
+		given(control.stringRedisTemplate.execute(any(), anyList(), eq("3"))).willReturn(Arrays.asList("c", "b", "a"));
+		assertEquals(Arrays.asList("a", "b", "c"), control.pop(3));
+		given(boundListOperations.rightPop()).willReturn("d");
+		assertEquals(Collections.singletonList("d"), control.pop(1));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testLoad() {
+		SampleEntity initialized = entity("1", PollingStatus.INITIALIZED, 0);
+		SampleEntity successful = entity("2", PollingStatus.SUCCESSFUL, 1);
+		SampleEntity failed = entity("3", PollingStatus.FAILED, 3);
+		SampleEntity exhausted1 = entity("4", PollingStatus.TEMPORARY_ERROR, 3);
+		SampleEntity retried = entity("5", PollingStatus.TEMPORARY_ERROR, 1);
+		SampleEntity exhausted2 = entity("6", PollingStatus.PROCESSING, 3);
+		SampleEntity exhausted3 = entity("7", PollingStatus.TEMPORARY_ERROR, 4);
+		given(entityManager.get(anyList())).willReturn(Arrays.asList(exhausted3, retried, null, initialized,
+				successful, failed, exhausted2, exhausted1));
+		given(query.executeUpdate()).willReturn(2, 1);
+
+		List<SampleEntity> entities = control.load(Arrays.asList("1", "2", "3", "4", "5", "1", "6", "7", "8"));
+		// in order of ids without duplication
+		assertEquals(Arrays.asList(initialized, retried), entities);
+		ArgumentCaptor<List<String>> ids = ArgumentCaptor.forClass(List.class);
+		verify(entityManager).get(ids.capture());
+		assertEquals(Arrays.asList("1", "2", "3", "4", "5", "6", "7", "8"), ids.getValue());
+
+		// exhausted entities are failed in bulk grouped by status
+		verify(session, times(2)).createQuery(control.bulkSimpleUpdateStatusHql);
+		ArgumentCaptor<Collection<String>> groups = ArgumentCaptor.forClass(Collection.class);
+		verify(query, times(2)).setParameterList(eq(1), groups.capture());
+		assertEquals(Arrays.asList(Arrays.asList("4", "7"), Collections.singletonList("6")), groups.getAllValues());
+		ArgumentCaptor<Object> statuses = ArgumentCaptor.forClass(Object.class);
+		verify(query, times(2)).setParameter(eq(2), statuses.capture());
+		assertEquals(Arrays.asList(PollingStatus.TEMPORARY_ERROR, PollingStatus.PROCESSING),
+				statuses.getAllValues());
+		verify(query, times(2)).setParameter(3, PollingStatus.FAILED);
+		verify(query, times(2)).setParameter(5, "max attempts reached");
+		verify(boundListOperations, never()).rightPushAll(any());
+	}
+
+	@Test
+	public void testLoadWithoutExhausted() {
+		SampleEntity entity = entity("1", PollingStatus.PROCESSING, 2);
+		given(entityManager.get(anyList())).willReturn(Collections.singletonList(entity));
+		assertEquals(Collections.singletonList(entity), control.load(Collections.singletonList("1")));
+		verify(session, never()).createQuery(anyString());
+	}
+
+	@Test
+	public void testPushBackOnLoadFailure() {
+		RuntimeException exception = new IllegalStateException("database is down");
+		given(entityManager.get(anyList())).willThrow(exception);
+		try {
+			control.load(Arrays.asList("a", "b", "c"));
+			fail("should throw IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertSame(exception, e);
+		}
+		// reversed to be popped first in original order
+		verify(boundListOperations).rightPushAll("c", "b", "a");
+	}
+
+	@Test
+	public void testPushBackFailure() {
+		RuntimeException exception = new IllegalStateException("database is down");
+		given(entityManager.get(anyList())).willThrow(exception);
+		RuntimeException redisException = new IllegalStateException("redis is down");
+		willAnswer(invocation -> {
+			throw redisException;
+		}).given(boundListOperations).rightPushAll(any());
+		try {
+			control.load(Arrays.asList("a", "b"));
+			fail("should throw IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertSame(exception, e);
+			assertSame(redisException, e.getSuppressed()[0]);
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testUpdateStatusOnTemporaryError() {
+		List<SampleEntity> entities = new ArrayList<>();
+		entities.add(entity("1", PollingStatus.PROCESSING, 0));
+		entities.add(entity("2", PollingStatus.TEMPORARY_ERROR, 1));
+		entities.add(entity("3", PollingStatus.PROCESSING, 0));
+		given(query.executeUpdate()).willReturn(2, 1);
+		control.updateStatusOnError(entities, new IOException("timeout"));
+
+		verify(session, times(2)).createQuery(control.bulkConditionalUpdateStatusHql);
+		ArgumentCaptor<Collection<String>> groups = ArgumentCaptor.forClass(Collection.class);
+		verify(query, times(2)).setParameterList(eq(1), groups.capture());
+		assertEquals(Arrays.asList(Arrays.asList("1", "3"), Collections.singletonList("2")), groups.getAllValues());
+		ArgumentCaptor<Object> statuses = ArgumentCaptor.forClass(Object.class);
+		verify(query, times(2)).setParameter(eq(2), statuses.capture());
+		assertEquals(Arrays.asList(PollingStatus.PROCESSING, PollingStatus.TEMPORARY_ERROR),
+				statuses.getAllValues());
+		verify(query, times(2)).setParameter(3, control.getMaxAttempts());
+		verify(query, times(2)).setParameter(4, PollingStatus.FAILED);
+		verify(query, times(2)).setParameter(5, PollingStatus.TEMPORARY_ERROR);
+		verify(query, times(2)).executeUpdate();
+	}
+
+	@Test
+	public void testUpdateStatusOnError() {
+		List<SampleEntity> entities = Arrays.asList(entity("1", PollingStatus.PROCESSING, 0),
+				entity("2", PollingStatus.PROCESSING, 1));
+		control.updateStatusOnError(entities, new IllegalArgumentException("invalid"));
+		verify(session).createQuery(control.bulkDefaultUpdateStatusHql);
+		verify(query).setParameterList(1, Arrays.asList("1", "2"));
+		verify(query).setParameter(2, PollingStatus.PROCESSING);
+		verify(query).setParameter(3, PollingStatus.FAILED);
+		verify(query).executeUpdate();
+	}
+
+	@Test
+	public void testDequeueBatchSize() {
+		control.setDequeueBatchSize(0);
+		assertEquals(1, control.getDequeueBatchSize());
+		control.setDequeueBatchSize(100);
+		assertEquals(100, control.getDequeueBatchSize());
+		control.setDequeueBatchSize(10000);
+		assertEquals(ResultPage.DEFAULT_MAX_PAGESIZE, control.getDequeueBatchSize());
+	}
+
+	@Test
+	public void testDequeueWorkers() {
+		control.setThreads(5);
+		assertEquals(10, control.getMaxThreads());
+		assertEquals(0, control.getDequeueWorkers(0));
+		// at least threads
+		assertEquals(5, control.getDequeueWorkers(1));
+		assertEquals(8, control.getDequeueWorkers(8));
+		assertEquals(10, control.getDequeueWorkers(100));
+		control.setDequeueBatchSize(10);
+		assertEquals(5, control.getDequeueWorkers(30));
+		assertEquals(7, control.getDequeueWorkers(65));
+		control.setMaxThreads(3);
+		assertEquals(5, control.getMaxThreads());
+		assertEquals(5, control.getDequeueWorkers(100));
+	}
+
+	private static SampleEntity entity(String id, PollingStatus status, int attempts) {
+		SampleEntity entity = new SampleEntity();
+		entity.setId(id);
+		entity.setStatus(status);
+		entity.setAttempts(attempts);
+		return entity;
+	}
+
+	static class SampleEntity extends BasePollingEntity {
+
+		private static final long serialVersionUID = 1L;
+
+	}
+
+	static class SampleControl extends BasePollingControl<SampleEntity> {
+
+		@Override
+		protected Map<String, Object> handle(SampleEntity entity) {
+			return Collections.emptyMap();
+		}
+
+	}
+
+}
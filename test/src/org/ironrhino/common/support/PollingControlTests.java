@@ -0,0 +1,103 @@
+package org.ironrhino.common.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.ironrhino.common.model.BasePollingEntity;
+import org.ironrhino.common.support.PollingControlTests.PollingControlConfiguration;
+import org.ironrhino.core.service.EntityManager;
+import org.ironrhino.core.spring.configuration.RedisConfiguration;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = PollingControlConfiguration.class)
+public class PollingControlTests {
+
+	@Autowired
+	private SampleControl control;
+
+	@Autowired
+	private EntityManager<SampleEntity> entityManager;
+
+	@Autowired
+	private StringRedisTemplate stringRedisTemplate;
+
+	@After
+	public void cleanup() {
+		stringRedisTemplate.delete(control.getQueueName());
+		reset(entityManager);
+	}
+
+	@Test
+	public void testPopInQueueOrder() {
+		control.push(Arrays.asList("1", "2", "3", "4", "5", "6"), false);
+		assertEquals(Arrays.asList("1", "2"), control.pop(2));
+		assertEquals("3", control.pop());
+		assertEquals(Collections.singletonList("4"), control.pop(1));
+		assertEquals(Arrays.asList("5", "6"), control.pop(10));
+		assertTrue(control.pop(10).isEmpty());
+		assertNull(control.pop());
+	}
+
+	@Test
+	public void testPushBackOnLoadFailure() {
+		control.push(Arrays.asList("1", "2", "3", "4", "5"), false);
+		given(entityManager.get(anyList())).willThrow(new IllegalStateException("database is down"));
+		try {
+			control.load(control.pop(3));
+			fail("should throw IllegalStateException");
+		} catch (IllegalStateException e) {
+		}
+		assertEquals(Arrays.asList("1", "2", "3", "4", "5"), control.pop(10));
+	}
+
+	static class SampleEntity extends BasePollingEntity {
+
+		private static final long serialVersionUID = 1L;
+
+	}
+
+	static class SampleControl extends BasePollingControl<SampleEntity> {
+
+		@Override
+		protected Map<String, Object> handle(SampleEntity entity) {
+			return Collections.emptyMap();
+		}
+
+	}
+
+	@Configuration
+	static class PollingControlConfiguration extends RedisConfiguration {
+
+		@Bean
+		@SuppressWarnings("unchecked")
+		public EntityManager<SampleEntity> entityManager() {
+			return mock(EntityManager.class);
+		}
+
+		@Bean
+		public SampleControl sampleControl() {
+			return new SampleControl();
+		}
+
+	}
+
+}
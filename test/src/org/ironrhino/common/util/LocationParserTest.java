@@ -0,0 +1,46 @@
+package org.ironrhino.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class LocationParserTest {
+
+	@Test
+	public void testToLong() {
+		assertEquals(0L, LocationParser.toLong("0.0.0.0"));
+		assertEquals(0x7F000001L, LocationParser.toLong("127.0.0.1"));
+		assertEquals(0xFFFFFFFFL, LocationParser.toLong("255.255.255.255"));
+		assertEquals(0xC0A80101L, LocationParser.toLong(" 192.168.1.1 "));
+		assertEquals(0x01020304L, LocationParser.toLong("001.02.3.4"));
+		assertEquals(-1L, LocationParser.toLong(null));
+		assertEquals(-1L, LocationParser.toLong(""));
+		assertEquals(-1L, LocationParser.toLong("1.2.3"));
+		assertEquals(-1L, LocationParser.toLong("1.2.3.4.5"));
+		assertEquals(-1L, LocationParser.toLong("1.2..4"));
+		assertEquals(-1L, LocationParser.toLong("1.2.3."));
+		assertEquals(-1L, LocationParser.toLong("256.1.1.1"));
+		assertEquals(-1L, LocationParser.toLong("0001.1.1.1"));
+		assertEquals(-1L, LocationParser.toLong("a.b.c.d"));
+		assertEquals(-1L, LocationParser.toLong("::1"));
+	}
+
+	@Test
+	public void testParse() {
+		Location location = LocationParser.parse("114.114.114.114");
+		assertNotNull(location);
+		assertNotNull(location.getFirstArea());
+		Location another = LocationParser.parse("114.114.114.114");
+		assertEquals(location, another);
+		// interned location should not be modified by caller
+		assertNotSame(location, another);
+		String firstArea = location.getFirstArea();
+		location.setFirstArea("modified");
+		assertEquals(firstArea, LocationParser.parse("114.114.114.114").getFirstArea());
+		assertNull(LocationParser.parse("not an ip"));
+	}
+
+}
@@ -6,11 +6,15 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.aopalliance.intercept.MethodInterceptor;
@@ -53,6 +57,8 @@ public class CacheAspectTest {
 	public void destroy() {
 		cacheManager.delete("test", PersonRepository.CACHE_NAMESPACE);
 		cacheManager.delete("notexists", PersonRepository.CACHE_NAMESPACE);
+		cacheManager.delete("slow_test", PersonRepository.CACHE_NAMESPACE);
+		cacheManager.delete("swr_test", PersonRepository.CACHE_NAMESPACE);
 		cacheManager.delete("nano", TimeService.CACHE_NAMESPACE);
 	}
 
@@ -109,6 +115,89 @@ public class CacheAspectTest {
 		es.shutdown();
 	}
 
+	@Test
+	public void testSingleFlight() throws Exception {
+		Person person = new Person();
+		person.setName("test");
+		personRepository.save(person);
+		int THREADS = 20;
+		ExecutorService es = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch cdl = new CountDownLatch(THREADS);
+		AtomicInteger hits = new AtomicInteger();
+		List<Throwable> errors = new CopyOnWriteArrayList<>();
+		for (int n = 0; n < THREADS; n++) {
+			es.execute(() -> {
+				try {
+					if (person.equals(personRepository.getSlowly(person.getName())))
+						hits.incrementAndGet();
+				} catch (Throwable e) {
+					errors.add(e);
+				}
+				cdl.countDown();
+			});
+		}
+		cdl.await();
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(THREADS, hits.get());
+		assertEquals(1, personRepository.count());
+		es.shutdown();
+	}
+
+	@Test
+	public void testStaleWhileRevalidate() throws Exception {
+		Person person = new Person();
+		person.setName("test");
+		personRepository.save(person);
+		assertEquals(person, personRepository.getWithStaleWhileRevalidate(person.getName()));
+		assertEquals(person, personRepository.getWithStaleWhileRevalidate(person.getName()));
+		assertEquals(1, personRepository.count());
+		Thread.sleep(1100);
+		Person person2 = new Person();
+		person2.setName("test");
+		person2.setAge(2);
+		personRepository.save(person2);
+		assertEquals(person, personRepository.getWithStaleWhileRevalidate(person.getName()));
+		assertEquals(2, personRepository.count());
+		assertEquals(person2, personRepository.getWithStaleWhileRevalidate(person.getName()));
+		assertEquals(2, personRepository.count());
+	}
+
+	@Test
+	public void testStaleWhileRevalidateConcurrency() throws Exception {
+		Person person = new Person();
+		person.setName("test");
+		personRepository.save(person);
+		int THREADS = 20;
+		int ROUNDS = 50;
+		ExecutorService es = Executors.newFixedThreadPool(THREADS);
+		CyclicBarrier barrier = new CyclicBarrier(THREADS);
+		AtomicInteger hits = new AtomicInteger();
+		List<Throwable> errors = new CopyOnWriteArrayList<>();
+		for (int round = 0; round < ROUNDS; round++) {
+			cacheManager.put("swr_" + person.getName(), new ExpirableValue(person, 0), 60, TimeUnit.SECONDS,
+					PersonRepository.CACHE_NAMESPACE);
+			CountDownLatch cdl = new CountDownLatch(THREADS);
+			for (int n = 0; n < THREADS; n++) {
+				es.execute(() -> {
+					try {
+						barrier.await();
+						if (person.equals(personRepository.getWithStaleWhileRevalidate(person.getName())))
+							hits.incrementAndGet();
+					} catch (Throwable e) {
+						errors.add(e);
+					}
+					cdl.countDown();
+				});
+			}
+			cdl.await();
+		}
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(THREADS * ROUNDS, hits.get());
+		// callers read stale value before it's refreshed should not reload again
+		assertEquals(ROUNDS, personRepository.count());
+		es.shutdown();
+	}
+
 	@Test
 	public void testJdkDynamicProxy() throws Exception {
 		long nanoTime = timeService.nanoTime();
@@ -132,6 +221,8 @@ public class CacheAspectTest {
 
 		private String name;
 
+		private int age;
+
 	}
 
 	public static class PersonRepository {
@@ -154,6 +245,19 @@ public class CacheAspectTest {
 			return people.get(name);
 		}
 
+		@CheckCache(key = "slow_${name}", namespace = CACHE_NAMESPACE, waitTimeout = 5000)
+		public Person getSlowly(String name) throws InterruptedException {
+			count.incrementAndGet();
+			Thread.sleep(500);
+			return people.get(name);
+		}
+
+		@CheckCache(key = "swr_${name}", timeToLive = "1", staleWhileRevalidate = "60", namespace = CACHE_NAMESPACE)
+		public Person getWithStaleWhileRevalidate(String name) {
+			count.incrementAndGet();
+			return people.get(name);
+		}
+
 		@CheckCache(key = "${name}", cacheNull = true, namespace = CACHE_NAMESPACE)
 		public Person getWithCacheNull(String name) {
 			count.incrementAndGet();
@@ -62,6 +62,8 @@ public abstract class CacheManagerTestBase {
 			map.put("test" + i, "value" + i);
 		cacheManager.mput(map, 2, TimeUnit.SECONDS, NAMESPACE);
 		assertEquals(map, cacheManager.mget(map.keySet(), NAMESPACE));
+		if (cacheManager.supportsGetTtl())
+			assertTrue(cacheManager.ttl("test0", NAMESPACE) > 1000);
 		try {
 			TimeUnit.MILLISECONDS.sleep(2100);
 		} catch (InterruptedException e) {
@@ -71,6 +73,9 @@ public abstract class CacheManagerTestBase {
 		cacheManager.mput(map, 2, TimeUnit.SECONDS, NAMESPACE);
 		cacheManager.mdelete(map.keySet(), NAMESPACE);
 		assertNull(cacheManager.mget(map.keySet(), NAMESPACE).get("test2"));
+		cacheManager.mput(map, 0, TimeUnit.SECONDS, NAMESPACE);
+		assertEquals(map, cacheManager.mget(map.keySet(), NAMESPACE));
+		cacheManager.mdelete(map.keySet(), NAMESPACE);
 	}
 
 	@Test
@@ -176,6 +181,17 @@ public abstract class CacheManagerTestBase {
 		cacheManager.delete(key, NAMESPACE);
 	}
 
+	@Test
+	public void testDeleteIfEquals() {
+		String key = "key";
+		assertTrue(cacheManager.putIfAbsent(key, "owner1", 2, TimeUnit.SECONDS, NAMESPACE));
+		assertFalse(cacheManager.deleteIfEquals(key, "owner2", NAMESPACE));
+		assertTrue(cacheManager.exists(key, NAMESPACE));
+		assertTrue(cacheManager.deleteIfEquals(key, "owner1", NAMESPACE));
+		assertFalse(cacheManager.exists(key, NAMESPACE));
+		assertFalse(cacheManager.deleteIfEquals(key, "owner1", NAMESPACE));
+	}
+
 	@Test
 	public void testDecrementAndReturnNonnegative() {
 		String key = "key";
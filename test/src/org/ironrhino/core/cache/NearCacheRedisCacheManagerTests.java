@@ -0,0 +1,62 @@
+package org.ironrhino.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ironrhino.core.cache.impl.RedisCacheManager;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = { RedisCacheManager.NEAR_CACHE_NAMESPACES + "=test:test" })
+public class NearCacheRedisCacheManagerTests extends RedisCacheManagerTests {
+
+	private static final String NAMESPACE = "test:test";
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private ApplicationContext ctx;
+
+	@Test
+	public void testTimeToIdleOfNearCacheHit() throws Exception {
+		String key = "nearTtiKey";
+		cacheManager.put(key, "value", 2, TimeUnit.SECONDS, NAMESPACE);
+		assertEquals("value", cacheManager.getWithTti(key, NAMESPACE, 2, TimeUnit.SECONDS));
+		TimeUnit.MILLISECONDS.sleep(1200);
+		// served by near cache and extended asynchronously
+		assertEquals("value", cacheManager.getWithTti(key, NAMESPACE, 2, TimeUnit.SECONDS));
+		TimeUnit.MILLISECONDS.sleep(200);
+		assertTrue(cacheManager.ttl(key, NAMESPACE) > 1200);
+		cacheManager.delete(key, NAMESPACE);
+	}
+
+	@Test
+	public void testInvalidation() throws Exception {
+		RedisCacheManager another = ctx.getAutowireCapableBeanFactory().createBean(RedisCacheManager.class);
+		try {
+			String key = "nearKey";
+			cacheManager.put(key, "value", 10, TimeUnit.SECONDS, NAMESPACE);
+			assertEquals("value", another.get(key, NAMESPACE));
+			cacheManager.put(key, "value2", 10, TimeUnit.SECONDS, NAMESPACE);
+			TimeUnit.MILLISECONDS.sleep(200);
+			assertEquals("value2", another.get(key, NAMESPACE));
+			cacheManager.delete(key, NAMESPACE);
+			TimeUnit.MILLISECONDS.sleep(200);
+			assertNull(another.get(key, NAMESPACE));
+			another.put(key, "value3", 10, TimeUnit.SECONDS, NAMESPACE);
+			assertEquals("value3", cacheManager.get(key, NAMESPACE));
+			another.invalidate(NAMESPACE);
+			TimeUnit.MILLISECONDS.sleep(200);
+			assertNull(cacheManager.get(key, NAMESPACE));
+		} finally {
+			another.destroy();
+		}
+	}
+
+}
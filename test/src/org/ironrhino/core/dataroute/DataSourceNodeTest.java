@@ -0,0 +1,107 @@
+package org.ironrhino.core.dataroute;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class DataSourceNodeTest {
+
+	@Test
+	public void testEjectAndProbe() throws Exception {
+		DataSourceNode node = new DataSourceNode("test", null, 1);
+		assertTrue(node.isAvailable());
+		assertFalse(node.onFailure(3, 100, 1000));
+		assertFalse(node.onFailure(3, 100, 1000));
+		node.onSuccess(1000);
+		assertFalse(node.onFailure(3, 100, 1000));
+		assertFalse(node.onFailure(3, 100, 1000));
+		assertTrue(node.onFailure(3, 100, 1000));
+		assertTrue(node.isEjected());
+		assertFalse(node.isAvailable());
+		Thread.sleep(150);
+		assertTrue(node.isAvailable());
+		assertTrue(node.beforeAcquire());
+		assertFalse(node.isAvailable());
+		assertFalse(node.beforeAcquire());
+		// failed probe doubles eject duration
+		assertFalse(node.onFailure(3, 100, 1000));
+		Thread.sleep(150);
+		assertFalse(node.isAvailable());
+		Thread.sleep(100);
+		assertTrue(node.isAvailable());
+		assertTrue(node.beforeAcquire());
+		assertTrue(node.onSuccess(1000));
+		assertFalse(node.isEjected());
+		assertTrue(node.isAvailable());
+		assertTrue(node.beforeAcquire());
+	}
+
+	@Test
+	public void testInflightFailuresWhileEjected() throws Exception {
+		DataSourceNode node = new DataSourceNode("test", null, 1);
+		assertTrue(node.onFailure(1, 100, 1000));
+		// failures of connections in flight are ignored
+		inflightFailures(node, 5);
+		Thread.sleep(150);
+		assertTrue(node.isAvailable());
+		assertTrue(node.beforeAcquire());
+		inflightFailures(node, 5);
+		// probe is still running, another one is not admitted
+		assertFalse(node.isAvailable());
+		assertFalse(inflightBeforeAcquire(node));
+		// failed probe doubles eject duration only once
+		assertFalse(node.onFailure(1, 100, 1000));
+		Thread.sleep(150);
+		assertFalse(node.isAvailable());
+		Thread.sleep(100);
+		assertTrue(node.isAvailable());
+		assertTrue(node.beforeAcquire());
+		assertTrue(node.onSuccess(1000));
+		assertFalse(node.isEjected());
+	}
+
+	private static void inflightFailures(DataSourceNode node, int count) throws Exception {
+		Thread[] threads = new Thread[count];
+		for (int i = 0; i < count; i++) {
+			threads[i] = new Thread(() -> assertFalse(node.onFailure(1, 100, 1000)));
+			threads[i].start();
+		}
+		for (Thread t : threads)
+			t.join();
+	}
+
+	private static boolean inflightBeforeAcquire(DataSourceNode node) throws Exception {
+		AtomicBoolean result = new AtomicBoolean();
+		Thread t = new Thread(() -> result.set(node.beforeAcquire()));
+		t.start();
+		t.join();
+		return result.get();
+	}
+
+	@Test
+	public void testScore() {
+		DataSourceNode fast = new DataSourceNode("fast", null, 1);
+		DataSourceNode slow = new DataSourceNode("slow", null, 1);
+		DataSourceNode heavy = new DataSourceNode("heavy", null, 4);
+		fast.onSuccess(1000);
+		fast.onQuery(100000);
+		slow.onSuccess(1000);
+		slow.onQuery(10000000);
+		heavy.onSuccess(1000);
+		heavy.onQuery(300000);
+		assertTrue(fast.score() < slow.score());
+		assertTrue(heavy.score() < fast.score());
+		fast.onOpen();
+		fast.onOpen();
+		assertEquals(2, fast.getInflight());
+		assertTrue(heavy.score() < fast.score());
+		fast.onClose();
+		fast.onClose();
+		assertEquals(0, fast.getInflight());
+	}
+
+}
@@ -0,0 +1,107 @@
+package org.ironrhino.core.dataroute;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import javax.sql.DataSource;
+
+import org.ironrhino.core.dataroute.GroupedDataSource.InternalGroupedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class GroupedDataSourceFailoverTest {
+
+	private DataSource master;
+
+	private DataSource slave;
+
+	private Connection masterConnection;
+
+	private InternalGroupedDataSource groupedDataSource;
+
+	@Before
+	public void setup() throws SQLException {
+		master = mock(DataSource.class);
+		slave = mock(DataSource.class);
+		masterConnection = mock(Connection.class);
+		given(master.getConnection()).willReturn(masterConnection);
+		StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+		beanFactory.addBean("master", master);
+		beanFactory.addBean("slave", slave);
+		groupedDataSource = new InternalGroupedDataSource();
+		groupedDataSource.setBeanFactory(beanFactory);
+		groupedDataSource.setGroupName("test");
+		groupedDataSource.setMasterName("master");
+		groupedDataSource.setReadSlaveNames(Collections.singletonMap("slave", 1));
+		groupedDataSource.setMaxAttempts(1);
+		groupedDataSource.setDeadFailureThreshold(1);
+		groupedDataSource.setMinEjectDuration(10);
+		groupedDataSource.setMaxEjectDuration(10);
+		groupedDataSource.afterPropertiesSet();
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+	}
+
+	@After
+	public void cleanup() {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+	}
+
+	@Test
+	public void testProbeReleasedOnRuntimeException() throws Exception {
+		eject();
+		willThrow(new IllegalStateException("pool closed")).given(slave).getConnection();
+		try {
+			groupedDataSource.getConnection();
+			fail("should throw IllegalStateException");
+		} catch (IllegalStateException e) {
+		}
+		assertRecovered();
+	}
+
+	@Test
+	public void testProbeReleasedOnSetReadOnlyFailure() throws Exception {
+		eject();
+		Connection conn = mock(Connection.class);
+		willThrow(new SQLException("read only not supported")).given(conn).setReadOnly(anyBoolean());
+		willReturn(conn).given(slave).getConnection();
+		try {
+			groupedDataSource.getConnection();
+			fail("should throw SQLException");
+		} catch (SQLException e) {
+		}
+		verify(conn).close();
+		assertRecovered();
+	}
+
+	private void eject() throws Exception {
+		willThrow(new SQLException("connection refused")).given(slave).getConnection();
+		try {
+			groupedDataSource.getConnection();
+			fail("should throw SQLException");
+		} catch (SQLException e) {
+		}
+		assertSame(masterConnection, groupedDataSource.getConnection());
+		Thread.sleep(20);
+	}
+
+	private void assertRecovered() throws Exception {
+		Thread.sleep(20);
+		Connection conn = mock(Connection.class);
+		willReturn(conn).given(slave).getConnection();
+		assertSame(conn, groupedDataSource.getConnection());
+	}
+
+}
@@ -1,14 +1,27 @@
 package org.ironrhino.core.fs;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.bson.Document;
 import org.ironrhino.core.fs.MongoFileStorageTests.MongoFileStorageConfiguration;
 import org.ironrhino.core.fs.impl.MongoFileStorage;
+import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.core.MongoClientFactoryBean;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.StreamUtils;
 
 import com.mongodb.MongoClient;
 
@@ -16,6 +29,64 @@ import com.mongodb.MongoClient;
 @ContextConfiguration(classes = MongoFileStorageConfiguration.class)
 public class MongoFileStorageTests extends FileStorageTestBase {
 
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Test
+	public void testChunkedFile() throws IOException {
+		MongoFileStorage mfs = (MongoFileStorage) fs;
+		int chunkSize = mfs.getChunkSize();
+		mfs.setChunkSize(1024);
+		String path = "/test/chunked.bin";
+		try {
+			for (int length : new int[] { 0, 1, 1024, 1025, 10 * 1024 + 7 }) {
+				byte[] data = new byte[length];
+				new Random().nextBytes(data);
+				fs.write(new ByteArrayInputStream(data), path);
+				try (InputStream is = fs.open(path)) {
+					assertArrayEquals(data, StreamUtils.copyToByteArray(is));
+				}
+				assertEquals(length, fs.listFiles("/test").get(0).getSize());
+				if (length > 2048) {
+					try (InputStream is = fs.open(path)) {
+						assertEquals(2047, is.skip(2047));
+						assertEquals(data[2047] & 0xFF, is.read());
+						byte[] b = new byte[100];
+						assertEquals(100, is.read(b));
+						assertEquals(data[2048], b[0]);
+					}
+				}
+			}
+		} finally {
+			mfs.setChunkSize(chunkSize);
+			fs.delete(path);
+			fs.delete("/test");
+		}
+	}
+
+	@Test
+	public void testMigrate() throws IOException {
+		byte[] data = "legacy".getBytes(StandardCharsets.UTF_8);
+		fs.mkdir("/test");
+		mongoTemplate.getCollection("file").insertOne(new Document("_id", "test/legacy.txt")
+				.append("directory", false).append("lastModified", System.currentTimeMillis()).append("data", data));
+		try {
+			try (InputStream is = fs.open("/test/legacy.txt")) {
+				assertArrayEquals(data, StreamUtils.copyToByteArray(is));
+			}
+			((MongoFileStorage) fs).migrate();
+			assertEquals(0, mongoTemplate.getCollection("file").countDocuments(new Document("data",
+					new Document("$exists", true))));
+			try (InputStream is = fs.open("/test/legacy.txt")) {
+				assertArrayEquals(data, StreamUtils.copyToByteArray(is));
+			}
+			assertEquals(data.length, fs.listFiles("/test").get(0).getSize());
+		} finally {
+			fs.delete("/test/legacy.txt");
+			fs.delete("/test");
+		}
+	}
+
 	@Configuration
 	static class MongoFileStorageConfiguration {
 
@@ -0,0 +1,156 @@
+package org.ironrhino.core.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.ironrhino.core.jdbc.JdbcQueryServiceTest.JdbcQueryServiceConfiguration;
+import org.ironrhino.core.model.ResultPage;
+import org.ironrhino.core.model.ResultPage.CountStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = JdbcQueryServiceConfiguration.class)
+public class JdbcQueryServiceTest {
+
+	private static final int ROWS = 25;
+
+	@Autowired
+	private JdbcQueryService jdbcQueryService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Before
+	public void setup() {
+		new TransactionTemplate(transactionManager).execute(status -> {
+			jdbcTemplate.execute("create table event(id bigint primary key, name varchar(20), created timestamp)");
+			long base = Timestamp.valueOf("2019-01-01 00:00:00").getTime();
+			for (int i = 0; i < ROWS; i++) {
+				// every two rows share the same millisecond and differ in microseconds
+				Timestamp created = new Timestamp(base + i / 2);
+				created.setNanos(created.getNanos() + (i % 2) * 1000);
+				jdbcTemplate.update("insert into event values(?,?,?)", i, String.valueOf(100 + i), created);
+			}
+			return null;
+		});
+	}
+
+	@After
+	public void cleanup() {
+		new TransactionTemplate(transactionManager).execute(status -> {
+			jdbcTemplate.execute("drop table event");
+			return null;
+		});
+	}
+
+	@Test
+	public void testKeysetByTimestamp() {
+		List<Object> ids = new ArrayList<>();
+		String cursor = null;
+		do {
+			ResultPage<Map<String, Object>> rp = newResultPage();
+			rp.setKeyset("created");
+			rp.setCursor(cursor);
+			jdbcQueryService.query(rp);
+			for (Map<String, Object> row : rp.getResult())
+				ids.add(((Number) row.get("id")).intValue());
+			cursor = rp.getNextCursor();
+			if (cursor != null)
+				assertTrue(cursor.startsWith("timestamp:"));
+		} while (cursor != null);
+		assertEquals(ROWS, ids.size());
+		for (int i = 0; i < ROWS; i++)
+			assertEquals(i, ids.get(i));
+	}
+
+	@Test
+	public void testKeysetByNumericString() {
+		List<Object> names = new ArrayList<>();
+		String cursor = null;
+		do {
+			ResultPage<Map<String, Object>> rp = newResultPage();
+			rp.setKeyset("name desc");
+			rp.setCursor(cursor);
+			jdbcQueryService.query(rp);
+			for (Map<String, Object> row : rp.getResult())
+				names.add(row.get("name"));
+			cursor = rp.getNextCursor();
+		} while (cursor != null);
+		assertEquals(ROWS, names.size());
+		assertEquals(String.valueOf(100 + ROWS - 1), names.get(0));
+		assertEquals("100", names.get(ROWS - 1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCursor() {
+		ResultPage<Map<String, Object>> rp = newResultPage();
+		rp.setKeyset("id");
+		rp.setCursor("10");
+		jdbcQueryService.query(rp);
+	}
+
+	@Test
+	public void testEstimatedCount() {
+		ResultPage<Map<String, Object>> rp = newResultPage();
+		rp.setCountStrategy(CountStrategy.ESTIMATE);
+		jdbcQueryService.query(rp);
+		assertEquals(ROWS, rp.getTotalResults());
+		assertFalse(rp.isEstimated());
+		String sql = "insert into event select x + " + ROWS + ", 'test', current_timestamp from system_range(1, "
+				+ ResultPage.ESTIMATED_COUNT_LIMIT + ")";
+		new TransactionTemplate(transactionManager).execute(status -> jdbcTemplate.update(sql));
+		rp = newResultPage();
+		rp.setCountStrategy(CountStrategy.ESTIMATE);
+		jdbcQueryService.query(rp);
+		assertEquals(ResultPage.ESTIMATED_COUNT_LIMIT, rp.getTotalResults());
+		assertTrue(rp.isEstimated());
+	}
+
+	private static ResultPage<Map<String, Object>> newResultPage() {
+		ResultPage<Map<String, Object>> rp = new ResultPage<>();
+		rp.setPageSize(10);
+		rp.setCriteria(new QueryCriteria("select id,name,created from event", Collections.emptyMap()));
+		return rp;
+	}
+
+	@Configuration
+	@Import(JdbcConfiguration.class)
+	static class JdbcQueryServiceConfiguration {
+
+		@Bean
+		public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+			return new JdbcTemplate(dataSource);
+		}
+
+		@Bean
+		public JdbcQueryService jdbcQueryService() {
+			return new JdbcQueryService();
+		}
+
+	}
+
+}
@@ -0,0 +1,121 @@
+package org.ironrhino.core.redis;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.ironrhino.core.redis.RedisStreamQueueTests.RedisStreamQueueConfiguration;
+import org.ironrhino.core.spring.configuration.RedisConfiguration;
+import org.ironrhino.core.util.CodecUtils;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = RedisStreamQueueConfiguration.class)
+public class RedisStreamQueueTests {
+
+	@Autowired
+	private AutowireCapableBeanFactory beanFactory;
+
+	@Autowired
+	private RedisTemplate<String, ?> redisTemplate;
+
+	private SampleQueue queue;
+
+	@After
+	public void cleanup() {
+		if (queue == null)
+			return;
+		queue.stop();
+		redisTemplate.delete(queue.queueName);
+		redisTemplate.delete(queue.deadLetterQueueName);
+	}
+
+	@Test
+	public void testConsume() throws Exception {
+		int messages = 25;
+		queue = createQueue(messages, null);
+		for (int i = 0; i < messages; i++)
+			queue.produce("message" + i);
+		assertEquals(true, queue.latch.await(10, TimeUnit.SECONDS));
+		assertEquals(messages, queue.consumed.size());
+		Thread.sleep(200);
+		assertEquals(0, length(queue.deadLetterQueueName));
+	}
+
+	@Test
+	public void testDeadLetter() throws Exception {
+		int messages = 7;
+		// more failed messages than batch size to page through pending entries
+		queue = createQueue(messages, "fail");
+		for (int i = 0; i < messages; i++)
+			queue.produce(i % 2 == 0 ? "fail" + i : "message" + i);
+		assertEquals(true, queue.latch.await(10, TimeUnit.SECONDS));
+		long deadline = System.currentTimeMillis() + 15000;
+		while (length(queue.deadLetterQueueName) < 4 && System.currentTimeMillis() < deadline)
+			Thread.sleep(100);
+		assertEquals(4, length(queue.deadLetterQueueName));
+		// consumed messages are acknowledged only, dead letters are deleted
+		assertEquals(messages - 4, length(queue.queueName));
+		assertEquals(3, queue.consumed.size());
+	}
+
+	private SampleQueue createQueue(int messages, String failurePrefix) {
+		SampleQueue queue = new SampleQueue(messages, failurePrefix);
+		beanFactory.autowireBean(queue);
+		queue.setQueueName("test:" + CodecUtils.nextId());
+		queue.setConsuming(true);
+		queue.setBatchSize(2);
+		queue.setPollInterval(100);
+		queue.setClaimIdleTime(300);
+		queue.setMaxDeliveries(2);
+		queue.afterPropertiesSet();
+		return queue;
+	}
+
+	private long length(String key) {
+		return redisTemplate.execute((RedisCallback<Long>) conn -> (Long) conn.execute("XLEN",
+				key.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	static class SampleQueue extends RedisStreamQueue<String> {
+
+		final Set<String> consumed = ConcurrentHashMap.newKeySet();
+
+		final CountDownLatch latch;
+
+		final String failurePrefix;
+
+		SampleQueue(int messages, String failurePrefix) {
+			this.latch = new CountDownLatch(messages);
+			this.failurePrefix = failurePrefix;
+		}
+
+		@Override
+		public void consume(String message) {
+			latch.countDown();
+			if (failurePrefix != null && message.startsWith(failurePrefix))
+				throw new IllegalArgumentException(message);
+			consumed.add(message);
+		}
+
+	}
+
+	@Configuration
+	static class RedisStreamQueueConfiguration extends RedisConfiguration {
+
+	}
+
+}
@@ -0,0 +1,8 @@
+package org.ironrhino.core.remoting;
+
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = "httpInvoker.serializationType=BINARY")
+public class BinaryRemotingServiceTests extends JavaRemotingServiceTests {
+
+}
\ No newline at end of file
@@ -248,6 +248,11 @@ public class JavaRemotingServiceTests {
 		assertEquals("username", future.get().getUsername());
 	}
 
+	@Test
+	public void testCompletableFuture() throws Exception {
+		assertEquals("username", testService.loadCompletableFutureUserByUsername("username").get().getUsername());
+	}
+
 	@Test
 	public void testConcreteCallable() throws Exception {
 		assertEquals("username", testService.loadCallableUserByUsername("username").call().getUsername());
@@ -39,6 +39,11 @@ public class RemotingSerivceFallbackTest {
 		assertEquals("echo:test", testService.echo("test"));
 	}
 
+	@Test
+	public void testServiceNotFoundExceptionAsync() throws Exception {
+		assertEquals("test", testService.loadCompletableFutureUserByUsername("test").get().getUsername());
+	}
+
 	@Test
 	public void testCircuitBreakerOpenException() {
 		assertFalse(echoService instanceof FallbackEchoService);
@@ -0,0 +1,262 @@
+package org.ironrhino.core.remoting.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ironrhino.core.remoting.client.NettyHttpInvokerRequestExecutorTest.NettyHttpInvokerConfiguration;
+import org.ironrhino.core.remoting.serializer.HttpInvokerSerializer;
+import org.ironrhino.core.remoting.serializer.HttpInvokerSerializers;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.remoting.RemoteAccessException;
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationResult;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = NettyHttpInvokerConfiguration.class)
+@TestPropertySource(properties = "httpInvoker.readTimeout=500")
+public class NettyHttpInvokerRequestExecutorTest {
+
+	private static final int MAX_CONNECTIONS = 4;
+
+	private static EventLoopGroup eventLoopGroup;
+
+	private static ExecutorService executorService;
+
+	private static Channel serverChannel;
+
+	private static AtomicInteger connections = new AtomicInteger();
+
+	@Autowired
+	private EchoService echoService;
+
+	@BeforeClass
+	public static void setup() throws Exception {
+		eventLoopGroup = new NioEventLoopGroup(2);
+		executorService = Executors.newCachedThreadPool();
+		serverChannel = new ServerBootstrap().group(eventLoopGroup).channel(NioServerSocketChannel.class)
+				.childHandler(new ChannelInitializer<SocketChannel>() {
+					@Override
+					protected void initChannel(SocketChannel ch) {
+						connections.incrementAndGet();
+						ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(1024 * 1024),
+								new EchoServiceHandler());
+					}
+				}).bind("localhost", 0).sync().channel();
+	}
+
+	@AfterClass
+	public static void destroy() {
+		serverChannel.close();
+		eventLoopGroup.shutdownGracefully();
+		executorService.shutdown();
+	}
+
+	@Before
+	public void reset() {
+		connections.set(0);
+	}
+
+	@Test
+	public void testKeepAlive() {
+		for (int i = 0; i < 10; i++)
+			assertEquals("test" + i, echoService.echo("test" + i));
+		assertTrue(connections.get() <= 1);
+	}
+
+	@Test
+	public void testCompletableFuture() throws Exception {
+		List<CompletableFuture<String>> futures = new ArrayList<>();
+		for (int i = 0; i < 100; i++)
+			futures.add(echoService.echoAsync("test" + i));
+		for (int i = 0; i < futures.size(); i++)
+			assertEquals("test" + i, futures.get(i).get());
+		assertTrue(connections.get() <= MAX_CONNECTIONS);
+	}
+
+	@Test
+	public void testFuture() throws Exception {
+		assertEquals("test", echoService.echoFuture("test").get());
+	}
+
+	@Test
+	public void testCallbackOffEventLoop() throws Exception {
+		String thread = echoService.delay(100).thenApply(v -> Thread.currentThread().getName()).get();
+		assertFalse(thread.startsWith("httpInvokerClient"));
+	}
+
+	@Test
+	public void testException() throws Exception {
+		boolean error = false;
+		try {
+			echoService.echoAsync(null).get();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+			error = true;
+		}
+		assertTrue(error);
+	}
+
+	@Test
+	public void testReadTimeout() throws Exception {
+		boolean error = false;
+		try {
+			echoService.delay(2000).get();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RemoteAccessException);
+			assertTrue(e.getCause().getCause() instanceof SocketTimeoutException);
+			error = true;
+		}
+		assertTrue(error);
+		assertEquals("test", echoService.echo("test"));
+	}
+
+	public interface EchoService {
+
+		String echo(String value);
+
+		CompletableFuture<String> echoAsync(String value);
+
+		Future<String> echoFuture(String value);
+
+		CompletableFuture<Void> delay(long millis);
+
+	}
+
+	public static class EchoServiceImpl implements EchoService {
+
+		@Override
+		public String echo(String value) {
+			if (value == null)
+				throw new IllegalArgumentException("value shouldn't be null");
+			return value;
+		}
+
+		@Override
+		public CompletableFuture<String> echoAsync(String value) {
+			return CompletableFuture.completedFuture(echo(value));
+		}
+
+		@Override
+		public Future<String> echoFuture(String value) {
+			return echoAsync(value);
+		}
+
+		@Override
+		public CompletableFuture<Void> delay(long millis) {
+			try {
+				Thread.sleep(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return CompletableFuture.completedFuture(null);
+		}
+
+	}
+
+	static class EchoServiceHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+		private final EchoService target = new EchoServiceImpl();
+
+		@Override
+		protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) throws Exception {
+			HttpInvokerSerializer serializer = HttpInvokerSerializers
+					.ofContentType(request.headers().get(HttpHeaderNames.CONTENT_TYPE));
+			RemoteInvocation invocation = serializer.readRemoteInvocation(EchoService.class,
+					new ByteBufInputStream(request.content()));
+			executorService.execute(() -> {
+				RemoteInvocationResult result;
+				try {
+					Object value = invocation.invoke(target);
+					if (value instanceof Future)
+						value = ((Future<?>) value).get();
+					result = new RemoteInvocationResult(value);
+				} catch (InvocationTargetException e) {
+					result = new RemoteInvocationResult(e);
+				} catch (Exception e) {
+					result = new RemoteInvocationResult(new InvocationTargetException(e));
+				}
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				try {
+					serializer.writeRemoteInvocationResult(invocation, result, baos);
+				} catch (Exception e) {
+					ctx.close();
+					return;
+				}
+				FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+						Unpooled.wrappedBuffer(baos.toByteArray()));
+				response.headers().set(HttpHeaderNames.CONTENT_TYPE, serializer.getContentType());
+				response.headers().set(HttpHeaderNames.CONTENT_LENGTH, baos.size());
+				ctx.writeAndFlush(response);
+			});
+		}
+
+	}
+
+	@Configuration
+	static class NettyHttpInvokerConfiguration {
+
+		@Bean
+		public NettyHttpInvokerRequestExecutor nettyHttpInvokerRequestExecutor() {
+			NettyHttpInvokerRequestExecutor executor = new NettyHttpInvokerRequestExecutor();
+			executor.setMaxConnectionsPerHost(MAX_CONNECTIONS);
+			return executor;
+		}
+
+		@Bean
+		public HttpInvokerClient echoService() {
+			InetSocketAddress address = (InetSocketAddress) serverChannel.localAddress();
+			HttpInvokerClient httpInvokerClient = new HttpInvokerClient();
+			httpInvokerClient.setServiceInterface(EchoService.class);
+			httpInvokerClient.setHost(address.getHostString());
+			httpInvokerClient.setPort(address.getPort());
+			httpInvokerClient.setMaxAttempts(1);
+			return httpInvokerClient;
+		}
+
+	}
+
+}
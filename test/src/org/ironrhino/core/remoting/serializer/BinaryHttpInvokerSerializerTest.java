@@ -0,0 +1,178 @@
+package org.ironrhino.core.remoting.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.ironrhino.sample.remoting.TestService;
+import org.ironrhino.security.domain.User;
+import org.junit.Test;
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationResult;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import lombok.Getter;
+import lombok.Setter;
+
+public class BinaryHttpInvokerSerializerTest extends JavaHttpInvokerSerializerTest {
+
+	@Override
+	protected String serializationType() {
+		return "BINARY";
+	}
+
+	@Test
+	public void testComplexObject() throws Exception {
+		Method method = TestService.class.getDeclaredMethod("echo", String.class);
+		MethodInvocation mi = createMethodInvocation(method, "test");
+		RemoteInvocation ri = serializer.createRemoteInvocation(mi);
+		Node root = new Node();
+		root.setName("root");
+		root.setLevel(0);
+		root.setWeight(1.5);
+		root.setAmount(new BigDecimal("12.34"));
+		root.setUnit(TimeUnit.SECONDS);
+		root.setDate(new Date());
+		root.setFlags(new int[] { 1, -2, Integer.MAX_VALUE });
+		root.setAttributes(new LinkedHashMap<>());
+		root.getAttributes().put("key", "value");
+		root.setTags(Arrays.asList("a", "b"));
+		Node child = new Node();
+		child.setName("child");
+		child.setLevel(1);
+		child.setParent(root);
+		child.setTags(Collections.emptyList());
+		root.setChildren(new ArrayList<>());
+		root.getChildren().add(child);
+		RemoteInvocationResult rir = readRemoteInvocationResult(mi,
+				writeRemoteInvocationResult(ri, new RemoteInvocationResult(root)));
+		Node node = (Node) rir.getValue();
+		assertEquals("root", node.getName());
+		assertEquals(0, node.getLevel());
+		assertEquals(1.5, node.getWeight(), 0);
+		assertEquals(root.getAmount(), node.getAmount());
+		assertEquals(TimeUnit.SECONDS, node.getUnit());
+		assertEquals(root.getDate(), node.getDate());
+		assertArrayEquals(root.getFlags(), node.getFlags());
+		assertEquals(root.getAttributes(), node.getAttributes());
+		assertEquals(root.getTags(), node.getTags());
+		assertEquals(1, node.getChildren().size());
+		Node n = node.getChildren().get(0);
+		assertEquals("child", n.getName());
+		assertSame(node, n.getParent());
+		assertTrue(n.getTags().isEmpty());
+	}
+
+	@Test
+	public void testUntrustedObject() throws Exception {
+		Method method = TestService.class.getDeclaredMethod("echo", String.class);
+		MethodInvocation mi = createMethodInvocation(method, "test");
+		RemoteInvocation ri = serializer.createRemoteInvocation(mi);
+		// neither serializable nor reachable from signature
+		byte[] data = writeRemoteInvocationResult(ri, new RemoteInvocationResult(new Echo("test")));
+		try {
+			readRemoteInvocationResult(mi, data);
+			fail("should throw SerializationFailedException");
+		} catch (SerializationFailedException e) {
+			assertTrue(e.getMessage().contains(Echo.class.getName()));
+		}
+	}
+
+	@Test
+	public void testUntrustedCollection() throws Exception {
+		Method method = TestService.class.getDeclaredMethod("echo", String.class);
+		MethodInvocation mi = createMethodInvocation(method, "test");
+		BinaryObjectOutput out = new BinaryObjectOutput();
+		out.writeByte(1);
+		out.writeByte(0);
+		out.writeByte(BinarySchema.COLLECTION);
+		out.writeClass(TagList.class);
+		out.writeUnsignedVarInt(0);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		out.writeTo(baos);
+		try {
+			readRemoteInvocationResult(mi, baos.toByteArray());
+			fail("should throw SerializationFailedException");
+		} catch (SerializationFailedException e) {
+			assertTrue(e.getMessage().contains(TagList.class.getName()));
+		}
+	}
+
+	@Test
+	public void testCompactness() throws Exception {
+		Method method = TestService.class.getDeclaredMethod("loadUserByUsername", String.class);
+		MethodInvocation mi = createMethodInvocation(method, "username");
+		User user = new User();
+		user.setUsername("username");
+		user.setName("name");
+		user.setAuthorities(AuthorityUtils.createAuthorityList("test"));
+		int size = size(serializer, mi, user);
+		assertTrue(size < size(SmileHttpInvokerSerializer.INSTANCE, mi, user));
+		assertTrue(size < size(FstHttpInvokerSerializer.INSTANCE, mi, user));
+		assertTrue(size < size(JavaHttpInvokerSerializer.INSTANCE, mi, user));
+	}
+
+	private static int size(HttpInvokerSerializer serializer, MethodInvocation mi, Object value) throws IOException {
+		RemoteInvocation ri = serializer.createRemoteInvocation(mi);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		serializer.writeRemoteInvocation(ri, baos);
+		serializer.writeRemoteInvocationResult(ri, new RemoteInvocationResult(value), baos);
+		return baos.size();
+	}
+
+	@Getter
+	@Setter
+	static class Node implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private String name;
+
+		private int level;
+
+		private double weight;
+
+		private BigDecimal amount;
+
+		private TimeUnit unit;
+
+		private Date date;
+
+		private int[] flags;
+
+		private Map<String, String> attributes = new HashMap<>();
+
+		private List<String> tags;
+
+		private Node parent;
+
+		private List<Node> children;
+
+	}
+
+	static class TagList extends ArrayList<String> {
+
+		private static final long serialVersionUID = 1L;
+
+	}
+
+}
@@ -0,0 +1,8 @@
+package org.ironrhino.core.remoting.server;
+
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = "httpInvoker.serializationType=BINARY")
+public class BinaryHttpInvokerServerTest extends JavaHttpInvokerServerTest {
+
+}
\ No newline at end of file
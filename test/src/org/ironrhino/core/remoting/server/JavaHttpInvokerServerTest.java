@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -42,6 +43,7 @@ import org.ironrhino.core.remoting.ServiceNotFoundException;
 import org.ironrhino.core.remoting.ServiceRegistry;
 import org.ironrhino.core.remoting.client.HttpInvokerClient;
 import org.ironrhino.core.remoting.client.HttpInvokerRequestExecutor;
+import org.ironrhino.core.remoting.serializer.BinaryHttpInvokerSerializer;
 import org.ironrhino.core.remoting.serializer.FstHttpInvokerSerializer;
 import org.ironrhino.core.remoting.serializer.HttpInvokerSerializers;
 import org.ironrhino.core.remoting.serializer.JavaHttpInvokerSerializer;
@@ -486,6 +488,31 @@ public class JavaHttpInvokerServerTest extends HttpInvokerServerTestBase {
 		verify(mockTestService).loadListenableFutureUserDetailsByUsername("username");
 	}
 
+	@Test
+	public void testCompletableFuture() throws Exception {
+		CompletableFuture<User> completableFuture = testService.loadCompletableFutureUserByUsername("username");
+		assertEquals("username", completableFuture.get().getUsername());
+		verify(mockHttpInvokerRequestExecutor).executeRequest(eq(serviceUrl(TestService.class)),
+				argThat(ri -> "loadCompletableFutureUserByUsername".equals(ri.getMethodName())),
+				any(MethodInvocation.class));
+		verify(mockHttpServletRequest).startAsync();
+		verify(mockAsyncContext).complete();
+		verify(mockTestService).loadCompletableFutureUserByUsername("username");
+	}
+
+	@Test
+	public void testCompletableFutureWithBlankUsername() throws Exception {
+		boolean error = false;
+		try {
+			testService.loadCompletableFutureUserByUsername("").get();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+			error = true;
+		}
+		assertTrue(error);
+		verify(mockTestService).loadCompletableFutureUserByUsername("");
+	}
+
 	@Test
 	public void testAttempt() throws Exception {
 		final int maxAttempts = 5;
@@ -566,7 +593,8 @@ public class JavaHttpInvokerServerTest extends HttpInvokerServerTestBase {
 
 	protected void verifyUserDetails(UserDetails userDetails) {
 		if (FstHttpInvokerSerializer.INSTANCE.getSerializationType().equals(serializationType)
-				|| JavaHttpInvokerSerializer.INSTANCE.getSerializationType().equals(serializationType)) {
+				|| JavaHttpInvokerSerializer.INSTANCE.getSerializationType().equals(serializationType)
+				|| BinaryHttpInvokerSerializer.INSTANCE.getSerializationType().equals(serializationType)) {
 			assertTrue(userDetails instanceof User);
 		} else {
 			assertFalse(userDetails instanceof User);
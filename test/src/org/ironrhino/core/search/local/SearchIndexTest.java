@@ -0,0 +1,142 @@
+package org.ironrhino.core.search.local;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class SearchIndexTest {
+
+	@Test
+	public void testAnalyze() {
+		assertEquals(Arrays.asList("hello", "world", "2019"), Analyzer.analyze("Hello, World! 2019"));
+		assertEquals(Arrays.asList("ab", "中", "文", "中文", "c"), Analyzer.analyze("ab中文c"));
+	}
+
+	@Test
+	public void testSearch() throws IOException {
+		SearchIndex index = prepare(null);
+		assertEquals(Arrays.asList("1", "2"), keys(index, "tags:java"));
+		assertEquals(Arrays.asList("2"), keys(index, "tags:java AND tags:spring"));
+		assertEquals(Arrays.asList("1"), keys(index, "tags:java -tags:spring"));
+		assertEquals(Arrays.asList("1", "2", "3"), keys(index, "tags:ja*"));
+		assertEquals(Arrays.asList("3"), keys(index, "tags:JavaScript"));
+		assertEquals(Arrays.asList(), keys(index, "tags:javascript"));
+		assertEquals(Arrays.asList("2"), keys(index, "title:SPRING"));
+		assertEquals(Arrays.asList("2"), keys(index, "title:\"spring boot\""));
+		assertEquals(Arrays.asList("1", "2"), keys(index, "hello OR boot"));
+		assertEquals(Arrays.asList("2", "3"), keys(index, "(tags:spring OR tags:JavaScript) AND NOT hello"));
+		assertEquals(Arrays.asList("3"), keys(index, "中文"));
+		assertEquals(Arrays.asList("1", "2", "3"), keys(index, "*"));
+		Map<String, Integer> terms = index.countTerms(SearchQuery.parse("tags:java*"), "tags");
+		assertEquals(2, terms.get("java").intValue());
+		assertEquals(1, terms.get("javascript2").intValue());
+		assertEquals(1, terms.get("spring").intValue());
+		assertEquals(1, terms.get("JavaScript").intValue());
+	}
+
+	@Test
+	public void testSort() throws IOException {
+		SearchIndex index = prepare(null);
+		Map<String, Boolean> sorts = new LinkedHashMap<>();
+		sorts.put("displayOrder", true);
+		assertEquals(Arrays.asList("3", "2", "1"), index.search(SearchQuery.parse("*"), sorts).stream()
+				.map(SearchDocument::getKey).collect(Collectors.toList()));
+		// score
+		assertEquals("1", index.search(SearchQuery.parse("hello world"), null).get(0).getKey());
+	}
+
+	@Test
+	public void testPersistence() throws IOException {
+		File dir = Files.createTempDirectory("search").toFile();
+		try {
+			SearchIndex index = prepare(dir);
+			index.delete("2");
+			index.put(document("4", "four", 4, "java"));
+			index.close();
+			index = new SearchIndex("test", dir);
+			assertTrue(index.load());
+			assertEquals(Arrays.asList("1", "4"), keys(index, "tags:java"));
+			index.setCompactThreshold(2);
+			index.delete("4");
+			index.delete("1");
+			assertTrue(new File(dir, "segment").exists());
+			assertFalse(new File(dir, "log").exists());
+			index = new SearchIndex("test", dir);
+			assertTrue(index.load());
+			assertEquals(1, index.size());
+			index.clear();
+			index = new SearchIndex("test", dir);
+			assertTrue(index.load());
+			assertEquals(0, index.size());
+			assertFalse(new SearchIndex("test", new File(dir, "notexists")).load());
+		} finally {
+			for (File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void testSwap() throws IOException {
+		File dir = Files.createTempDirectory("search").toFile();
+		try {
+			SearchIndex old = prepare(dir);
+			SearchIndex fresh = new SearchIndex("test", dir);
+			fresh.bulkPut(document("4", "four", 4, "java"));
+			assertFalse(new File(dir, "segment").exists());
+			assertEquals(Arrays.asList("1", "2"), keys(old, "tags:java"));
+			old.discard();
+			fresh.compact();
+			// late writes to discarded index are not persisted
+			old.put(document("5", "five", 5, "java"));
+			old.close();
+			assertFalse(new File(dir, "log").exists());
+			SearchIndex index = new SearchIndex("test", dir);
+			assertTrue(index.load());
+			assertEquals(Arrays.asList("4"), keys(index, "tags:java"));
+		} finally {
+			for (File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+
+	private static List<String> keys(SearchIndex index, String query) {
+		return index.search(SearchQuery.parse(query), null).stream().map(SearchDocument::getKey).sorted()
+				.collect(Collectors.toList());
+	}
+
+	private static SearchIndex prepare(File dir) throws IOException {
+		SearchIndex index = new SearchIndex("test", dir);
+		index.getAnalyzedFields().add("title");
+		index.put(document("1", "Hello World hello", 1, "java"));
+		index.put(document("2", "Spring Boot", 2, "java", "spring"));
+		index.put(document("3", "中文", 3, "JavaScript", "javascript2"));
+		return index;
+	}
+
+	private static SearchDocument document(String id, String title, int displayOrder, String... tags) {
+		Map<String, String[]> terms = new HashMap<>();
+		List<String> tokens = Analyzer.analyze(title);
+		terms.put("title", tokens.toArray(new String[0]));
+		terms.put(SearchIndex.ALL_FIELD, tokens.toArray(new String[0]));
+		terms.put("tags", tags);
+		Map<String, Serializable> values = new HashMap<>();
+		values.put("displayOrder", displayOrder);
+		return new SearchDocument("test", id, terms, values);
+	}
+
+}
@@ -1,5 +1,15 @@
 package org.ironrhino.core.seq;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import javax.sql.DataSource;
 
 import org.ironrhino.core.configuration.DataSourceConfiguration;
@@ -8,7 +18,9 @@ import org.ironrhino.core.sequence.CyclicSequence.CycleType;
 import org.ironrhino.core.sequence.Sequence;
 import org.ironrhino.core.sequence.cyclic.DatabaseCyclicSequenceDelegate;
 import org.ironrhino.core.sequence.simple.DatabaseSimpleSequenceDelegate;
+import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
@@ -19,6 +31,65 @@ import org.springframework.test.context.junit4.SpringRunner;
 @ContextConfiguration(classes = DatabaseSequenceConfiguration.class)
 public class DatabaseSequenceTest extends SequenceTestBase {
 
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private DatabaseSimpleSequenceDelegate sample3Sequence;
+
+	@Autowired
+	private DatabaseSimpleSequenceDelegate sample4Sequence;
+
+	@Test
+	public void testBlockAllocation() throws Exception {
+		sample3Sequence.restart();
+		DatabaseSimpleSequenceDelegate another = new DatabaseSimpleSequenceDelegate(dataSource);
+		another.setSequenceName(sample3Sequence.getSequenceName());
+		another.afterPropertiesSet();
+		for (int i = 1; i <= 10; i++)
+			assertEquals(i, sample3Sequence.nextLongValue());
+		assertEquals(101, another.nextLongValue());
+		for (int i = 11; i <= 100; i++)
+			assertEquals(i, sample3Sequence.nextLongValue());
+		assertEquals(102, sample3Sequence.nextLongValue());
+		sample3Sequence.restart();
+		assertEquals(1, sample3Sequence.nextLongValue());
+	}
+
+	@Test
+	public void testAdaptiveBlockAllocation() throws Exception {
+		sample4Sequence.restart();
+		int threads = 10;
+		int loop = 1000;
+		Set<Long> values = ConcurrentHashMap.newKeySet();
+		AtomicBoolean ascending = new AtomicBoolean(true);
+		CountDownLatch cdl = new CountDownLatch(threads);
+		ExecutorService es = Executors.newFixedThreadPool(threads);
+		for (int i = 0; i < threads; i++) {
+			es.execute(() -> {
+				long last = 0;
+				for (int j = 0; j < loop; j++) {
+					long value = sample4Sequence.nextLongValue();
+					if (value <= last)
+						ascending.set(false);
+					values.add(value);
+					last = value;
+				}
+				cdl.countDown();
+			});
+		}
+		cdl.await();
+		es.shutdown();
+		assertTrue(ascending.get());
+		assertEquals(threads * loop, values.size());
+		DatabaseSimpleSequenceDelegate another = new DatabaseSimpleSequenceDelegate(dataSource);
+		another.setSequenceName(sample4Sequence.getSequenceName());
+		another.afterPropertiesSet();
+		long next = another.nextLongValue();
+		assertTrue(next > threads * loop);
+		assertTrue(next <= threads * loop + sample4Sequence.getMaxCacheSize() + 1);
+	}
+
 	@Configuration
 	@Import(DataSourceConfiguration.class)
 	static class DatabaseSequenceConfiguration {
@@ -35,5 +106,21 @@ public class DatabaseSequenceTest extends SequenceTestBase {
 			return cs;
 		}
 
+		@Bean
+		public DatabaseSimpleSequenceDelegate sample3Sequence(DataSource dataSource) {
+			DatabaseSimpleSequenceDelegate seq = new DatabaseSimpleSequenceDelegate(dataSource);
+			seq.setCacheSize(100);
+			return seq;
+		}
+
+		@Bean
+		public DatabaseSimpleSequenceDelegate sample4Sequence(DataSource dataSource) {
+			DatabaseSimpleSequenceDelegate seq = new DatabaseSimpleSequenceDelegate(dataSource);
+			seq.setCacheSize(10);
+			seq.setAdaptive(true);
+			seq.setMaxCacheSize(500);
+			return seq;
+		}
+
 	}
 }
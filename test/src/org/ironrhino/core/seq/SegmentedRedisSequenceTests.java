@@ -0,0 +1,39 @@
+package org.ironrhino.core.seq;
+
+import org.ironrhino.core.seq.SegmentedRedisSequenceTests.SegmentedRedisSequenceConfiguration;
+import org.ironrhino.core.sequence.CyclicSequence.CycleType;
+import org.ironrhino.core.sequence.Sequence;
+import org.ironrhino.core.sequence.cyclic.RedisCyclicSequence;
+import org.ironrhino.core.sequence.simple.RedisSimpleSequence;
+import org.ironrhino.core.spring.configuration.RedisConfiguration;
+import org.junit.runner.RunWith;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = SegmentedRedisSequenceConfiguration.class)
+public class SegmentedRedisSequenceTests extends SequenceTestBase {
+
+	@Configuration
+	static class SegmentedRedisSequenceConfiguration extends RedisConfiguration {
+
+		@Bean
+		public Sequence sample1Sequence() {
+			RedisSimpleSequence ss = new RedisSimpleSequence();
+			ss.setSegmentSize(1000);
+			return ss;
+		}
+
+		@Bean
+		public Sequence sample2Sequence() {
+			RedisCyclicSequence cs = new RedisCyclicSequence();
+			cs.setCycleType(CycleType.MINUTE);
+			cs.setPaddingLength(7);
+			cs.setSegmentSize(1000);
+			return cs;
+		}
+	}
+
+}
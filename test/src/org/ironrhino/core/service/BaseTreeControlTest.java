@@ -0,0 +1,181 @@
+package org.ironrhino.core.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ironrhino.core.event.EntityOperationEvent;
+import org.ironrhino.core.event.EntityOperationType;
+import org.ironrhino.core.model.BaseTreeableEntity;
+import org.junit.Test;
+
+public class BaseTreeControlTest {
+
+	private static final int EVENTS = 3000;
+
+	// fixed seed so that failure is reproducible
+	private final Random random = new Random(3);
+
+	private final List<TreeNode> persisted = new ArrayList<>();
+
+	private final Set<Long> deleted = new HashSet<>();
+
+	private long nextId = 1;
+
+	@Test
+	public void testIncrementalMaintenance() throws Exception {
+		for (int i = 0; i < 10; i++)
+			create();
+		TreeNodeControl control = new TreeNodeControl();
+		control.getTree();
+		for (int i = 0; i < EVENTS; i++) {
+			EntityOperationEvent<TreeNode> event = nextEvent();
+			control.onApplicationEvent(event);
+			TreeNode tree = control.getTree();
+			assertEquals("event " + i + " " + event.getType(), dump(loadTree()), dump(tree));
+			// applied incrementally without dropping tree
+			assertEquals(1, control.builds.get());
+			for (TreeNode node : persisted)
+				assertSame(tree.getDescendantOrSelfById(node.getId()), control.getTreeNode(node.getId()));
+			for (Long id : deleted)
+				assertNull(control.getTreeNode(id));
+		}
+	}
+
+	private EntityOperationEvent<TreeNode> nextEvent() {
+		int op = persisted.size() < 3 ? 0 : random.nextInt(4);
+		TreeNode node;
+		EntityOperationType type = EntityOperationType.UPDATE;
+		switch (op) {
+		case 0:
+			node = create();
+			type = EntityOperationType.CREATE;
+			break;
+		case 1:
+			node = randomNode();
+			node.setName(randomName(node.getId()));
+			node.setDisplayOrder(random.nextInt(3));
+			break;
+		case 2:
+			node = randomNode();
+			TreeNode parent;
+			do {
+				parent = random.nextInt(4) == 0 ? null : randomNode();
+			} while (parent != null && parent.getFullId().startsWith(node.getFullId()));
+			move(node, parent);
+			break;
+		default:
+			node = randomNode();
+			String fullId = node.getFullId();
+			persisted.removeIf(n -> {
+				if (!n.getFullId().startsWith(fullId))
+					return false;
+				deleted.add(n.getId());
+				return true;
+			});
+			type = EntityOperationType.DELETE;
+		}
+		return new EntityOperationEvent<>(copy(node), type);
+	}
+
+	private TreeNode create() {
+		TreeNode parent = persisted.isEmpty() || random.nextInt(5) == 0 ? null : randomNode();
+		TreeNode node = new TreeNode();
+		node.setId(nextId++);
+		node.setFullId((parent != null ? parent.getFullId() : "") + node.getId() + ".");
+		node.setLevel(parent != null ? parent.getLevel() + 1 : 1);
+		node.setName(randomName(node.getId()));
+		node.setDisplayOrder(random.nextInt(3));
+		persisted.add(node);
+		return node;
+	}
+
+	private void move(TreeNode node, TreeNode parent) {
+		String oldFullId = node.getFullId();
+		String newFullId = (parent != null ? parent.getFullId() : "") + node.getId() + ".";
+		int delta = (parent != null ? parent.getLevel() + 1 : 1) - node.getLevel();
+		for (TreeNode n : persisted)
+			if (n.getFullId().startsWith(oldFullId)) {
+				n.setFullId(newFullId + n.getFullId().substring(oldFullId.length()));
+				n.setLevel(n.getLevel() + delta);
+			}
+	}
+
+	private TreeNode randomNode() {
+		return persisted.get(random.nextInt(persisted.size()));
+	}
+
+	// unique name keeps sibling order total, prefix makes updates reorder siblings
+	private String randomName(Long id) {
+		return "n" + random.nextInt(50) + "_" + id;
+	}
+
+	private TreeNode loadTree() throws Exception {
+		List<TreeNode> list = new ArrayList<>(persisted.size());
+		for (TreeNode node : persisted)
+			list.add(copy(node));
+		list.sort((a, b) -> a.getLevel() - b.getLevel());
+		TreeNode root = new TreeNode();
+		root.setId(0L);
+		root.setName("");
+		BaseManagerImpl.assemble(root, list);
+		return root;
+	}
+
+	private static TreeNode copy(TreeNode node) {
+		TreeNode t = new TreeNode();
+		t.setId(node.getId());
+		t.setFullId(node.getFullId());
+		t.setLevel(node.getLevel());
+		t.setName(node.getName());
+		t.setDisplayOrder(node.getDisplayOrder());
+		return t;
+	}
+
+	private static String dump(TreeNode tree) {
+		StringBuilder sb = new StringBuilder();
+		dump(tree, sb);
+		return sb.toString();
+	}
+
+	private static void dump(TreeNode node, StringBuilder sb) {
+		sb.append(node.getId()).append(':').append(node.getFullId()).append(':').append(node.getLevel()).append(':')
+				.append(node.getName()).append(':').append(node.getDisplayOrder()).append('(');
+		for (TreeNode child : node.getChildren()) {
+			if (child.getParent() != node)
+				sb.append("!parent ");
+			dump(child, sb);
+		}
+		sb.append(')');
+	}
+
+	public static class TreeNode extends BaseTreeableEntity<TreeNode> {
+
+		private static final long serialVersionUID = 1L;
+
+	}
+
+	class TreeNodeControl extends BaseTreeControl<TreeNode> {
+
+		final AtomicInteger builds = new AtomicInteger();
+
+		@Override
+		protected TreeNode buildTree() {
+			builds.incrementAndGet();
+			try {
+				return loadTree();
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+	}
+
+}
@@ -232,6 +232,82 @@ public class EntityManagerTest {
 		assertEquals(0, entityManager.countAll());
 	}
 
+	@Test
+	public void testResultPageWithoutCounting() {
+		prepareData();
+		for (ResultPage.CountStrategy strategy : new ResultPage.CountStrategy[] { ResultPage.CountStrategy.SKIP,
+				ResultPage.CountStrategy.ESTIMATE }) {
+			DetachedCriteria dc = entityManager.detachedCriteria();
+			dc.add(Restrictions.eq("gender", Gender.MALE));
+			dc.addOrder(Order.asc("name"));
+			ResultPage<Person> rp = new ResultPage<>();
+			rp.setCountStrategy(strategy);
+			rp.setPageNo(1);
+			rp.setPageSize(3);
+			rp.setCriteria(dc);
+			rp = entityManager.findByResultPage(rp);
+			assertEquals(3, rp.getResult().size());
+			assertFalse(rp.isLast());
+			assertEquals(2, rp.getTotalPage());
+			rp.setPageNo(2);
+			rp = entityManager.findByResultPage(rp);
+			List<Person> males = (List<Person>) rp.getResult();
+			assertEquals(2, males.size());
+			assertEquals("test6", males.get(0).getName());
+			assertEquals("test8", males.get(1).getName());
+			assertTrue(rp.isLast());
+			assertEquals(strategy == ResultPage.CountStrategy.SKIP ? -1 : 5, rp.getTotalResults());
+			assertFalse(rp.isEstimated());
+		}
+	}
+
+	@Test
+	public void testKeysetPagination() {
+		prepareData();
+		DetachedCriteria dc = entityManager.detachedCriteria();
+		dc.add(Restrictions.eq("gender", Gender.MALE));
+		dc.addOrder(Order.asc("code"));
+		ResultPage<Person> rp = new ResultPage<>();
+		rp.setKeyset("name");
+		rp.setPageSize(2);
+		rp.setCriteria(dc);
+		rp = entityManager.findByResultPage(rp);
+		List<Person> males = (List<Person>) rp.getResult();
+		assertEquals(5, rp.getTotalResults());
+		assertEquals(2, males.size());
+		assertEquals("test0", males.get(0).getName());
+		assertEquals("test2", males.get(1).getName());
+		assertEquals("test2", rp.getNextCursor());
+		assertFalse(rp.isLast());
+
+		rp.setCounting(false);
+		rp.setPageNo(2);
+		rp.setCursor(rp.getNextCursor());
+		rp = entityManager.findByResultPage(rp);
+		males = (List<Person>) rp.getResult();
+		assertEquals("test4", males.get(0).getName());
+		assertEquals("test6", males.get(1).getName());
+		rp.setPageNo(3);
+		rp.setCursor(rp.getNextCursor());
+		rp = entityManager.findByResultPage(rp);
+		males = (List<Person>) rp.getResult();
+		assertEquals(1, males.size());
+		assertEquals("test8", males.get(0).getName());
+		assertTrue(rp.isLast());
+		assertNull(rp.getNextCursor());
+
+		rp.setKeyset("name desc");
+		rp.setPageNo(2);
+		rp.setCursor("test6");
+		rp = entityManager.findByResultPage(rp);
+		males = (List<Person>) rp.getResult();
+		assertEquals("test4", males.get(0).getName());
+		assertEquals("test2", males.get(1).getName());
+
+		// cursor restriction is removed from criteria
+		assertEquals(5, entityManager.countByCriteria(dc));
+	}
+
 	@Test
 	public void testHql() {
 		prepareData();
@@ -402,6 +478,41 @@ public class EntityManagerTest {
 
 	}
 
+	@Test
+	public void testParallelIterate() {
+		prepareData();
+
+		DetachedCriteria dc = entityManager.detachedCriteria();
+		dc.add(Restrictions.eq("gender", Gender.MALE));
+		AtomicInteger ai = new AtomicInteger();
+		long count = entityManager.iterate(2, (entities, session) -> {
+			for (Person p : entities) {
+				p.setGender(Gender.FEMALE);
+				session.update(p);
+			}
+		}, people -> ai.getAndAdd(people.length), dc, 3, false);
+		assertEquals(5, count);
+		assertEquals(5, ai.get());
+		dc = entityManager.detachedCriteria();
+		dc.add(Restrictions.eq("gender", Gender.FEMALE));
+		assertEquals(9, entityManager.countByCriteria(dc));
+
+		List<String> ids = new ArrayList<>();
+		count = entityManager.iterate(2, (entities, session) -> {
+		}, people -> {
+			for (Person p : people)
+				ids.add(p.getId());
+		}, null, 4, true);
+		assertEquals(9, count);
+		assertEquals(9, ids.size());
+		dc = entityManager.detachedCriteria();
+		dc.addOrder(Order.asc("id"));
+		List<String> sorted = new ArrayList<>();
+		for (Person p : entityManager.findListByCriteria(dc))
+			sorted.add(p.getId());
+		assertEquals(sorted, ids);
+	}
+
 	@Test(expected = ConstraintViolationException.class)
 	public void testValidation() {
 		entityManager.setEntityClass(Person.class);
@@ -0,0 +1,175 @@
+package org.ironrhino.core.servlet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class OptimizeTrafficFilterTest {
+
+	private final AtomicInteger invocations = new AtomicInteger();
+
+	@Test
+	public void testBuffered() throws Exception {
+		OptimizeTrafficFilter filter = new OptimizeTrafficFilter();
+		byte[] body = body(1024);
+		MockHttpServletResponse response = execute(filter, request("/test"), body);
+		assertEquals("gzip", response.getHeader("Content-Encoding"));
+		assertEquals("Accept-Encoding", response.getHeader("Vary"));
+		assertNotNull(response.getHeader("ETag"));
+		assertEquals(response.getContentAsByteArray().length, response.getContentLength());
+		assertArrayEquals(body, gunzip(response.getContentAsByteArray()));
+
+		MockHttpServletRequest request = request("/test");
+		request.addHeader("If-None-Match", response.getHeader("ETag"));
+		response = execute(filter, request, body);
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+		assertEquals("Accept-Encoding", response.getHeader("Vary"));
+		assertEquals(0, response.getContentAsByteArray().length);
+
+		// varies even if not compressed
+		request = request("/test");
+		request.removeHeader("Accept-Encoding");
+		response = execute(filter, request, body);
+		assertNull(response.getHeader("Content-Encoding"));
+		assertEquals("Accept-Encoding", response.getHeader("Vary"));
+		assertArrayEquals(body, response.getContentAsByteArray());
+	}
+
+	@Test
+	public void testStreaming() throws Exception {
+		OptimizeTrafficFilter filter = new OptimizeTrafficFilter();
+		filter.setStreamingThreshold(1024);
+		byte[] body = body(10 * 1024);
+		MockHttpServletResponse response = execute(filter, request("/test"), body);
+		assertEquals("gzip", response.getHeader("Content-Encoding"));
+		// ETag is computed after body is sent, trailers are not supported here
+		assertNull(response.getHeader("ETag"));
+		assertArrayEquals(body, gunzip(response.getContentAsByteArray()));
+
+		// exactly at threshold is still buffered
+		body = body(1024);
+		response = execute(filter, request("/test"), body);
+		assertNotNull(response.getHeader("ETag"));
+		assertEquals(response.getContentAsByteArray().length, response.getContentLength());
+		assertArrayEquals(body, gunzip(response.getContentAsByteArray()));
+	}
+
+	@Test
+	public void testImmutableCache() throws Exception {
+		OptimizeTrafficFilter filter = new OptimizeTrafficFilter();
+		filter.setImmutablePatterns("/assets/*");
+		filter.setImmutableCacheCapacity(2);
+		byte[] body = body(100);
+		execute(filter, request("/assets/a"), body);
+		execute(filter, request("/assets/b"), body);
+		assertEquals(2, invocations.get());
+		execute(filter, request("/assets/a"), body);
+		assertEquals(2, invocations.get());
+		// b is least recently used and evicted
+		execute(filter, request("/assets/c"), body);
+		assertEquals(3, invocations.get());
+		MockHttpServletResponse response = execute(filter, request("/assets/a"), body);
+		assertEquals(3, invocations.get());
+		assertArrayEquals(body, gunzip(response.getContentAsByteArray()));
+		execute(filter, request("/assets/b"), body);
+		assertEquals(4, invocations.get());
+
+		execute(filter, request("/other"), body);
+		execute(filter, request("/other"), body);
+		assertEquals(6, invocations.get());
+	}
+
+	@Test
+	public void testImmutableCacheSkippedForAuthenticatedRequest() throws Exception {
+		OptimizeTrafficFilter filter = new OptimizeTrafficFilter();
+		filter.setImmutablePatterns("/assets/*");
+		byte[] body = body(100);
+		MockHttpServletRequest request = request("/assets/a");
+		request.addHeader("Authorization", "Bearer test");
+		execute(filter, request, body);
+		execute(filter, request("/assets/a"), body);
+		assertEquals(2, invocations.get());
+		request = request("/assets/a");
+		request.addHeader("Authorization", "Bearer test");
+		execute(filter, request, body);
+		assertEquals(3, invocations.get());
+	}
+
+	@Test
+	public void testImmutableCacheSkippedForRequestWithCookie() throws Exception {
+		OptimizeTrafficFilter filter = new OptimizeTrafficFilter();
+		filter.setImmutablePatterns("/assets/*");
+		byte[] body = body(100);
+		MockHttpServletRequest request = request("/assets/a");
+		request.addHeader("Cookie", "JSESSIONID=test");
+		execute(filter, request, body);
+		execute(filter, request("/assets/a"), body);
+		assertEquals(2, invocations.get());
+		request = request("/assets/a");
+		request.addHeader("Cookie", "theme=dark");
+		execute(filter, request, body);
+		assertEquals(3, invocations.get());
+	}
+
+	private MockHttpServletResponse execute(OptimizeTrafficFilter filter, MockHttpServletRequest request,
+			byte[] body) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+				invocations.incrementAndGet();
+				resp.setContentType("text/plain");
+				// write in chunks to cross streaming threshold in the middle
+				for (int i = 0; i < body.length; i += 100)
+					resp.getOutputStream().write(body, i, Math.min(100, body.length - i));
+			}
+
+		}));
+		return response;
+	}
+
+	private static MockHttpServletRequest request(String uri) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+		request.addHeader("Accept-Encoding", "gzip, deflate");
+		return request;
+	}
+
+	private static byte[] body(int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+			bytes[i] = (byte) ('a' + i % 26);
+		return bytes;
+	}
+
+	private static byte[] gunzip(byte[] bytes) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+			byte[] buffer = new byte[1024];
+			int n;
+			while ((n = is.read(buffer)) > 0)
+				baos.write(buffer, 0, n);
+		}
+		return baos.toByteArray();
+	}
+
+}
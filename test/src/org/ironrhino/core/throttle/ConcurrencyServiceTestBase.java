@@ -0,0 +1,63 @@
+package org.ironrhino.core.throttle;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.ironrhino.core.util.CodecUtils;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public abstract class ConcurrencyServiceTestBase {
+
+	@Autowired
+	protected ConcurrencyService concurrencyService;
+
+	@Test
+	public void testTryAcquire() {
+		String name = CodecUtils.nextId();
+		for (int i = 0; i < 3; i++)
+			assertTrue(concurrencyService.tryAcquire(name, 3));
+		assertFalse(concurrencyService.tryAcquire(name, 3));
+		concurrencyService.release(name);
+		assertTrue(concurrencyService.tryAcquire(name, 3));
+		for (int i = 0; i < 3; i++)
+			concurrencyService.release(name);
+	}
+
+	@Test
+	public void testTryAcquireWithTimeout() throws Exception {
+		String name = CodecUtils.nextId();
+		assertTrue(concurrencyService.tryAcquire(name, 1));
+		long time = System.currentTimeMillis();
+		assertFalse(concurrencyService.tryAcquire(name, 1, 300, TimeUnit.MILLISECONDS));
+		assertTrue(System.currentTimeMillis() - time >= 300);
+		concurrencyService.release(name);
+		assertTrue(concurrencyService.tryAcquire(name, 1, 300, TimeUnit.MILLISECONDS));
+		concurrencyService.release(name);
+	}
+
+	@Test
+	public void testWakeupOnRelease() throws Exception {
+		String name = CodecUtils.nextId();
+		assertTrue(concurrencyService.tryAcquire(name, 1));
+		CompletableFuture<Long> waiter = CompletableFuture.supplyAsync(() -> {
+			try {
+				concurrencyService.acquire(name, 1);
+				long acquired = System.currentTimeMillis();
+				concurrencyService.release(name);
+				return acquired;
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		Thread.sleep(300);
+		assertFalse(waiter.isDone());
+		long released = System.currentTimeMillis();
+		concurrencyService.release(name);
+		assertTrue(waiter.get(5, TimeUnit.SECONDS) - released < 80);
+	}
+
+}
@@ -0,0 +1,88 @@
+package org.ironrhino.core.throttle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.ironrhino.core.util.CodecUtils;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public abstract class FrequencyServiceTestBase {
+
+	@Autowired
+	private FrequencyService frequencyService;
+
+	@Test
+	public void testAvailable() {
+		String name = CodecUtils.nextId();
+		assertEquals(5, frequencyService.available(name, 5));
+		frequencyService.increment(name, 3, 10, TimeUnit.SECONDS);
+		assertEquals(2, frequencyService.available(name, 5));
+		frequencyService.increment(name, 3, 10, TimeUnit.SECONDS);
+		assertEquals(0, frequencyService.available(name, 5));
+	}
+
+	@Test
+	public void testFixedWindow() throws Exception {
+		String name = CodecUtils.nextId();
+		assertEquals(5, acquireConcurrently(name, 5, false));
+		assertEquals(0, frequencyService.available(name, 5));
+		Thread.sleep(1100);
+		assertEquals(5, acquireConcurrently(name, 5, false));
+	}
+
+	@Test
+	public void testSlidingWindow() throws Exception {
+		String name = CodecUtils.nextId();
+		assertEquals(5, acquireConcurrently(name, 5, true));
+		name = CodecUtils.nextId();
+		assertTrue(frequencyService.tryAcquire(name, 2, 1, TimeUnit.SECONDS, true));
+		Thread.sleep(600);
+		assertTrue(frequencyService.tryAcquire(name, 2, 1, TimeUnit.SECONDS, true));
+		assertFalse(frequencyService.tryAcquire(name, 2, 1, TimeUnit.SECONDS, true));
+		Thread.sleep(500);
+		// only the first one slides out of the window
+		assertTrue(frequencyService.tryAcquire(name, 2, 1, TimeUnit.SECONDS, true));
+		assertFalse(frequencyService.tryAcquire(name, 2, 1, TimeUnit.SECONDS, true));
+	}
+
+	@Test
+	public void testSlidingWindowLimitsChanged() {
+		String name = CodecUtils.nextId();
+		for (int i = 0; i < 3; i++)
+			assertTrue(frequencyService.tryAcquire(name, 5, 10, TimeUnit.SECONDS, true));
+		// history is kept
+		assertFalse(frequencyService.tryAcquire(name, 3, 10, TimeUnit.SECONDS, true));
+		assertTrue(frequencyService.tryAcquire(name, 4, 10, TimeUnit.SECONDS, true));
+		assertFalse(frequencyService.tryAcquire(name, 4, 10, TimeUnit.SECONDS, true));
+	}
+
+	private int acquireConcurrently(String name, int limits, boolean slidingWindow) throws Exception {
+		int concurrency = 20;
+		ExecutorService es = Executors.newFixedThreadPool(concurrency);
+		Collection<Callable<Boolean>> tasks = new ArrayList<>();
+		for (int i = 0; i < concurrency; i++)
+			tasks.add(() -> frequencyService.tryAcquire(name, limits, 1, TimeUnit.SECONDS, slidingWindow));
+		try {
+			List<Future<Boolean>> results = es.invokeAll(tasks);
+			int acquired = 0;
+			for (Future<Boolean> f : results)
+				if (f.get())
+					acquired++;
+			return acquired;
+		} finally {
+			es.shutdown();
+		}
+	}
+
+}
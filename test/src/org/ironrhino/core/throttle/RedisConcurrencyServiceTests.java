@@ -0,0 +1,107 @@
+package org.ironrhino.core.throttle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.ironrhino.core.spring.configuration.RedisConfiguration;
+import org.ironrhino.core.throttle.RedisConcurrencyServiceTests.RedisConcurrencyServiceConfiguration;
+import org.ironrhino.core.throttle.impl.RedisConcurrencyService;
+import org.ironrhino.core.util.CodecUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = RedisConcurrencyServiceConfiguration.class)
+@TestPropertySource(properties = "concurrencyService.leaseTime=1500")
+public class RedisConcurrencyServiceTests extends ConcurrencyServiceTestBase {
+
+	@Autowired
+	private AutowireCapableBeanFactory beanFactory;
+
+	@Test
+	public void testLeaseRenewal() throws Exception {
+		String name = CodecUtils.nextId();
+		assertTrue(concurrencyService.tryAcquire(name, 1));
+		Thread.sleep(2000);
+		assertFalse(concurrencyService.tryAcquire(name, 1));
+		concurrencyService.release(name);
+	}
+
+	@Test
+	public void testLeaseExpiredIfHolderCrashed() throws Exception {
+		String name = CodecUtils.nextId();
+		RedisConcurrencyService crashed = beanFactory.createBean(RedisConcurrencyService.class);
+		assertTrue(crashed.tryAcquire(name, 1));
+		crashed.destroy();
+		assertFalse(concurrencyService.tryAcquire(name, 1));
+		assertTrue(concurrencyService.tryAcquire(name, 1, 3, TimeUnit.SECONDS));
+		concurrencyService.release(name);
+	}
+
+	@Test
+	public void testReleaseWithoutPermit() {
+		String name = CodecUtils.nextId();
+		// ignored, not counted as permit
+		concurrencyService.release(name);
+		assertTrue(concurrencyService.tryAcquire(name, 1));
+		assertFalse(concurrencyService.tryAcquire(name, 1));
+		concurrencyService.release(name);
+	}
+
+	@Test
+	public void testFairness() throws Exception {
+		String name = CodecUtils.nextId();
+		assertTrue(concurrencyService.tryAcquire(name, 1));
+		List<Integer> order = new CopyOnWriteArrayList<>();
+		CompletableFuture<?>[] waiters = new CompletableFuture<?>[5];
+		ExecutorService es = Executors.newFixedThreadPool(waiters.length);
+		for (int i = 0; i < waiters.length; i++) {
+			int index = i;
+			waiters[i] = CompletableFuture.runAsync(() -> {
+				try {
+					concurrencyService.acquire(name, 1);
+					order.add(index);
+					Thread.sleep(10);
+					concurrencyService.release(name);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}, es);
+			Thread.sleep(100);
+		}
+		// newcomer shouldn't jump the queue
+		assertFalse(concurrencyService.tryAcquire(name, 2));
+		concurrencyService.release(name);
+		CompletableFuture.allOf(waiters).get(10, TimeUnit.SECONDS);
+		es.shutdown();
+		assertEquals(5, order.size());
+		for (int i = 0; i < order.size(); i++)
+			assertEquals(i, order.get(i).intValue());
+	}
+
+	@Configuration
+	static class RedisConcurrencyServiceConfiguration extends RedisConfiguration {
+
+		@Bean
+		public ConcurrencyService concurrencyService() {
+			return new RedisConcurrencyService();
+		}
+
+	}
+
+}
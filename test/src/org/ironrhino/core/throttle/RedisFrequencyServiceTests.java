@@ -0,0 +1,26 @@
+package org.ironrhino.core.throttle;
+
+import org.ironrhino.core.spring.configuration.RedisConfiguration;
+import org.ironrhino.core.throttle.RedisFrequencyServiceTests.RedisFrequencyServiceConfiguration;
+import org.ironrhino.core.throttle.impl.RedisFrequencyService;
+import org.junit.runner.RunWith;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = RedisFrequencyServiceConfiguration.class)
+public class RedisFrequencyServiceTests extends FrequencyServiceTestBase {
+
+	@Configuration
+	static class RedisFrequencyServiceConfiguration extends RedisConfiguration {
+
+		@Bean
+		public FrequencyService frequencyService() {
+			return new RedisFrequencyService();
+		}
+
+	}
+
+}
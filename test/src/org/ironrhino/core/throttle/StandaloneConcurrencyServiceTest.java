@@ -0,0 +1,25 @@
+package org.ironrhino.core.throttle;
+
+import org.ironrhino.core.throttle.StandaloneConcurrencyServiceTest.StandaloneConcurrencyServiceConfiguration;
+import org.ironrhino.core.throttle.impl.StandaloneConcurrencyService;
+import org.junit.runner.RunWith;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = StandaloneConcurrencyServiceConfiguration.class)
+public class StandaloneConcurrencyServiceTest extends ConcurrencyServiceTestBase {
+
+	@Configuration
+	static class StandaloneConcurrencyServiceConfiguration {
+
+		@Bean
+		public ConcurrencyService concurrencyService() {
+			return new StandaloneConcurrencyService();
+		}
+
+	}
+
+}
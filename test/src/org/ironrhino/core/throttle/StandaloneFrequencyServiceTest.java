@@ -0,0 +1,45 @@
+package org.ironrhino.core.throttle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ironrhino.core.throttle.StandaloneFrequencyServiceTest.StandaloneFrequencyServiceConfiguration;
+import org.ironrhino.core.throttle.impl.StandaloneFrequencyService;
+import org.ironrhino.core.util.CodecUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = StandaloneFrequencyServiceConfiguration.class)
+public class StandaloneFrequencyServiceTest extends FrequencyServiceTestBase {
+
+	@Autowired
+	private FrequencyService frequencyService;
+
+	@Test
+	public void testAvailableWithSlidingWindow() {
+		String name = CodecUtils.nextId();
+		for (int i = 0; i < 3; i++)
+			assertTrue(frequencyService.tryAcquire(name, 5, 10, TimeUnit.SECONDS, true));
+		assertEquals(2, frequencyService.available(name, 5));
+		assertEquals(0, frequencyService.available(name, 2));
+	}
+
+	@Configuration
+	static class StandaloneFrequencyServiceConfiguration {
+
+		@Bean
+		public FrequencyService frequencyService() {
+			return new StandaloneFrequencyService();
+		}
+
+	}
+
+}
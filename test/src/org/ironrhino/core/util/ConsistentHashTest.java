@@ -0,0 +1,137 @@
+package org.ironrhino.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ironrhino.core.util.ConsistentHash.Algorithm;
+import org.junit.Test;
+
+public class ConsistentHashTest {
+
+	private static final int KEYS = 10000;
+
+	@Test
+	public void testEmpty() {
+		for (Algorithm algorithm : Algorithm.values()) {
+			ConsistentHash<String, String> ch = new ConsistentHash<>(Arrays.<String>asList(), null, algorithm);
+			assertNull(ch.get("test"));
+			ch.addNode("node1");
+			assertEquals("node1", ch.get("test"));
+			ch.removeNode("node1");
+			assertNull(ch.get("test"));
+		}
+	}
+
+	@Test
+	public void testHashTag() {
+		for (Algorithm algorithm : Algorithm.values()) {
+			ConsistentHash<String, String> ch = new ConsistentHash<>(Arrays.asList("node1", "node2", "node3"), null,
+					algorithm);
+			for (int i = 0; i < 100; i++)
+				assertEquals(ch.get("{user" + i + "}"), ch.get("prefix{user" + i + "}suffix"));
+		}
+	}
+
+	@Test
+	public void testMapping() {
+		// pinned so that any change of key to node mapping is deliberate
+		Map<Algorithm, String> expected = new HashMap<>();
+		// compatible with previous versions
+		expected.put(Algorithm.RING, "11111111111111111111");
+		expected.put(Algorithm.BALANCED_RING, "22222122321232122231");
+		expected.put(Algorithm.JUMP, "33231123333223123323");
+		expected.put(Algorithm.RENDEZVOUS, "33231222213212221213");
+		Map<String, Integer> nodes = new LinkedHashMap<>();
+		nodes.put("node1", 1);
+		nodes.put("node2", 2);
+		nodes.put("node3", 1);
+		for (Algorithm algorithm : Algorithm.values()) {
+			ConsistentHash<String, String> ch = new ConsistentHash<>(nodes, null, algorithm);
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 20; i++)
+				sb.append(ch.get("key" + i).substring("node".length()));
+			assertEquals(algorithm.name(), expected.get(algorithm), sb.toString());
+		}
+	}
+
+	@Test
+	public void testIncrementalEqualsRebuild() {
+		for (Algorithm algorithm : new Algorithm[] { Algorithm.RING, Algorithm.BALANCED_RING }) {
+			ConsistentHash<String, String> incremental = new ConsistentHash<>(Arrays.asList("node1", "node2"), null,
+					algorithm);
+			incremental.addNode("node3", 2);
+			incremental.addNode("node4");
+			incremental.removeNode("node2");
+			incremental.addNode("node4", 3);
+			Map<String, Integer> nodes = new LinkedHashMap<>();
+			nodes.put("node1", 1);
+			nodes.put("node3", 2);
+			nodes.put("node4", 3);
+			ConsistentHash<String, String> rebuilt = new ConsistentHash<>(nodes, null, algorithm);
+			assertEquals(nodes, incremental.getNodes());
+			for (int i = 0; i < KEYS; i++)
+				assertEquals(algorithm.name(), rebuilt.get("key" + i), incremental.get("key" + i));
+		}
+	}
+
+	@Test
+	public void testCustomHashEqualsMurmurHash() {
+		ConsistentHash.MurmurHash murmur = new ConsistentHash.MurmurHash();
+		ConsistentHash<String, String> ch1 = new ConsistentHash<>(Arrays.asList("node1", "node2", "node3"));
+		ConsistentHash<String, String> ch2 = new ConsistentHash<>(Arrays.asList("node1", "node2", "node3"),
+				murmur::hash);
+		for (int i = 0; i < KEYS; i++)
+			assertEquals(ch1.get("key" + i), ch2.get("key" + i));
+	}
+
+	@Test
+	public void testDistributionAndMovement() {
+		for (Algorithm algorithm : new Algorithm[] { Algorithm.BALANCED_RING, Algorithm.JUMP,
+				Algorithm.RENDEZVOUS }) {
+			ConsistentHash<String, String> ch = new ConsistentHash<>(Arrays.asList("node1", "node2", "node3", "node4"),
+					null, algorithm);
+			Map<String, String> before = new HashMap<>();
+			Map<String, Integer> counts = new HashMap<>();
+			for (int i = 0; i < KEYS; i++) {
+				String node = ch.get("key" + i);
+				before.put("key" + i, node);
+				counts.merge(node, 1, Integer::sum);
+			}
+			assertEquals(4, counts.size());
+			for (int count : counts.values())
+				assertTrue(algorithm + ":" + counts, count > KEYS / 4 * 0.7 && count < KEYS / 4 * 1.3);
+			ch.addNode("node5");
+			int moved = 0;
+			for (int i = 0; i < KEYS; i++) {
+				String node = ch.get("key" + i);
+				if (!node.equals(before.get("key" + i))) {
+					assertEquals("node5", node);
+					moved++;
+				}
+			}
+			assertTrue(algorithm + ":" + moved, moved > KEYS / 5 * 0.7 && moved < KEYS / 5 * 1.3);
+		}
+	}
+
+	@Test
+	public void testWeight() {
+		for (Algorithm algorithm : new Algorithm[] { Algorithm.BALANCED_RING, Algorithm.RENDEZVOUS }) {
+			Map<String, Integer> nodes = new LinkedHashMap<>();
+			nodes.put("node1", 1);
+			nodes.put("node2", 3);
+			ConsistentHash<String, String> ch = new ConsistentHash<>(nodes, null, algorithm);
+			int count = 0;
+			for (int i = 0; i < KEYS; i++)
+				if (ch.get("key" + i).equals("node2"))
+					count++;
+			assertTrue(algorithm + ":" + count, count > KEYS * 0.65 && count < KEYS * 0.85);
+		}
+	}
+
+}
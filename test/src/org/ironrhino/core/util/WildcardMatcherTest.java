@@ -0,0 +1,58 @@
+package org.ironrhino.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class WildcardMatcherTest {
+
+	@Test
+	public void testEmpty() {
+		assertTrue(WildcardMatcher.compile((String) null).isEmpty());
+		assertTrue(WildcardMatcher.compile(" ").isEmpty());
+		assertFalse(WildcardMatcher.compile("").matches(""));
+		assertFalse(WildcardMatcher.compile("/test").isEmpty());
+	}
+
+	@Test
+	public void testMatches() {
+		WildcardMatcher matcher = WildcardMatcher
+				.compile("/assets/*, /remoting/* ,*.ico,/metrics,/api/*/health,/user/?ist,/websocket*");
+		assertTrue(matcher.matches("/assets/images/logo.png"));
+		assertTrue(matcher.matches("/assets/"));
+		assertFalse(matcher.matches("/assets"));
+		assertTrue(matcher.matches("/remoting/httpinvoker/FooService"));
+		assertTrue(matcher.matches("/favicon.ico"));
+		assertTrue(matcher.matches(".ico"));
+		assertFalse(matcher.matches("/favicon.icon"));
+		assertTrue(matcher.matches("/metrics"));
+		assertFalse(matcher.matches("/metrics/"));
+		assertTrue(matcher.matches("/api/v1/health"));
+		assertFalse(matcher.matches("/api/v1/healthy"));
+		assertTrue(matcher.matches("/user/list"));
+		assertFalse(matcher.matches("/user/lists"));
+		assertTrue(matcher.matches("/websocket"));
+		assertFalse(matcher.matches("/user/input"));
+		assertTrue(WildcardMatcher.compile("/user/*,*").matches("/anything"));
+		assertTrue(WildcardMatcher.compile(Arrays.asList("/a*", "/b*")).matches("/bc"));
+	}
+
+	@Test
+	public void testConsistentWithMatchesWildcard() {
+		String[] patterns = { "*", "**", "t?st", "t*", "t?", "T*", "*t", "*es*", "t*t", "?*", "*?", "a*b*c", "*.json",
+				"/api/*", "/api/*/*.json", "te?t*", "test", "" };
+		String[] texts = { "", "t", "test", "tst", "tesst", "abc", "aXbYc", "acb", "/api/user.json", "/api/",
+				"/api/v1/user.json", "te", "text" };
+		for (String pattern : patterns) {
+			WildcardMatcher matcher = WildcardMatcher.compile(Arrays.asList(pattern));
+			for (String text : texts)
+				assertEquals(pattern + " : " + text,
+						!pattern.isEmpty() && StringUtils.matchesWildcard(text, pattern), matcher.matches(text));
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+package org.ironrhino.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Test;
+
+public class XlsxWriterTest {
+
+	@Test
+	public void testWrite() throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (XlsxWriter writer = new XlsxWriter(baos)) {
+			writer.writeRow("name", "amount");
+			writer.writeRow("a<b>&\"c\u0001", new BigDecimal("12.50"));
+			writer.writeRow(null, 3L);
+			writer.writeRow("nan", Double.NaN);
+			assertEquals(4, writer.getRows());
+		}
+		Map<String, String> entries = new HashMap<>();
+		try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+			ZipEntry entry;
+			while ((entry = zis.getNextEntry()) != null)
+				entries.put(entry.getName(), read(zis));
+		}
+		assertTrue(entries.containsKey("[Content_Types].xml"));
+		assertTrue(entries.containsKey("_rels/.rels"));
+		assertTrue(entries.containsKey("xl/workbook.xml"));
+		assertTrue(entries.containsKey("xl/_rels/workbook.xml.rels"));
+		String sheet = entries.get("xl/worksheets/sheet1.xml");
+		assertTrue(sheet.contains("<row r=\"1\"><c t=\"inlineStr\"><is><t xml:space=\"preserve\">name</t></is></c>"));
+		assertTrue(sheet.contains("a&lt;b&gt;&amp;&quot;c</t>"));
+		assertTrue(sheet.contains("<c><v>12.50</v></c>"));
+		assertTrue(sheet.contains("<row r=\"3\"><c/><c><v>3</v></c></row>"));
+		assertTrue(sheet.contains("<t xml:space=\"preserve\">NaN</t>"));
+		assertTrue(sheet.endsWith("</sheetData></worksheet>"));
+	}
+
+	private static String read(ZipInputStream zis) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = zis.read(buffer)) > 0)
+			baos.write(buffer, 0, n);
+		return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testWriteAfterClose() throws IOException {
+		XlsxWriter writer = new XlsxWriter(new ByteArrayOutputStream());
+		writer.close();
+		writer.writeRow("test");
+	}
+
+}
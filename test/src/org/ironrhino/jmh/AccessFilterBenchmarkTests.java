@@ -0,0 +1,130 @@
+package org.ironrhino.jmh;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.ironrhino.core.servlet.AccessFilter;
+import org.ironrhino.core.servlet.AccessHandler;
+import org.ironrhino.core.util.StringUtils;
+import org.ironrhino.core.util.WildcardMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccessFilterBenchmarkTests {
+
+	private static final String EXCLUDE_PATTERNS = "/assets/*,/remoting/*,/websocket/*,*.ico";
+
+	private static final FilterChain CHAIN = (req, resp) -> {
+	};
+
+	@Param({ "/assets/images/logo.png", "/user/list", "/api/v1/user/admin" })
+	private String uri;
+
+	private AccessFilter accessFilter;
+
+	private String[] patterns;
+
+	private WildcardMatcher matcher;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		accessFilter = new AccessFilter();
+		accessFilter.setPrint(false);
+		accessFilter.setExcludePatterns(EXCLUDE_PATTERNS);
+		List<AccessHandler> handlers = new ArrayList<>();
+		handlers.add(new SimpleAccessHandler("/remoting/*,/oauth/*", null));
+		handlers.add(new SimpleAccessHandler("/api/*", "/api/public/*,/api/*/health"));
+		handlers.add(new SimpleAccessHandler("/metrics,/prometheus", null));
+		handlers.add(new SimpleAccessHandler("*.json,*.xml", "/assets/*"));
+		handlers.add(new SimpleAccessHandler("/websocket/*", null));
+		ReflectionTestUtils.setField(accessFilter, "handlers", handlers);
+		accessFilter._init();
+		patterns = EXCLUDE_PATTERNS.split(",");
+		matcher = WildcardMatcher.compile(EXCLUDE_PATTERNS);
+	}
+
+	@Benchmark
+	public int doFilter() throws IOException, ServletException {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		accessFilter.doFilter(request, response, CHAIN);
+		return response.getStatus();
+	}
+
+	@Benchmark
+	public boolean matchesWildcard() {
+		for (String pattern : patterns)
+			if (StringUtils.matchesWildcard(uri, pattern))
+				return true;
+		return false;
+	}
+
+	@Benchmark
+	public boolean wildcardMatcher() {
+		return matcher.matches(uri);
+	}
+
+	static class SimpleAccessHandler extends AccessHandler {
+
+		private final String pattern;
+
+		private final String excludePattern;
+
+		SimpleAccessHandler(String pattern, String excludePattern) {
+			this.pattern = pattern;
+			this.excludePattern = excludePattern;
+		}
+
+		@Override
+		public String getPattern() {
+			return pattern;
+		}
+
+		@Override
+		public String getExcludePattern() {
+			return excludePattern;
+		}
+
+		@Override
+		public boolean handle(HttpServletRequest request, HttpServletResponse response) {
+			return false;
+		}
+
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(AccessFilterBenchmarkTests.class.getName()).shouldFailOnError(true)
+				.build();
+		new Runner(opt).run();
+	}
+}
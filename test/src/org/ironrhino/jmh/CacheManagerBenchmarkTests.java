@@ -0,0 +1,178 @@
+package org.ironrhino.jmh;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.ironrhino.core.cache.CacheManager;
+import org.ironrhino.core.cache.impl.Cache2kCacheManager;
+import org.ironrhino.core.cache.impl.RedisCacheManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class CacheManagerBenchmarkTests {
+
+	private static final String NAMESPACE = "benchmark";
+
+	private static final int KEYS = 1000;
+
+	@Param({ "cache2k", "redis" })
+	private String implementation;
+
+	private CacheManager cacheManager;
+
+	private String[] keys;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		if (implementation.equals("redis")) {
+			// in-memory stand-in keeps key generation and serialization but not
+			// network round trip
+			RedisConnectionFactory connectionFactory = InMemoryRedis.connectionFactory();
+			RedisTemplate<String, ?> redisTemplate = new RedisTemplate<>();
+			redisTemplate.setConnectionFactory(connectionFactory);
+			redisTemplate.setKeySerializer(new StringRedisSerializer());
+			redisTemplate.afterPropertiesSet();
+			StringRedisTemplate stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+			RedisCacheManager rcm = new RedisCacheManager();
+			ReflectionTestUtils.setField(rcm, "cacheRedisTemplate", redisTemplate);
+			ReflectionTestUtils.setField(rcm, "cacheStringRedisTemplate", stringRedisTemplate);
+			ReflectionTestUtils.setField(rcm, "env", new StandardEnvironment());
+			rcm.init();
+			cacheManager = rcm;
+		} else {
+			Cache2kCacheManager ccm = new Cache2kCacheManager();
+			ccm.init();
+			cacheManager = ccm;
+		}
+		keys = new String[KEYS];
+		for (int i = 0; i < KEYS; i++) {
+			keys[i] = "key" + i;
+			cacheManager.put(keys[i], "value" + i, 1, TimeUnit.HOURS, NAMESPACE);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		if (cacheManager instanceof Cache2kCacheManager)
+			((Cache2kCacheManager) cacheManager).destroy();
+		else
+			((RedisCacheManager) cacheManager).destroy();
+	}
+
+	@Benchmark
+	public Object get() {
+		return cacheManager.get(keys[ThreadLocalRandom.current().nextInt(KEYS)], NAMESPACE);
+	}
+
+	@Benchmark
+	public void put() {
+		int i = ThreadLocalRandom.current().nextInt(KEYS);
+		cacheManager.put(keys[i], "value" + i, 1, TimeUnit.HOURS, NAMESPACE);
+	}
+
+	@Benchmark
+	public boolean exists() {
+		return cacheManager.exists(keys[ThreadLocalRandom.current().nextInt(KEYS)], NAMESPACE);
+	}
+
+	static class InMemoryRedis {
+
+		static RedisConnectionFactory connectionFactory() {
+			Map<ByteBuffer, byte[]> store = new ConcurrentHashMap<>();
+			RedisConnection connection = (RedisConnection) Proxy.newProxyInstance(
+					InMemoryRedis.class.getClassLoader(), new Class<?>[] { RedisConnection.class },
+					(proxy, method, args) -> invoke(store, method, args));
+			return (RedisConnectionFactory) Proxy.newProxyInstance(InMemoryRedis.class.getClassLoader(),
+					new Class<?>[] { RedisConnectionFactory.class }, (proxy, method, args) -> {
+						if (method.getName().equals("getConnection"))
+							return connection;
+						return defaultValue(method);
+					});
+		}
+
+		private static Object invoke(Map<ByteBuffer, byte[]> store, Method method, Object[] args) {
+			switch (method.getName()) {
+			case "get":
+				return store.get(ByteBuffer.wrap((byte[]) args[0]));
+			case "set":
+				store.put(ByteBuffer.wrap((byte[]) args[0]), (byte[]) args[1]);
+				return Boolean.TRUE;
+			case "setEx":
+			case "pSetEx":
+				store.put(ByteBuffer.wrap((byte[]) args[0]), (byte[]) args[2]);
+				return Boolean.TRUE;
+			case "exists":
+				if (args[0] instanceof byte[])
+					return store.containsKey(ByteBuffer.wrap((byte[]) args[0]));
+				long count = 0;
+				for (byte[] key : (byte[][]) args[0])
+					if (store.containsKey(ByteBuffer.wrap(key)))
+						count++;
+				return count;
+			case "del":
+				long deleted = 0;
+				for (byte[] key : (byte[][]) args[0])
+					if (store.remove(ByteBuffer.wrap(key)) != null)
+						deleted++;
+				return deleted;
+			default:
+				return defaultValue(method);
+			}
+		}
+
+		private static Object defaultValue(Method method) {
+			if (method.getName().equals("toString"))
+				return InMemoryRedis.class.getSimpleName();
+			Class<?> type = method.getReturnType();
+			if (type == boolean.class || type == Boolean.class)
+				return Boolean.FALSE;
+			if (type == long.class || type == Long.class)
+				return 0L;
+			if (type == int.class || type == Integer.class)
+				return 0;
+			return null;
+		}
+
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(CacheManagerBenchmarkTests.class.getName()).shouldFailOnError(true)
+				.build();
+		new Runner(opt).run();
+	}
+}
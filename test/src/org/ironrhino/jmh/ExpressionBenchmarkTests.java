@@ -0,0 +1,74 @@
+package org.ironrhino.jmh;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.ironrhino.core.util.ExpressionUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpressionBenchmarkTests {
+
+	private Map<String, Object> context;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		context = new HashMap<>();
+		context.put("name", "ironrhino");
+		context.put("amount", 100);
+		context.put("rate", 0.05);
+		context.put("items", Arrays.asList(1, 2, 3, 4, 5));
+	}
+
+	@Benchmark
+	public Object evalExpression() {
+		return ExpressionUtils.evalExpression("amount * rate + items.size()", context);
+	}
+
+	@Benchmark
+	public Object evalExpressionWithFunction() {
+		return ExpressionUtils.evalExpression("max(amount, 50) + sum(1, 2, 3)", context);
+	}
+
+	@Benchmark
+	public String evalTemplate() {
+		return ExpressionUtils.evalString("hello @{name}, amount is @{amount * rate}", context);
+	}
+
+	@Benchmark
+	public boolean evalBoolean() {
+		return ExpressionUtils.evalBoolean("@{amount > 50 && name == 'ironrhino'}", context, false);
+	}
+
+	@Benchmark
+	public String evalPlainText() {
+		return ExpressionUtils.evalString("plain text without expression", context);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(ExpressionBenchmarkTests.class.getName()).shouldFailOnError(true)
+				.build();
+		new Runner(opt).run();
+	}
+}
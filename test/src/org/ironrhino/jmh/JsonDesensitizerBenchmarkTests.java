@@ -0,0 +1,91 @@
+package org.ironrhino.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.ironrhino.core.util.JsonDesensitizer;
+import org.ironrhino.core.util.JsonUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import lombok.Data;
+
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonDesensitizerBenchmarkTests {
+
+	private JsonDesensitizer desensitizer;
+
+	private Account account;
+
+	private String json;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		desensitizer = new JsonDesensitizer();
+		account = new Account();
+		account.setUsername("admin");
+		account.setPassword("secret");
+		account.setEmail("admin@test.com");
+		for (int i = 0; i < 10; i++) {
+			Account child = new Account();
+			child.setUsername("user" + i);
+			child.setPassword("password" + i);
+			child.setEmail("user" + i + "@test.com");
+			account.getChildren().add(child);
+		}
+		json = JsonUtils.toJson(account);
+	}
+
+	@Benchmark
+	public String baseline() {
+		return JsonUtils.toJson(account);
+	}
+
+	@Benchmark
+	public String toJson() {
+		return desensitizer.toJson(account);
+	}
+
+	@Benchmark
+	public String desensitize() {
+		return desensitizer.desensitize(json);
+	}
+
+	@Data
+	public static class Account {
+
+		private String username;
+
+		private String password;
+
+		private String email;
+
+		private List<Account> children = new ArrayList<>();
+
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(JsonDesensitizerBenchmarkTests.class.getName())
+				.shouldFailOnError(true).build();
+		new Runner(opt).run();
+	}
+}
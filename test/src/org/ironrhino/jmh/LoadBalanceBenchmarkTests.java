@@ -0,0 +1,104 @@
+package org.ironrhino.jmh;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.ironrhino.core.util.ConsistentHash;
+import org.ironrhino.core.util.ConsistentHash.Algorithm;
+import org.ironrhino.core.util.RoundRobin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class LoadBalanceBenchmarkTests {
+
+	private static final int KEYS = 1024;
+
+	@Param({ "4", "32" })
+	private int nodes;
+
+	private ConsistentHash<String, String> ring;
+
+	private ConsistentHash<String, String> jump;
+
+	private ConsistentHash<String, String> rendezvous;
+
+	private RoundRobin<String> roundRobin;
+
+	private RoundRobin<String> weightedRoundRobin;
+
+	private String[] keys;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Map<String, Integer> weighted = new LinkedHashMap<>();
+		for (int i = 0; i < nodes; i++)
+			weighted.put("node" + i, i % 3 + 1);
+		ring = new ConsistentHash<>(weighted, null, Algorithm.BALANCED_RING);
+		jump = new ConsistentHash<>(weighted.keySet(), null, Algorithm.JUMP);
+		rendezvous = new ConsistentHash<>(weighted, null, Algorithm.RENDEZVOUS);
+		roundRobin = new RoundRobin<>(weighted.keySet());
+		weightedRoundRobin = new RoundRobin<>(weighted);
+		keys = new String[KEYS];
+		for (int i = 0; i < KEYS; i++)
+			keys[i] = "user:" + i;
+	}
+
+	@Benchmark
+	public String consistentHashRing() {
+		return ring.get(randomKey());
+	}
+
+	@Benchmark
+	public String consistentHashJump() {
+		return jump.get(randomKey());
+	}
+
+	@Benchmark
+	public String consistentHashRendezvous() {
+		return rendezvous.get(randomKey());
+	}
+
+	@Benchmark
+	public String roundRobin() {
+		return roundRobin.pick();
+	}
+
+	@Benchmark
+	public String weightedRoundRobin() {
+		return weightedRoundRobin.pick();
+	}
+
+	private String randomKey() {
+		return keys[ThreadLocalRandom.current().nextInt(KEYS)];
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(LoadBalanceBenchmarkTests.class.getName()).shouldFailOnError(true)
+				.build();
+		new Runner(opt).run();
+	}
+}
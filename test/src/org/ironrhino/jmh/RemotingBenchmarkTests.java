@@ -1,9 +1,17 @@
 package org.ironrhino.jmh;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
 import java.util.concurrent.TimeUnit;
 
+import org.aopalliance.intercept.MethodInvocation;
 import org.ironrhino.core.remoting.client.HttpInvokerClient;
+import org.ironrhino.core.remoting.serializer.BinaryHttpInvokerSerializer;
 import org.ironrhino.core.remoting.serializer.FstHttpInvokerSerializer;
+import org.ironrhino.core.remoting.serializer.HttpInvokerSerializer;
 import org.ironrhino.core.remoting.serializer.JavaHttpInvokerSerializer;
 import org.ironrhino.core.remoting.serializer.JsonHttpInvokerSerializer;
 import org.ironrhino.core.remoting.serializer.SmileHttpInvokerSerializer;
@@ -29,6 +37,9 @@ import org.openjdk.jmh.runner.options.OptionsBuilder;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationResult;
+import org.springframework.security.core.authority.AuthorityUtils;
 
 @BenchmarkMode(Mode.Throughput)
 @Warmup(iterations = 2, time = 2, timeUnit = TimeUnit.SECONDS)
@@ -41,13 +52,22 @@ public class RemotingBenchmarkTests {
 	private AnnotationConfigApplicationContext ctx;
 	private HttpInvokerClient httpInvokerClient;
 	private TestService testService;
+	private MethodInvocation methodInvocation;
+	private User user;
 
 	@Setup(Level.Trial)
-	public void setup() {
+	public void setup() throws Exception {
 		AppInfo.initialize();
 		ctx = new AnnotationConfigApplicationContext(Config.class);
 		httpInvokerClient = ctx.getBean(HttpInvokerClient.class);
 		testService = ctx.getBean("testService", TestService.class);
+		methodInvocation = new SimpleMethodInvocation(
+				TestService.class.getMethod("loadUserByUsername", String.class), "admin");
+		user = new User();
+		user.setUsername("admin");
+		user.setName("Administrator");
+		user.setEmail("admin@test.com");
+		user.setAuthorities(AuthorityUtils.createAuthorityList("ROLE_ADMINISTRATOR"));
 	}
 
 	@TearDown(Level.Trial)
@@ -79,6 +99,81 @@ public class RemotingBenchmarkTests {
 		return testService.loadUserByUsername("admin");
 	}
 
+	@Benchmark
+	public User measureRemotingWithBinarySerializer() {
+		httpInvokerClient.getHttpInvokerRequestExecutor().setSerializer(BinaryHttpInvokerSerializer.INSTANCE);
+		return testService.loadUserByUsername("admin");
+	}
+
+	@Benchmark
+	public Object measureSerializationWithJavaSerializer() throws IOException {
+		return roundTrip(JavaHttpInvokerSerializer.INSTANCE);
+	}
+
+	@Benchmark
+	public Object measureSerializationWithFstSerializer() throws IOException {
+		return roundTrip(FstHttpInvokerSerializer.INSTANCE);
+	}
+
+	@Benchmark
+	public Object measureSerializationWithSmileSerializer() throws IOException {
+		return roundTrip(SmileHttpInvokerSerializer.INSTANCE);
+	}
+
+	@Benchmark
+	public Object measureSerializationWithBinarySerializer() throws IOException {
+		return roundTrip(BinaryHttpInvokerSerializer.INSTANCE);
+	}
+
+	private Object roundTrip(HttpInvokerSerializer serializer) throws IOException {
+		RemoteInvocation invocation = serializer.createRemoteInvocation(methodInvocation);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		serializer.writeRemoteInvocation(invocation, baos);
+		invocation = serializer.readRemoteInvocation(TestService.class, new ByteArrayInputStream(baos.toByteArray()));
+		baos.reset();
+		serializer.writeRemoteInvocationResult(invocation, new RemoteInvocationResult(user), baos);
+		return serializer.readRemoteInvocationResult(methodInvocation, new ByteArrayInputStream(baos.toByteArray()))
+				.getValue();
+	}
+
+	static class SimpleMethodInvocation implements MethodInvocation {
+
+		private final Method method;
+
+		private final Object[] arguments;
+
+		SimpleMethodInvocation(Method method, Object... arguments) {
+			this.method = method;
+			this.arguments = arguments;
+		}
+
+		@Override
+		public Method getMethod() {
+			return method;
+		}
+
+		@Override
+		public Object[] getArguments() {
+			return arguments;
+		}
+
+		@Override
+		public Object proceed() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Object getThis() {
+			return null;
+		}
+
+		@Override
+		public AccessibleObject getStaticPart() {
+			return method;
+		}
+
+	}
+
 	@Configuration
 	static class Config {
 
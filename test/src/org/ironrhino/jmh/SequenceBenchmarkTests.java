@@ -0,0 +1,86 @@
+package org.ironrhino.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ironrhino.core.sequence.CyclicSequence.CycleType;
+import org.ironrhino.core.sequence.Sequence;
+import org.ironrhino.core.sequence.cyclic.DatabaseCyclicSequenceDelegate;
+import org.ironrhino.core.sequence.simple.DatabaseSimpleSequenceDelegate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class SequenceBenchmarkTests {
+
+	@Param({ "1", "100" })
+	private int cacheSize;
+
+	private HikariDataSource dataSource;
+
+	private Sequence simpleSequence;
+
+	private Sequence cyclicSequence;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		dataSource = new HikariDataSource();
+		dataSource.setJdbcUrl("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+		dataSource.setAutoCommit(false);
+		DatabaseSimpleSequenceDelegate simple = new DatabaseSimpleSequenceDelegate(dataSource);
+		simple.setSequenceName("simpleBenchmark");
+		simple.setCacheSize(cacheSize);
+		simple.afterPropertiesSet();
+		simpleSequence = simple;
+		DatabaseCyclicSequenceDelegate cyclic = new DatabaseCyclicSequenceDelegate(dataSource);
+		cyclic.setSequenceName("cyclicBenchmark");
+		cyclic.setCycleType(CycleType.DAY);
+		cyclic.setCacheSize(cacheSize);
+		cyclic.afterPropertiesSet();
+		cyclicSequence = cyclic;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		dataSource.close();
+	}
+
+	@Benchmark
+	public long simpleSequence() {
+		return simpleSequence.nextLongValue();
+	}
+
+	@Benchmark
+	public String cyclicSequence() {
+		return cyclicSequence.nextStringValue();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(SequenceBenchmarkTests.class.getName()).shouldFailOnError(true)
+				.build();
+		new Runner(opt).run();
+	}
+}
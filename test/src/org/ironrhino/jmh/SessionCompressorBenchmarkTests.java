@@ -0,0 +1,78 @@
+package org.ironrhino.jmh;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.ironrhino.core.session.HttpSessionManager;
+import org.ironrhino.core.session.SessionCompressorManager;
+import org.ironrhino.core.session.WrappedHttpSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionCompressorBenchmarkTests {
+
+	private SessionCompressorManager sessionCompressorManager;
+
+	private WrappedHttpSession session;
+
+	private String compressed;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		sessionCompressorManager = new SessionCompressorManager();
+		HttpSessionManager httpSessionManager = mock(HttpSessionManager.class);
+		when(httpSessionManager.getSessionTrackerName()).thenReturn("T");
+		MockServletContext servletContext = new MockServletContext();
+		session = new WrappedHttpSession(new MockHttpServletRequest(servletContext), new MockHttpServletResponse(),
+				servletContext, httpSessionManager);
+		session.setAttribute("locale", Locale.CHINA);
+		session.setAttribute("username", "admin");
+		session.setAttribute("roles", Arrays.asList("ROLE_ADMINISTRATOR", "ROLE_USER"));
+		session.setAttribute("loginTimes", 10);
+		compressed = sessionCompressorManager.compress(session);
+	}
+
+	@Benchmark
+	public String compress() {
+		return sessionCompressorManager.compress(session);
+	}
+
+	@Benchmark
+	public int uncompress() {
+		session.getAttrMap().clear();
+		sessionCompressorManager.uncompress(session, compressed);
+		return session.getAttrMap().size();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(SessionCompressorBenchmarkTests.class.getName())
+				.shouldFailOnError(true).build();
+		new Runner(opt).run();
+	}
+}
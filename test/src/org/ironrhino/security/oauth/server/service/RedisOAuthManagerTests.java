@@ -0,0 +1,105 @@
+package org.ironrhino.security.oauth.server.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.ironrhino.core.spring.configuration.RedisConfiguration;
+import org.ironrhino.core.util.CodecUtils;
+import org.ironrhino.security.oauth.server.model.Authorization;
+import org.ironrhino.security.oauth.server.model.Client;
+import org.ironrhino.security.oauth.server.service.RedisOAuthManagerTests.RedisOAuthManagerConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = RedisOAuthManagerConfiguration.class)
+public class RedisOAuthManagerTests {
+
+	@Autowired
+	private RedisOAuthManager oauthManager;
+
+	private Client client;
+
+	private String grantor;
+
+	@Before
+	public void setup() {
+		client = new Client();
+		client.setName("test");
+		oauthManager.saveClient(client);
+		grantor = CodecUtils.nextId();
+	}
+
+	@After
+	public void cleanup() {
+		oauthManager.deleteAuthorizationsByGrantor(grantor, null, null);
+		oauthManager.deleteClient(client);
+	}
+
+	@Test
+	public void testLifecycle() {
+		Authorization auth = new Authorization();
+		auth.setId(CodecUtils.nextId());
+		auth.setClient(client.getId());
+		auth.setGrantor(grantor);
+		auth.setRefreshToken(CodecUtils.nextId());
+		oauthManager.create(auth);
+		Authorization retrieved = oauthManager.retrieve(auth.getAccessToken());
+		assertNotNull(retrieved);
+		assertEquals(auth.getId(), retrieved.getId());
+		assertNull(retrieved.getCode());
+
+		// reuse updates authorization held by access token too
+		oauthManager.reuse(retrieved);
+		assertNotNull(retrieved.getCode());
+		assertEquals(retrieved.getCode(), oauthManager.retrieve(auth.getAccessToken()).getCode());
+		assertEquals(1, oauthManager.findAuthorizationsByGrantor(grantor).size());
+		assertEquals(retrieved.getCode(), oauthManager.findAuthorizationsByGrantor(grantor).get(0).getCode());
+
+		Authorization refreshed = oauthManager.refresh(client, auth.getRefreshToken());
+		assertNotEquals(auth.getAccessToken(), refreshed.getAccessToken());
+		assertNull(oauthManager.retrieve(auth.getAccessToken()));
+		retrieved = oauthManager.retrieve(refreshed.getAccessToken());
+		assertNotNull(retrieved);
+		assertEquals(refreshed.getRefreshToken(), retrieved.getRefreshToken());
+		assertEquals(refreshed.getRefreshToken(),
+				oauthManager.findAuthorizationsByGrantor(grantor).get(0).getRefreshToken());
+
+		assertTrue(oauthManager.revoke(refreshed.getAccessToken()));
+		assertNull(oauthManager.retrieve(refreshed.getAccessToken()));
+		assertTrue(oauthManager.findAuthorizationsByGrantor(grantor).isEmpty());
+		assertFalse(oauthManager.revoke(refreshed.getAccessToken()));
+	}
+
+	@Test
+	public void testGrantAndReuse() {
+		Authorization auth = oauthManager.grant(client, grantor, null, null);
+		assertEquals(grantor, oauthManager.retrieve(auth.getAccessToken()).getGrantor());
+		oauthManager.reuse(auth);
+		assertEquals(auth.getCode(), oauthManager.retrieve(auth.getAccessToken()).getCode());
+		Authorization refreshed = oauthManager.refresh(client, auth.getRefreshToken());
+		assertEquals(auth.getId(), oauthManager.retrieve(refreshed.getAccessToken()).getId());
+	}
+
+	@Configuration
+	static class RedisOAuthManagerConfiguration extends RedisConfiguration {
+
+		@Bean
+		public RedisOAuthManager oauthManager() {
+			return new RedisOAuthManager();
+		}
+
+	}
+
+}